@@ -0,0 +1,577 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Decodes CBOR (RFC 8949) data items from a {@link ByteBuffer} into {@link JsonElement}s, without an intermediate
+ * JSON text. Multiple data items in a row (a CBOR sequence, RFC 8742) are read by calling {@link #read()} repeatedly.
+ * <p>
+ * Data items without a JSON equivalent are converted as recommended by section 6.1 of RFC 8949: byte strings become
+ * base64url encoded strings, integer map keys become their decimal string, and simple values other than booleans and
+ * null (e.g. <code>undefined</code>) become null. Bignums (tags 2 and 3) become {@link BigInteger}s and decimal
+ * fractions (tag 4) become {@link BigDecimal}s; all other tags are ignored. Floating point numbers of any precision
+ * become {@link Double}s, same as in {@link JsonParser}.
+ * <p>
+ * The limits of the {@link ParserOptions} apply to each data item.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc8949.html">RFC 8949</a>
+ *
+ * @author Adam
+ */
+public class CborDecoder {
+    
+    private static final int INFO_INDEFINITE = 31;
+    
+    private static final int BREAK = 0xFF;
+    
+    private ByteBuffer in;
+    
+    private ParserOptions options;
+    
+    private int currentNestingDepth;
+    
+    private long elementCount;
+    
+    /**
+     * Creates a decoder that reads from the given buffer. The position of the buffer is advanced as data items are
+     * read.
+     *
+     * @param in The buffer to read from. Not <code>null</code>.
+     * @param options The options (i.e. limits) to use for decoding. Not <code>null</code>.
+     */
+    public CborDecoder(ByteBuffer in, ParserOptions options) {
+        this.in = Objects.requireNonNull(in);
+        this.options = Objects.requireNonNull(options);
+    }
+    
+    /**
+     * Creates a decoder that reads from the given buffer with the default {@link ParserOptions}.
+     *
+     * @param in The buffer to read from. Not <code>null</code>.
+     */
+    public CborDecoder(ByteBuffer in) {
+        this(in, new ParserOptions());
+    }
+    
+    /**
+     * Convenience method that decodes a single data item.
+     *
+     * @param data The CBOR encoded data item. Not <code>null</code>.
+     *
+     * @return The decoded element. Never <code>null</code>.
+     *
+     * @throws ParsingException If the data is malformed, or does not consist of exactly one data item.
+     */
+    public static JsonElement decode(byte[] data) throws ParsingException {
+        CborDecoder decoder = new CborDecoder(ByteBuffer.wrap(data));
+        JsonElement result = decoder.read();
+        if (result == null || decoder.read() != null) {
+            throw new ParsingException("CBOR: Expected exactly one data item");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the next data item.
+     *
+     * @return The decoded element, or <code>null</code> if the buffer has no remaining bytes.
+     *
+     * @throws ParsingException If the data item is malformed or exceeds a limit.
+     */
+    public JsonElement read() throws ParsingException {
+        JsonElement result = null;
+        if (in.hasRemaining()) {
+            elementCount = 0;
+            result = readElement(readInitialByte());
+        }
+        return result;
+    }
+    
+    /**
+     * Checks that the given number of bytes are available.
+     *
+     * @param numBytes The number of bytes.
+     *
+     * @throws ParsingException If less bytes are available.
+     */
+    private void require(long numBytes) throws ParsingException {
+        if (in.remaining() < numBytes) {
+            throw makeException("Unexpected end of input");
+        }
+    }
+    
+    /**
+     * Reads the initial byte of a data item.
+     *
+     * @return The initial byte, in the range 0 to 255.
+     *
+     * @throws ParsingException If the end of the input has been reached.
+     */
+    private int readInitialByte() throws ParsingException {
+        require(1);
+        return in.get() & 0xFF;
+    }
+    
+    /**
+     * Reads the argument of a data item.
+     *
+     * @param info The additional information of the initial byte (lower 5 bits).
+     *
+     * @return The argument, as unsigned 64 bit value; -1 for indefinite length (only if <code>info</code> is 31).
+     *
+     * @throws ParsingException If the additional information is reserved, or the input ends.
+     */
+    private long readArgument(int info) throws ParsingException {
+        long result;
+        if (info < 24) {
+            result = info;
+        } else if (info == 24) {
+            require(1);
+            result = in.get() & 0xFF;
+        } else if (info == 25) {
+            require(2);
+            result = in.getShort() & 0xFFFF;
+        } else if (info == 26) {
+            require(4);
+            result = in.getInt() & 0xFFFFFFFFL;
+        } else if (info == 27) {
+            require(8);
+            result = in.getLong();
+        } else if (info == INFO_INDEFINITE) {
+            result = -1;
+        } else {
+            throw makeException("Reserved additional information " + info);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the argument of a data item that can't have an indefinite length.
+     *
+     * @param info The additional information of the initial byte (lower 5 bits).
+     *
+     * @return The argument, as unsigned 64 bit value.
+     *
+     * @throws ParsingException If the additional information is reserved or indefinite, or the input ends.
+     */
+    private long readDefiniteArgument(int info) throws ParsingException {
+        if (info == INFO_INDEFINITE) {
+            throw makeException("Indefinite length not allowed for this major type");
+        }
+        return readArgument(info);
+    }
+    
+    /**
+     * Reads a definite length or count.
+     *
+     * @param info The additional information of the initial byte.
+     * @param max The maximum allowed value.
+     * @param what Description of the value, for the exception message.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the value is indefinite, larger than the maximum, or larger than the remaining
+     *      input (each byte or element needs at least one byte).
+     */
+    private int readLength(int info, int max, String what) throws ParsingException {
+        long result = readArgument(info);
+        if (result < 0 || result > max) {
+            throw makeException("Exceeded maximum " + what + " of " + max);
+        }
+        require(result);
+        return (int) result;
+    }
+    
+    /**
+     * Reads a data item.
+     *
+     * @param initial The initial byte of the data item, which has already been read.
+     *
+     * @return The element.
+     *
+     * @throws ParsingException If the data item is malformed or exceeds a limit.
+     */
+    private JsonElement readElement(int initial) throws ParsingException {
+        if (++elementCount > options.getMaxElementCount()) {
+            throw makeException("Exceeded maximum element count of " + options.getMaxElementCount());
+        }
+        
+        int major = initial >>> 5;
+        int info = initial & 0x1F;
+        
+        JsonElement result;
+        switch (major) {
+        case CborEncoder.MAJOR_UNSIGNED:
+        case CborEncoder.MAJOR_NEGATIVE:
+            result = new JsonNumber(toInteger(major, readDefiniteArgument(info)));
+            break;
+        case CborEncoder.MAJOR_BYTES:
+            result = new JsonString(Base64.getUrlEncoder().withoutPadding().encodeToString(readBytes(major, info)));
+            break;
+        case CborEncoder.MAJOR_TEXT:
+            result = new JsonString(readText(info));
+            break;
+        case CborEncoder.MAJOR_ARRAY:
+            increaseNestingDepth();
+            result = readList(info);
+            currentNestingDepth--;
+            break;
+        case CborEncoder.MAJOR_MAP:
+            increaseNestingDepth();
+            result = readObject(info);
+            currentNestingDepth--;
+            break;
+        case CborEncoder.MAJOR_TAG:
+            result = readTagged(readDefiniteArgument(info));
+            break;
+        default: // MAJOR_SIMPLE
+            result = readSimple(info);
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Converts the argument of major type 0 or 1 into a number.
+     *
+     * @param major The major type.
+     * @param argument The argument, as unsigned 64 bit value.
+     *
+     * @return An {@link Integer} or {@link Long} if the value fits, otherwise a {@link BigInteger}.
+     */
+    private static Number toInteger(int major, long argument) {
+        Number result;
+        if (argument >= 0) {
+            long value = major == CborEncoder.MAJOR_UNSIGNED ? argument : -1 - argument;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                result = (int) value;
+            } else {
+                result = value;
+            }
+        } else {
+            BigInteger unsigned = new BigInteger(Long.toUnsignedString(argument));
+            result = major == CborEncoder.MAJOR_UNSIGNED ? unsigned : unsigned.negate().subtract(BigInteger.ONE);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the content of a byte or text string, which may be split into chunks if it has indefinite length.
+     *
+     * @param major The major type of the string.
+     * @param info The additional information of the initial byte.
+     *
+     * @return The raw bytes of the string.
+     *
+     * @throws ParsingException If the string is malformed or too long.
+     */
+    private byte[] readBytes(int major, int info) throws ParsingException {
+        // each character needs at least one byte; the exact length of text is checked after decoding
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, options.getMaxStringLength() * 3L);
+        
+        byte[] result;
+        if (info != INFO_INDEFINITE) {
+            result = new byte[readLength(info, maxBytes, "string length")];
+            in.get(result);
+            
+        } else {
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            int initial = readInitialByte();
+            while (initial != BREAK) {
+                if (initial >>> 5 != major || (initial & 0x1F) == INFO_INDEFINITE) {
+                    throw makeException("Invalid chunk in indefinite length string");
+                }
+                byte[] chunk = readBytes(major, initial & 0x1F);
+                if (chunks.size() + chunk.length > maxBytes) {
+                    throw makeException("Exceeded maximum string length of " + maxBytes);
+                }
+                chunks.write(chunk, 0, chunk.length);
+                initial = readInitialByte();
+            }
+            result = chunks.toByteArray();
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the content of a text string.
+     *
+     * @param info The additional information of the initial byte.
+     *
+     * @return The decoded text.
+     *
+     * @throws ParsingException If the string is malformed or too long.
+     */
+    private String readText(int info) throws ParsingException {
+        String result = new String(readBytes(CborEncoder.MAJOR_TEXT, info), StandardCharsets.UTF_8);
+        if (result.length() > options.getMaxStringLength()) {
+            throw makeException("Exceeded maximum string length of " + options.getMaxStringLength());
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the elements of an array.
+     *
+     * @param info The additional information of the initial byte.
+     *
+     * @return The list.
+     *
+     * @throws ParsingException If the array is malformed or exceeds a limit.
+     */
+    private JsonList readList(int info) throws ParsingException {
+        JsonList result = new JsonList();
+        if (info != INFO_INDEFINITE) {
+            int size = readLength(info, options.getMaxListSize(), "list size");
+            for (int i = 0; i < size; i++) {
+                result.addElement(readElement(readInitialByte()));
+            }
+            
+        } else {
+            int initial = readInitialByte();
+            while (initial != BREAK) {
+                if (result.getSize() >= options.getMaxListSize()) {
+                    throw makeException("Exceeded maximum list size of " + options.getMaxListSize());
+                }
+                result.addElement(readElement(initial));
+                initial = readInitialByte();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the members of a map.
+     *
+     * @param info The additional information of the initial byte.
+     *
+     * @return The object.
+     *
+     * @throws ParsingException If the map is malformed or exceeds a limit.
+     */
+    private JsonObject readObject(int info) throws ParsingException {
+        JsonObject result = new JsonObject();
+        if (info != INFO_INDEFINITE) {
+            int size = readLength(info, options.getMaxObjectSize(), "object size");
+            for (int i = 0; i < size; i++) {
+                result.putElement(readKey(readInitialByte()), readElement(readInitialByte()));
+            }
+            
+        } else {
+            int numMembers = 0;
+            int initial = readInitialByte();
+            while (initial != BREAK) {
+                if (++numMembers > options.getMaxObjectSize()) {
+                    throw makeException("Exceeded maximum object size of " + options.getMaxObjectSize());
+                }
+                result.putElement(readKey(initial), readElement(readInitialByte()));
+                initial = readInitialByte();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a map key. Text strings are used as they are, integers are converted to their decimal string.
+     *
+     * @param initial The initial byte of the key.
+     *
+     * @return The key.
+     *
+     * @throws ParsingException If the key is neither a text string nor an integer.
+     */
+    private String readKey(int initial) throws ParsingException {
+        int major = initial >>> 5;
+        String result;
+        if (major == CborEncoder.MAJOR_TEXT) {
+            result = readText(initial & 0x1F);
+        } else if (major == CborEncoder.MAJOR_UNSIGNED || major == CborEncoder.MAJOR_NEGATIVE) {
+            result = toInteger(major, readDefiniteArgument(initial & 0x1F)).toString();
+        } else {
+            throw makeException("Unsupported map key of major type " + major);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the content of a tagged data item.
+     *
+     * @param tag The tag number.
+     *
+     * @return The element.
+     *
+     * @throws ParsingException If the content is malformed or does not match the tag.
+     */
+    private JsonElement readTagged(long tag) throws ParsingException {
+        JsonElement result;
+        if (tag == CborEncoder.TAG_POSITIVE_BIGNUM || tag == CborEncoder.TAG_NEGATIVE_BIGNUM) {
+            int initial = readInitialByte();
+            if (initial >>> 5 != CborEncoder.MAJOR_BYTES) {
+                throw makeException("Bignum must be a byte string");
+            }
+            byte[] bytes = readBytes(CborEncoder.MAJOR_BYTES, initial & 0x1F);
+            if (bytes.length > options.getMaxNumberLength()) {
+                throw makeException("Exceeded maximum number length of " + options.getMaxNumberLength());
+            }
+            BigInteger value = new BigInteger(1, bytes);
+            if (tag == CborEncoder.TAG_NEGATIVE_BIGNUM) {
+                value = value.negate().subtract(BigInteger.ONE);
+            }
+            result = new JsonNumber(value);
+            
+        } else if (tag == CborEncoder.TAG_DECIMAL_FRACTION) {
+            result = new JsonNumber(readDecimalFraction());
+            
+        } else {
+            // unknown tags are ignored, but nested tags count against the nesting depth to limit the recursion
+            increaseNestingDepth();
+            result = readElement(readInitialByte());
+            currentNestingDepth--;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the content of a decimal fraction, i.e. an array of exponent and mantissa.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the content is malformed.
+     */
+    private BigDecimal readDecimalFraction() throws ParsingException {
+        JsonElement content = readElement(readInitialByte());
+        if (!(content instanceof JsonList) || ((JsonList) content).getSize() != 2) {
+            throw makeException("Decimal fraction must be an array of two integers");
+        }
+        Number exponent = toNumber(((JsonList) content).getElement(0));
+        Number mantissa = toNumber(((JsonList) content).getElement(1));
+        if (!(exponent instanceof Integer) || mantissa instanceof Double) {
+            throw makeException("Decimal fraction must be an array of two integers");
+        }
+        
+        BigInteger unscaled = mantissa instanceof BigInteger
+                ? (BigInteger) mantissa : BigInteger.valueOf(mantissa.longValue());
+        return new BigDecimal(unscaled, -exponent.intValue());
+    }
+    
+    /**
+     * Returns the number value of the given element.
+     *
+     * @param element The element.
+     *
+     * @return The number value.
+     *
+     * @throws ParsingException If the element is not a number.
+     */
+    private Number toNumber(JsonElement element) throws ParsingException {
+        if (!(element instanceof JsonNumber)) {
+            throw makeException("Decimal fraction must be an array of two integers");
+        }
+        return ((JsonNumber) element).getValue();
+    }
+    
+    /**
+     * Reads a simple value or floating point number.
+     *
+     * @param info The additional information of the initial byte.
+     *
+     * @return The element.
+     *
+     * @throws ParsingException If the data item is malformed.
+     */
+    private JsonElement readSimple(int info) throws ParsingException {
+        JsonElement result;
+        switch (info) {
+        case 20:
+            result = JsonBoolean.FALSE;
+            break;
+        case 21:
+            result = JsonBoolean.TRUE;
+            break;
+        case 25:
+            result = new JsonNumber(halfToDouble((int) readArgument(info)));
+            break;
+        case 26:
+            result = new JsonNumber((double) Float.intBitsToFloat((int) readArgument(info)));
+            break;
+        case 27:
+            result = new JsonNumber(Double.longBitsToDouble(readArgument(info)));
+            break;
+        case INFO_INDEFINITE:
+            throw makeException("Unexpected break");
+        default:
+            // null, undefined, and unassigned simple values
+            readArgument(info);
+            result = JsonNull.INSTANCE;
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a half precision floating point number.
+     *
+     * @param half The 16 bits of the half precision number.
+     *
+     * @return The value.
+     */
+    private static double halfToDouble(int half) {
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        
+        double result;
+        if (exponent == 0) {
+            result = Math.scalb((double) mantissa, -24);
+        } else if (exponent != 31) {
+            result = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        } else {
+            result = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -result : result;
+    }
+    
+    /**
+     * Increases the nesting depth of lists, objects and tags.
+     *
+     * @throws ParsingException If the new nesting depth exceeds {@link ParserOptions#getMaxNestingDepth()}.
+     */
+    private void increaseNestingDepth() throws ParsingException {
+        currentNestingDepth++;
+        if (currentNestingDepth > options.getMaxNestingDepth()) {
+            throw makeException("Exceeded maximum nesting depth of " + options.getMaxNestingDepth());
+        }
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message. Adds information about the current position.
+     *
+     * @param message The exception message.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message) {
+        return new ParsingException("CBOR at byte " + in.position() + ": " + message);
+    }
+    
+}
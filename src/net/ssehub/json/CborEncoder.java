@@ -0,0 +1,330 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A visitor that encodes the visited elements in CBOR (RFC 8949), directly into a {@link ByteBuffer} without an
+ * intermediate JSON text. Visiting multiple elements produces a CBOR sequence (RFC 8742).
+ * <p>
+ * The encoding follows the preferred serialization of RFC 8949: integers and lengths use the shortest form, and
+ * floating point numbers use the shortest of half, single and double precision that preserves their value. Lists
+ * and objects are encoded with definite lengths. {@link BigInteger}s outside of the 64 bit range are encoded as
+ * bignums (tags 2 and 3), {@link BigDecimal}s as decimal fractions (tag 4).
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc8949.html">RFC 8949</a>
+ *
+ * @author Adam
+ */
+public class CborEncoder implements JsonVisitor<Void> {
+    
+    static final int MAJOR_UNSIGNED = 0;
+    
+    static final int MAJOR_NEGATIVE = 1;
+    
+    static final int MAJOR_BYTES = 2;
+    
+    static final int MAJOR_TEXT = 3;
+    
+    static final int MAJOR_ARRAY = 4;
+    
+    static final int MAJOR_MAP = 5;
+    
+    static final int MAJOR_TAG = 6;
+    
+    static final int MAJOR_SIMPLE = 7;
+    
+    static final int TAG_POSITIVE_BIGNUM = 2;
+    
+    static final int TAG_NEGATIVE_BIGNUM = 3;
+    
+    static final int TAG_DECIMAL_FRACTION = 4;
+    
+    static final int SIMPLE_FALSE = 0xF4;
+    
+    static final int SIMPLE_TRUE = 0xF5;
+    
+    static final int SIMPLE_NULL = 0xF6;
+    
+    static final int FLOAT_HALF = 0xF9;
+    
+    static final int FLOAT_SINGLE = 0xFA;
+    
+    static final int FLOAT_DOUBLE = 0xFB;
+    
+    private static final int INITIAL_CAPACITY = 256;
+    
+    private static final BigInteger UNSIGNED_LONG_MAX = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    
+    private ByteBuffer buffer;
+    
+    /**
+     * Creates an encoder with an empty buffer.
+     */
+    public CborEncoder() {
+        this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Convenience method that encodes a single element.
+     *
+     * @param element The element to encode. Not <code>null</code>.
+     *
+     * @return The CBOR encoding of the element.
+     */
+    public static byte[] encode(JsonElement element) {
+        CborEncoder encoder = new CborEncoder();
+        element.accept(encoder);
+        return encoder.toByteArray();
+    }
+    
+    /**
+     * Returns the bytes encoded so far.
+     *
+     * @return A copy of the encoded bytes.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+    
+    /**
+     * Returns a read-only view of the bytes encoded so far, without copying them. The view is invalidated by further
+     * encoding or by {@link #reset()}.
+     *
+     * @return A buffer with the encoded bytes between position and limit.
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer result = buffer.asReadOnlyBuffer();
+        ((Buffer) result).flip();
+        return result;
+    }
+    
+    /**
+     * Discards the bytes encoded so far, so that this encoder can be re-used.
+     */
+    public void reset() {
+        ((Buffer) buffer).clear();
+    }
+    
+    /**
+     * Ensures that the given number of bytes fit into the buffer.
+     *
+     * @param numBytes The number of bytes that will be written.
+     */
+    private void ensureCapacity(int numBytes) {
+        if (buffer.remaining() < numBytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + numBytes));
+            ((Buffer) buffer).flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+    
+    /**
+     * Writes the initial byte of a data item together with its argument, in the shortest form.
+     *
+     * @param major The major type.
+     * @param argument The argument, interpreted as unsigned 64 bit value.
+     */
+    private void writeHead(int major, long argument) {
+        ensureCapacity(9);
+        int type = major << 5;
+        if (argument >= 0 && argument < 24) {
+            buffer.put((byte) (type | (int) argument));
+        } else if (argument >= 0 && argument <= 0xFF) {
+            buffer.put((byte) (type | 24));
+            buffer.put((byte) argument);
+        } else if (argument >= 0 && argument <= 0xFFFF) {
+            buffer.put((byte) (type | 25));
+            buffer.putShort((short) argument);
+        } else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+            buffer.put((byte) (type | 26));
+            buffer.putInt((int) argument);
+        } else {
+            buffer.put((byte) (type | 27));
+            buffer.putLong(argument);
+        }
+    }
+    
+    /**
+     * Writes a signed integer as major type 0 or 1.
+     *
+     * @param value The value.
+     */
+    private void writeInteger(long value) {
+        if (value >= 0) {
+            writeHead(MAJOR_UNSIGNED, value);
+        } else {
+            writeHead(MAJOR_NEGATIVE, -1 - value);
+        }
+    }
+    
+    /**
+     * Writes a {@link BigInteger}, as major type 0 or 1 if it fits into 64 bits, otherwise as bignum.
+     *
+     * @param value The value.
+     */
+    private void writeBigInteger(BigInteger value) {
+        // major type 1 stores -1 - n, so the magnitude to check is the same for both signs
+        BigInteger magnitude = value.signum() >= 0 ? value : value.negate().subtract(BigInteger.ONE);
+        int major = value.signum() >= 0 ? MAJOR_UNSIGNED : MAJOR_NEGATIVE;
+        
+        if (magnitude.compareTo(UNSIGNED_LONG_MAX) <= 0) {
+            writeHead(major, magnitude.longValue());
+        } else {
+            writeHead(MAJOR_TAG, major == MAJOR_UNSIGNED ? TAG_POSITIVE_BIGNUM : TAG_NEGATIVE_BIGNUM);
+            byte[] bytes = magnitude.toByteArray();
+            // strip the sign byte of the two's complement representation
+            int offset = bytes[0] == 0 ? 1 : 0;
+            writeHead(MAJOR_BYTES, bytes.length - offset);
+            ensureCapacity(bytes.length);
+            buffer.put(bytes, offset, bytes.length - offset);
+        }
+    }
+    
+    /**
+     * Writes a floating point number in the shortest precision that preserves its value.
+     *
+     * @param value The value.
+     */
+    private void writeFloatingPoint(double value) {
+        ensureCapacity(9);
+        float single = (float) value;
+        int half = toHalf(single);
+        
+        if (half != -1 && (single == value || Double.isNaN(value))) {
+            buffer.put((byte) FLOAT_HALF);
+            buffer.putShort((short) half);
+        } else if (single == value) {
+            buffer.put((byte) FLOAT_SINGLE);
+            buffer.putFloat(single);
+        } else {
+            buffer.put((byte) FLOAT_DOUBLE);
+            buffer.putDouble(value);
+        }
+    }
+    
+    /**
+     * Converts a single precision value into half precision, if this is possible without loss.
+     *
+     * @param value The value to convert.
+     *
+     * @return The half precision bits, or -1 if the value can't be represented exactly.
+     */
+    private static int toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127;
+        int mantissa = bits & 0x7FFFFF;
+        
+        int result;
+        if (Float.isNaN(value)) {
+            result = 0x7E00;
+        } else if (Float.isInfinite(value)) {
+            result = sign | 0x7C00;
+        } else if (value == 0.0f) {
+            result = sign;
+        } else if (exponent >= -14 && exponent <= 15 && (mantissa & 0x1FFF) == 0) {
+            result = sign | ((exponent + 15) << 10) | (mantissa >>> 13);
+        } else if (exponent >= -24 && exponent < -14) {
+            // subnormal half: value = m * 2^-24
+            int significand = mantissa | 0x800000;
+            int shift = -(exponent + 1);
+            result = (significand & ((1 << shift) - 1)) == 0 ? sign | (significand >>> shift) : -1;
+        } else {
+            result = -1;
+        }
+        return result;
+    }
+    
+    /**
+     * Writes a text string.
+     *
+     * @param str The string.
+     */
+    private void writeText(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeHead(MAJOR_TEXT, bytes.length);
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+    
+    @Override
+    public Void visitObject(JsonObject object) {
+        writeHead(MAJOR_MAP, object.getSize());
+        for (Map.Entry<String, JsonElement> member : object.members()) {
+            writeText(member.getKey());
+            member.getValue().accept(this);
+        }
+        return null;
+    }
+    
+    @Override
+    public Void visitList(JsonList list) {
+        writeHead(MAJOR_ARRAY, list.getSize());
+        for (JsonElement element : list) {
+            element.accept(this);
+        }
+        return null;
+    }
+    
+    @Override
+    public Void visitBoolean(JsonBoolean bool) {
+        ensureCapacity(1);
+        buffer.put((byte) (bool.getValue() ? SIMPLE_TRUE : SIMPLE_FALSE));
+        return null;
+    }
+    
+    @Override
+    public Void visitNumber(JsonNumber number) {
+        Number value = number.getValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeInteger(value.longValue());
+        } else if (value instanceof BigInteger) {
+            writeBigInteger((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            writeHead(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+            writeHead(MAJOR_ARRAY, 2);
+            writeInteger(-(long) decimal.scale());
+            writeBigInteger(decimal.unscaledValue());
+        } else {
+            writeFloatingPoint(value.doubleValue());
+        }
+        return null;
+    }
+    
+    @Override
+    public Void visitString(JsonString string) {
+        writeText(string.getValue());
+        return null;
+    }
+    
+    @Override
+    public Void visitNull(JsonNull nall) {
+        ensureCapacity(1);
+        buffer.put((byte) SIMPLE_NULL);
+        return null;
+    }
+    
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+/**
+ * Constants of the compact binary encoding used by {@link JsonBinaryWriter} and {@link JsonBinaryReader}.
+ * <p>
+ * A stream starts with the {@link #MAGIC} bytes, followed by any number of documents. Each document is a single
+ * element, which is encoded as a one byte type tag followed by the payload:
+ * <ul>
+ *     <li>{@link #NULL}, {@link #FALSE}, {@link #TRUE}: no payload.</li>
+ *     <li>{@link #INT}, {@link #LONG}: the value as a zig-zag encoded varint.</li>
+ *     <li>{@link #DOUBLE}, {@link #FLOAT}: the IEEE 754 bits in big-endian order.</li>
+ *     <li>{@link #BIG_INTEGER}: a varint length, followed by the two's complement bytes.</li>
+ *     <li>{@link #BIG_DECIMAL}: the scale as a zig-zag encoded varint, followed by the unscaled value as in
+ *         {@link #BIG_INTEGER}.</li>
+ *     <li>{@link #STRING}: a varint length, followed by the UTF-8 bytes.</li>
+ *     <li>{@link #LIST}: a varint element count, followed by the elements.</li>
+ *     <li>{@link #OBJECT}: a varint member count, followed by key and value of each member. A key is a varint
+ *         reference: 0 means that a new key follows as varint length and UTF-8 bytes; any other value <i>n</i> refers
+ *         to the <i>n</i>th new key of the same document.</li>
+ * </ul>
+ * Varints are unsigned LEB128, i.e. 7 bits per byte with the least significant group first, and the highest bit
+ * set on all but the last byte.
+ *
+ * @author Adam
+ */
+final class JsonBinaryFormat {
+    
+    static final byte[] MAGIC = {'J', 'B', 1};
+    
+    static final int NULL = 0x00;
+    
+    static final int FALSE = 0x01;
+    
+    static final int TRUE = 0x02;
+    
+    static final int INT = 0x03;
+    
+    static final int LONG = 0x04;
+    
+    static final int DOUBLE = 0x05;
+    
+    static final int FLOAT = 0x06;
+    
+    static final int BIG_INTEGER = 0x07;
+    
+    static final int BIG_DECIMAL = 0x08;
+    
+    static final int STRING = 0x09;
+    
+    static final int LIST = 0x0A;
+    
+    static final int OBJECT = 0x0B;
+    
+    /**
+     * No instances.
+     */
+    private JsonBinaryFormat() {
+    }
+    
+}
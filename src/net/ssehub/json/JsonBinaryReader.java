@@ -0,0 +1,506 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads {@link JsonElement}s that have been written by a {@link JsonBinaryWriter}. The limits of the
+ * {@link ParserOptions} apply to each document; lengths and counts in the input are never trusted for allocating
+ * memory up front.
+ *
+ * @author Adam
+ */
+public class JsonBinaryReader implements Closeable {
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    /**
+     * Maybe <code>null</code>, if reading from a byte array.
+     */
+    private InputStream in;
+    
+    private ParserOptions options;
+    
+    private byte[] buffer;
+    
+    private int position;
+    
+    private int limit;
+    
+    private boolean headerRead;
+    
+    /**
+     * The keys of the current document, in the order of their first occurrence.
+     */
+    private List<String> keys;
+    
+    private int currentNestingDepth;
+    
+    private long elementCount;
+    
+    /**
+     * Creates a reader for the given input stream.
+     *
+     * @param in The stream to read from. Not <code>null</code>.
+     * @param options The options (i.e. limits) to use for reading. Not <code>null</code>.
+     */
+    public JsonBinaryReader(InputStream in, ParserOptions options) {
+        this.in = Objects.requireNonNull(in);
+        this.options = Objects.requireNonNull(options);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.keys = new ArrayList<>();
+    }
+    
+    /**
+     * Creates a reader for the given input stream with the default {@link ParserOptions}.
+     *
+     * @param in The stream to read from. Not <code>null</code>.
+     */
+    public JsonBinaryReader(InputStream in) {
+        this(in, new ParserOptions());
+    }
+    
+    /**
+     * Creates a reader that reads directly from the given byte array, without copying it.
+     *
+     * @param data The encoded data. Not <code>null</code>. Must not be modified while reading.
+     * @param options The options (i.e. limits) to use for reading. Not <code>null</code>.
+     */
+    public JsonBinaryReader(byte[] data, ParserOptions options) {
+        this.options = Objects.requireNonNull(options);
+        this.buffer = Objects.requireNonNull(data);
+        this.limit = data.length;
+        this.keys = new ArrayList<>();
+    }
+    
+    /**
+     * Convenience method that decodes a single element from a byte array.
+     *
+     * @param data The encoded element, including the stream header. Not <code>null</code>.
+     *
+     * @return The decoded element. Never <code>null</code>.
+     *
+     * @throws ParsingException If the data is malformed or contains more than one element.
+     */
+    public static JsonElement fromBytes(byte[] data) throws ParsingException {
+        JsonBinaryReader reader = new JsonBinaryReader(data, new ParserOptions());
+        try {
+            JsonElement result = reader.read();
+            if (result == null || reader.read() != null) {
+                throw new ParsingException("Expected exactly one element");
+            }
+            return result;
+        } catch (IOException e) {
+            // can't happen, as there is no input stream
+            throw new AssertionError(e);
+        }
+    }
+    
+    /**
+     * Reads the next document from the stream.
+     *
+     * @return The next element, or <code>null</code> if the end of the stream has been reached.
+     *
+     * @throws ParsingException If the data is malformed or exceeds a limit.
+     * @throws IOException If reading the input stream fails.
+     */
+    public JsonElement read() throws ParsingException, IOException {
+        // the header is only written together with the first document, so an empty stream has no header
+        if (!headerRead && fill(1)) {
+            for (byte expected : JsonBinaryFormat.MAGIC) {
+                if (readByte() != (expected & 0xFF)) {
+                    throw makeException("Invalid header");
+                }
+            }
+            headerRead = true;
+        }
+        
+        JsonElement result = null;
+        if (headerRead && fill(1)) {
+            keys.clear();
+            elementCount = 0;
+            result = readElement();
+        }
+        return result;
+    }
+    
+    /**
+     * Closes the underlying input stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+    
+    /**
+     * Tries to make at least the given number of bytes available in the buffer.
+     *
+     * @param numBytes The number of bytes required; must not be larger than the buffer.
+     *
+     * @return Whether enough bytes are available; <code>false</code> if the end of the stream has been reached.
+     *
+     * @throws IOException If reading the input stream fails.
+     */
+    private boolean fill(int numBytes) throws IOException {
+        if (limit - position < numBytes && in != null) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            
+            int read = 0;
+            while (limit < numBytes && read != -1) {
+                read = in.read(buffer, limit, buffer.length - limit);
+                if (read > 0) {
+                    limit += read;
+                }
+            }
+        }
+        return limit - position >= numBytes;
+    }
+    
+    /**
+     * Reads a single unsigned byte.
+     *
+     * @return The byte value, in the range 0 to 255.
+     *
+     * @throws ParsingException If the end of the stream has been reached.
+     * @throws IOException If reading the input stream fails.
+     */
+    private int readByte() throws ParsingException, IOException {
+        if (!fill(1)) {
+            throw makeException("Unexpected end of input");
+        }
+        return buffer[position++] & 0xFF;
+    }
+    
+    /**
+     * Reads an unsigned varint.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the varint is malformed or longer than 64 bits.
+     * @throws IOException If reading the input stream fails.
+     */
+    private long readVarint() throws ParsingException, IOException {
+        long result = 0;
+        int shift = 0;
+        int current;
+        do {
+            if (shift > 63) {
+                throw makeException("Varint too long");
+            }
+            current = readByte();
+            result |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return result;
+    }
+    
+    /**
+     * Reads a zig-zag encoded signed varint.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the varint is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private long readSignedVarint() throws ParsingException, IOException {
+        long raw = readVarint();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+    
+    /**
+     * Reads a varint that is used as a length or count.
+     *
+     * @param max The maximum allowed value.
+     * @param what Description of the value, for the exception message.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the value is larger than the maximum.
+     * @throws IOException If reading the input stream fails.
+     */
+    private int readLength(int max, String what) throws ParsingException, IOException {
+        long result = readVarint();
+        if (result < 0 || result > max) {
+            throw makeException("Exceeded maximum " + what + " of " + max + ": " + Long.toUnsignedString(result));
+        }
+        return (int) result;
+    }
+    
+    /**
+     * Reads the given number of bytes in big-endian order.
+     *
+     * @param numBytes The number of bytes, at most 8.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the end of the stream has been reached.
+     * @throws IOException If reading the input stream fails.
+     */
+    private long readFixed(int numBytes) throws ParsingException, IOException {
+        if (!fill(numBytes)) {
+            throw makeException("Unexpected end of input");
+        }
+        long result = 0;
+        for (int i = 0; i < numBytes; i++) {
+            result = (result << 8) | (buffer[position++] & 0xFF);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the given number of raw bytes. Memory is allocated as the data arrives, so that a forged length does
+     * not cause a large allocation.
+     *
+     * @param length The number of bytes.
+     *
+     * @return The bytes.
+     *
+     * @throws ParsingException If the end of the stream has been reached.
+     * @throws IOException If reading the input stream fails.
+     */
+    private byte[] readRawBytes(int length) throws ParsingException, IOException {
+        byte[] result = new byte[Math.min(length, BUFFER_SIZE)];
+        int read = 0;
+        while (read < length) {
+            if (!fill(1)) {
+                throw makeException("Unexpected end of input");
+            }
+            if (read == result.length) {
+                result = Arrays.copyOf(result, (int) Math.min(length, result.length * 2L));
+            }
+            int numBytes = Math.min(length - read, Math.min(limit - position, result.length - read));
+            System.arraycopy(buffer, position, result, read, numBytes);
+            position += numBytes;
+            read += numBytes;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a string as varint length followed by the UTF-8 bytes.
+     *
+     * @return The string.
+     *
+     * @throws ParsingException If the string is malformed or too long.
+     * @throws IOException If reading the input stream fails.
+     */
+    private String readString() throws ParsingException, IOException {
+        // each character needs at least one byte; the exact length is checked after decoding
+        int maxLength = options.getMaxStringLength();
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, maxLength * 3L);
+        int length = readLength(maxBytes, "string length");
+        
+        String result;
+        if (limit - position >= length) {
+            // fast path: decode directly from the buffer
+            result = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+        } else {
+            result = new String(readRawBytes(length), StandardCharsets.UTF_8);
+        }
+        
+        if (result.length() > maxLength) {
+            throw makeException("Exceeded maximum string length of " + maxLength);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a single element.
+     *
+     * @return The element. Never <code>null</code>.
+     *
+     * @throws ParsingException If the element is malformed or exceeds a limit.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonElement readElement() throws ParsingException, IOException {
+        if (++elementCount > options.getMaxElementCount()) {
+            throw makeException("Exceeded maximum element count of " + options.getMaxElementCount());
+        }
+        
+        JsonElement result;
+        int type = readByte();
+        switch (type) {
+        case JsonBinaryFormat.NULL:
+            result = JsonNull.INSTANCE;
+            break;
+        case JsonBinaryFormat.FALSE:
+            result = JsonBoolean.FALSE;
+            break;
+        case JsonBinaryFormat.TRUE:
+            result = JsonBoolean.TRUE;
+            break;
+        case JsonBinaryFormat.STRING:
+            result = new JsonString(readString());
+            break;
+        case JsonBinaryFormat.LIST:
+            increaseNestingDepth();
+            result = readList();
+            currentNestingDepth--;
+            break;
+        case JsonBinaryFormat.OBJECT:
+            increaseNestingDepth();
+            result = readObject();
+            currentNestingDepth--;
+            break;
+        default:
+            result = new JsonNumber(readNumber(type));
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the payload of a number.
+     *
+     * @param type The type tag of the number.
+     *
+     * @return The number.
+     *
+     * @throws ParsingException If the type tag is unknown, or the number is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private Number readNumber(int type) throws ParsingException, IOException {
+        Number result;
+        switch (type) {
+        case JsonBinaryFormat.INT:
+            long value = readSignedVarint();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw makeException("Integer out of range: " + value);
+            }
+            result = (int) value;
+            break;
+        case JsonBinaryFormat.LONG:
+            result = readSignedVarint();
+            break;
+        case JsonBinaryFormat.DOUBLE:
+            result = Double.longBitsToDouble(readFixed(8));
+            break;
+        case JsonBinaryFormat.FLOAT:
+            result = Float.intBitsToFloat((int) readFixed(4));
+            break;
+        case JsonBinaryFormat.BIG_INTEGER:
+            result = readBigInteger();
+            break;
+        case JsonBinaryFormat.BIG_DECIMAL:
+            long scale = readSignedVarint();
+            if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+                throw makeException("Scale out of range: " + scale);
+            }
+            result = new BigDecimal(readBigInteger(), (int) scale);
+            break;
+        default:
+            throw makeException("Unknown type tag " + Integer.toHexString(type));
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a {@link BigInteger} as varint length followed by the two's complement bytes.
+     *
+     * @return The value.
+     *
+     * @throws ParsingException If the value is malformed or longer than the maximum number length.
+     * @throws IOException If reading the input stream fails.
+     */
+    private BigInteger readBigInteger() throws ParsingException, IOException {
+        int length = readLength(options.getMaxNumberLength(), "number length");
+        if (length == 0) {
+            throw makeException("Empty big integer");
+        }
+        return new BigInteger(readRawBytes(length));
+    }
+    
+    /**
+     * Reads the payload of a list.
+     *
+     * @return The list.
+     *
+     * @throws ParsingException If the list is malformed or exceeds a limit.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonList readList() throws ParsingException, IOException {
+        int size = readLength(options.getMaxListSize(), "list size");
+        JsonList result = new JsonList();
+        for (int i = 0; i < size; i++) {
+            result.addElement(readElement());
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the payload of an object.
+     *
+     * @return The object.
+     *
+     * @throws ParsingException If the object is malformed or exceeds a limit.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonObject readObject() throws ParsingException, IOException {
+        int size = readLength(options.getMaxObjectSize(), "object size");
+        JsonObject result = new JsonObject();
+        for (int i = 0; i < size; i++) {
+            String key;
+            int reference = readLength(keys.size(), "key reference");
+            if (reference == 0) {
+                key = readString();
+                keys.add(key);
+            } else {
+                key = keys.get(reference - 1);
+            }
+            result.putElement(key, readElement());
+        }
+        return result;
+    }
+    
+    /**
+     * Increases the nesting depth of lists and objects.
+     *
+     * @throws ParsingException If the new nesting depth exceeds {@link ParserOptions#getMaxNestingDepth()}.
+     */
+    private void increaseNestingDepth() throws ParsingException {
+        currentNestingDepth++;
+        if (currentNestingDepth > options.getMaxNestingDepth()) {
+            throw makeException("Exceeded maximum nesting depth of " + options.getMaxNestingDepth());
+        }
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message.
+     *
+     * @param message The exception message.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message) {
+        return new ParsingException("Binary JSON: " + message);
+    }
+    
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes {@link JsonElement}s in a compact binary encoding, which can be read back by a {@link JsonBinaryReader}
+ * without any text parsing. Strings are length-prefixed, integers are stored as varints, and object keys that appear
+ * multiple times in a document are stored only once and referenced afterwards. See {@link JsonBinaryFormat} for the
+ * details of the encoding.
+ * <p>
+ * Numbers keep their Java type if they are {@link Integer}, {@link Long}, {@link Double}, {@link Float},
+ * {@link BigInteger} or {@link BigDecimal}; other {@link Number} implementations are stored as {@link Double}.
+ *
+ * @author Adam
+ */
+public class JsonBinaryWriter implements Closeable, Flushable {
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private OutputStream out;
+    
+    private boolean headerWritten;
+    
+    private byte[] buffer;
+    
+    private int size;
+    
+    /**
+     * The keys of the current document, mapped to their reference number.
+     */
+    private Map<String, Integer> keys;
+    
+    private Encoder encoder;
+    
+    /**
+     * Creates a writer for the given output stream.
+     *
+     * @param out The stream to write to. Not <code>null</code>.
+     */
+    public JsonBinaryWriter(OutputStream out) {
+        this.out = Objects.requireNonNull(out);
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.keys = new HashMap<>();
+        this.encoder = new Encoder();
+    }
+    
+    /**
+     * Convenience method that encodes a single element into a byte array.
+     *
+     * @param element The element to encode. Not <code>null</code>.
+     *
+     * @return The encoded element, including the stream header.
+     */
+    public static byte[] toBytes(JsonElement element) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonBinaryWriter writer = new JsonBinaryWriter(out)) {
+            writer.write(element);
+        } catch (IOException e) {
+            // can't happen, as ByteArrayOutputStream doesn't throw
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Writes the given element as the next document of the stream. Key references do not span documents, so each
+     * document can be decoded on its own.
+     *
+     * @param element The element to write. Not <code>null</code>.
+     *
+     * @throws IOException If writing to the output stream fails.
+     */
+    public void write(JsonElement element) throws IOException {
+        if (!headerWritten) {
+            out.write(JsonBinaryFormat.MAGIC);
+            headerWritten = true;
+        }
+        
+        size = 0;
+        keys.clear();
+        element.accept(encoder);
+        out.write(buffer, 0, size);
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    /**
+     * Closes the underlying output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+    
+    /**
+     * Ensures that the given number of bytes fit into the buffer.
+     *
+     * @param numBytes The number of bytes that will be written.
+     */
+    private void ensureCapacity(int numBytes) {
+        if (buffer.length - size < numBytes) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + numBytes));
+        }
+    }
+    
+    /**
+     * Writes a single byte.
+     *
+     * @param value The byte to write.
+     */
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+    
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param value The value to write, interpreted as unsigned.
+     */
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[size++] = (byte) remaining;
+    }
+    
+    /**
+     * Writes a signed value as zig-zag encoded varint, so that small negative values need few bytes.
+     *
+     * @param value The value to write.
+     */
+    private void writeSignedVarint(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+    
+    /**
+     * Writes the given number of bytes of the given value in big-endian order.
+     *
+     * @param value The value to write.
+     * @param numBytes The number of low-order bytes to write.
+     */
+    private void writeFixed(long value, int numBytes) {
+        ensureCapacity(numBytes);
+        for (int i = numBytes - 1; i >= 0; i--) {
+            buffer[size++] = (byte) (value >>> (i * 8));
+        }
+    }
+    
+    /**
+     * Writes a byte array with a varint length prefix.
+     *
+     * @param bytes The bytes to write.
+     */
+    private void writeBytes(byte[] bytes) {
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+    
+    /**
+     * Writes a string as varint length followed by the UTF-8 bytes.
+     *
+     * @param str The string to write.
+     */
+    private void writeString(String str) {
+        // fast path for ASCII strings: encode directly into the buffer
+        int length = str.length();
+        ensureCapacity(5 + length);
+        int lengthPosition = size;
+        int position = lengthPosition + varintSize(length);
+        
+        int i = 0;
+        while (i < length && str.charAt(i) < 0x80) {
+            buffer[position++] = (byte) str.charAt(i++);
+        }
+        
+        if (i == length) {
+            writeVarint(length);
+            size = position;
+        } else {
+            writeBytes(str.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Returns the number of bytes of the given value as an unsigned varint.
+     *
+     * @param value The value.
+     *
+     * @return The size of the varint.
+     */
+    private static int varintSize(int value) {
+        int result = 1;
+        int remaining = value >>> 7;
+        while (remaining != 0) {
+            result++;
+            remaining >>>= 7;
+        }
+        return result;
+    }
+    
+    /**
+     * Writes a number with its type tag.
+     *
+     * @param number The number to write.
+     */
+    private void writeNumber(Number number) {
+        if (number instanceof Integer) {
+            writeByte(JsonBinaryFormat.INT);
+            writeSignedVarint(number.intValue());
+        } else if (number instanceof Long) {
+            writeByte(JsonBinaryFormat.LONG);
+            writeSignedVarint(number.longValue());
+        } else if (number instanceof Float) {
+            writeByte(JsonBinaryFormat.FLOAT);
+            writeFixed(Float.floatToRawIntBits(number.floatValue()), 4);
+        } else if (number instanceof BigInteger) {
+            writeByte(JsonBinaryFormat.BIG_INTEGER);
+            writeBytes(((BigInteger) number).toByteArray());
+        } else if (number instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) number;
+            writeByte(JsonBinaryFormat.BIG_DECIMAL);
+            writeSignedVarint(decimal.scale());
+            writeBytes(decimal.unscaledValue().toByteArray());
+        } else {
+            writeByte(JsonBinaryFormat.DOUBLE);
+            writeFixed(Double.doubleToRawLongBits(number.doubleValue()), 8);
+        }
+    }
+    
+    /**
+     * Writes an object key, either as a new key or as a reference to an earlier occurrence.
+     *
+     * @param key The key to write.
+     */
+    private void writeKey(String key) {
+        Integer reference = keys.get(key);
+        if (reference != null) {
+            writeVarint(reference);
+        } else {
+            writeVarint(0);
+            writeString(key);
+            keys.put(key, keys.size() + 1);
+        }
+    }
+    
+    /**
+     * Encodes the visited elements into the buffer.
+     */
+    private class Encoder implements JsonVisitor<Void> {
+        
+        @Override
+        public Void visitObject(JsonObject object) {
+            writeByte(JsonBinaryFormat.OBJECT);
+            writeVarint(object.getSize());
+            for (Map.Entry<String, JsonElement> member : object.members()) {
+                writeKey(member.getKey());
+                member.getValue().accept(this);
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitList(JsonList list) {
+            writeByte(JsonBinaryFormat.LIST);
+            writeVarint(list.getSize());
+            for (JsonElement element : list) {
+                element.accept(this);
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitBoolean(JsonBoolean bool) {
+            writeByte(bool.getValue() ? JsonBinaryFormat.TRUE : JsonBinaryFormat.FALSE);
+            return null;
+        }
+        
+        @Override
+        public Void visitNumber(JsonNumber number) {
+            writeNumber(number.getValue());
+            return null;
+        }
+        
+        @Override
+        public Void visitString(JsonString string) {
+            writeByte(JsonBinaryFormat.STRING);
+            writeString(string.getValue());
+            return null;
+        }
+        
+        @Override
+        public Void visitNull(JsonNull nall) {
+            writeByte(JsonBinaryFormat.NULL);
+            return null;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,846 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Binds plain Java objects to JSON at runtime, for classes that can't be annotated with {@link JsonMapped}. The
+ * members of a class are found with reflection once, when it is bound for the first time; the accessors are then
+ * compiled into lambdas via <code>LambdaMetafactory</code> (for public getters, setters and constructors) or into
+ * {@link java.lang.invoke.MethodHandle}s (for fields and non-public members), and cached per class in a
+ * {@link ClassValue}. Binding itself doesn't use reflection.
+ * <p>
+ * A class is bound via its non-static, non-transient fields, including those of its superclasses, which are mapped
+ * to object members with the same name. A public getter (<code>getX()</code> or <code>isX()</code>) and setter
+ * (<code>setX()</code>) are used instead of the field if they exist. Classes need a constructor without parameters;
+ * records are created via their canonical constructor instead. Field types are supported like for
+ * {@link JsonMapped} classes: primitives (except <code>char</code>) and their wrappers, {@link String},
+ * {@link Number}, enums, {@link JsonElement}s, other bindable classes, and {@link List}s and {@link Map}s with
+ * {@link String} keys of these types.
+ * <p>
+ * {@link #codecFor(Class)} reads objects directly from a {@link JsonTokenReader}, without building a tree of
+ * {@link JsonElement}s first; {@link #toElement(Object)} and {@link #fromElement(JsonElement, Class)} convert between
+ * objects and an existing tree.
+ *
+ * @author Adam
+ */
+public final class JsonBinder {
+    
+    private static final Map<Class<?>, Binding> SIMPLE_BINDINGS = new HashMap<>();
+    
+    static {
+        SIMPLE_BINDINGS.put(String.class, new StringBinding());
+        SIMPLE_BINDINGS.put(boolean.class, new BooleanBinding(false));
+        SIMPLE_BINDINGS.put(Boolean.class, new BooleanBinding(true));
+        SIMPLE_BINDINGS.put(Number.class, new NumberBinding(NumberType.ANY, true));
+        for (NumberType type : NumberType.values()) {
+            if (type.primitive != null) {
+                SIMPLE_BINDINGS.put(type.primitive, new NumberBinding(type, false));
+                SIMPLE_BINDINGS.put(type.wrapper, new NumberBinding(type, true));
+            }
+        }
+    }
+    
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            Binding result = simpleBinding(type);
+            if (result == null) {
+                checkBindable(type);
+                result = ObjectBinding.create(type);
+            }
+            return result;
+        }
+        
+    };
+    
+    /**
+     * No instances.
+     */
+    private JsonBinder() {
+    }
+    
+    /**
+     * Returns the codec for the given class. The codec is created when it is requested for the first time.
+     *
+     * @param type The class to bind. Not <code>null</code>.
+     *
+     * @param <T> The type of the class.
+     *
+     * @return The codec for the class.
+     *
+     * @throws IllegalArgumentException If the class or one of its field types can't be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonCodec<T> codecFor(Class<T> type) throws IllegalArgumentException {
+        return (JsonCodec<T>) (JsonCodec<?>) BINDINGS.get(Objects.requireNonNull(type));
+    }
+    
+    /**
+     * Converts the given object into a tree of {@link JsonElement}s.
+     *
+     * @param value The object to convert. May be <code>null</code>.
+     *
+     * @return The tree. {@link JsonNull#INSTANCE} if the object is <code>null</code>.
+     *
+     * @throws IllegalArgumentException If the class of the object or one of its field types can't be bound.
+     */
+    public static JsonElement toElement(Object value) throws IllegalArgumentException {
+        JsonElement result = JsonNull.INSTANCE;
+        if (value != null) {
+            result = BINDINGS.get(value.getClass()).toElement(value);
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a tree of {@link JsonElement}s into an object of the given class.
+     *
+     * @param element The tree to convert. Not <code>null</code>.
+     * @param type The class to convert to. Not <code>null</code>.
+     *
+     * @param <T> The type of the class.
+     *
+     * @return The object. May be <code>null</code> if the element is {@link JsonNull}.
+     *
+     * @throws ParsingException If the tree doesn't match the class.
+     * @throws IllegalArgumentException If the class or one of its field types can't be bound.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T fromElement(JsonElement element, Class<T> type)
+            throws ParsingException, IllegalArgumentException {
+        return (T) BINDINGS.get(Objects.requireNonNull(type)).fromElement(Objects.requireNonNull(element));
+    }
+    
+    /**
+     * Returns the binding for a field type.
+     *
+     * @param type The generic type of the field.
+     *
+     * @return The binding.
+     *
+     * @throws IllegalArgumentException If the type can't be bound.
+     */
+    static Binding bindingFor(Type type) throws IllegalArgumentException {
+        Binding result = null;
+        if (type instanceof Class) {
+            Class<?> cls = (Class<?>) type;
+            result = simpleBinding(cls);
+            if (result == null) {
+                checkBindable(cls);
+                // resolved on first use, so that classes can refer to themselves
+                result = new LazyBinding(cls);
+            }
+            
+        } else if (type instanceof ParameterizedType) {
+            Type raw = ((ParameterizedType) type).getRawType();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (raw == List.class) {
+                result = new ListBinding(bindingFor(arguments[0]));
+            } else if (raw == Map.class && arguments[0] == String.class) {
+                result = new MapBinding(bindingFor(arguments[1]));
+            }
+        }
+        
+        if (result == null) {
+            throw new IllegalArgumentException("Can't bind type " + type.getTypeName());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the binding for a class that is not bound via its fields.
+     *
+     * @param type The class.
+     *
+     * @return The binding, or <code>null</code> if the class is bound via its fields.
+     */
+    private static Binding simpleBinding(Class<?> type) {
+        Binding result = SIMPLE_BINDINGS.get(type);
+        if (result == null && Enum.class.isAssignableFrom(type)) {
+            // constants with a body are subclasses of the enum
+            result = new EnumBinding(type.isEnum() ? type : type.getSuperclass());
+        } else if (result == null && JsonElement.class.isAssignableFrom(type)) {
+            result = new ElementBinding(type);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks that a class can be bound via its fields.
+     *
+     * @param type The class.
+     *
+     * @throws IllegalArgumentException If the class can't be bound.
+     */
+    private static void checkBindable(Class<?> type) throws IllegalArgumentException {
+        if (type.isPrimitive() || type.isArray() || Modifier.isAbstract(type.getModifiers())
+                || type.getName().startsWith("java.")) {
+            throw new IllegalArgumentException("Can't bind type " + type.getTypeName());
+        }
+    }
+    
+    /**
+     * Creates an exception for a value that doesn't match the bound type.
+     *
+     * @param expected A description of the expected value.
+     * @param actual The actual value; a {@link JsonElement}, a {@link Number} or <code>null</code>.
+     *
+     * @return The exception to throw.
+     */
+    static ParsingException mismatch(String expected, Object actual) {
+        String description;
+        if (actual == null || actual instanceof JsonNull) {
+            description = "null";
+        } else if (actual instanceof JsonObject) {
+            description = "object";
+        } else if (actual instanceof JsonList) {
+            description = "list";
+        } else if (actual instanceof JsonString) {
+            description = "string";
+        } else if (actual instanceof JsonBoolean) {
+            description = "boolean";
+        } else {
+            description = "number " + (actual instanceof JsonNumber ? actual : JsonNumber.jsonEscape((Number) actual));
+        }
+        return new ParsingException("Expected " + expected + " but got " + description);
+    }
+    
+    /**
+     * Reads, writes and converts the values of a bound type. Handles <code>null</code> for nullable types; the
+     * <code>...Value()</code> methods are then only called for non-<code>null</code> values.
+     */
+    abstract static class Binding implements JsonCodec<Object> {
+        
+        private final boolean nullable;
+        
+        /**
+         * Creates a binding.
+         *
+         * @param nullable Whether <code>null</code> is mapped to <code>null</code> by this class. If not, the
+         *      <code>...Value()</code> methods are also called for <code>null</code> values read from JSON.
+         */
+        Binding(boolean nullable) {
+            this.nullable = nullable;
+        }
+        
+        @Override
+        public final Object read(JsonTokenReader reader) throws ParsingException, IOException {
+            Object result = null;
+            if (!nullable || !reader.readNull()) {
+                result = readValue(reader);
+            }
+            return result;
+        }
+        
+        @Override
+        public final void write(Object value, JsonWriter writer) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writeValue(value, writer);
+            }
+        }
+        
+        /**
+         * Converts a value into a tree of {@link JsonElement}s.
+         *
+         * @param value The value. May be <code>null</code>.
+         *
+         * @return The tree. {@link JsonNull#INSTANCE} for <code>null</code>.
+         */
+        final JsonElement toElement(Object value) {
+            return value == null ? JsonNull.INSTANCE : toValueElement(value);
+        }
+        
+        /**
+         * Converts a tree of {@link JsonElement}s into a value.
+         *
+         * @param element The tree. Not <code>null</code>.
+         *
+         * @return The value.
+         *
+         * @throws ParsingException If the tree doesn't match the bound type.
+         */
+        final Object fromElement(JsonElement element) throws ParsingException {
+            Object result = null;
+            if (!nullable || !(element instanceof JsonNull)) {
+                result = fromValueElement(element);
+            }
+            return result;
+        }
+        
+        /**
+         * Reads a value.
+         *
+         * @param reader The reader.
+         *
+         * @return The read value.
+         *
+         * @throws ParsingException If the value doesn't match the bound type.
+         * @throws IOException If reading the input fails.
+         */
+        abstract Object readValue(JsonTokenReader reader) throws ParsingException, IOException;
+        
+        /**
+         * Writes a non-<code>null</code> value.
+         *
+         * @param value The value.
+         * @param writer The writer.
+         *
+         * @throws IOException If writing fails.
+         */
+        abstract void writeValue(Object value, JsonWriter writer) throws IOException;
+        
+        /**
+         * Converts a non-<code>null</code> value into a tree of {@link JsonElement}s.
+         *
+         * @param value The value.
+         *
+         * @return The tree.
+         */
+        abstract JsonElement toValueElement(Object value);
+        
+        /**
+         * Converts a tree of {@link JsonElement}s into a value.
+         *
+         * @param element The tree.
+         *
+         * @return The value.
+         *
+         * @throws ParsingException If the tree doesn't match the bound type.
+         */
+        abstract Object fromValueElement(JsonElement element) throws ParsingException;
+        
+    }
+    
+    /**
+     * Binds {@link String}s.
+     */
+    private static final class StringBinding extends Binding {
+        
+        /**
+         * Creates the binding.
+         */
+        StringBinding() {
+            super(true);
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readString();
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.value((String) value);
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return new JsonString((String) value);
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonString)) {
+                throw mismatch("string", element);
+            }
+            return ((JsonString) element).getValue();
+        }
+        
+    }
+    
+    /**
+     * Binds <code>boolean</code>s and {@link Boolean}s.
+     */
+    private static final class BooleanBinding extends Binding {
+        
+        /**
+         * Creates the binding.
+         *
+         * @param nullable Whether <code>null</code> is allowed, i.e. whether the wrapper type is bound.
+         */
+        BooleanBinding(boolean nullable) {
+            super(nullable);
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readBoolean();
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.value(((Boolean) value).booleanValue());
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return JsonBoolean.get((Boolean) value);
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonBoolean)) {
+                throw mismatch("boolean", element);
+            }
+            return ((JsonBoolean) element).getValue();
+        }
+        
+    }
+    
+    /**
+     * The number types that can be bound.
+     */
+    private enum NumberType {
+        
+        INT(int.class, Integer.class, Integer.MIN_VALUE, Integer.MAX_VALUE),
+        
+        LONG(long.class, Long.class, Long.MIN_VALUE, Long.MAX_VALUE),
+        
+        SHORT(short.class, Short.class, Short.MIN_VALUE, Short.MAX_VALUE),
+        
+        BYTE(byte.class, Byte.class, Byte.MIN_VALUE, Byte.MAX_VALUE),
+        
+        DOUBLE(double.class, Double.class, 0, 0),
+        
+        FLOAT(float.class, Float.class, 0, 0),
+        
+        ANY(null, Number.class, 0, 0);
+        
+        private final Class<?> primitive;
+        
+        private final Class<?> wrapper;
+        
+        private final long min;
+        
+        private final long max;
+        
+        /**
+         * Creates a number type.
+         *
+         * @param primitive The primitive type, or <code>null</code> if there is none.
+         * @param wrapper The wrapper type.
+         * @param min The minimum value of integer types.
+         * @param max The maximum value of integer types; 0 for non-integer types.
+         */
+        NumberType(Class<?> primitive, Class<?> wrapper, long min, long max) {
+            this.primitive = primitive;
+            this.wrapper = wrapper;
+            this.min = min;
+            this.max = max;
+        }
+        
+        /**
+         * Converts a parsed number into this type.
+         *
+         * @param number The parsed number, or <code>null</code>.
+         *
+         * @return The number in this type.
+         *
+         * @throws ParsingException If the number is <code>null</code> or doesn't fit into this type.
+         */
+        Number convert(Number number) throws ParsingException {
+            boolean integral = number instanceof Integer || number instanceof Long || number instanceof Short
+                    || number instanceof Byte;
+            boolean inRange = integral && number.longValue() >= min && number.longValue() <= max;
+            if (number == null || max != 0 && !inRange) {
+                throw mismatch(name().toLowerCase(Locale.ROOT), number);
+            }
+            
+            Number result;
+            switch (this) {
+            case INT:
+                result = number.intValue();
+                break;
+            case LONG:
+                result = number.longValue();
+                break;
+            case SHORT:
+                result = number.shortValue();
+                break;
+            case BYTE:
+                result = number.byteValue();
+                break;
+            case DOUBLE:
+                result = number.doubleValue();
+                break;
+            case FLOAT:
+                result = number.floatValue();
+                break;
+            default:
+                result = number;
+                break;
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Binds numbers of a {@link NumberType}.
+     */
+    private static final class NumberBinding extends Binding {
+        
+        private final NumberType type;
+        
+        /**
+         * Creates the binding.
+         *
+         * @param type The number type.
+         * @param nullable Whether <code>null</code> is allowed, i.e. whether the wrapper type is bound.
+         */
+        NumberBinding(NumberType type, boolean nullable) {
+            super(nullable);
+            this.type = type;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return type.convert(reader.readNumber());
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.value((Number) value);
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return new JsonNumber((Number) value);
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonNumber)) {
+                throw mismatch(type.name().toLowerCase(Locale.ROOT), element);
+            }
+            return type.convert(((JsonNumber) element).getValue());
+        }
+        
+    }
+    
+    /**
+     * Binds the constants of an enum to strings with their names.
+     */
+    private static final class EnumBinding extends Binding {
+        
+        private final Map<String, Object> constants = new HashMap<>();
+        
+        /**
+         * Creates the binding.
+         *
+         * @param type The enum type.
+         */
+        EnumBinding(Class<?> type) {
+            super(true);
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+        
+        /**
+         * Looks up a constant by its name.
+         *
+         * @param name The name.
+         *
+         * @return The constant.
+         *
+         * @throws ParsingException If there is no constant with the given name.
+         */
+        private Object lookup(String name) throws ParsingException {
+            Object result = constants.get(name);
+            if (result == null) {
+                throw new ParsingException("Unknown enum constant \"" + JsonString.jsonEscape(name) + "\"");
+            }
+            return result;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return lookup(reader.readString());
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.value(((Enum<?>) value).name());
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return new JsonString(((Enum<?>) value).name());
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonString)) {
+                throw mismatch("string", element);
+            }
+            return lookup(((JsonString) element).getValue());
+        }
+        
+    }
+    
+    /**
+     * Binds {@link JsonElement}s, which are copied. If the bound type allows {@link JsonNull}, <code>null</code> is
+     * read as {@link JsonNull#INSTANCE}.
+     */
+    private static final class ElementBinding extends Binding {
+        
+        private final Class<?> type;
+        
+        /**
+         * Creates the binding.
+         *
+         * @param type The {@link JsonElement} class.
+         */
+        ElementBinding(Class<?> type) {
+            super(false);
+            this.type = type;
+        }
+        
+        /**
+         * Checks that an element is of the bound type.
+         *
+         * @param element The element.
+         *
+         * @return The element, or <code>null</code> if it is {@link JsonNull} but the bound type doesn't allow that.
+         *
+         * @throws ParsingException If the element is not of the bound type.
+         */
+        private Object check(JsonElement element) throws ParsingException {
+            Object result = element;
+            if (!type.isInstance(element)) {
+                if (!(element instanceof JsonNull)) {
+                    throw mismatch(type.getSimpleName(), element);
+                }
+                result = null;
+            }
+            return result;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return check(reader.readElement());
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.value((JsonElement) value);
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return ((JsonElement) value).deepCopy();
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            return check(element.deepCopy());
+        }
+        
+    }
+    
+    /**
+     * Binds {@link List}s, which are created as {@link ArrayList}s.
+     */
+    private static final class ListBinding extends Binding {
+        
+        private final Binding elementBinding;
+        
+        /**
+         * Creates the binding.
+         *
+         * @param elementBinding The binding of the elements.
+         */
+        ListBinding(Binding elementBinding) {
+            super(true);
+            this.elementBinding = elementBinding;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            reader.expect(JsonToken.START_LIST);
+            List<Object> result = new ArrayList<>();
+            while (reader.hasNextElement()) {
+                result.add(elementBinding.read(reader));
+            }
+            return result;
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.beginList();
+            for (Object element : (List<?>) value) {
+                elementBinding.write(element, writer);
+            }
+            writer.endList();
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            JsonList result = new JsonList();
+            for (Object element : (List<?>) value) {
+                result.addElement(elementBinding.toElement(element));
+            }
+            return result;
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonList)) {
+                throw mismatch("list", element);
+            }
+            JsonList list = (JsonList) element;
+            List<Object> result = new ArrayList<>(list.getSize());
+            for (JsonElement listElement : list) {
+                result.add(elementBinding.fromElement(listElement));
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Binds {@link Map}s with {@link String} keys to objects. Maps are created as {@link LinkedHashMap}s.
+     */
+    private static final class MapBinding extends Binding {
+        
+        private final Binding valueBinding;
+        
+        /**
+         * Creates the binding.
+         *
+         * @param valueBinding The binding of the values.
+         */
+        MapBinding(Binding valueBinding) {
+            super(true);
+            this.valueBinding = valueBinding;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            reader.expect(JsonToken.START_OBJECT);
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (String key = reader.nextKey(); key != null; key = reader.nextKey()) {
+                result.put(key, valueBinding.read(reader));
+            }
+            return result;
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.key((String) entry.getKey());
+                valueBinding.write(entry.getValue(), writer);
+            }
+            writer.endObject();
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            JsonObject result = new JsonObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                result.putElement((String) entry.getKey(), valueBinding.toElement(entry.getValue()));
+            }
+            return result;
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            if (!(element instanceof JsonObject)) {
+                throw mismatch("object", element);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) element).members()) {
+                result.put(member.getKey(), valueBinding.fromElement(member.getValue()));
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Delegates to the cached binding of a class, which is looked up on first use.
+     */
+    private static final class LazyBinding extends Binding {
+        
+        private final Class<?> type;
+        
+        private Binding delegate;
+        
+        /**
+         * Creates the binding.
+         *
+         * @param type The bound class.
+         */
+        LazyBinding(Class<?> type) {
+            super(false);
+            this.type = type;
+        }
+        
+        /**
+         * Returns the actual binding.
+         *
+         * @return The binding of the class.
+         */
+        private Binding delegate() {
+            Binding result = delegate;
+            if (result == null) {
+                // no synchronization needed, as the ClassValue always returns the same instance
+                result = BINDINGS.get(type);
+                delegate = result;
+            }
+            return result;
+        }
+        
+        @Override
+        Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+            return delegate().read(reader);
+        }
+        
+        @Override
+        void writeValue(Object value, JsonWriter writer) throws IOException {
+            delegate().write(value, writer);
+        }
+        
+        @Override
+        JsonElement toValueElement(Object value) {
+            return delegate().toElement(value);
+        }
+        
+        @Override
+        Object fromValueElement(JsonElement element) throws ParsingException {
+            return delegate().fromElement(element);
+        }
+        
+    }
+    
+}
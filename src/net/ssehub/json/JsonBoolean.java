@@ -73,4 +73,19 @@ public class JsonBoolean extends JsonValue<Boolean> {
         return Boolean.hashCode(value);
     }
 
+    @Override
+    public long fingerprint() {
+        return fingerprint(FINGERPRINT_BOOLEAN, value ? 1 : 0);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns this instance, as booleans are immutable.
+     */
+    @Override
+    public JsonBoolean deepCopy() {
+        return this;
+    }
+    
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes objects of a given type directly from a {@link JsonTokenReader} and to a {@link JsonWriter},
+ * without an intermediate tree of {@link JsonElement}s.
+ * <p>
+ * Codecs for classes annotated with {@link JsonMapped} are generated at compile time by the
+ * {@link JsonCodecProcessor}; codecs for common types are available in {@link JsonCodecs}.
+ *
+ * @param <T> The type of objects that this codec reads and writes.
+ *
+ * @author Adam
+ */
+public interface JsonCodec<T> {
+    
+    /**
+     * Reads the next value from the given reader.
+     *
+     * @param reader The reader to read from. Not <code>null</code>.
+     *
+     * @return The read object. May be <code>null</code> if the value is <code>null</code>.
+     *
+     * @throws ParsingException If the document is malformed or the value doesn't match the type of this codec.
+     * @throws IOException If reading the input fails.
+     */
+    public T read(JsonTokenReader reader) throws ParsingException, IOException;
+    
+    /**
+     * Writes the given object as the next value to the given writer.
+     *
+     * @param value The object to write. May be <code>null</code>, in which case <code>null</code> is written.
+     * @param writer The writer to write to. Not <code>null</code>.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void write(T value, JsonWriter writer) throws IOException;
+    
+    /**
+     * Reads an object from the given JSON string, which must contain exactly one value.
+     *
+     * @param json The JSON string. Not <code>null</code>.
+     *
+     * @return The read object.
+     *
+     * @throws ParsingException If the string is not valid JSON or the value doesn't match the type of this codec.
+     */
+    public default T fromJson(String json) throws ParsingException {
+        JsonTokenReader reader = new JsonTokenReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        T result;
+        try {
+            result = read(reader);
+            reader.expect(JsonToken.END_OF_INPUT);
+        } catch (IOException e) {
+            // can't happen, as ByteArrayInputStream doesn't throw
+            throw new AssertionError(e);
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the given object into a JSON string.
+     *
+     * @param value The object to write. May be <code>null</code>.
+     *
+     * @return The JSON string.
+     */
+    public default String toJson(T value) {
+        StringBuilder result = new StringBuilder();
+        try {
+            write(value, new JsonWriter(result));
+        } catch (IOException e) {
+            // can't happen, as StringBuilder doesn't throw
+            throw new AssertionError(e);
+        }
+        return result.toString();
+    }
+    
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * An annotation processor that generates a {@link JsonCodec} for each class annotated with {@link JsonMapped}. The
+ * generated codecs read the fields of the class directly from the tokens of a {@link JsonTokenReader}, dispatching
+ * on the member name with a <code>switch</code>, and write them with a {@link JsonWriter}. They access the fields (or
+ * their getters and setters) directly, so no reflection is used at runtime.
+ * <p>
+ * The processor is registered as a service in the jar, so it runs automatically when the jar is on the compile
+ * class path (unless annotation processing is disabled). Problems, such as unsupported field types, are reported as
+ * compile errors on the offending element.
+ *
+ * @author Adam
+ */
+@SupportedAnnotationTypes("net.ssehub.json.JsonMapped")
+public class JsonCodecProcessor extends AbstractProcessor {
+    
+    private static final String CODECS = "net.ssehub.json.JsonCodecs.";
+    
+    /**
+     * The {@link JsonCodecs} constants for the supported simple types, by qualified type name.
+     */
+    private static final Map<String, String> SIMPLE_CODECS = new HashMap<>();
+    
+    static {
+        SIMPLE_CODECS.put("java.lang.String", "STRING");
+        SIMPLE_CODECS.put("java.lang.Number", "NUMBER");
+        SIMPLE_CODECS.put("java.lang.Integer", "INTEGER");
+        SIMPLE_CODECS.put("java.lang.Long", "LONG");
+        SIMPLE_CODECS.put("java.lang.Double", "DOUBLE");
+        SIMPLE_CODECS.put("java.lang.Boolean", "BOOLEAN");
+        SIMPLE_CODECS.put("net.ssehub.json.JsonElement", "ELEMENT");
+    }
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonMapped.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error("@JsonMapped is only supported on classes", element);
+            } else if (checkClass((TypeElement) element)) {
+                new Generator((TypeElement) element).generate();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reports a compile error.
+     *
+     * @param message The error message.
+     * @param element The element that causes the error.
+     */
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+    
+    /**
+     * Checks that a codec can be generated for the given class, and reports an error if not.
+     *
+     * @param type The annotated class.
+     *
+     * @return Whether a codec can be generated.
+     */
+    private boolean checkClass(TypeElement type) {
+        boolean nested = type.getEnclosingElement() instanceof TypeElement;
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                hasConstructor = true;
+            }
+        }
+        
+        boolean result = false;
+        if (!type.getTypeParameters().isEmpty()) {
+            error("@JsonMapped is not supported on generic classes", type);
+        } else if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error("@JsonMapped is not supported on abstract classes", type);
+        } else if (type.getModifiers().contains(Modifier.PRIVATE)
+                || nested && !type.getModifiers().contains(Modifier.STATIC)) {
+            error("@JsonMapped classes must be top-level or static nested classes that are not private", type);
+        } else if (!hasConstructor) {
+            error("@JsonMapped classes need a non-private constructor without parameters", type);
+        } else {
+            result = true;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the qualified name of the codec class for the given class.
+     *
+     * @param type The annotated class.
+     *
+     * @return The qualified name of the generated codec.
+     */
+    private String codecName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element outer = type.getEnclosingElement(); outer instanceof TypeElement;
+                outer = outer.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, outer.getSimpleName());
+        }
+        name.append("JsonCodec");
+        
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            name.insert(0, '.').insert(0, packageName);
+        }
+        return name.toString();
+    }
+    
+    /**
+     * Converts a string into a Java string literal.
+     *
+     * @param str The string.
+     *
+     * @return The string literal, including quotes.
+     */
+    static String javaLiteral(String str) {
+        StringBuilder result = new StringBuilder(str.length() + 2).append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char character = str.charAt(i);
+            if (character == '"' || character == '\\') {
+                result.append('\\').append(character);
+            } else if (character < 0x20 || character >= 0x7F) {
+                result.append(String.format(character < 0x20 ? "\\%03o" : "\\u%04x", (int) character));
+            } else {
+                result.append(character);
+            }
+        }
+        return result.append('"').toString();
+    }
+    
+    /**
+     * Generates the codec for a single class.
+     */
+    private final class Generator {
+        
+        private final TypeElement type;
+        
+        private final String packageName;
+        
+        private final StringBuilder codecFields = new StringBuilder();
+        
+        private final StringBuilder readCases = new StringBuilder();
+        
+        private final StringBuilder writeStatements = new StringBuilder();
+        
+        private final Set<String> keys = new HashSet<>();
+        
+        private int numCodecFields;
+        
+        private boolean failed;
+        
+        /**
+         * Creates a generator.
+         *
+         * @param type The annotated class.
+         */
+        Generator(TypeElement type) {
+            this.type = type;
+            this.packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        }
+        
+        /**
+         * Generates the codec source file, unless an error is found in the fields of the class.
+         */
+        void generate() {
+            for (VariableElement field : collectFields()) {
+                addField(field);
+            }
+            
+            if (!failed) {
+                String codecName = codecName(type);
+                try (Writer out = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+                    out.write(toSource(codecName));
+                } catch (IOException e) {
+                    error("Can't write " + codecName + ": " + e.getMessage(), type);
+                }
+            }
+        }
+        
+        /**
+         * Collects the mapped fields of the class and its superclasses, superclass fields first.
+         *
+         * @return The non-static, non-transient fields.
+         */
+        private List<VariableElement> collectFields() {
+            Deque<TypeElement> hierarchy = new ArrayDeque<>();
+            TypeElement current = type;
+            while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+                hierarchy.push(current);
+                Element superclass = processingEnv.getTypeUtils().asElement(current.getSuperclass());
+                current = superclass instanceof TypeElement ? (TypeElement) superclass : null;
+            }
+            
+            List<VariableElement> result = new ArrayList<>();
+            for (TypeElement cls : hierarchy) {
+                for (VariableElement field : ElementFilter.fieldsIn(cls.getEnclosedElements())) {
+                    Set<Modifier> modifiers = field.getModifiers();
+                    if (!modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.TRANSIENT)) {
+                        result.add(field);
+                    }
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Reports an error and marks the generation as failed.
+         *
+         * @param message The error message.
+         * @param element The element that causes the error.
+         */
+        private void fail(String message, Element element) {
+            error(message, element);
+            failed = true;
+        }
+        
+        /**
+         * Checks whether a member is accessible from the generated codec, which is in the same package as the class.
+         *
+         * @param member The field or method.
+         *
+         * @return Whether the member is accessible.
+         */
+        private boolean isAccessible(Element member) {
+            Set<Modifier> modifiers = member.getModifiers();
+            return modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.PRIVATE)
+                    && processingEnv.getElementUtils().getPackageOf(member).getQualifiedName()
+                            .contentEquals(packageName);
+        }
+        
+        /**
+         * Finds an accessible, non-static method of the class.
+         *
+         * @param name The name of the method.
+         * @param returnType The required return type, or <code>null</code> for a setter.
+         * @param parameterType The required type of the single parameter of a setter, or <code>null</code> for a
+         *      getter without parameters.
+         *
+         * @return The method, or <code>null</code> if the class has no such method.
+         */
+        private ExecutableElement findMethod(String name, TypeMirror returnType, TypeMirror parameterType) {
+            ExecutableElement result = null;
+            Types types = processingEnv.getTypeUtils();
+            for (ExecutableElement method
+                    : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+                if (method.getSimpleName().contentEquals(name) && isAccessible(method)
+                        && !method.getModifiers().contains(Modifier.STATIC)) {
+                    ExecutableType signature = (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+                    List<? extends TypeMirror> parameters = signature.getParameterTypes();
+                    if (parameterType == null ? parameters.isEmpty()
+                            && types.isSameType(signature.getReturnType(), returnType)
+                            : parameters.size() == 1 && types.isSameType(parameters.get(0), parameterType)) {
+                        result = method;
+                    }
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Adds the code for reading and writing a single field.
+         *
+         * @param field The field.
+         */
+        private void addField(VariableElement field) {
+            String name = field.getSimpleName().toString();
+            JsonKey keyAnnotation = field.getAnnotation(JsonKey.class);
+            String key = keyAnnotation != null ? keyAnnotation.value() : name;
+            TypeMirror fieldType = processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), field);
+            
+            // final fields can't be assigned after construction, so they are only written, like in JsonBinder
+            boolean settable = !field.getModifiers().contains(Modifier.FINAL);
+            String getter;
+            String setter;
+            if (isAccessible(field)) {
+                getter = "value." + name;
+                setter = settable ? "result." + name + " = %s;" : null;
+            } else {
+                String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                ExecutableElement getMethod = findMethod("get" + capitalized, fieldType, null);
+                if (getMethod == null && fieldType.getKind() == TypeKind.BOOLEAN) {
+                    getMethod = findMethod("is" + capitalized, fieldType, null);
+                }
+                ExecutableElement setMethod = findMethod("set" + capitalized, null, fieldType);
+                getter = getMethod != null ? "value." + getMethod.getSimpleName() + "()" : null;
+                setter = setMethod != null ? "result." + setMethod.getSimpleName() + "(%s);" : null;
+            }
+            
+            String[] readWrite = readWrite(fieldType, getter);
+            if (!keys.add(key)) {
+                fail("Duplicate JSON key " + javaLiteral(key), field);
+            } else if (getter == null || setter == null && settable) {
+                fail("Field " + name + " is not accessible and has no getter and setter", field);
+            } else if (readWrite == null) {
+                fail("Unsupported type " + fieldType + " of field " + name, field);
+            } else {
+                if (setter != null) {
+                    readCases.append("            case ").append(javaLiteral(key)).append(":\n")
+                            .append("                ").append(String.format(setter, readWrite[0])).append('\n')
+                            .append("                break;\n");
+                }
+                writeStatements.append("        writer.key(").append(javaLiteral(key)).append(");\n")
+                        .append("        ").append(readWrite[1]).append('\n');
+            }
+        }
+        
+        /**
+         * Creates the read expression and write statement for a value of the given type.
+         *
+         * @param valueType The type of the value.
+         * @param getter The expression for the value to write.
+         *
+         * @return The read expression and the write statement, or <code>null</code> if the type is not supported.
+         */
+        private String[] readWrite(TypeMirror valueType, String getter) {
+            String[] result = null;
+            switch (valueType.getKind()) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                String method = valueType.getKind().name().charAt(0)
+                        + valueType.getKind().name().substring(1).toLowerCase(Locale.ROOT);
+                result = new String[] {"reader.read" + method + "()", "writer.value(" + getter + ");"};
+                break;
+            case SHORT:
+            case BYTE:
+                result = new String[] {"(" + valueType + ") reader.readInt()", "writer.value(" + getter + ");"};
+                break;
+            case FLOAT:
+                result = new String[] {"(float) reader.readDouble()",
+                    "writer.value(java.lang.Float.valueOf(" + getter + "));"};
+                break;
+            default:
+                String codec = codecExpression(valueType, false);
+                if (codec != null) {
+                    if (codec.indexOf('(') >= 0) {
+                        String fieldName = "CODEC_" + numCodecFields++;
+                        codecFields.append("    private static final net.ssehub.json.JsonCodec<").append(valueType)
+                                .append("> ").append(fieldName).append(" =\n            ").append(codec)
+                                .append(";\n\n");
+                        codec = fieldName;
+                    }
+                    result = new String[] {codec + ".read(reader)", codec + ".write(" + getter + ", writer);"};
+                }
+                break;
+            }
+            return result;
+        }
+        
+        /**
+         * Creates an expression for the codec of the given (non-primitive) type.
+         *
+         * @param valueType The type.
+         * @param nested Whether the codec is nested in a list or map codec. Codecs of other {@link JsonMapped}
+         *      classes are then only looked up lazily, so that the static initializers of codecs that refer to each
+         *      other don't depend on each other.
+         *
+         * @return The codec expression, or <code>null</code> if the type is not supported.
+         */
+        private String codecExpression(TypeMirror valueType, boolean nested) {
+            String result = null;
+            if (valueType.getKind() == TypeKind.DECLARED) {
+                DeclaredType declared = (DeclaredType) valueType;
+                TypeElement element = (TypeElement) declared.asElement();
+                String name = element.getQualifiedName().toString();
+                List<? extends TypeMirror> arguments = declared.getTypeArguments();
+                
+                if (SIMPLE_CODECS.containsKey(name)) {
+                    result = CODECS + SIMPLE_CODECS.get(name);
+                } else if (element.getKind() == ElementKind.ENUM) {
+                    result = CODECS + "forEnum(" + name + ".values())";
+                } else if (element.getAnnotation(JsonMapped.class) != null) {
+                    String codec = codecName(element) + ".INSTANCE";
+                    result = nested ? CODECS + "lazy(() -> " + codec + ")" : codec;
+                } else if (name.equals("java.util.List") && arguments.size() == 1) {
+                    String elementCodec = codecExpression(arguments.get(0), true);
+                    result = elementCodec != null ? CODECS + "list(" + elementCodec + ")" : null;
+                } else if (name.equals("java.util.Map") && arguments.size() == 2
+                        && arguments.get(0).toString().equals("java.lang.String")) {
+                    String valueCodec = codecExpression(arguments.get(1), true);
+                    result = valueCodec != null ? CODECS + "map(" + valueCodec + ")" : null;
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Creates the source code of the codec class.
+         *
+         * @param codecName The qualified name of the codec class.
+         *
+         * @return The source code.
+         */
+        private String toSource(String codecName) {
+            String simpleName = codecName.substring(codecName.lastIndexOf('.') + 1);
+            String className = type.getQualifiedName().toString();
+            StringBuilder source = new StringBuilder();
+            if (!packageName.isEmpty()) {
+                source.append("package ").append(packageName).append(";\n\n");
+            }
+            source.append("/**\n * {@link net.ssehub.json.JsonCodec} for {@link ").append(className).append("}.\n")
+                .append(" * Generated by ").append(JsonCodecProcessor.class.getName()).append("; do not edit.\n")
+                .append(" */\n")
+                .append("public final class ").append(simpleName)
+                    .append(" implements net.ssehub.json.JsonCodec<").append(className).append("> {\n\n")
+                .append("    public static final ").append(simpleName).append(" INSTANCE = new ").append(simpleName)
+                    .append("();\n\n")
+                .append(codecFields)
+                .append("    private ").append(simpleName).append("() {\n    }\n\n")
+                .append("    @Override\n")
+                .append("    public ").append(className).append(" read(net.ssehub.json.JsonTokenReader reader)\n")
+                .append("            throws net.ssehub.json.ParsingException, java.io.IOException {\n")
+                .append("        if (reader.readNull()) {\n            return null;\n        }\n")
+                .append("        reader.expect(net.ssehub.json.JsonToken.START_OBJECT);\n")
+                .append("        ").append(className).append(" result = new ").append(className).append("();\n")
+                .append("        for (java.lang.String key = reader.nextKey(); key != null; ")
+                    .append("key = reader.nextKey()) {\n")
+                .append("            switch (key) {\n")
+                .append(readCases)
+                .append("            default:\n                reader.skipValue();\n                break;\n")
+                .append("            }\n        }\n        return result;\n    }\n\n")
+                .append("    @Override\n")
+                .append("    public void write(").append(className).append(" value, net.ssehub.json.JsonWriter writer)")
+                    .append(" throws java.io.IOException {\n")
+                .append("        if (value == null) {\n            writer.nullValue();\n")
+                    .append("            return;\n        }\n")
+                .append("        writer.beginObject();\n")
+                .append(writeStatements)
+                .append("        writer.endObject();\n    }\n\n}\n");
+            return source.toString();
+        }
+        
+    }
+    
+}
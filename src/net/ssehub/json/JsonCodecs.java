@@ -0,0 +1,319 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * {@link JsonCodec}s for common types. All codecs read and write <code>null</code> as <code>null</code>. The generated
+ * codecs of {@link JsonMapped} classes use these for their fields.
+ *
+ * @author Adam
+ */
+public final class JsonCodecs {
+    
+    /**
+     * Reads and writes strings.
+     */
+    public static final JsonCodec<String> STRING = new JsonCodec<String>() {
+        
+        @Override
+        public String read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readString();
+        }
+        
+        @Override
+        public void write(String value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * Reads and writes numbers of any type.
+     */
+    public static final JsonCodec<Number> NUMBER = new JsonCodec<Number>() {
+        
+        @Override
+        public Number read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readNumber();
+        }
+        
+        @Override
+        public void write(Number value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * Reads and writes integers that fit into an <code>int</code>.
+     */
+    public static final JsonCodec<Integer> INTEGER = new JsonCodec<Integer>() {
+        
+        @Override
+        public Integer read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readNull() ? null : reader.readInt();
+        }
+        
+        @Override
+        public void write(Integer value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * Reads and writes integers that fit into a <code>long</code>.
+     */
+    public static final JsonCodec<Long> LONG = new JsonCodec<Long>() {
+        
+        @Override
+        public Long read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readNull() ? null : reader.readLong();
+        }
+        
+        @Override
+        public void write(Long value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * Reads and writes numbers as <code>double</code>s.
+     */
+    public static final JsonCodec<Double> DOUBLE = new JsonCodec<Double>() {
+        
+        @Override
+        public Double read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readNull() ? null : reader.readDouble();
+        }
+        
+        @Override
+        public void write(Double value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * Reads and writes booleans.
+     */
+    public static final JsonCodec<Boolean> BOOLEAN = new JsonCodec<Boolean>() {
+        
+        @Override
+        public Boolean read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readNull() ? null : reader.readBoolean();
+        }
+        
+        @Override
+        public void write(Boolean value, JsonWriter writer) throws IOException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.booleanValue());
+            }
+        }
+        
+    };
+    
+    /**
+     * Reads and writes arbitrary values as trees of {@link JsonElement}s. Reads <code>null</code> as
+     * {@link JsonNull#INSTANCE}.
+     */
+    public static final JsonCodec<JsonElement> ELEMENT = new JsonCodec<JsonElement>() {
+        
+        @Override
+        public JsonElement read(JsonTokenReader reader) throws ParsingException, IOException {
+            return reader.readElement();
+        }
+        
+        @Override
+        public void write(JsonElement value, JsonWriter writer) throws IOException {
+            writer.value(value);
+        }
+        
+    };
+    
+    /**
+     * No instances.
+     */
+    private JsonCodecs() {
+    }
+    
+    /**
+     * Creates a codec for lists. Lists are read as {@link ArrayList}s.
+     *
+     * @param elementCodec The codec for the elements of the list. Not <code>null</code>.
+     *
+     * @param <T> The type of the elements.
+     *
+     * @return A codec for lists of the given element type.
+     */
+    public static <T> JsonCodec<List<T>> list(JsonCodec<T> elementCodec) {
+        Objects.requireNonNull(elementCodec);
+        return new JsonCodec<List<T>>() {
+            
+            @Override
+            public List<T> read(JsonTokenReader reader) throws ParsingException, IOException {
+                List<T> result = null;
+                if (!reader.readNull()) {
+                    reader.expect(JsonToken.START_LIST);
+                    result = new ArrayList<>();
+                    while (reader.hasNextElement()) {
+                        result.add(elementCodec.read(reader));
+                    }
+                }
+                return result;
+            }
+            
+            @Override
+            public void write(List<T> value, JsonWriter writer) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                } else {
+                    writer.beginList();
+                    for (T element : value) {
+                        elementCodec.write(element, writer);
+                    }
+                    writer.endList();
+                }
+            }
+            
+        };
+    }
+    
+    /**
+     * Creates a codec for maps with {@link String} keys, which are read from and written to objects. Maps are read
+     * as {@link LinkedHashMap}s, so that the order of the members is kept.
+     *
+     * @param valueCodec The codec for the values of the map. Not <code>null</code>.
+     *
+     * @param <T> The type of the values.
+     *
+     * @return A codec for maps of the given value type.
+     */
+    public static <T> JsonCodec<Map<String, T>> map(JsonCodec<T> valueCodec) {
+        Objects.requireNonNull(valueCodec);
+        return new JsonCodec<Map<String, T>>() {
+            
+            @Override
+            public Map<String, T> read(JsonTokenReader reader) throws ParsingException, IOException {
+                Map<String, T> result = null;
+                if (!reader.readNull()) {
+                    reader.expect(JsonToken.START_OBJECT);
+                    result = new LinkedHashMap<>();
+                    String key;
+                    for (key = reader.nextKey(); key != null; key = reader.nextKey()) {
+                        result.put(key, valueCodec.read(reader));
+                    }
+                }
+                return result;
+            }
+            
+            @Override
+            public void write(Map<String, T> value, JsonWriter writer) throws IOException {
+                if (value == null) {
+                    writer.nullValue();
+                } else {
+                    writer.beginObject();
+                    for (Map.Entry<String, T> member : value.entrySet()) {
+                        writer.key(member.getKey());
+                        valueCodec.write(member.getValue(), writer);
+                    }
+                    writer.endObject();
+                }
+            }
+            
+        };
+    }
+    
+    /**
+     * Creates a codec for an enum, which reads and writes the constants as strings with their names.
+     *
+     * @param constants All constants of the enum, i.e. the result of its <code>values()</code> method. Not
+     *      <code>null</code>.
+     *
+     * @param <E> The enum type.
+     *
+     * @return A codec for the enum.
+     */
+    public static <E extends Enum<E>> JsonCodec<E> forEnum(E[] constants) {
+        Map<String, E> byName = new HashMap<>(constants.length * 4 / 3 + 1);
+        for (E constant : constants) {
+            byName.put(constant.name(), constant);
+        }
+        return new JsonCodec<E>() {
+            
+            @Override
+            public E read(JsonTokenReader reader) throws ParsingException, IOException {
+                String name = reader.readString();
+                E result = null;
+                if (name != null) {
+                    result = byName.get(name);
+                    if (result == null) {
+                        throw new ParsingException("Unknown enum constant \"" + JsonString.jsonEscape(name) + "\"");
+                    }
+                }
+                return result;
+            }
+            
+            @Override
+            public void write(E value, JsonWriter writer) throws IOException {
+                writer.value(value == null ? null : value.name());
+            }
+            
+        };
+    }
+    
+    /**
+     * Creates a codec that delegates to the codec returned by the given supplier, which is called on each use. The
+     * generated codecs use this to refer to the codecs of other {@link JsonMapped} classes without initializing them
+     * in their own static initializer, since codecs that refer to each other could otherwise dead-lock when they are
+     * initialized by different threads at the same time.
+     *
+     * @param supplier Supplies the actual codec. Not <code>null</code>.
+     *
+     * @param <T> The type of objects that the codec reads and writes.
+     *
+     * @return A codec that delegates to the supplied codec.
+     */
+    public static <T> JsonCodec<T> lazy(Supplier<? extends JsonCodec<T>> supplier) {
+        Objects.requireNonNull(supplier);
+        return new JsonCodec<T>() {
+            
+            @Override
+            public T read(JsonTokenReader reader) throws ParsingException, IOException {
+                return supplier.get().read(reader);
+            }
+            
+            @Override
+            public void write(T value, JsonWriter writer) throws IOException {
+                supplier.get().write(value, writer);
+            }
+            
+        };
+    }
+    
+}
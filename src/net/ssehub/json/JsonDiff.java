@@ -0,0 +1,426 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the differences between two documents as a {@link JsonPatch} (RFC 6902). Applying the patch to the source
+ * document results in a document equal to the target document.
+ * <p>
+ * Identical subtrees are skipped by comparing their {@link JsonElement#fingerprint()}s first, which lists and objects
+ * cache; only if the fingerprints match, the subtrees are compared with {@link JsonElement#equals(Object)}, and the
+ * diff doesn't descend into them any further. Thus, each element is compared at most once, and the cost of a diff
+ * mostly depends on the size of the changed parts.
+ * <p>
+ * Objects are compared member by member. Lists are aligned with the longest common subsequence of their elements
+ * (Myers' O((n + m) d) algorithm, after stripping the common prefix and suffix), so that inserted and removed elements
+ * don't cause replacements of all following elements. If an identity member is configured, list elements that are
+ * objects are matched by the value of that member instead of their whole content, and matched elements are diffed
+ * recursively. If the lists differ in more than {@link #MAX_EDIT_DISTANCE} elements, they are aligned by position
+ * instead.
+ * <p>
+ * The patch contains no <code>move</code> or <code>copy</code> operations. Values in the patch are shared with the
+ * target document; {@link JsonPatch#apply(JsonElement)} copies them.
+ *
+ * @author Adam
+ */
+public class JsonDiff {
+    
+    /**
+     * The maximum number of inserted and removed elements in a list, for which the longest common subsequence is
+     * computed. This bounds the time and memory of aligning a list to O((n + m) * 1000) and O(1000<sup>2</sup>).
+     */
+    public static final int MAX_EDIT_DISTANCE = 1000;
+    
+    private static final byte MATCH = 0;
+    
+    private static final byte DELETE = 1;
+    
+    private static final byte INSERT = 2;
+    
+    private final String identityMember;
+    
+    private List<JsonPatch.Operation> operations;
+    
+    /**
+     * Creates a diff that aligns list elements by their whole content.
+     */
+    public JsonDiff() {
+        this(null);
+    }
+    
+    /**
+     * Creates a diff that aligns list elements, that are objects, by the value of the given member. E.g. with
+     * <code>"id"</code>, <code>[{"id": 1, "a": 1}]</code> and <code>[{"id": 1, "a": 2}]</code> result in a
+     * replacement of <code>/0/a</code>, instead of the whole list element.
+     *
+     * @param identityMember The key of the member that identifies objects in lists, or <code>null</code> to align
+     *      elements by their whole content.
+     */
+    public JsonDiff(String identityMember) {
+        this.identityMember = identityMember;
+    }
+    
+    /**
+     * Computes the patch that transforms the source document into the target document.
+     *
+     * @param source The source document. Not <code>null</code>.
+     * @param target The target document. Not <code>null</code>.
+     *
+     * @return The patch. Empty if the documents are equal.
+     */
+    public JsonPatch diff(JsonElement source, JsonElement target) {
+        operations = new ArrayList<>();
+        diff(source, target, JsonPointer.ROOT);
+        JsonPatch result = new JsonPatch(Collections.unmodifiableList(operations));
+        operations = null;
+        return result;
+    }
+    
+    /**
+     * Checks whether the two elements are equal, comparing their fingerprints first.
+     *
+     * @param element1 The first element.
+     * @param element2 The second element.
+     *
+     * @return Whether the elements are equal.
+     */
+    private static boolean isEqual(JsonElement element1, JsonElement element2) {
+        return element1 == element2 || element1.fingerprint() == element2.fingerprint() && element1.equals(element2);
+    }
+    
+    /**
+     * Adds the operations that transform the source into the target element.
+     *
+     * @param source The source element.
+     * @param target The target element.
+     * @param path The path of both elements.
+     */
+    private void diff(JsonElement source, JsonElement target, JsonPointer path) {
+        if (!isEqual(source, target)) {
+            if (source instanceof JsonObject && target instanceof JsonObject) {
+                diffObjects((JsonObject) source, (JsonObject) target, path);
+            } else if (source instanceof JsonList && target instanceof JsonList) {
+                diffLists((JsonList) source, (JsonList) target, path);
+            } else {
+                operations.add(new JsonPatch.Operation(JsonPatch.Type.REPLACE, path, null, target));
+            }
+        }
+    }
+    
+    /**
+     * Adds the operations that transform the source into the target object.
+     *
+     * @param source The source object.
+     * @param target The target object.
+     * @param path The path of both objects.
+     */
+    private void diffObjects(JsonObject source, JsonObject target, JsonPointer path) {
+        for (Map.Entry<String, JsonElement> member : source.members()) {
+            JsonElement targetValue = target.getElement(member.getKey());
+            if (targetValue == null) {
+                operations.add(new JsonPatch.Operation(JsonPatch.Type.REMOVE, path.append(member.getKey()), null,
+                        null));
+            } else {
+                diff(member.getValue(), targetValue, path.append(member.getKey()));
+            }
+        }
+        for (Map.Entry<String, JsonElement> member : target.members()) {
+            if (source.getElement(member.getKey()) == null) {
+                operations.add(new JsonPatch.Operation(JsonPatch.Type.ADD, path.append(member.getKey()), null,
+                        member.getValue()));
+            }
+        }
+    }
+    
+    /**
+     * Adds the operations that transform the source into the target list.
+     *
+     * @param source The source list.
+     * @param target The target list.
+     * @param path The path of both lists.
+     */
+    private void diffLists(JsonList source, JsonList target, JsonPointer path) {
+        JsonElement[] sourceElements = toArray(source);
+        JsonElement[] targetElements = toArray(target);
+        byte[] script = align(matchKeys(sourceElements), matchKeys(targetElements));
+        
+        // the index in the list while the patch is applied
+        int index = 0;
+        int sourceIndex = 0;
+        int targetIndex = 0;
+        int position = 0;
+        while (position < script.length) {
+            if (script[position] == MATCH) {
+                diff(sourceElements[sourceIndex++], targetElements[targetIndex++], path.append(index++));
+                position++;
+                
+            } else {
+                // a gap between matches: diff the removed and inserted elements pairwise, then remove or insert the
+                // remaining ones
+                int numDeleted = 0;
+                int numInserted = 0;
+                while (position < script.length && script[position] != MATCH) {
+                    if (script[position] == DELETE) {
+                        numDeleted++;
+                    } else {
+                        numInserted++;
+                    }
+                    position++;
+                }
+                int numPaired = Math.min(numDeleted, numInserted);
+                for (int i = 0; i < numPaired; i++) {
+                    diff(sourceElements[sourceIndex++], targetElements[targetIndex++], path.append(index++));
+                }
+                for (int i = numPaired; i < numDeleted; i++) {
+                    operations.add(new JsonPatch.Operation(JsonPatch.Type.REMOVE, path.append(index), null, null));
+                    sourceIndex++;
+                }
+                for (int i = numPaired; i < numInserted; i++) {
+                    operations.add(new JsonPatch.Operation(JsonPatch.Type.ADD, path.append(index++), null,
+                            targetElements[targetIndex++]));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copies the elements of a list into an array.
+     *
+     * @param list The list.
+     *
+     * @return The elements of the list.
+     */
+    private static JsonElement[] toArray(JsonList list) {
+        JsonElement[] result = new JsonElement[list.getSize()];
+        int index = 0;
+        for (JsonElement element : list) {
+            result[index++] = element;
+        }
+        return result;
+    }
+    
+    /**
+     * Computes the keys that list elements are aligned by. Elements with the same key are diffed recursively,
+     * elements with different keys are removed and inserted.
+     *
+     * @param elements The list elements.
+     *
+     * @return The key of each element.
+     */
+    private long[] matchKeys(JsonElement[] elements) {
+        long[] result = new long[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            JsonElement identity = null;
+            if (identityMember != null && elements[i] instanceof JsonObject) {
+                identity = ((JsonObject) elements[i]).getElement(identityMember);
+            }
+            if (identity != null) {
+                // distinguish the identity of an object from a list element with the same content
+                result[i] = JsonElement.mix(identity.fingerprint() + JsonElement.FINGERPRINT_MULTIPLIER);
+            } else {
+                result[i] = elements[i].fingerprint();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Aligns two sequences of keys. The result is an edit script with one entry for each pair of matched keys
+     * ({@link #MATCH}), each removed source key ({@link #DELETE}) and each inserted target key ({@link #INSERT}).
+     *
+     * @param source The source keys.
+     * @param target The target keys.
+     *
+     * @return The edit script.
+     */
+    static byte[] align(long[] source, long[] target) {
+        int prefix = 0;
+        while (prefix < source.length && prefix < target.length && source[prefix] == target[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < source.length - prefix && suffix < target.length - prefix
+                && source[source.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            suffix++;
+        }
+        
+        long[] sourceMiddle = Arrays.copyOfRange(source, prefix, source.length - suffix);
+        long[] targetMiddle = Arrays.copyOfRange(target, prefix, target.length - suffix);
+        byte[] middle = new Myers(sourceMiddle, targetMiddle).align();
+        if (middle == null) {
+            middle = alignByPosition(sourceMiddle.length, targetMiddle.length);
+        }
+        
+        byte[] result = new byte[prefix + middle.length + suffix];
+        // the prefix and suffix are already MATCH (0)
+        System.arraycopy(middle, 0, result, prefix, middle.length);
+        return result;
+    }
+    
+    /**
+     * Creates an edit script that pairs the elements by position.
+     *
+     * @param sourceLength The number of source elements.
+     * @param targetLength The number of target elements.
+     *
+     * @return The edit script, without matches.
+     */
+    private static byte[] alignByPosition(int sourceLength, int targetLength) {
+        byte[] result = new byte[sourceLength + targetLength];
+        Arrays.fill(result, 0, sourceLength, DELETE);
+        Arrays.fill(result, sourceLength, result.length, INSERT);
+        return result;
+    }
+    
+    /**
+     * Myers' algorithm for the shortest edit script ("An O(ND) Difference Algorithm and Its Variations", 1986). The
+     * furthest reaching path of each diagonal is stored for each edit distance, so that the script can be traced
+     * back; this needs O(d<sup>2</sup>) memory, which is bounded by {@link JsonDiff#MAX_EDIT_DISTANCE}.
+     */
+    private static final class Myers {
+        
+        private final long[] source;
+        
+        private final long[] target;
+        
+        /**
+         * The furthest reaching x on each diagonal k (in <code>[-d, d]</code>) after each edit distance d, at
+         * index <code>k + d</code>.
+         */
+        private final List<int[]> trace = new ArrayList<>();
+        
+        /**
+         * Creates the algorithm for the given sequences.
+         *
+         * @param source The source keys.
+         * @param target The target keys.
+         */
+        Myers(long[] source, long[] target) {
+            this.source = source;
+            this.target = target;
+        }
+        
+        /**
+         * Computes the furthest reaching x on a diagonal.
+         *
+         * @param previous The furthest reaching x of the previous edit distance, or <code>null</code> for 0.
+         * @param diagonal The diagonal k.
+         * @param distance The edit distance d.
+         *
+         * @return The x to start following the diagonal from.
+         */
+        private static int start(int[] previous, int diagonal, int distance) {
+            int result;
+            if (previous == null) {
+                result = 0;
+            } else if (diagonal == -distance
+                    || diagonal != distance && get(previous, diagonal - 1) < get(previous, diagonal + 1)) {
+                // down, i.e. an insertion
+                result = get(previous, diagonal + 1);
+            } else {
+                // right, i.e. a deletion
+                result = get(previous, diagonal - 1) + 1;
+            }
+            return result;
+        }
+        
+        /**
+         * Returns the furthest reaching x on a diagonal.
+         *
+         * @param row The furthest reaching x of an edit distance d, which has <code>2 * d + 1</code> entries.
+         * @param diagonal The diagonal k, in <code>[-d, d]</code>.
+         *
+         * @return The furthest reaching x.
+         */
+        private static int get(int[] row, int diagonal) {
+            return row[diagonal + row.length / 2];
+        }
+        
+        /**
+         * Computes the shortest edit script.
+         *
+         * @return The edit script, or <code>null</code> if the edit distance is greater than
+         *      {@link JsonDiff#MAX_EDIT_DISTANCE}.
+         */
+        byte[] align() {
+            int maxDistance = Math.min(source.length + target.length, MAX_EDIT_DISTANCE);
+            byte[] result = null;
+            int[] previous = null;
+            for (int distance = 0; result == null && distance <= maxDistance; distance++) {
+                int[] row = new int[2 * distance + 1];
+                for (int diagonal = -distance; diagonal <= distance; diagonal += 2) {
+                    int x = start(previous, diagonal, distance);
+                    int y = x - diagonal;
+                    while (x < source.length && y < target.length && source[x] == target[y]) {
+                        x++;
+                        y++;
+                    }
+                    row[diagonal + distance] = x;
+                    if (x >= source.length && y >= target.length) {
+                        result = traceBack(distance);
+                        break;
+                    }
+                }
+                trace.add(row);
+                previous = row;
+            }
+            return result;
+        }
+        
+        /**
+         * Traces the path back from the end to the start.
+         *
+         * @param editDistance The edit distance of the path.
+         *
+         * @return The edit script.
+         */
+        private byte[] traceBack(int editDistance) {
+            int numMatches = (source.length + target.length - editDistance) / 2;
+            byte[] result = new byte[numMatches + editDistance];
+            int position = result.length;
+            int x = source.length;
+            int y = target.length;
+            for (int distance = editDistance; distance > 0; distance--) {
+                int[] previous = trace.get(distance - 1);
+                int diagonal = x - y;
+                boolean down = diagonal == -distance
+                        || diagonal != distance && get(previous, diagonal - 1) < get(previous, diagonal + 1);
+                int previousDiagonal = down ? diagonal + 1 : diagonal - 1;
+                int previousX = get(previous, previousDiagonal);
+                int previousY = previousX - previousDiagonal;
+                int snakeStart = down ? previousX : previousX + 1;
+                while (x > snakeStart) {
+                    result[--position] = MATCH;
+                    x--;
+                    y--;
+                }
+                result[--position] = down ? INSERT : DELETE;
+                x = previousX;
+                y = previousY;
+            }
+            // the remaining entries at the start are the initial snake, i.e. MATCH (0)
+            return result;
+        }
+        
+    }
+    
+}
@@ -15,6 +15,17 @@
  */
 package net.ssehub.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Abstract super-class of all JSON elements.
  * 
@@ -22,12 +33,106 @@ package net.ssehub.json;
  */
 public abstract class JsonElement {
 
+    /**
+     * Tags that distinguish the element types in {@link #fingerprint()}.
+     */
+    static final int FINGERPRINT_NULL = 1;
+    
+    static final int FINGERPRINT_BOOLEAN = 2;
+    
+    static final int FINGERPRINT_INTEGER = 3;
+    
+    static final int FINGERPRINT_LONG = 4;
+    
+    static final int FINGERPRINT_DOUBLE = 5;
+    
+    static final int FINGERPRINT_FLOAT = 6;
+    
+    static final int FINGERPRINT_OTHER_NUMBER = 7;
+    
+    static final int FINGERPRINT_STRING = 8;
+    
+    static final int FINGERPRINT_LIST = 9;
+    
+    static final int FINGERPRINT_OBJECT = 10;
+    
+    /**
+     * An odd constant with well-distributed bits (the golden ratio), used to combine fingerprints.
+     */
+    static final long FINGERPRINT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    
+    /**
+     * Lists and objects cache their {@link #hashCode()} and {@link #fingerprint()} together with the value of this
+     * stamp. A modification of a list or object whose hash has been computed before increments the stamp, which
+     * invalidates all cached hashes. This way, the cached hashes of the parents of a modified element become invalid,
+     * too, without elements having to know their parents (an element may be contained in several parents).
+     * Modifications of elements that have never been hashed, e.g. while a document is built, don't affect the stamp.
+     * Persistent lists and objects can't be modified, so they cache their hashes permanently, regardless of the
+     * stamp.
+     */
+    private static final AtomicLong MODIFICATION_STAMP = new AtomicLong();
+    
+    
     /**
      * Creates a valid JSON string of this element.
      */
     @Override
     public abstract String toString();
     
+    /**
+     * Creates the UTF-8 encoded bytes of the valid JSON string of this element. The characters are encoded while the
+     * tree is serialized, without creating the {@link String} first.
+     * 
+     * @return The UTF-8 bytes of {@link #toString()}.
+     */
+    public byte[] toUtf8Bytes() {
+        byte[] result;
+        try (Utf8Writer writer = Utf8Writer.create()) {
+            new JsonSerializer(writer).write(this);
+            writer.flush();
+            result = writer.getBytes();
+        } catch (IOException e) {
+            // can't happen, as the writer only writes to its own buffer
+            throw new AssertionError(e);
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the UTF-8 encoded valid JSON string of this element to the given stream. The stream is neither flushed
+     * nor closed.
+     * 
+     * @param out The stream to write to. Not <code>null</code>.
+     * 
+     * @throws IOException If writing to the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        try (Utf8Writer writer = Utf8Writer.create(out)) {
+            new JsonSerializer(writer).write(this);
+            writer.flush();
+        }
+    }
+    
+    /**
+     * Puts the UTF-8 encoded valid JSON string of this element into the given buffer, starting at its current
+     * position. The position is advanced by the number of written bytes.
+     * 
+     * @param buffer The buffer to write to. Not <code>null</code>.
+     * 
+     * @throws java.nio.BufferOverflowException If the buffer doesn't have enough space remaining. Some bytes may
+     *      have been written in this case.
+     * @throws java.nio.ReadOnlyBufferException If the buffer is read-only.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        try (Utf8Writer writer = Utf8Writer.create(buffer)) {
+            new JsonSerializer(writer).write(this);
+            writer.flush();
+        } catch (IOException e) {
+            // can't happen, as ByteBuffer doesn't throw IOExceptions
+            throw new AssertionError(e);
+        }
+    }
+    
     /**
      * Accepts the given visitor.
      * 
@@ -42,7 +147,246 @@ public abstract class JsonElement {
     @Override
     public abstract boolean equals(Object other);
     
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Lists and objects cache their hash code until they or any of their children are modified. A modification of
+     * any list or object that has been hashed before invalidates all cached hashes, except those of persistent lists
+     * and objects. Elements that are not modified may be hashed by several threads concurrently.
+     */
     @Override
     public abstract int hashCode();
     
+    /**
+     * Computes a 64 bit fingerprint of the content of this element. Equal elements have the same fingerprint; due to
+     * the size of the fingerprint, unequal elements are very unlikely to share one. This makes the fingerprint
+     * usable as cache key, in place of the element itself. It is not a cryptographic hash, though, and thus must not
+     * be relied on for untrusted input.
+     * <p>
+     * Lists and objects cache their fingerprint until they or any of their children are modified, like
+     * {@link #hashCode()}. Fingerprints are stable across JVM runs.
+     * 
+     * @return The fingerprint of this element.
+     */
+    public abstract long fingerprint();
+    
+    /**
+     * Creates a deep copy of this element, without a roundtrip through the JSON text. Lists and objects are copied
+     * with all their children, so that the copy can be modified without affecting this element; immutable values are
+     * shared instead of copied. The copied lists and objects are always mutable {@link JsonList}s and
+     * {@link JsonObject}s, also if the original ones are persistent.
+     * 
+     * @return A deep copy of this element.
+     */
+    public abstract JsonElement deepCopy();
+    
+    /**
+     * Creates a deep copy of the given tree. The tree is walked iteratively, so that deeply nested documents can't
+     * overflow the stack, and the copied lists and objects are created with the capacity for all their children.
+     * 
+     * @param root The root of the tree to copy.
+     * 
+     * @return The copy of the tree.
+     */
+    static JsonElement copyTree(JsonElement root) {
+        Deque<Iterator<?>> sources = new ArrayDeque<>();
+        Deque<JsonElement> targets = new ArrayDeque<>();
+        JsonElement result = copyNode(root, sources, targets);
+        
+        while (!sources.isEmpty()) {
+            Iterator<?> source = sources.peek();
+            if (source.hasNext()) {
+                JsonElement target = targets.peek();
+                Object next = source.next();
+                if (next instanceof JsonElement) {
+                    ((JsonList) target).addElement(copyNode((JsonElement) next, sources, targets));
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Map.Entry<String, JsonElement> member = (Map.Entry<String, JsonElement>) next;
+                    ((JsonObject) target).putElement(member.getKey(),
+                            copyNode(member.getValue(), sources, targets));
+                }
+                
+            } else {
+                sources.pop();
+                targets.pop();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Copies a single element for {@link #copyTree(JsonElement)}. Lists and objects are created empty and pushed
+     * onto the stacks, so that their children are copied afterwards.
+     * 
+     * @param element The element to copy.
+     * @param sources The stack of iterators over the children that still need to be copied.
+     * @param targets The stack of copies that the children are added to.
+     * 
+     * @return The copy of the element.
+     */
+    private static JsonElement copyNode(JsonElement element, Deque<Iterator<?>> sources, Deque<JsonElement> targets) {
+        JsonElement result;
+        if (element instanceof JsonList) {
+            JsonList list = (JsonList) element;
+            result = new JsonList(new ArrayList<>(list.getSize()));
+            sources.push(list.iterator());
+            targets.push(result);
+            
+        } else if (element instanceof JsonObject) {
+            JsonObject object = (JsonObject) element;
+            // the default load factor of 0.75
+            result = new JsonObject(new LinkedHashMap<>(object.getSize() * 4 / 3 + 1));
+            sources.push(object.members().iterator());
+            targets.push(result);
+            
+        } else {
+            result = element.deepCopy();
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a value into a canonical form, in which numbers that are mathematically equal are also equal according
+     * to {@link #equals(Object)}: all integral numbers are stored as {@link Long}s.
+     * 
+     * @param value The value.
+     * 
+     * @return The canonical value; may be the given value itself.
+     */
+    static JsonElement canonical(JsonElement value) {
+        JsonElement result = value;
+        if (value instanceof JsonNumber) {
+            Number number = ((JsonNumber) value).getValue();
+            if (JsonNumber.isIntegral(number) && Math.abs(number.doubleValue()) < 0x1p63) {
+                result = new JsonNumber(number.longValue());
+            }
+        } else if (value instanceof JsonList) {
+            JsonList list = new JsonList();
+            for (JsonElement element : (JsonList) value) {
+                list.addElement(canonical(element));
+            }
+            result = list;
+        } else if (value instanceof JsonObject) {
+            JsonObject object = new JsonObject();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) value).members()) {
+                object.putElement(member.getKey(), canonical(member.getValue()));
+            }
+            result = object;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the current modification stamp.
+     * 
+     * @return The current modification stamp, never negative.
+     * 
+     * @see #MODIFICATION_STAMP
+     */
+    static long getModificationStamp() {
+        return MODIFICATION_STAMP.get();
+    }
+    
+    /**
+     * Invalidates all cached hashes. Must be called when a list or object, whose hash has been computed before,
+     * is modified.
+     * 
+     * @see #MODIFICATION_STAMP
+     */
+    static void invalidateCachedHashes() {
+        MODIFICATION_STAMP.incrementAndGet();
+    }
+    
+    /**
+     * A cached hash or fingerprint, together with the modification stamp at which it was computed. This is
+     * immutable, so that lists and objects can publish their cached values through a single (non-volatile)
+     * reference: a thread that sees the reference also sees the value and stamp that belong together. Thus, elements
+     * that are not modified can be hashed concurrently.
+     */
+    static final class CachedHash {
+        
+        /**
+         * The stamp of a cached hash that stays valid forever, as the element can't be modified.
+         */
+        static final long PERMANENT = -1;
+        
+        private final long stamp;
+        
+        private final long value;
+        
+        /**
+         * Creates a cached hash.
+         * 
+         * @param stamp The modification stamp at which the value was computed, or {@link #PERMANENT}.
+         * @param value The hash or fingerprint.
+         */
+        CachedHash(long stamp, long value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+        
+        /**
+         * Checks whether the given cached hash is valid.
+         * 
+         * @param cached The cached hash, may be <code>null</code>.
+         * @param stamp The current modification stamp.
+         * 
+         * @return Whether the cached hash has been computed at the current stamp, or is permanent.
+         */
+        static boolean isValid(CachedHash cached, long stamp) {
+            return cached != null && (cached.stamp == stamp || cached.stamp == PERMANENT);
+        }
+        
+        /**
+         * Checks whether two cached hashes are both valid and differ, i.e. show that their elements are not equal.
+         * 
+         * @param first The first cached hash, may be <code>null</code>.
+         * @param second The second cached hash, may be <code>null</code>.
+         * @param stamp The current modification stamp.
+         * 
+         * @return Whether both are valid and have different values.
+         */
+        static boolean differ(CachedHash first, CachedHash second, long stamp) {
+            return isValid(first, stamp) && isValid(second, stamp) && first.value != second.value;
+        }
+        
+        /**
+         * Returns the cached value.
+         * 
+         * @return The hash or fingerprint.
+         */
+        long getValue() {
+            return value;
+        }
+        
+    }
+    
+    /**
+     * Combines a type tag and a value into a fingerprint.
+     * 
+     * @param tag The tag of the element type.
+     * @param value The value to mix into the fingerprint.
+     * 
+     * @return A well-distributed fingerprint.
+     */
+    static long fingerprint(int tag, long value) {
+        return mix(value + tag * FINGERPRINT_MULTIPLIER);
+    }
+    
+    /**
+     * Mixes the bits of the given value (the finalizer of MurmurHash3). This is a bijection, so different inputs
+     * give different outputs.
+     * 
+     * @param value The value to mix.
+     * 
+     * @return The mixed value.
+     */
+    static long mix(long value) {
+        long result = value;
+        result = (result ^ (result >>> 33)) * 0xFF51AFD7ED558CCDL;
+        result = (result ^ (result >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return result ^ (result >>> 33);
+    }
+    
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the elements of a large top-level list, or of a sequence of whitespace separated elements (such as
+ * newline-delimited JSON), to a {@link Subscriber} with back-pressure. Elements are only parsed when the subscriber
+ * requests them, so the subscriber controls how fast the input is read, and only a single element is kept in memory
+ * at a time.
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces have the same methods as their counterparts in
+ * <code>java.util.concurrent.Flow</code>, which is not available in Java 8. A <code>Flow.Subscriber</code> can be
+ * attached by wrapping it in a {@link Subscriber} that delegates all calls.
+ * <p>
+ * Elements are emitted synchronously on the thread that calls {@link Subscription#request(long)}. The parser is
+ * closed when the stream completes, fails, or is cancelled. An exception thrown by
+ * {@link Subscriber#onNext(JsonElement)} ends the stream and is passed to {@link Subscriber#onError(Throwable)}. A
+ * publisher can only be subscribed once.
+ *
+ * @author Adam
+ */
+public class JsonElementPublisher {
+    
+    /**
+     * Receives the elements of a {@link JsonElementPublisher}. Same as
+     * <code>java.util.concurrent.Flow.Subscriber</code>.
+     */
+    public interface Subscriber {
+        
+        /**
+         * Called once before any other method of this subscriber.
+         *
+         * @param subscription The subscription to request elements from. Not <code>null</code>.
+         */
+        public void onSubscribe(Subscription subscription);
+        
+        /**
+         * Called for each element. Never called more often than requested.
+         *
+         * @param element The next element. Not <code>null</code>.
+         */
+        public void onNext(JsonElement element);
+        
+        /**
+         * Called if parsing fails. No other methods are called afterwards.
+         *
+         * @param throwable The exception that ended the stream, e.g. the {@link ParsingException} or
+         *      {@link IOException} that occurred, or an exception thrown by {@link #onNext(JsonElement)}.
+         */
+        public void onError(Throwable throwable);
+        
+        /**
+         * Called after the last element. No other methods are called afterwards.
+         */
+        public void onComplete();
+        
+    }
+    
+    /**
+     * Links a {@link Subscriber} to a {@link JsonElementPublisher}. Same as
+     * <code>java.util.concurrent.Flow.Subscription</code>.
+     */
+    public interface Subscription {
+        
+        /**
+         * Requests the given number of additional elements. The elements are parsed and passed to
+         * {@link Subscriber#onNext(JsonElement)} before this method returns.
+         *
+         * @param count The number of additional elements. Must be positive; {@link Long#MAX_VALUE} means unbounded.
+         */
+        public void request(long count);
+        
+        /**
+         * Stops the publishing of elements and closes the parser. May be called from any thread; it does not wait
+         * for a running {@link #request(long)}, which stops before parsing the next element and then closes the
+         * parser.
+         */
+        public void cancel();
+        
+    }
+    
+    private JsonParser parser;
+    
+    private boolean sequence;
+    
+    private boolean subscribed;
+    
+    /**
+     * Creates a publisher for the given parser.
+     *
+     * @param parser The parser to read elements from. Not <code>null</code>. Must not be used otherwise.
+     * @param sequence Whether the input is a sequence of whitespace separated elements (<code>true</code>) or a
+     *      single list (<code>false</code>).
+     */
+    public JsonElementPublisher(JsonParser parser, boolean sequence) {
+        this.parser = Objects.requireNonNull(parser);
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Subscribes the given subscriber to this publisher. If this publisher has already been subscribed to, the
+     * subscriber is notified with an {@link IllegalStateException}.
+     *
+     * @param subscriber The subscriber. Not <code>null</code>.
+     */
+    public synchronized void subscribe(Subscriber subscriber) {
+        Objects.requireNonNull(subscriber);
+        
+        if (subscribed) {
+            subscriber.onSubscribe(new ParserSubscription(null));
+            subscriber.onError(new IllegalStateException("Publisher can only be subscribed once"));
+        } else {
+            subscribed = true;
+            subscriber.onSubscribe(new ParserSubscription(subscriber));
+        }
+    }
+    
+    /**
+     * The subscription that parses elements on demand. {@link #request(long)} calls are serialized, while
+     * {@link #cancel()} doesn't wait for a running emission loop, but makes it stop before the next element.
+     */
+    private class ParserSubscription implements Subscription {
+        
+        private Subscriber subscriber;
+        
+        private long demand;
+        
+        private volatile boolean emitting;
+        
+        private volatile boolean cancelled;
+        
+        private boolean done;
+        
+        private final AtomicBoolean parserClosed = new AtomicBoolean();
+        
+        /**
+         * Creates a subscription.
+         *
+         * @param subscriber The subscriber. <code>null</code> for a subscription that is already done.
+         */
+        ParserSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            this.done = subscriber == null;
+        }
+        
+        @Override
+        public synchronized void request(long count) {
+            if (!done && !cancelled) {
+                if (count <= 0) {
+                    fail(new IllegalArgumentException("Requested non-positive number of elements: " + count));
+                } else {
+                    demand += count;
+                    if (demand < 0) {
+                        demand = Long.MAX_VALUE;
+                    }
+                    // if called from onNext(), the running loop below handles the new demand
+                    if (!emitting) {
+                        emit();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Parses and emits elements until the demand is satisfied, the input is over, or this subscription is
+         * cancelled.
+         */
+        private void emit() {
+            // emitting is set before cancelled is checked, and cancel() sets cancelled before checking emitting;
+            // thus, either this loop sees the cancellation, or cancel() sees that no loop is running
+            emitting = true;
+            try {
+                while (demand > 0 && !done && !cancelled) {
+                    emitNext();
+                }
+            } finally {
+                emitting = false;
+                if (cancelled) {
+                    done = true;
+                    closeParser(null);
+                }
+            }
+        }
+        
+        /**
+         * Parses and emits the next element, or signals the end of the stream.
+         */
+        private void emitNext() {
+            JsonElement element = null;
+            try {
+                element = sequence ? parser.parseNextDocument() : parser.parseNextListElement();
+            } catch (ParsingException | IOException e) {
+                fail(e);
+            }
+            
+            if (!done && element == null) {
+                done = true;
+                IOException closeException = closeParser(null);
+                if (closeException != null) {
+                    subscriber.onError(closeException);
+                } else {
+                    subscriber.onComplete();
+                }
+                
+            } else if (!done) {
+                demand--;
+                // CHECKSTYLE:OFF // any exception of the subscriber must end the stream, so that the parser is closed
+                try {
+                    subscriber.onNext(element);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+                // CHECKSTYLE:ON
+            }
+        }
+        
+        /**
+         * Ends the stream with an error.
+         *
+         * @param cause The error to signal to the subscriber.
+         */
+        private void fail(Exception cause) {
+            done = true;
+            closeParser(cause);
+            subscriber.onError(cause);
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // a running emission loop closes the parser when it stops
+            if (!emitting) {
+                closeParser(null);
+            }
+        }
+        
+        /**
+         * Closes the parser, if it is not closed yet.
+         *
+         * @param cause The exception that caused the stream to end, if any. A failure to close the parser is added
+         *      as a suppressed exception to it.
+         *
+         * @return The exception thrown when closing the parser, or <code>null</code>.
+         */
+        private IOException closeParser(Exception cause) {
+            IOException result = null;
+            if (parserClosed.compareAndSet(false, true)) {
+                try {
+                    parser.close();
+                } catch (IOException e) {
+                    if (cause != null) {
+                        cause.addSuppressed(e);
+                    }
+                    result = e;
+                }
+            }
+            return result;
+        }
+        
+    }
+    
+}
@@ -29,11 +29,39 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
 
     private List<JsonElement> elements;
     
+    /**
+     * The cached result of {@link #hashCode()}; valid if its stamp equals the current modification stamp or
+     * is permanent.
+     */
+    private CachedHash cachedHash;
+    
+    /**
+     * The cached result of {@link #fingerprint()}; valid if its stamp equals the current modification stamp or
+     * is permanent.
+     */
+    private CachedHash cachedFingerprint;
+    
+    /**
+     * Whether the hash or fingerprint of this list has been computed, and thus may be cached by this list or a
+     * parent.
+     */
+    private boolean hashed;
+    
     /**
      * Creates an empty list.
      */
     public JsonList() {
-        this.elements = new ArrayList<>();
+        this(new ArrayList<>());
+    }
+    
+    /**
+     * Creates a list with the given backing list.
+     * 
+     * @param elements The list that stores the elements of this list. May be <code>null</code> for sub-classes that
+     *      override all methods accessing the elements.
+     */
+    JsonList(List<JsonElement> elements) {
+        this.elements = elements;
     }
     
     /**
@@ -43,6 +71,22 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
      */
     public void addElement(JsonElement element) {
         elements.add(Objects.requireNonNull(element));
+        modified();
+    }
+    
+    /**
+     * Inserts an element into the list. The element at the given index and all following elements move one to the
+     * right.
+     * 
+     * @param index The index to insert the element at. May be equal to the size of this list, to add the element to
+     *      the end.
+     * @param element The element to add. Not <code>null</code>.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public void addElement(int index, JsonElement element) throws IndexOutOfBoundsException {
+        elements.add(index, Objects.requireNonNull(element));
+        modified();
     }
     
     /**
@@ -55,6 +99,7 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
      */
     public void setElement(int index, JsonElement element) throws IndexOutOfBoundsException {
         elements.set(index, Objects.requireNonNull(element));
+        modified();
     }
     
     /**
@@ -66,6 +111,7 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
      */
     public void removeElement(int index) throws IndexOutOfBoundsException {
         elements.remove(index);
+        modified();
     }
     
     /**
@@ -92,30 +138,41 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
     
     @Override
     public Iterator<JsonElement> iterator() {
-        return elements.iterator();
-    }
-    
-    @Override
-    public String toString() {
-        StringBuilder result = new StringBuilder();
-        
-        if (elements.isEmpty()) {
-            result.append("[]");
+        Iterator<JsonElement> iterator = elements.iterator();
+        return new Iterator<JsonElement>() {
             
-        } else {
-            result.append("[ ");
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
             
-            for (int i = 0; i < elements.size(); i++) {
-                result.append(elements.get(i).toString());
-                if (i != elements.size() - 1) {
-                    result.append(", ");
-                }
+            @Override
+            public JsonElement next() {
+                return iterator.next();
             }
             
-            result.append(" ]");
-        }
-        
-        return result.toString();
+            @Override
+            public void remove() {
+                iterator.remove();
+                modified();
+            }
+            
+        };
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The copy has the capacity for exactly the current number of elements.
+     */
+    @Override
+    public JsonList deepCopy() {
+        return (JsonList) copyTree(this);
+    }
+    
+    @Override
+    public String toString() {
+        return JsonSerializer.toJson(this);
     }
 
     @Override
@@ -123,19 +180,116 @@ public class JsonList extends JsonElement implements Iterable<JsonElement> {
         return visitor.visitList(this);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Short-circuits if the other list is the same instance, or if both lists have cached hashes that differ.
+     */
     @Override
     public boolean equals(Object other) {
         boolean equal = false;
-        if (other instanceof JsonList) {
+        if (other == this) {
+            equal = true;
+            
+        } else if (other instanceof JsonList) {
             JsonList o = (JsonList) other;
-            equal = this.elements.equals(o.elements);
+            equal = getSize() == o.getSize() && !cachedHashesDiffer(o) && elementsEqual(o);
+        }
+        return equal;
+    }
+    
+    /**
+     * Checks whether all elements of this list are equal to the elements of the other list.
+     * 
+     * @param other The other list, with the same size as this list.
+     * 
+     * @return Whether the lists have equal elements.
+     */
+    private boolean elementsEqual(JsonList other) {
+        boolean equal = true;
+        Iterator<JsonElement> otherElements = other.iterator();
+        for (JsonElement element : this) {
+            if (!element.equals(otherElements.next())) {
+                equal = false;
+                break;
+            }
         }
         return equal;
     }
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        long stamp = isPersistent() ? CachedHash.PERMANENT : getModificationStamp();
+        CachedHash cached = cachedHash;
+        if (!CachedHash.isValid(cached, stamp)) {
+            // same as List.hashCode()
+            int hash = 1;
+            for (JsonElement element : this) {
+                hash = 31 * hash + element.hashCode();
+            }
+            cached = new CachedHash(stamp, hash);
+            cachedHash = cached;
+        }
+        if (!hashed) {
+            // only written once, so that concurrent hashing of an unmodified list doesn't contend on this field
+            hashed = true;
+        }
+        return (int) cached.getValue();
     }
     
+    @Override
+    public long fingerprint() {
+        long stamp = isPersistent() ? CachedHash.PERMANENT : getModificationStamp();
+        CachedHash cached = cachedFingerprint;
+        if (!CachedHash.isValid(cached, stamp)) {
+            long result = getSize();
+            for (JsonElement element : this) {
+                result = result * FINGERPRINT_MULTIPLIER + element.fingerprint();
+            }
+            cached = new CachedHash(stamp, fingerprint(FINGERPRINT_LIST, result));
+            cachedFingerprint = cached;
+        }
+        if (!hashed) {
+            hashed = true;
+        }
+        return cached.getValue();
+    }
+    
+    /**
+     * Returns whether this list and all of its children can never be modified. In this case, the hashes are cached
+     * permanently.
+     * 
+     * @return Whether this is a persistent list.
+     */
+    boolean isPersistent() {
+        return false;
+    }
+    
+    /**
+     * Must be called after each modification of this list. Invalidates cached hashes, if necessary.
+     */
+    private void modified() {
+        if (hashed) {
+            hashed = false;
+            invalidateCachedHashes();
+        }
+    }
+    
+    /**
+     * Checks whether both this and the other list have valid cached hashes that show that they are not equal.
+     * 
+     * @param other The other list.
+     * 
+     * @return <code>true</code> if the lists are definitely not equal, <code>false</code> if they may be equal.
+     */
+    private boolean cachedHashesDiffer(JsonList other) {
+        long stamp = getModificationStamp();
+        boolean result = CachedHash.differ(cachedHash, other.cachedHash, stamp);
+        if (!result) {
+            result = CachedHash.differ(cachedFingerprint, other.cachedFingerprint, stamp);
+        }
+        return result;
+    }
+    
+    
 }
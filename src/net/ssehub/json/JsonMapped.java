@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the {@link JsonCodecProcessor} generates a {@link JsonCodec} at compile time. The codec is
+ * called <code>&lt;ClassName&gt;JsonCodec</code> (nested class names are joined with <code>_</code>), is placed in
+ * the same package, and is available via its <code>INSTANCE</code> constant.
+ * <p>
+ * The annotated class needs a non-private constructor without parameters. All non-static, non-transient fields of
+ * the class and its superclasses are mapped to object members, named like the field or as specified by
+ * {@link JsonKey}. Fields are accessed directly if they are accessible from the package of the class; otherwise,
+ * a getter (<code>getX()</code> or <code>isX()</code>) and setter (<code>setX()</code>) are required. Final fields
+ * are only written; their members are skipped when reading.
+ * <p>
+ * Supported field types are primitives (except <code>char</code>) and their wrappers, {@link String},
+ * {@link Number}, enums, {@link JsonElement}, other classes annotated with {@link JsonMapped}, and
+ * {@link java.util.List}s and {@link java.util.Map}s with {@link String} keys of these types. Unknown members are
+ * skipped when reading; missing members leave the field at its initial value.
+ *
+ * @author Adam
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonMapped {
+
+}
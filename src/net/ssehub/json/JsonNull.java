@@ -55,4 +55,19 @@ public class JsonNull extends JsonValue<JsonNull> {
         return 13;
     }
 
+    @Override
+    public long fingerprint() {
+        return fingerprint(FINGERPRINT_NULL, 0);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns this instance, as null is immutable.
+     */
+    @Override
+    public JsonNull deepCopy() {
+        return this;
+    }
+    
 }
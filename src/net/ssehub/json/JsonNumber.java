@@ -15,7 +15,10 @@
  */
 package net.ssehub.json;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A number value of JSON.
@@ -49,17 +52,46 @@ public class JsonNumber extends JsonValue<Number> {
      * @return The properly "escaped" number. Never <code>null</code>.
      */
     public static String jsonEscape(Number number) {
-        String result;
-        
-        double dValue = number.doubleValue();
-        if (Double.isInfinite(dValue) || Double.isNaN(dValue)) {
-            // infinity and NaN are not allowed in JSON
-            result = "null";
+        StringBuilder result = new StringBuilder(JsonNumberFormatter.MAX_LENGTH);
+        try {
+            jsonEscape(number, result);
+        } catch (IOException e) {
+            // can't happen, as StringBuilder doesn't throw
+            throw new AssertionError(e);
+        }
+        return result.toString();
+    }
+    
+    /**
+     * "Escapes" the given number so that it is JSON compatible, and writes the result to the given target. This
+     * method handles Infinity and NaN by writing <code>null</code>.
+     * <p>
+     * {@link Integer}s, {@link Long}s, {@link Short}s and {@link Byte}s are written digit by digit, {@link Double}s
+     * with the shortest decimal representation that parses back to the same value; neither creates an intermediate
+     * {@link String}. Other {@link Number} types are written with their {@link Object#toString()} method.
+     * 
+     * @param number The number to "escape". Not <code>null</code>.
+     * @param target The target to append the number to. Not <code>null</code>.
+     * 
+     * @throws IOException If appending to the target fails.
+     */
+    public static void jsonEscape(Number number, Appendable target) throws IOException {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            char[] buffer = new char[JsonNumberFormatter.MAX_LENGTH];
+            JsonNumberFormatter.append(buffer, JsonNumberFormatter.formatLong(number.longValue(), buffer), target);
+            
         } else {
-            result = number.toString();
+            double dValue = number.doubleValue();
+            if (Double.isInfinite(dValue) || Double.isNaN(dValue)) {
+                // infinity and NaN are not allowed in JSON
+                target.append("null");
+            } else if (number instanceof Double) {
+                char[] buffer = new char[JsonNumberFormatter.MAX_LENGTH];
+                JsonNumberFormatter.append(buffer, JsonNumberFormatter.formatDouble(dValue, buffer), target);
+            } else {
+                target.append(number.toString());
+            }
         }
-        
-        return result;
     }
     
     @Override
@@ -87,4 +119,57 @@ public class JsonNumber extends JsonValue<Number> {
         return value.hashCode();
     }
     
+    @Override
+    public long fingerprint() {
+        long result;
+        if (value instanceof Integer) {
+            result = fingerprint(FINGERPRINT_INTEGER, value.intValue());
+        } else if (value instanceof Long) {
+            result = fingerprint(FINGERPRINT_LONG, value.longValue());
+        } else if (value instanceof Double) {
+            result = fingerprint(FINGERPRINT_DOUBLE, Double.doubleToLongBits(value.doubleValue()));
+        } else if (value instanceof Float) {
+            result = fingerprint(FINGERPRINT_FLOAT, Float.floatToIntBits(value.floatValue()));
+        } else {
+            // equals() of other Number types, e.g. BigDecimal, is usually consistent with their string representation
+            result = fingerprint(FINGERPRINT_OTHER_NUMBER,
+                    JsonString.fingerprint(value.getClass().getName()) * FINGERPRINT_MULTIPLIER
+                    + JsonString.fingerprint(value.toString()));
+        }
+        return result;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns this instance if the value is immutable, which is the case for all numbers created by the parsers.
+     * Only {@link AtomicInteger} and {@link AtomicLong} values are copied; other mutable {@link Number}s are shared.
+     */
+    @Override
+    public JsonNumber deepCopy() {
+        JsonNumber result = this;
+        if (value instanceof AtomicInteger) {
+            result = new JsonNumber(new AtomicInteger(((AtomicInteger) value).get()));
+        } else if (value instanceof AtomicLong) {
+            result = new JsonNumber(new AtomicLong(((AtomicLong) value).get()));
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given number has no fractional part.
+     * 
+     * @param number The number.
+     * 
+     * @return Whether the number is integral.
+     */
+    static boolean isIntegral(Number number) {
+        boolean result = true;
+        if (number instanceof Double) {
+            double value = (double) number;
+            result = !Double.isInfinite(value) && value == Math.rint(value);
+        }
+        return result;
+    }
+    
 }
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+
+/**
+ * Formats integers and doubles into a <code>char[]</code>, without creating intermediate {@link String}s.
+ * <p>
+ * Doubles are formatted with the Schubfach algorithm by Raffaello Giulietti, which finds the shortest decimal that
+ * rounds back to the same double. The output uses the same layout as {@link Double#toString(double)}: plain notation
+ * for magnitudes from 10<sup>-3</sup> (inclusive) to 10<sup>7</sup> (exclusive), computerized scientific notation
+ * otherwise. Unlike {@link Double#toString(double)} before Java 19, the digits are always the shortest ones.
+ *
+ * @see <a href="https://drive.google.com/file/d/1IEeATSVnEE6TkrHlCYNY2GjaraBjOT4f">The Schubfach way to render
+ *      doubles</a>
+ *
+ * @author Adam
+ */
+final class JsonNumberFormatter {
+    
+    /**
+     * The minimum size of the <code>char[]</code> passed to the format methods.
+     */
+    static final int MAX_LENGTH = 32;
+    
+    private static final int PRECISION = 53;
+    
+    private static final int Q_MIN = -1074;
+    
+    private static final long C_MIN = 1L << (PRECISION - 1);
+    
+    private static final int BQ_MASK = 0x7FF;
+    
+    private static final long T_MASK = C_MIN - 1;
+    
+    private static final long C_TINY = 3;
+    
+    private static final int K_MIN = -324;
+    
+    private static final int K_MAX = 292;
+    
+    private static final long MASK_63 = (1L << 63) - 1;
+    
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+        100000000L};
+    
+    /**
+     * The tens digit of the numbers 0 to 99.
+     */
+    private static final char[] DIGIT_TENS = new char[100];
+    
+    /**
+     * The ones digit of the numbers 0 to 99.
+     */
+    private static final char[] DIGIT_ONES = new char[100];
+    
+    /**
+     * Upper approximations of the powers of ten 10<sup>-k</sup> for k in <code>[K_MIN, K_MAX]</code>, scaled to 126
+     * bits and split into the upper 63 bits (even indices) and lower 63 bits (odd indices).
+     */
+    private static final long[] G = createTable();
+    
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+    
+    /**
+     * No instances.
+     */
+    private JsonNumberFormatter() {
+    }
+    
+    /**
+     * Computes the {@link #G} table.
+     *
+     * @return The table.
+     */
+    private static long[] createTable() {
+        long[] result = new long[(K_MAX - K_MIN + 1) * 2];
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            // 10^-k = beta * 2^r with 2^125 <= beta < 2^126; g = floor(beta) + 1
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger power = BigInteger.TEN.pow(-k);
+                int shift = 126 - power.bitLength();
+                beta = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                BigInteger power = BigInteger.TEN.pow(k);
+                beta = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(power);
+            }
+            BigInteger g = beta.add(BigInteger.ONE);
+            
+            result[(k - K_MIN) * 2] = g.shiftRight(63).longValue();
+            result[(k - K_MIN) * 2 + 1] = g.and(mask).longValue();
+        }
+        return result;
+    }
+    
+    /**
+     * Formats the given integer.
+     *
+     * @param value The value to format.
+     * @param buffer The buffer to write to, with at least {@link #MAX_LENGTH} characters.
+     *
+     * @return The number of characters written to the start of the buffer.
+     */
+    static int formatLong(long value, char[] buffer) {
+        // work with the negative value, so that Long.MIN_VALUE needs no special treatment
+        int start = writeDigits(value < 0 ? value : -value, buffer, MAX_LENGTH);
+        if (value < 0) {
+            buffer[--start] = '-';
+        }
+        int length = MAX_LENGTH - start;
+        System.arraycopy(buffer, start, buffer, 0, length);
+        return length;
+    }
+    
+    /**
+     * Formats the given finite double with the shortest decimal that uniquely identifies it.
+     *
+     * @param value The value to format. Must be finite.
+     * @param buffer The buffer to write to, with at least {@link #MAX_LENGTH} characters.
+     *
+     * @return The number of characters written to the start of the buffer.
+     */
+    static int formatDouble(double value, char[] buffer) {
+        long bits = Double.doubleToRawLongBits(value);
+        long significand = bits & T_MASK;
+        int biasedExponent = (int) (bits >>> (PRECISION - 1)) & BQ_MASK;
+        
+        int position = 0;
+        if (bits < 0) {
+            buffer[position++] = '-';
+        }
+        
+        int length;
+        if (biasedExponent != 0) {
+            // normal value
+            int mq = -Q_MIN + 1 - biasedExponent;
+            long c = C_MIN | significand;
+            if (mq > 0 && mq < PRECISION && ((c >> mq) << mq) == c) {
+                // fast path for integers
+                length = layout(c >> mq, 0, buffer, position);
+            } else {
+                length = shortestDecimal(-mq, c, 0, buffer, position);
+            }
+        } else if (significand != 0) {
+            // subnormal value
+            length = significand < C_TINY
+                    ? shortestDecimal(Q_MIN, 10 * significand, -1, buffer, position)
+                    : shortestDecimal(Q_MIN, significand, 0, buffer, position);
+        } else {
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            buffer[position++] = '0';
+            length = position;
+        }
+        return length;
+    }
+    
+    /**
+     * Computes the shortest decimal in the rounding interval of <code>c * 2^q</code>. This is the core of the
+     * Schubfach algorithm.
+     *
+     * @param binaryExponent The binary exponent q.
+     * @param binarySignificand The binary significand c.
+     * @param dk The correction of the decimal exponent (-1 for tiny subnormals, which have been scaled by 10).
+     * @param buffer The buffer to write the decimal to.
+     * @param start The position in the buffer to start at.
+     *
+     * @return The position after the last written character.
+     */
+    private static int shortestDecimal(int binaryExponent, long binarySignificand, int dk, char[] buffer, int start) {
+        int q = binaryExponent;
+        long c = binarySignificand;
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // the interval is asymmetric at powers of two
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        
+        long g1 = G[(k - K_MIN) * 2];
+        long g0 = G[(k - K_MIN) * 2 + 1];
+        
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+        
+        long s = vb >> 2;
+        long result = -1;
+        // tiny subnormals (dk = -1) always have s < 100
+        if (s >= 100) {
+            // try a decimal with one digit less
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                result = upin ? sp10 : tp10;
+            }
+        }
+        
+        if (result == -1) {
+            long t = s + 1;
+            boolean uin = vbl + out <= s << 2;
+            boolean win = (t << 2) + out <= vbr;
+            if (uin != win) {
+                result = uin ? s : t;
+            } else {
+                // both candidates are in the interval, take the closer one
+                long cmp = vb - ((s + t) << 1);
+                result = cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t;
+            }
+        }
+        return layout(result, k + dk, buffer, start);
+    }
+    
+    /**
+     * Computes <code>g * cp / 2^127</code>, rounded to odd.
+     *
+     * @param g1 The upper 63 bits of g.
+     * @param g0 The lower 63 bits of g.
+     * @param cp The factor.
+     *
+     * @return The rounded product.
+     */
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+    
+    /**
+     * Returns the upper 64 bits of the 128 bit product of two signed longs. Same as <code>Math.multiplyHigh()</code>,
+     * which is not available in Java 8.
+     *
+     * @param x The first factor.
+     * @param y The second factor.
+     *
+     * @return The upper 64 bits of the product.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+        long z0 = t >> 32;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+    
+    /**
+     * Computes <code>floor(log10(2^e))</code>, for <code>|e| &lt;= 5456721</code>.
+     *
+     * @param exponent The exponent e.
+     *
+     * @return The result.
+     */
+    private static int flog10pow2(int exponent) {
+        return (int) (exponent * 661_971_961_083L >> 41);
+    }
+    
+    /**
+     * Computes <code>floor(log10(3/4 * 2^e))</code>, for <code>|e| &lt;= 2620169</code>.
+     *
+     * @param exponent The exponent e.
+     *
+     * @return The result.
+     */
+    private static int flog10threeQuartersPow2(int exponent) {
+        return (int) (exponent * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+    
+    /**
+     * Computes <code>floor(log2(10^e))</code>, for <code>|e| &lt;= 1838394</code>.
+     *
+     * @param exponent The exponent e.
+     *
+     * @return The result.
+     */
+    private static int flog2pow10(int exponent) {
+        return (int) (exponent * 913_124_641_741L >> 38);
+    }
+    
+    /**
+     * Writes the decimal <code>f * 10^e</code> in the layout of {@link Double#toString(double)}.
+     *
+     * @param significand The decimal significand <code>f</code>, not zero.
+     * @param exponent The decimal exponent <code>e</code>.
+     * @param buffer The buffer to write to.
+     * @param start The position in the buffer to start at.
+     *
+     * @return The position after the last written character.
+     */
+    private static int layout(long significand, int exponent, char[] buffer, int start) {
+        // remove trailing zeros, in big steps first
+        long digits = significand;
+        int decimalExponent = exponent;
+        for (int step = 3; step >= 0; step--) {
+            long divisor = POWERS_OF_TEN[1 << step];
+            while (digits % divisor == 0) {
+                digits /= divisor;
+                decimalExponent += 1 << step;
+            }
+        }
+        
+        // write the digits to the end of the buffer first, then move them into place
+        int digitsStart = writeDigits(-digits, buffer, MAX_LENGTH);
+        int numDigits = MAX_LENGTH - digitsStart;
+        int scientificExponent = decimalExponent + numDigits - 1;
+        
+        int position = start;
+        if (scientificExponent >= 0 && scientificExponent < 7) {
+            // plain, with the decimal point inside or after the digits
+            int numIntegerDigits = scientificExponent + 1;
+            for (int i = 0; i < numIntegerDigits; i++) {
+                buffer[position++] = i < numDigits ? buffer[digitsStart + i] : '0';
+            }
+            buffer[position++] = '.';
+            position = writeFraction(buffer, position, digitsStart + numIntegerDigits);
+            
+        } else if (scientificExponent < 0 && scientificExponent >= -3) {
+            // plain, with leading zeros
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            for (int i = -1; i > scientificExponent; i--) {
+                buffer[position++] = '0';
+            }
+            System.arraycopy(buffer, digitsStart, buffer, position, numDigits);
+            position += numDigits;
+            
+        } else {
+            // computerized scientific notation
+            buffer[position++] = buffer[digitsStart];
+            buffer[position++] = '.';
+            position = writeFraction(buffer, position, digitsStart + 1);
+            buffer[position++] = 'E';
+            position = writeExponent(scientificExponent, buffer, position);
+        }
+        return position;
+    }
+    
+    /**
+     * Moves the fraction digits into place, or writes a single zero if there are none.
+     *
+     * @param buffer The buffer.
+     * @param position The position to write to.
+     * @param fractionStart The position of the first fraction digit; {@link #MAX_LENGTH} or more if there are none.
+     *
+     * @return The position after the last written character.
+     */
+    private static int writeFraction(char[] buffer, int position, int fractionStart) {
+        int result;
+        if (fractionStart >= MAX_LENGTH) {
+            buffer[position] = '0';
+            result = position + 1;
+        } else {
+            System.arraycopy(buffer, fractionStart, buffer, position, MAX_LENGTH - fractionStart);
+            result = position + MAX_LENGTH - fractionStart;
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the digits of the given value so that they end right before the given position. Two digits are
+     * computed per division.
+     *
+     * @param negativeValue The negated value to write, not positive.
+     * @param buffer The buffer to write to.
+     * @param end The position after the last digit.
+     *
+     * @return The position of the first digit.
+     */
+    private static int writeDigits(long negativeValue, char[] buffer, int end) {
+        int position = end;
+        long remaining = negativeValue;
+        while (remaining <= -100) {
+            long quotient = remaining / 100;
+            int pair = (int) (quotient * 100 - remaining);
+            buffer[--position] = DIGIT_ONES[pair];
+            buffer[--position] = DIGIT_TENS[pair];
+            remaining = quotient;
+        }
+        int last = (int) -remaining;
+        buffer[--position] = DIGIT_ONES[last];
+        if (last >= 10) {
+            buffer[--position] = DIGIT_TENS[last];
+        }
+        return position;
+    }
+    
+    /**
+     * Writes the exponent of the scientific notation.
+     *
+     * @param exponent The exponent, between -999 and 999.
+     * @param buffer The buffer to write to.
+     * @param start The position to start at.
+     *
+     * @return The position after the last written character.
+     */
+    private static int writeExponent(int exponent, char[] buffer, int start) {
+        int position = start;
+        if (exponent < 0) {
+            buffer[position++] = '-';
+        }
+        int absolute = Math.abs(exponent);
+        if (absolute >= 100) {
+            buffer[position++] = (char) ('0' + absolute / 100);
+        }
+        if (absolute >= 10) {
+            buffer[position++] = (char) ('0' + absolute / 10 % 10);
+        }
+        buffer[position++] = (char) ('0' + absolute % 10);
+        return position;
+    }
+    
+    /**
+     * Appends the first characters of the given buffer to the given target. Uses the bulk methods of
+     * {@link StringBuilder} and {@link Writer}, if possible.
+     *
+     * @param buffer The characters to append.
+     * @param length The number of characters to append.
+     * @param target The target to append to.
+     *
+     * @throws IOException If appending to the target fails.
+     */
+    static void append(char[] buffer, int length, Appendable target) throws IOException {
+        if (target instanceof StringBuilder) {
+            ((StringBuilder) target).append(buffer, 0, length);
+        } else if (target instanceof Writer) {
+            ((Writer) target).write(buffer, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                target.append(buffer[i]);
+            }
+        }
+    }
+    
+}
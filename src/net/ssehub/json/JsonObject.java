@@ -15,6 +15,7 @@
  */
 package net.ssehub.json;
 
+import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -30,11 +31,39 @@ public class JsonObject extends JsonElement implements Iterable<Map.Entry<String
 
     private Map<String, JsonElement> elements;
     
+    /**
+     * The cached result of {@link #hashCode()}; valid if its stamp equals the current modification stamp or
+     * is permanent.
+     */
+    private CachedHash cachedHash;
+    
+    /**
+     * The cached result of {@link #fingerprint()}; valid if its stamp equals the current modification stamp or
+     * is permanent.
+     */
+    private CachedHash cachedFingerprint;
+    
+    /**
+     * Whether the hash or fingerprint of this object has been computed, and thus may be cached by this object or a
+     * parent.
+     */
+    private boolean hashed;
+    
     /**
      * Creates an empty {@link JsonObject}.
      */
     public JsonObject() {
-        this.elements = new LinkedHashMap<>();
+        this(new LinkedHashMap<>());
+    }
+    
+    /**
+     * Creates an object with the given backing map.
+     * 
+     * @param elements The map that stores the members of this object. May be <code>null</code> for sub-classes that
+     *      override all methods accessing the members.
+     */
+    JsonObject(Map<String, JsonElement> elements) {
+        this.elements = elements;
     }
     
     /**
@@ -45,6 +74,25 @@ public class JsonObject extends JsonElement implements Iterable<Map.Entry<String
      */
     public void putElement(String key, JsonElement element) {
         elements.put(Objects.requireNonNull(key), Objects.requireNonNull(element));
+        modified();
+    }
+    
+    /**
+     * Puts an element into the map, unless an element with the same key is already present. This needs only a
+     * single lookup, so that the parser can detect duplicate keys without an extra pass.
+     * 
+     * @param key The key of the element. Not <code>null</code>.
+     * @param element The element to add. Not <code>null</code>.
+     * 
+     * @return The element that is already present with the given key, or <code>null</code> if the given element has
+     *      been added.
+     */
+    JsonElement putElementIfAbsent(String key, JsonElement element) {
+        JsonElement result = elements.putIfAbsent(Objects.requireNonNull(key), Objects.requireNonNull(element));
+        if (result == null) {
+            modified();
+        }
+        return result;
     }
     
     /**
@@ -218,7 +266,9 @@ public class JsonObject extends JsonElement implements Iterable<Map.Entry<String
      * @param key The key of the element. Not <code>null</code>.
      */
     public void removeElement(String key) {
-        elements.remove(key);
+        if (elements.remove(key) != null) {
+            modified();
+        }
     }
     
     /**
@@ -230,35 +280,58 @@ public class JsonObject extends JsonElement implements Iterable<Map.Entry<String
         return elements.size();
     }
     
-    @Override
-    public Iterator<Map.Entry<String, JsonElement>> iterator() {
-        return elements.entrySet().iterator();
+    /**
+     * Returns the members of this object, without wrapping them. Must only be used for reading.
+     * 
+     * @return The members of this object.
+     */
+    Iterable<Map.Entry<String, JsonElement>> members() {
+        return elements.entrySet();
     }
     
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned entries are read-only, i.e. {@link Map.Entry#setValue(Object)} is not supported; use
+     * {@link #putElement(String, JsonElement)} instead. {@link Iterator#remove()} is supported.
+     */
     @Override
-    public String toString() {
-        StringBuilder result = new StringBuilder();
-        
-        
-        if (!elements.isEmpty()) {
-            result.append("{ ");
+    public Iterator<Map.Entry<String, JsonElement>> iterator() {
+        Iterator<Map.Entry<String, JsonElement>> entries = elements.entrySet().iterator();
+        return new Iterator<Map.Entry<String, JsonElement>>() {
             
-            for (Map.Entry<String, JsonElement> entry : this) {
-                result.append('"')
-                        .append(entry.getKey())
-                        .append("\": ")
-                        .append(entry.getValue().toString())
-                        .append(", ");
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
             }
-            result.delete(result.length() - 2, result.length()); // remvoe trailing ", "
             
-            result.append(" }");
+            @Override
+            public Map.Entry<String, JsonElement> next() {
+                return new AbstractMap.SimpleImmutableEntry<>(entries.next());
+            }
             
-        } else {
-            result.append("{}");
-        }
-        
-        return result.toString();
+            @Override
+            public void remove() {
+                entries.remove();
+                modified();
+            }
+            
+        };
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The copy has the capacity for exactly the current number of elements.
+     */
+    @Override
+    public JsonObject deepCopy() {
+        return (JsonObject) copyTree(this);
+    }
+    
+    @Override
+    public String toString() {
+        return JsonSerializer.toJson(this);
     }
 
     @Override
@@ -266,19 +339,117 @@ public class JsonObject extends JsonElement implements Iterable<Map.Entry<String
         return visitor.visitObject(this);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Short-circuits if the other object is the same instance, or if both objects have cached hashes that differ.
+     */
     @Override
     public boolean equals(Object other) {
         boolean equal = false;
-        if (other instanceof JsonObject) {
+        if (other == this) {
+            equal = true;
+            
+        } else if (other instanceof JsonObject) {
             JsonObject o = (JsonObject) other;
-            equal = this.elements.equals(o.elements);
+            equal = getSize() == o.getSize() && !cachedHashesDiffer(o) && membersEqual(o);
+        }
+        return equal;
+    }
+    
+    /**
+     * Checks whether all members of this object are equal to the members with the same key in the other object.
+     * 
+     * @param other The other object, with the same size as this object.
+     * 
+     * @return Whether the objects have equal members.
+     */
+    private boolean membersEqual(JsonObject other) {
+        boolean equal = true;
+        for (Map.Entry<String, JsonElement> member : members()) {
+            if (!member.getValue().equals(other.getElement(member.getKey()))) {
+                equal = false;
+                break;
+            }
         }
         return equal;
     }
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        long stamp = isPersistent() ? CachedHash.PERMANENT : getModificationStamp();
+        CachedHash cached = cachedHash;
+        if (!CachedHash.isValid(cached, stamp)) {
+            // same as Map.hashCode()
+            int hash = 0;
+            for (Map.Entry<String, JsonElement> member : members()) {
+                hash += member.getKey().hashCode() ^ member.getValue().hashCode();
+            }
+            cached = new CachedHash(stamp, hash);
+            cachedHash = cached;
+        }
+        if (!hashed) {
+            // only written once, so that concurrent hashing of an unmodified object doesn't contend on this field
+            hashed = true;
+        }
+        return (int) cached.getValue();
+    }
+    
+    @Override
+    public long fingerprint() {
+        long stamp = isPersistent() ? CachedHash.PERMANENT : getModificationStamp();
+        CachedHash cached = cachedFingerprint;
+        if (!CachedHash.isValid(cached, stamp)) {
+            // the order of members is not relevant for equality, so sum up the fingerprints of the members
+            long sum = 0;
+            for (Map.Entry<String, JsonElement> member : members()) {
+                sum += mix(JsonString.fingerprint(member.getKey())
+                        + member.getValue().fingerprint() * FINGERPRINT_MULTIPLIER);
+            }
+            cached = new CachedHash(stamp, fingerprint(FINGERPRINT_OBJECT, sum + getSize()));
+            cachedFingerprint = cached;
+        }
+        if (!hashed) {
+            hashed = true;
+        }
+        return cached.getValue();
+    }
+    
+    /**
+     * Returns whether this object and all of its children can never be modified. In this case, the hashes are cached
+     * permanently.
+     * 
+     * @return Whether this is a persistent object.
+     */
+    boolean isPersistent() {
+        return false;
+    }
+    
+    /**
+     * Must be called after each modification of this object. Invalidates cached hashes, if necessary.
+     */
+    private void modified() {
+        if (hashed) {
+            hashed = false;
+            invalidateCachedHashes();
+        }
     }
     
+    /**
+     * Checks whether both this and the other object have valid cached hashes that show that they are not equal.
+     * 
+     * @param other The other object.
+     * 
+     * @return <code>true</code> if the objects are definitely not equal, <code>false</code> if they may be equal.
+     */
+    private boolean cachedHashesDiffer(JsonObject other) {
+        long stamp = getModificationStamp();
+        boolean result = CachedHash.differ(cachedHash, other.cachedHash, stamp);
+        if (!result) {
+            result = CachedHash.differ(cachedFingerprint, other.cachedFingerprint, stamp);
+        }
+        return result;
+    }
+    
+    
 }
@@ -20,9 +20,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.nio.charset.CharacterCodingException;
 import java.io.Reader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+import net.ssehub.json.ParserOptions.DuplicateKeyPolicy;
+import net.ssehub.json.ParserOptions.SyntaxExtension;
 
 /**
  * A parser to parse an input stream of JSON.
@@ -33,25 +42,142 @@ import java.nio.charset.StandardCharsets;
  */
 public class JsonParser implements Closeable {
     
-    private static final int MAX_NESTING_DEPTH = 1200;
-
-    private LineNumberReader in;
+    private static final int BUFFER_SIZE = 8192;
+    
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+    
+    private Reader in;
+    
+    private ParserOptions options;
+    
+    /**
+     * Whether {@link SyntaxExtension#COMMENTS} is enabled; cached, since it is checked after every whitespace.
+     */
+    private final boolean allowComments;
+    
+    /**
+     * Whether {@link SyntaxExtension#TRAILING_COMMAS} is enabled; cached, since it is checked after every ','.
+     */
+    private final boolean allowTrailingCommas;
+    
+    /**
+     * Whether {@link SyntaxExtension#NON_FINITE_NUMBERS} or {@link SyntaxExtension#HEX_NUMBERS} is enabled; cached,
+     * since it is checked for every number.
+     */
+    private final boolean allowNumberExtensions;
+    
+    /**
+     * The {@link ParserOptions#getDuplicateKeyPolicy()}; cached, since it is checked for every object member.
+     */
+    private final DuplicateKeyPolicy duplicateKeyPolicy;
+    
+    /**
+     * The lists that have been created for {@link DuplicateKeyPolicy#COLLECT}, to distinguish them from lists in the
+     * input. Compared by identity; <code>null</code> until the first duplicate key is collected.
+     */
+    private Set<JsonList> collectedLists;
+    
+    private final char[] buffer = new char[BUFFER_SIZE];
     
     /**
-     * Maybe <code>null</code>.
+     * The index of the next character to read in {@link #buffer}.
      */
-    private Integer peek;
+    private int position;
+    
+    /**
+     * The number of valid characters in {@link #buffer}.
+     */
+    private int limit;
+    
+    /**
+     * Whether {@link #read()} has reached the end of the input. Errors found by reading are then positioned at the
+     * end of the input, instead of at the last read character.
+     */
+    private boolean endOfInputRead;
+    
+    /**
+     * The offset in the input of the first character in {@link #buffer}.
+     */
+    private long bufferOffset;
+    
+    /**
+     * The number of line breaks in the input before {@link #buffer}. Line breaks are only counted when the buffer is
+     * refilled, or when an exception is created, so that reading a character does not pay for it.
+     */
+    private long linesBeforeBuffer;
+    
+    /**
+     * The offset in the input of the start of the line that the first character in {@link #buffer} belongs to.
+     */
+    private long lineStartBeforeBuffer;
+    
+    /**
+     * The character in the input before the first character in {@link #buffer}; -1 if there is none.
+     */
+    private int charBeforeBuffer = -1;
     
     private int currentNestingDepth;
+    
+    private long elementCount;
+    
+    private int currentNumberLength;
+    
+    /**
+     * The number of elements read so far by {@link #parseNextListElement()}; -1 if the list has not been started yet.
+     */
+    private int topLevelListSize = -1;
+    
+    private boolean topLevelListEnded;
+    
+    /**
+     * Whether the last read character was inside a string, i.e. an error at this point occurred inside a string.
+     */
+    private boolean inString;
+    
+    /**
+     * Whether a limit of the {@link ParserOptions} has been exceeded. Such errors are never recovered from.
+     */
+    private boolean limitExceeded;
+    
+    private final List<ParsingException> diagnostics = new ArrayList<>();
+    
+    private ParseListener parseListener;
+    
+    /**
+     * The metrics of the current parsing call; <code>null</code> if no {@link ParseListener} is set, so that
+     * collecting metrics costs only a <code>null</code> check when it is disabled.
+     */
+    private ParseMetrics metrics;
+    
+    private long metricsStartNanos;
+    
+    private long metricsStartLength;
 
     /**
-     * Creates a parser for the given input stream. Internally, the stream will be wrapped in a
-     * {@link java.io.BufferedReader}.
+     * Creates a parser for the given input stream. The stream is read in blocks into an internal buffer, so it does
+     * not need to be buffered already.
      * 
      * @param in The input stream. Not <code>null</code>.
      */
     public JsonParser(Reader in) {
-        this.in = new LineNumberReader(in);
+        this(in, new ParserOptions());
+    }
+    
+    /**
+     * Creates a parser for the given input stream. The stream is read in blocks into an internal buffer, so it does
+     * not need to be buffered already.
+     * 
+     * @param in The input stream. Not <code>null</code>.
+     * @param options The options (i.e. limits) to use for parsing. Not <code>null</code>.
+     */
+    public JsonParser(Reader in, ParserOptions options) {
+        this.in = Objects.requireNonNull(in);
+        this.options = Objects.requireNonNull(options);
+        this.allowComments = options.isSyntaxExtensionEnabled(SyntaxExtension.COMMENTS);
+        this.allowTrailingCommas = options.isSyntaxExtensionEnabled(SyntaxExtension.TRAILING_COMMAS);
+        this.allowNumberExtensions = options.isSyntaxExtensionEnabled(SyntaxExtension.NON_FINITE_NUMBERS)
+                || options.isSyntaxExtensionEnabled(SyntaxExtension.HEX_NUMBERS);
+        this.duplicateKeyPolicy = options.getDuplicateKeyPolicy();
     }
     
     /**
@@ -62,7 +188,39 @@ public class JsonParser implements Closeable {
      * @throws IOException If opening the file fails.
      */
     public JsonParser(File file) throws IOException {
-        this.in = new LineNumberReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        this(file, new ParserOptions());
+    }
+    
+    /**
+     * Creates a parser for the given file.
+     * 
+     * @param file The file to read from. Not <code>null</code>.
+     * @param options The options (i.e. limits) to use for parsing. Not <code>null</code>.
+     * 
+     * @throws IOException If opening the file fails.
+     */
+    public JsonParser(File file, ParserOptions options) throws IOException {
+        this(new InputStreamReader(new FileInputStream(file), options.createUtf8Decoder()), options);
+    }
+    
+    /**
+     * Sets a listener that receives {@link ParseMetrics} after each call to {@link #parse()},
+     * {@link #parseNextListElement()} or {@link #parseNextDocument()}. Metrics are only collected while a listener is
+     * set.
+     * 
+     * @param parseListener The listener, or <code>null</code> to disable collecting metrics.
+     */
+    public void setParseListener(ParseListener parseListener) {
+        this.parseListener = parseListener;
+    }
+    
+    /**
+     * Returns the errors that have been skipped so far in lenient mode (see {@link ParserOptions#setLenient(boolean)}).
+     * 
+     * @return The skipped errors, in the order of their occurrence. Empty in strict mode.
+     */
+    public List<ParsingException> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
     }
     
     /**
@@ -78,47 +236,109 @@ public class JsonParser implements Closeable {
      * Multiple calls to {@link #peek()} without calls to {@link #read()} will return the same value (i.e. the stream
      * is <b>not</b> read multiple times).
      * 
-     * @return The next character, as returned by {@link Reader#read()}.
+     * @return The next character, or -1 if the end of the stream has been reached.
      * 
      * @throws IOException If reading the input stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
      */
-    private int peek() throws IOException {
-        if (peek == null) {
-            peek = in.read();
+    private int peek() throws IOException, ParsingException {
+        int result = -1;
+        if (position < limit || fillBuffer()) {
+            result = buffer[position];
         }
-        return peek;
+        return result;
     }
     
     /**
      * Reads the next character. Resets {@link #peek()} (i.e. subsequent calls to {@link #peek()} will return a new
      * character).
      * 
-     * @return The next character, as returned by {@link Reader#read()}.
+     * @return The next character, or -1 if the end of the stream has been reached.
      * 
      * @throws IOException If reading the input stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
      */
-    private int read() throws IOException {
-        int result;
-        if (peek != null) {
-            result = peek;
-            peek = null;
+    private int read() throws IOException, ParsingException {
+        int result = peek();
+        if (result != -1) {
+            position++;
         } else {
-            result = in.read();
+            endOfInputRead = true;
         }
-        
         return result;
     }
     
     /**
-     * Increases the nesting depth of lists and objects.
+     * Reads the next block of the underlying input stream into the {@link #buffer}. Must only be called if all
+     * characters in the buffer have been read. The last read character is kept at the start of the buffer, so that
+     * exceptions can refer to its position.
+     * <p>
+     * The maximum input length is enforced here, instead of for every single character: at most as many characters
+     * as are allowed are read into the buffer.
+     * 
+     * @return Whether at least one new character has been read; <code>false</code> at the end of the stream.
      * 
-     * @throws ParsingException If the new nesting depth exceeds {@link #MAX_NESTING_DEPTH}.
+     * @throws IOException If reading the input stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
+     */
+    private boolean fillBuffer() throws IOException, ParsingException {
+        if (limit > 1) {
+            long[] location = locate(limit - 1);
+            linesBeforeBuffer = location[0];
+            lineStartBeforeBuffer = location[1];
+            charBeforeBuffer = buffer[limit - 2];
+            buffer[0] = buffer[limit - 1];
+            bufferOffset += limit - 1;
+            limit = 1;
+            position = 1;
+        }
+        
+        long remaining = options.getMaxInputLength() - (bufferOffset + limit);
+        // read at least one character, to detect whether the input is longer than allowed
+        int toRead = (int) Math.min(buffer.length - limit, Math.max(remaining, 1));
+        int read;
+        try {
+            do {
+                read = in.read(buffer, limit, toRead);
+            } while (read == 0);
+        } catch (CharacterCodingException e) {
+            throw makeExceptionAtNext("Invalid UTF-8 input");
+        }
+        
+        if (read > 0) {
+            if (remaining <= 0) {
+                throw limitExceeded(
+                        makeExceptionAtNext("Exceeded maximum input length of " + options.getMaxInputLength()));
+            }
+            limit += read;
+        }
+        return read > 0;
+    }
+    
+    /**
+     * Returns the number of characters read from the input so far.
+     * 
+     * @return The number of read characters.
+     */
+    private long getReadLength() {
+        return bufferOffset + position;
+    }
+    
+    /**
+     * Increases the nesting depth of lists and objects. Must be called before the opening bracket is read, so that
+     * the error points at it.
+     * 
+     * @throws ParsingException If the new nesting depth exceeds {@link ParserOptions#getMaxNestingDepth()}.
      */
     private void increaseNestingDepth() throws ParsingException {
         currentNestingDepth++;
+        if (metrics != null) {
+            metrics.updateNestingDepth(currentNestingDepth);
+        }
         
-        if (currentNestingDepth >= MAX_NESTING_DEPTH) {
-            throw makeException("Exceeded maximum nesting depth of " + MAX_NESTING_DEPTH);
+        if (currentNestingDepth > options.getMaxNestingDepth()) {
+            throw limitExceeded(makeExceptionAtNext(
+                    "Exceeded maximum nesting depth of " + options.getMaxNestingDepth()));
         }
     }
     
@@ -144,19 +364,74 @@ public class JsonParser implements Closeable {
     }
     
     /**
-     * Reads the stream until no more whitespaces occur. After this method, the next {@link #read()} or {@link #peek()}
-     * will not be a whitespace character.
+     * Reads the stream until no more whitespaces (and comments, if {@link SyntaxExtension#COMMENTS} is enabled)
+     * occur. After this method, the next {@link #read()} or {@link #peek()} will not be a whitespace character.
      * 
      * @see #isWhitespace(int)
      * 
      * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length, or a comment is malformed.
      */
-    private void skipWhitespace() throws IOException {
-        while (isWhitespace(peek())) {
-            read();
+    private void skipWhitespace() throws IOException, ParsingException {
+        boolean comment;
+        do {
+            while (isWhitespace(peek())) {
+                read();
+            }
+            comment = allowComments && peek() == '/';
+            if (comment) {
+                skipComment();
+            }
+        } while (comment);
+    }
+    
+    /**
+     * Reads a line or block comment. The next character to read must be a '/'.
+     * 
+     * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the comment is malformed.
+     */
+    private void skipComment() throws IOException, ParsingException {
+        read(); // read the '/'
+        
+        int read = read();
+        if (read == '/') {
+            while (peek() != '\n' && peek() != '\r' && peek() != -1) {
+                read();
+            }
+            
+        } else if (read == '*') {
+            int previous = 0;
+            read = read();
+            while (previous != '*' || read != '/') {
+                if (read == -1) {
+                    throw makeException("Unterminated block comment");
+                }
+                previous = read;
+                read = read();
+            }
+            
+        } else {
+            throw makeException("Expecting '/' or '*' after '/', got " + (char) read);
         }
     }
     
+    /**
+     * Checks whether a ',' that has just been read is followed by the end of the current list or object. Only used
+     * if {@link SyntaxExtension#TRAILING_COMMAS} is enabled.
+     * 
+     * @param end The character that closes the current list or object.
+     * 
+     * @return Whether the ',' was a trailing comma.
+     * 
+     * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
+     */
+    private boolean isTrailingComma(char end) throws IOException, ParsingException {
+        skipWhitespace();
+        return peek() == end;
+    }
+    
     /**
      * Parses the stream to a {@link JsonElement}. This method may only be called once.
      * 
@@ -166,17 +441,252 @@ public class JsonParser implements Closeable {
      * @throws IOException If reading the input stream fails.
      */
     public JsonElement parse() throws ParsingException, IOException {
+        boolean successful = false;
+        startMetrics();
+        try {
+            JsonElement result = readDocument();
+            successful = true;
+            return result;
+        } finally {
+            finishMetrics(successful);
+        }
+    }
+    
+    /**
+     * Implementation of {@link #parse()}, without collecting metrics.
+     * 
+     * @return The parsed JSON. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the stream data is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonElement readDocument() throws ParsingException, IOException {
         JsonElement result = readElement();
         
         skipWhitespace();
         
         if (peek() != -1) {
-            throw makeException("JSON element is over, but didn't reach EOF");
+            ParsingException exception = makeExceptionAtNext("JSON element is over, but didn't reach EOF");
+            if (!options.isLenient()) {
+                throw exception;
+            }
+            diagnostics.add(exception);
         }
         
         return result;
     }
     
+    /**
+     * Incremental version of {@link #parse()} for input that consists of a single list: reads the elements of the
+     * list one at a time, so that the list never has to be kept in memory as a whole. Must not be mixed with
+     * {@link #parse()} or {@link #parseNextDocument()}.
+     * 
+     * @return The next element of the list, or <code>null</code> if the end of the list has been reached.
+     * 
+     * @throws ParsingException If the stream data is malformed, or is not a list.
+     * @throws IOException If reading the input stream fails.
+     */
+    public JsonElement parseNextListElement() throws ParsingException, IOException {
+        boolean successful = false;
+        startMetrics();
+        try {
+            JsonElement result = readNextListElement();
+            successful = true;
+            return result;
+        } finally {
+            finishMetrics(successful);
+        }
+    }
+    
+    /**
+     * Implementation of {@link #parseNextListElement()}, without collecting metrics.
+     * 
+     * @return The next element of the list, or <code>null</code> if the end of the list has been reached.
+     * 
+     * @throws ParsingException If the stream data is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonElement readNextListElement() throws ParsingException, IOException {
+        JsonElement result = null;
+        
+        // in lenient mode, malformed elements are skipped until a valid one (or the end of the list) is found
+        boolean skipped = true;
+        while (skipped && !topLevelListEnded) {
+            skipped = false;
+            skipWhitespace();
+            
+            boolean expectingNext;
+            if (topLevelListSize == -1) {
+                if (peek() != '[') {
+                    throw makeException("Expecting '[' at start of list, got " + (char) read());
+                }
+                increaseNestingDepth();
+                read(); // read the '['
+                topLevelListSize = 0;
+                if (metrics != null) {
+                    metrics.countToken(JsonToken.START_LIST);
+                }
+                
+                skipWhitespace();
+                expectingNext = peek() != ']';
+                
+            } else {
+                expectingNext = peek() == ',';
+                if (expectingNext) {
+                    read();
+                    expectingNext = !allowTrailingCommas || !isTrailingComma(']');
+                }
+            }
+            
+            if (expectingNext) {
+                skipWhitespace();
+                if (topLevelListSize >= options.getMaxListSize()) {
+                    throw limitExceeded(makeExceptionAtNext(
+                            "Exceeded maximum list size of " + options.getMaxListSize()));
+                }
+                if (options.isLenient()) {
+                    result = readElementLenient(']');
+                    skipped = result == null;
+                } else {
+                    result = readElement();
+                }
+                if (!skipped) {
+                    topLevelListSize++;
+                }
+                
+            } else {
+                readTopLevelListEnd();
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads the end of the list for {@link #parseNextListElement()}.
+     * 
+     * @throws ParsingException If the list is not properly terminated.
+     * @throws IOException If reading the input stream fails.
+     */
+    private void readTopLevelListEnd() throws ParsingException, IOException {
+        int read = read();
+        if (read != ']') {
+            throw makeException("Expecting ']' at end of list, got " + (char) read);
+        }
+        decreaseNestingDepth();
+        topLevelListEnded = true;
+        if (metrics != null) {
+            metrics.countToken(JsonToken.END_LIST);
+        }
+        
+        skipWhitespace();
+        if (peek() != -1) {
+            throw makeExceptionAtNext("JSON element is over, but didn't reach EOF");
+        }
+    }
+    
+    /**
+     * Incremental version of {@link #parse()} for input that consists of a sequence of elements separated by
+     * whitespace, such as newline-delimited JSON: reads the next element of the sequence. The limits of the
+     * {@link ParserOptions} apply to the input as a whole. Must not be mixed with {@link #parse()} or
+     * {@link #parseNextListElement()}.
+     * 
+     * @return The next element, or <code>null</code> if the end of the stream has been reached.
+     * 
+     * @throws ParsingException If the stream data is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    public JsonElement parseNextDocument() throws ParsingException, IOException {
+        boolean successful = false;
+        startMetrics();
+        try {
+            JsonElement result = readNextDocument();
+            successful = true;
+            return result;
+        } finally {
+            finishMetrics(successful);
+        }
+    }
+    
+    /**
+     * Implementation of {@link #parseNextDocument()}, without collecting metrics.
+     * 
+     * @return The next element, or <code>null</code> if the end of the stream has been reached.
+     * 
+     * @throws ParsingException If the stream data is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonElement readNextDocument() throws ParsingException, IOException {
+        JsonElement result = null;
+        
+        if (options.isLenient()) {
+            // malformed documents are skipped until the end of their line, until a valid one is found
+            boolean skipped = true;
+            while (skipped) {
+                skipped = false;
+                try {
+                    result = readNextDocumentStrict();
+                } catch (ParsingException e) {
+                    recordDiagnostic(e, 0);
+                    skipLine();
+                    skipped = true;
+                }
+            }
+        } else {
+            result = readNextDocumentStrict();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads the next document for {@link #parseNextDocument()}, without recovering from errors on the top level.
+     * 
+     * @return The next element, or <code>null</code> if the end of the stream has been reached.
+     * 
+     * @throws ParsingException If the stream data is malformed.
+     * @throws IOException If reading the input stream fails.
+     */
+    private JsonElement readNextDocumentStrict() throws ParsingException, IOException {
+        JsonElement result = null;
+        
+        skipWhitespace();
+        if (peek() != -1) {
+            result = readElement();
+            
+            if (peek() != -1 && !isWhitespace(peek())) {
+                throw makeExceptionAtNext("Expecting whitespace after element, got " + (char) peek());
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Starts collecting metrics for a parsing call, if a {@link ParseListener} is set.
+     */
+    private void startMetrics() {
+        if (parseListener != null) {
+            metrics = new ParseMetrics();
+            metricsStartLength = getReadLength();
+            metricsStartNanos = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Finishes collecting metrics for a parsing call and reports them to the {@link ParseListener}.
+     * 
+     * @param successful Whether the parsing call was successful.
+     */
+    private void finishMetrics(boolean successful) {
+        if (metrics != null) {
+            ParseMetrics finished = metrics;
+            metrics = null;
+            finished.finish(System.nanoTime() - metricsStartNanos, getReadLength() - metricsStartLength, successful);
+            parseListener.parseFinished(finished);
+        }
+    }
+    
     /**
      * Reads a single element from the stream.
      * 
@@ -188,6 +698,11 @@ public class JsonParser implements Closeable {
     private JsonElement readElement() throws ParsingException, IOException {
         skipWhitespace();
         
+        if (++elementCount > options.getMaxElementCount()) {
+            throw limitExceeded(makeExceptionAtNext(
+                    "Exceeded maximum element count of " + options.getMaxElementCount()));
+        }
+        
         JsonElement result;
         
         switch (peek()) {
@@ -214,20 +729,201 @@ public class JsonParser implements Closeable {
             break;
             
         case '"':
-            result = readString();
+            result = readString('"');
             break;
             
         case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9': case '-':
-            result = readNumber();
+            result = allowNumberExtensions ? readExtendedNumber() : readNumber();
             break;
             
         default:
-            throw makeException("Couldn't determine type: " + (char) peek());
+            result = readExtendedElement();
+            break;
+        }
+        
+        if (metrics != null) {
+            metrics.countElement(result);
         }
         
         return result;
     }
     
+    /**
+     * Reads an element that is only allowed with a {@link SyntaxExtension}. Called if the next character can't start
+     * a strict JSON element, so that the extensions don't slow down parsing of strict JSON.
+     * 
+     * @return The read element. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the element is malformed, or not allowed.
+     * @throws IOException If reading the stream fails.
+     */
+    private JsonElement readExtendedElement() throws ParsingException, IOException {
+        int next = peek();
+        JsonElement result;
+        if (next == '\'' && options.isSyntaxExtensionEnabled(SyntaxExtension.SINGLE_QUOTES)) {
+            result = readString('\'');
+            
+        } else if ((next == 'N' || next == 'I' || next == '+')
+                && options.isSyntaxExtensionEnabled(SyntaxExtension.NON_FINITE_NUMBERS)) {
+            result = readExtendedNumber();
+            
+        } else {
+            throw makeExceptionAtNext("Couldn't determine type: " + (char) next);
+        }
+        return result;
+    }
+    
+    /**
+     * Lenient version of {@link #readElement()} for elements of lists: if the element is malformed, it is skipped. If
+     * the separator after the element is malformed, the rest up to the next separator is skipped.
+     * 
+     * @param end The character that closes the list.
+     * 
+     * @return The read element, or <code>null</code> if it has been skipped.
+     * 
+     * @throws ParsingException If the element is malformed and can't be skipped.
+     * @throws IOException If reading the stream fails.
+     */
+    private JsonElement readElementLenient(char end) throws ParsingException, IOException {
+        JsonElement result = null;
+        int nestingDepth = currentNestingDepth;
+        try {
+            result = readElement();
+            skipWhitespace();
+            checkSeparator(end);
+        } catch (ParsingException e) {
+            recover(e, nestingDepth);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks that the next character is a ',' or the character that closes the current list or object. In strict
+     * mode, this is checked when the end of the list or object is read.
+     * 
+     * @param end The character that closes the current list or object.
+     * 
+     * @throws ParsingException If the next character is neither.
+     * @throws IOException If reading the stream fails.
+     */
+    private void checkSeparator(char end) throws ParsingException, IOException {
+        int next = peek();
+        if (next != ',' && next != end) {
+            throw makeExceptionAtNext("Expecting ',' or '" + end + "', got " + (char) next);
+        }
+    }
+    
+    /**
+     * Recovers from an error in lenient mode: records the error and skips to the next ',' or closing bracket on the
+     * current level of nesting.
+     * 
+     * @param exception The error.
+     * @param nestingDepth The nesting depth of the list or object that contains the malformed element.
+     * 
+     * @throws ParsingException The given exception, if it can't be recovered from.
+     * @throws IOException If reading the stream fails.
+     */
+    private void recover(ParsingException exception, int nestingDepth) throws ParsingException, IOException {
+        if (limitExceeded || !skipToBoundary()) {
+            throw exception;
+        }
+        recordDiagnostic(exception, nestingDepth);
+    }
+    
+    /**
+     * Skips to the next ',' or closing bracket on the current level of nesting. Nested lists, objects and strings
+     * are skipped as a whole.
+     * 
+     * @return Whether such a character has been found; <code>false</code> if the end of the stream has been reached.
+     * 
+     * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
+     */
+    private boolean skipToBoundary() throws IOException, ParsingException {
+        int depth = 0;
+        boolean string = inString;
+        inString = false;
+        boolean found = false;
+        while (!found && peek() != -1) {
+            int next = peek();
+            if (string) {
+                read();
+                if (next == '\\') {
+                    read();
+                } else if (next == '"') {
+                    string = false;
+                }
+            } else if (depth == 0 && isBoundary(next)) {
+                found = true;
+            } else {
+                read();
+                if (next == '"') {
+                    string = true;
+                } else if (next == '[' || next == '{') {
+                    depth++;
+                } else if (next == ']' || next == '}') {
+                    depth--;
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Records an error that is recovered from in lenient mode, and resets the state of the parser to the given
+     * nesting depth.
+     * 
+     * @param exception The error.
+     * @param nestingDepth The nesting depth to continue at.
+     * 
+     * @throws ParsingException The given exception, if it was caused by an exceeded limit.
+     */
+    private void recordDiagnostic(ParsingException exception, int nestingDepth) throws ParsingException {
+        if (limitExceeded) {
+            throw exception;
+        }
+        diagnostics.add(exception);
+        currentNestingDepth = nestingDepth;
+    }
+    
+    /**
+     * Checks whether the given character ends a list element or object member.
+     * 
+     * @param character The character to check.
+     * 
+     * @return Whether the character is a ',', ']' or '}'.
+     */
+    private boolean isBoundary(int character) {
+        return character == ',' || character == ']' || character == '}';
+    }
+    
+    /**
+     * Skips the rest of the current line, including the line break.
+     * 
+     * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the input exceeds the maximum input length.
+     */
+    private void skipLine() throws IOException, ParsingException {
+        inString = false;
+        int read;
+        do {
+            read = read();
+        } while (read != -1 && read != '\n');
+    }
+    
+    /**
+     * Marks that a limit of the {@link ParserOptions} has been exceeded, so that the given exception is never
+     * recovered from.
+     * 
+     * @param exception The exception about the exceeded limit.
+     * 
+     * @return The given exception.
+     */
+    private ParsingException limitExceeded(ParsingException exception) {
+        limitExceeded = true;
+        return exception;
+    }
+    
     /**
      * Reads a JSON object from the stream. The next character to read must be a '{'.
      * 
@@ -240,6 +936,7 @@ public class JsonParser implements Closeable {
         read(); // read the '{'
         
         JsonObject result = new JsonObject();
+        int numMembers = 0;
         
         skipWhitespace();
         boolean expectingNext = peek() != '}';
@@ -249,27 +946,21 @@ public class JsonParser implements Closeable {
             
             skipWhitespace();
             
-            if (peek() == '"') {
-                String key = readString().getValue();
-                
-                skipWhitespace();
-                
-                int seperator = read();
-                if (seperator != ':') {
-                    throw makeException("Expecting ':' after key, got " + (char) seperator);
-                }
-                
-                JsonElement value = readElement();
-                result.putElement(key, value);
-                
-                skipWhitespace();
-                if (peek() == ',') {
-                    read();
-                    expectingNext = true;
-                }
-                
+            if (++numMembers > options.getMaxObjectSize()) {
+                throw limitExceeded(makeExceptionAtNext(
+                        "Exceeded maximum object size of " + options.getMaxObjectSize()));
+            }
+            
+            if (options.isLenient()) {
+                readMemberLenient(result);
             } else {
-                throw makeException("Expecting key string, got " + (char) peek());
+                readMember(result);
+            }
+            
+            skipWhitespace();
+            if (peek() == ',') {
+                read();
+                expectingNext = !allowTrailingCommas || !isTrailingComma('}');
             }
         }
         
@@ -283,6 +974,136 @@ public class JsonParser implements Closeable {
         return result;
     }
     
+    /**
+     * Reads a single member of an object, i.e. the key, the ':' and the value.
+     * 
+     * @param object The object to add the member to.
+     * 
+     * @throws ParsingException If the member is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private void readMember(JsonObject object) throws ParsingException, IOException {
+        String key;
+        // the key may span multiple buffers, so remember its offset in the input
+        long keyOffset = bufferOffset + position;
+        if (peek() == '"') {
+            key = readString('"').getValue();
+        } else {
+            key = readExtendedKey();
+        }
+        if (metrics != null) {
+            metrics.countKey(key.length());
+        }
+        if (duplicateKeyPolicy == DuplicateKeyPolicy.REJECT && object.getElement(key) != null) {
+            // reject before the value is read, and point at the key instead of the end of the value
+            throw makeException("Duplicate key \"" + key + "\"", (int) (keyOffset - bufferOffset));
+        }
+        
+        skipWhitespace();
+        
+        if (peek() != ':') {
+            throw makeExceptionAtNext("Expecting ':' after key, got " + (char) peek());
+        }
+        read();
+        
+        JsonElement value = readElement();
+        if (duplicateKeyPolicy == DuplicateKeyPolicy.LAST_WINS) {
+            object.putElement(key, value);
+        } else {
+            putMember(object, key, value);
+        }
+    }
+    
+    /**
+     * Adds a member to an object according to a {@link DuplicateKeyPolicy} other than
+     * {@link DuplicateKeyPolicy#LAST_WINS}. Duplicates for {@link DuplicateKeyPolicy#REJECT} are already rejected
+     * when the key is read.
+     * 
+     * @param object The object to add the member to.
+     * @param key The key of the member.
+     * @param value The value of the member.
+     */
+    private void putMember(JsonObject object, String key, JsonElement value) {
+        JsonElement existing = object.putElementIfAbsent(key, value);
+        // for FIRST_WINS, the existing value is kept
+        if (existing != null && duplicateKeyPolicy == DuplicateKeyPolicy.COLLECT) {
+            if (collectedLists != null && collectedLists.contains(existing)) {
+                ((JsonList) existing).addElement(value);
+            } else {
+                JsonList collected = new JsonList();
+                collected.addElement(existing);
+                collected.addElement(value);
+                object.putElement(key, collected);
+                if (collectedLists == null) {
+                    collectedLists = Collections.newSetFromMap(new IdentityHashMap<>());
+                }
+                collectedLists.add(collected);
+            }
+        }
+    }
+    
+    /**
+     * Reads a key that is only allowed with a {@link SyntaxExtension}, i.e. in single quotes or without quotes.
+     * 
+     * @return The read key. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the key is malformed, or not allowed.
+     * @throws IOException If reading the stream fails.
+     */
+    private String readExtendedKey() throws ParsingException, IOException {
+        int next = peek();
+        String result;
+        if (next == '\'' && options.isSyntaxExtensionEnabled(SyntaxExtension.SINGLE_QUOTES)) {
+            result = readString('\'').getValue();
+            
+        } else if (isIdentifierStart(next) && options.isSyntaxExtensionEnabled(SyntaxExtension.UNQUOTED_KEYS)) {
+            StringBuilder identifier = new StringBuilder();
+            while (isIdentifierStart(peek()) || isDigit(peek())) {
+                if (identifier.length() >= options.getMaxStringLength()) {
+                    throw limitExceeded(makeExceptionAtNext(
+                            "Exceeded maximum string length of " + options.getMaxStringLength()));
+                }
+                identifier.append((char) read());
+            }
+            result = identifier.toString();
+            
+        } else {
+            throw makeExceptionAtNext("Expecting key string, got " + (char) next);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks if the given character may start an unquoted key.
+     * 
+     * @param character The character to check.
+     * 
+     * @return Whether the character is a letter, '_' or '$'.
+     */
+    private boolean isIdentifierStart(int character) {
+        return character != -1 && (Character.isLetter(character) || character == '_' || character == '$');
+    }
+    
+    /**
+     * Lenient version of {@link #readMember(JsonObject)}: if the member is malformed, it is skipped and not added to
+     * the object. If the separator after the member is malformed, the rest up to the next separator is skipped.
+     * 
+     * @param object The object to add the member to.
+     * 
+     * @throws ParsingException If the member is malformed and can't be skipped.
+     * @throws IOException If reading the stream fails.
+     */
+    private void readMemberLenient(JsonObject object) throws ParsingException, IOException {
+        int nestingDepth = currentNestingDepth;
+        try {
+            readMember(object);
+            skipWhitespace();
+            checkSeparator('}');
+        } catch (ParsingException e) {
+            recover(e, nestingDepth);
+        }
+    }
+    
     /**
      * Reads a JSON list from the stream. The next character to read must be a '['.
      * 
@@ -304,14 +1125,23 @@ public class JsonParser implements Closeable {
             
             skipWhitespace();
             
-            JsonElement value = readElement();
+            if (result.getSize() >= options.getMaxListSize()) {
+                throw limitExceeded(makeExceptionAtNext("Exceeded maximum list size of " + options.getMaxListSize()));
+            }
             
-            result.addElement(value);
+            if (options.isLenient()) {
+                JsonElement value = readElementLenient(']');
+                if (value != null) {
+                    result.addElement(value);
+                }
+            } else {
+                result.addElement(readElement());
+            }
             
             skipWhitespace();
             if (peek() == ',') {
                 read();
-                expectingNext = true;
+                expectingNext = !allowTrailingCommas || !isTrailingComma(']');
             }
         }
         
@@ -326,81 +1156,178 @@ public class JsonParser implements Closeable {
     }
     
     /**
-     * Reads an JSON string from the stream. The next character to read must be a '"'.
+     * Reads an JSON string from the stream. The next character to read must be the quote character.
+     * 
+     * @param quote The quote character that encloses the string; '\'' only with
+     *      {@link SyntaxExtension#SINGLE_QUOTES}.
      * 
      * @return The read string. Never <code>null</code>.
      * 
      * @throws ParsingException If the string is malformed.
      * @throws IOException If reading the stream fails.
      */
-    private JsonString readString() throws ParsingException, IOException {
-        read(); // read the '"'
+    private JsonString readString(char quote) throws ParsingException, IOException {
+        read(); // read the quote
+        inString = true;
         
         StringBuilder result = new StringBuilder();
-        while (peek() != '\"' && peek() != -1) {
+        // whether the last character was a high surrogate, which must be followed by a low surrogate
+        boolean pendingHighSurrogate = false;
+        while (peek() != quote && peek() != -1) {
             int read = read();
             char unescaped;
             
             if (read == '\\') {
-                read = read();
-                
-                switch (read) {
-                case '"':
-                case '\\':
-                case '/':
-                    unescaped = (char) read;
-                    break;
-                case 'b':
-                    unescaped = '\b';
-                    break;
-                case 'n':
-                    unescaped = '\n';
-                    break;
-                case 'r':
-                    unescaped = '\r';
-                    break;
-                case 't':
-                    unescaped = '\t';
-                    break;
-                case 'f':
-                    unescaped = '\f';
-                    break;
-                case 'u':
-                    StringBuilder hex = new StringBuilder();
-                    for (int i = 0; i < 4; i++) {
-                        int hexChar = read();
-                        if (!isHexDigit(hexChar)) {
-                            throw makeException("Expected four hex digits after \\u, got '" + (char) hexChar + "'");
-                        }
-                        hex.append((char) hexChar);
-                    }
-                    // parseInt() won't throw a NumberFormatException, because we checked that only hex digits appear
-                    unescaped = (char) Integer.parseInt(hex.toString(), 16);
-                    break;
-                    
-                default:
-                    throw makeException("Invalid escaped character '" + (char) read + "'");
-                }
+                unescaped = readEscape();
                 
             } else {
                 if (read < 0x20) { // control characters (< 0x20 (space)) are not allowed
-                    throw new ParsingException("Unescaped control character " + Integer.toHexString(read));
+                    throw makeException("Unescaped control character " + Integer.toHexString(read));
                 }
                 
                 unescaped = (char) read;
             }
             
-            result.append(unescaped);
+            if (result.length() >= options.getMaxStringLength()) {
+                throw limitExceeded(makeException("Exceeded maximum string length of " + options.getMaxStringLength()));
+            }
+            if (pendingHighSurrogate || Character.isSurrogate(unescaped)) {
+                pendingHighSurrogate = appendSurrogate(result, unescaped, pendingHighSurrogate);
+            } else {
+                result.append(unescaped);
+            }
         }
         
         int read = read();
-        if (read != '"') {
-            throw makeException("Expecting '\"' at end of string, got " + (char) read);
+        if (read != quote) {
+            throw makeException("Expecting '" + quote + "' at end of string, got " + (char) read);
+        }
+        inString = false;
+        
+        // checked after the closing quote, so that lenient recovery doesn't search for the end of the string
+        if (pendingHighSurrogate) {
+            result.setCharAt(result.length() - 1, handleLoneSurrogate(result.charAt(result.length() - 1)));
         }
         
         return new JsonString(result.toString());
     }
     
+    /**
+     * Reads an escape sequence in a string. The '\\' must already be read.
+     * 
+     * @return The escaped character.
+     * 
+     * @throws ParsingException If the escape sequence is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private char readEscape() throws ParsingException, IOException {
+        int read = read();
+        char result;
+        
+        switch (read) {
+        case '"':
+        case '\\':
+        case '/':
+            result = (char) read;
+            break;
+        case 'b':
+            result = '\b';
+            break;
+        case 'n':
+            result = '\n';
+            break;
+        case 'r':
+            result = '\r';
+            break;
+        case 't':
+            result = '\t';
+            break;
+        case 'f':
+            result = '\f';
+            break;
+        case 'u':
+            result = readUnicodeEscape();
+            break;
+            
+        case '\'':
+            if (!options.isSyntaxExtensionEnabled(SyntaxExtension.SINGLE_QUOTES)) {
+                throw makeException("Invalid escaped character '\''");
+            }
+            result = '\'';
+            break;
+            
+        default:
+            throw makeException("Invalid escaped character '" + (char) read + "'");
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Appends a character to a string, if it or the previous character is a surrogate. Checks that surrogates
+     * only occur in valid pairs, i.e. a high surrogate followed by a low surrogate.
+     * 
+     * @param string The string to append to.
+     * @param character The character to append.
+     * @param pendingHighSurrogate Whether the last character of the string is a high surrogate that is not yet
+     *      followed by a low surrogate.
+     * 
+     * @return Whether the appended character is a high surrogate.
+     * 
+     * @throws ParsingException If a surrogate is not part of a valid pair and invalid unicode is not replaced.
+     */
+    private boolean appendSurrogate(StringBuilder string, char character, boolean pendingHighSurrogate)
+            throws ParsingException {
+        boolean low = Character.isLowSurrogate(character);
+        if (pendingHighSurrogate && !low) {
+            string.setCharAt(string.length() - 1, handleLoneSurrogate(string.charAt(string.length() - 1)));
+        }
+        if (low && !pendingHighSurrogate) {
+            string.append(handleLoneSurrogate(character));
+        } else {
+            string.append(character);
+        }
+        return Character.isHighSurrogate(character);
+    }
+    
+    /**
+     * Handles a surrogate that is not part of a valid pair.
+     * 
+     * @param surrogate The surrogate.
+     * 
+     * @return The replacement character, if invalid unicode is replaced.
+     * 
+     * @throws ParsingException If invalid unicode is not replaced.
+     */
+    private char handleLoneSurrogate(char surrogate) throws ParsingException {
+        if (!options.isReplaceInvalidUnicode()) {
+            throw makeException("Invalid surrogate \\u" + Integer.toHexString(surrogate).toUpperCase(Locale.ROOT)
+                    + " without matching pair");
+        }
+        return REPLACEMENT_CHARACTER;
+    }
+    
+    /**
+     * Reads the four hex digits of a unicode escape sequence. The "\\u" must already be read.
+     * 
+     * @return The escaped character.
+     * 
+     * @throws ParsingException If the escape sequence is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private char readUnicodeEscape() throws ParsingException, IOException {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            int hexChar = read();
+            if (!isHexDigit(hexChar)) {
+                throw makeException("Expected four hex digits after \\u, got '" + (char) hexChar + "'");
+            }
+            hex.append((char) hexChar);
+        }
+        // parseInt() won't throw a NumberFormatException, because we checked that only hex digits appear
+        return (char) Integer.parseInt(hex.toString(), 16);
+    }
+    
     /**
      * Checks if the given character is a digit.
      * 
@@ -436,11 +1363,27 @@ public class JsonParser implements Closeable {
      * @throws IOException If reading the stream fails.
      */
     private JsonNumber readNumber() throws ParsingException, IOException {
-        Number result;
+        currentNumberLength = 0;
         
         StringBuilder intDigits = new StringBuilder();
         readIntDigits(intDigits);
-
+        
+        return readNumber(intDigits);
+    }
+    
+    /**
+     * Reads the rest of a JSON number after the integer digits, i.e. the optional fraction and exponent.
+     * 
+     * @param intDigits The already read integer digits (plus leading '-'). Not <code>null</code>.
+     * 
+     * @return The read number. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the number is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private JsonNumber readNumber(StringBuilder intDigits) throws ParsingException, IOException {
+        Number result;
+        
         StringBuilder fracDigits = new StringBuilder();
         readFracDigits(fracDigits);
         
@@ -449,12 +1392,7 @@ public class JsonParser implements Closeable {
         
         try {
             if (fracDigits.length() == 0 && expontentDigits.length() == 0) {
-                long l = Long.parseLong(intDigits.toString());
-                if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
-                    result = (int) l;
-                } else {
-                    result = l;
-                }
+                result = toInteger(Long.parseLong(intDigits.toString()));
                 
             } else {
                 String toParse;
@@ -472,28 +1410,146 @@ public class JsonParser implements Closeable {
         return new JsonNumber(result);
     }
     
+    /**
+     * Converts the given integer to an {@link Integer}, if it fits, or a {@link Long}.
+     * 
+     * @param value The integer value.
+     * 
+     * @return The value as the smallest fitting type.
+     */
+    private static Number toInteger(long value) {
+        Number result;
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            result = (int) value;
+        } else {
+            result = value;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a JSON number that may use {@link SyntaxExtension#NON_FINITE_NUMBERS} or
+     * {@link SyntaxExtension#HEX_NUMBERS}. The next character to read must be a digit, a sign, 'N' or 'I'.
+     * 
+     * @return The read number. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the number is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private JsonNumber readExtendedNumber() throws ParsingException, IOException {
+        currentNumberLength = 0;
+        boolean nonFinite = options.isSyntaxExtensionEnabled(SyntaxExtension.NON_FINITE_NUMBERS);
+        
+        boolean negative = false;
+        if (peek() == '+' || peek() == '-') {
+            negative = readNumberChar() == '-';
+            // only a single sign is allowed; readIntDigits() would otherwise accept a second '-'
+            if (!isDigit(peek()) && !(nonFinite && (peek() == 'I' || peek() == 'N'))) {
+                throw makeExceptionAtNext("Expected digit after sign, got '" + (char) peek() + "'");
+            }
+        }
+        
+        JsonNumber result;
+        if (nonFinite && peek() == 'I') {
+            readAndAssert("Infinity");
+            result = new JsonNumber(negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+            
+        } else if (nonFinite && peek() == 'N') {
+            readAndAssert("NaN");
+            result = new JsonNumber(Double.NaN);
+            
+        } else if (peek() == '0' && options.isSyntaxExtensionEnabled(SyntaxExtension.HEX_NUMBERS)) {
+            result = readHexNumber(negative);
+            
+        } else {
+            StringBuilder intDigits = new StringBuilder(negative ? "-" : "");
+            readIntDigits(intDigits);
+            result = readNumber(intDigits);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a hexadecimal integer, or a decimal number starting with 0. The sign must already be read, the next
+     * character to read must be '0'.
+     * 
+     * @param negative Whether the number is negative.
+     * 
+     * @return The read number. Never <code>null</code>.
+     * 
+     * @throws ParsingException If the number is malformed.
+     * @throws IOException If reading the stream fails.
+     */
+    private JsonNumber readHexNumber(boolean negative) throws ParsingException, IOException {
+        readNumberChar(); // read the '0'
+        
+        JsonNumber result;
+        if (peek() == 'x' || peek() == 'X') {
+            readNumberChar();
+            
+            StringBuilder hexDigits = new StringBuilder(negative ? "-" : "");
+            int signLength = hexDigits.length();
+            while (isHexDigit(peek())) {
+                hexDigits.append((char) readNumberChar());
+            }
+            if (hexDigits.length() == signLength) {
+                throw makeExceptionAtNext("Expected at least one hex digit after 0x, got '" + (char) peek() + "'");
+            }
+            
+            try {
+                result = new JsonNumber(toInteger(Long.parseLong(hexDigits.toString(), 16)));
+            } catch (NumberFormatException e) {
+                throw makeException("Can't parse number " + e.getMessage());
+            }
+            
+        } else {
+            if (isDigit(peek())) {
+                throw makeExceptionAtNext("Number may not start with leading 0");
+            }
+            result = readNumber(new StringBuilder(negative ? "-0" : "0"));
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a single character of a number literal and counts it against the maximum number length.
+     * 
+     * @return The read character.
+     * 
+     * @throws IOException If reading the stream fails.
+     * @throws ParsingException If the number exceeds the maximum number length.
+     */
+    private int readNumberChar() throws IOException, ParsingException {
+        if (++currentNumberLength > options.getMaxNumberLength()) {
+            throw limitExceeded(makeExceptionAtNext(
+                    "Exceeded maximum number length of " + options.getMaxNumberLength()));
+        }
+        return read();
+    }
+    
     /**
      * Reads the integer digits (plus leading '-').
      * 
-     * @param intDigits The builder to add the result to. Not <code>null</code>.
+     * @param intDigits The builder to add the result to. Not <code>null</code>. May already contain a '-' sign that
+     *      has been read before.
      * 
      * @throws IOException If reading the stream fails.
      * @throws ParsingException If the number is malformed.
      */
     private void readIntDigits(StringBuilder intDigits) throws IOException, ParsingException {
-        int firstDigitIndex = 0;
+        int firstDigitIndex = intDigits.length();
         if (peek() == '-') {
-            intDigits.append((char) read());
-            firstDigitIndex = 1;
+            intDigits.append((char) readNumberChar());
+            firstDigitIndex++;
         }
         while (isDigit(peek())) {
-            intDigits.append((char) read());
-        }
-        if (intDigits.length() > (firstDigitIndex + 1) && intDigits.charAt(firstDigitIndex) == '0') {
-            throw new ParsingException("Number may not start with leading 0");
+            if (intDigits.length() == firstDigitIndex + 1 && intDigits.charAt(firstDigitIndex) == '0') {
+                throw makeExceptionAtNext("Number may not start with leading 0");
+            }
+            intDigits.append((char) readNumberChar());
         }
         if (intDigits.length() == firstDigitIndex) {
-            throw new ParsingException("Got no integer digits");
+            throw makeExceptionAtNext("Got no integer digits");
         }
     }
     
@@ -507,16 +1563,16 @@ public class JsonParser implements Closeable {
      */
     private void readFracDigits(StringBuilder fracDigits) throws IOException, ParsingException {
         if (peek() == '.') {
-            read(); // read '.'
+            readNumberChar(); // read '.'
             
             boolean foundOne = false;
             while (isDigit(peek())) {
                 foundOne = true;
-                fracDigits.append((char) read());
+                fracDigits.append((char) readNumberChar());
             }
             
             if (!foundOne) {
-                throw makeException("Expected at least one digit after '.', got '" + (char) peek() + "'");
+                throw makeExceptionAtNext("Expected at least one digit after '.', got '" + (char) peek() + "'");
             }
         }
     }
@@ -531,20 +1587,20 @@ public class JsonParser implements Closeable {
      */
     private void readExpDigits(StringBuilder expontentDigits) throws IOException, ParsingException {
         if (peek() == 'e' || peek() == 'E') {
-            read(); // read the 'e'
+            readNumberChar(); // read the 'e'
             
             if (peek() == '-' || peek() == '+') {
-                expontentDigits.append((char) read());
+                expontentDigits.append((char) readNumberChar());
             }
             
             boolean foundOne = false;
             while (isDigit(peek())) {
                 foundOne = true;
-                expontentDigits.append((char) read());
+                expontentDigits.append((char) readNumberChar());
             }
             
             if (!foundOne) {
-                throw makeException("Expected at least one digit after 'E', got '" + (char) peek() + "'");
+                throw makeExceptionAtNext("Expected at least one digit after 'E', got '" + (char) peek() + "'");
             }
         }
     }
@@ -594,22 +1650,77 @@ public class JsonParser implements Closeable {
      */
     private void readAndAssert(String expected) throws ParsingException, IOException {
         for (int i = 0; i < expected.length(); i++) {
-            int read = read();
-            if (read != expected.charAt(i)) {
-                throw makeException("Expected " + expected.charAt(i) + ", but got " + (char) read);
+            if (peek() != expected.charAt(i)) {
+                throw makeExceptionAtNext("Expected " + expected.charAt(i) + ", but got " + (char) peek());
             }
+            read();
         }
     }
     
     /**
-     * Creates a {@link FormatException} with the given message. Adds information about the current line number.
+     * Creates a {@link ParsingException} with the given message, positioned at the last read character (i.e. the
+     * one that caused the error). If the last read reached the end of the input, the exception is positioned at the
+     * end of the input, like {@link #makeExceptionAtNext(String)}.
      * 
      * @param message The exception message.
      * 
      * @return The created exception.
      */
     private ParsingException makeException(String message) {
-        return new ParsingException("Line " + (in.getLineNumber() + 1) + ": " + message);
+        return makeException(message, endOfInputRead ? position : Math.max(position - 1, 0));
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the next character to read (i.e. the
+     * one returned by {@link #peek()}).
+     * 
+     * @param message The exception message.
+     * 
+     * @return The created exception.
+     */
+    private ParsingException makeExceptionAtNext(String message) {
+        return makeException(message, position);
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the given index in the
+     * {@link #buffer}.
+     * 
+     * @param message The exception message.
+     * @param index The index in the buffer that the error refers to. May be negative for a character before the
+     *      buffer, as long as there is no line break between it and the start of the buffer.
+     * 
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message, int index) {
+        long[] location = locate(index);
+        long offset = bufferOffset + index;
+        return new ParsingException(message, location[0] + 1, offset - location[1] + 1, offset);
+    }
+    
+    /**
+     * Counts the line breaks up to the given index in the {@link #buffer}. Line breaks are '\n', '\r' or "\r\n".
+     * 
+     * @param index The index in the buffer to count up to (exclusive).
+     * 
+     * @return The number of line breaks in the input before the index, and the offset in the input of the start of
+     *      the line that the index belongs to.
+     */
+    private long[] locate(int index) {
+        long lines = linesBeforeBuffer;
+        long lineStart = lineStartBeforeBuffer;
+        int previous = charBeforeBuffer;
+        for (int i = 0; i < index; i++) {
+            char current = buffer[i];
+            if (current == '\r' || current == '\n') {
+                if (current == '\r' || previous != '\r') {
+                    lines++;
+                }
+                lineStart = bufferOffset + i + 1;
+            }
+            previous = current;
+        }
+        return new long[] {lines, lineStart};
     }
     
 }
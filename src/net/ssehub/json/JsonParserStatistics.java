@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A {@link ParseListener} that aggregates the {@link ParseMetrics} of many parsing calls, possibly from many threads
+ * and parsers. The statistics can be read directly, or via JMX after registering this with
+ * {@link #register(String)}.
+ *
+ * @author Adam
+ */
+public class JsonParserStatistics implements ParseListener, JsonParserStatisticsMXBean {
+    
+    private static final int HISTOGRAM_BUCKETS = 32;
+    
+    private static final JsonToken[] COUNTED_TOKENS = {
+        JsonToken.START_OBJECT, JsonToken.END_OBJECT, JsonToken.START_LIST, JsonToken.END_LIST, JsonToken.KEY,
+        JsonToken.STRING, JsonToken.NUMBER, JsonToken.TRUE, JsonToken.FALSE, JsonToken.NULL,
+    };
+    
+    private final LongAdder parseCount = new LongAdder();
+    
+    private final LongAdder failedParseCount = new LongAdder();
+    
+    private final LongAdder charactersConsumed = new LongAdder();
+    
+    private final AtomicLongArray tokenCounts = new AtomicLongArray(COUNTED_TOKENS.length);
+    
+    private final AtomicInteger maxNestingDepth = new AtomicInteger();
+    
+    private final LongAdder estimatedAllocatedBytes = new LongAdder();
+    
+    private final LongAdder totalNanos = new LongAdder();
+    
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    
+    /**
+     * Creates empty statistics.
+     */
+    public JsonParserStatistics() {
+    }
+    
+    @Override
+    public void parseFinished(ParseMetrics metrics) {
+        parseCount.increment();
+        if (!metrics.isSuccessful()) {
+            failedParseCount.increment();
+        }
+        charactersConsumed.add(metrics.getCharactersConsumed());
+        for (int i = 0; i < COUNTED_TOKENS.length; i++) {
+            long count = metrics.getTokenCount(COUNTED_TOKENS[i]);
+            if (count != 0) {
+                tokenCounts.addAndGet(i, count);
+            }
+        }
+        maxNestingDepth.accumulateAndGet(metrics.getMaxNestingDepth(), Math::max);
+        estimatedAllocatedBytes.add(metrics.getEstimatedAllocatedBytes());
+        
+        long nanos = metrics.getParseNanos();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        latencyHistogram.incrementAndGet(getBucket(nanos / 1000));
+    }
+    
+    /**
+     * Returns the histogram bucket for the given latency.
+     *
+     * @param micros The latency in microseconds.
+     *
+     * @return The index of the bucket.
+     */
+    private static int getBucket(long micros) {
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), HISTOGRAM_BUCKETS - 1);
+    }
+    
+    /**
+     * Registers this as an MXBean in the platform MBean server, with the object name
+     * <code>net.ssehub.json:type=JsonParserStatistics,name=<i>name</i></code>.
+     *
+     * @param name The name to distinguish this from other statistics. Not <code>null</code>.
+     *
+     * @return The object name under which this has been registered, e.g. for unregistering it later.
+     *
+     * @throws JMException If registering fails, e.g. because the name is already in use.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("net.ssehub.json:type=JsonParserStatistics,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+    
+    @Override
+    public long getParseCount() {
+        return parseCount.sum();
+    }
+    
+    @Override
+    public long getFailedParseCount() {
+        return failedParseCount.sum();
+    }
+    
+    @Override
+    public long getCharactersConsumed() {
+        return charactersConsumed.sum();
+    }
+    
+    @Override
+    public Map<String, Long> getTokenCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < COUNTED_TOKENS.length; i++) {
+            result.put(COUNTED_TOKENS[i].name(), tokenCounts.get(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of tokens of the given type that were read.
+     *
+     * @param token The token type.
+     *
+     * @return The number of tokens.
+     */
+    public long getTokenCount(JsonToken token) {
+        long result = 0;
+        for (int i = 0; i < COUNTED_TOKENS.length; i++) {
+            if (COUNTED_TOKENS[i] == token) {
+                result = tokenCounts.get(i);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public long getStringCount() {
+        return getTokenCount(JsonToken.STRING) + getTokenCount(JsonToken.KEY);
+    }
+    
+    @Override
+    public long getNumberCount() {
+        return getTokenCount(JsonToken.NUMBER);
+    }
+    
+    @Override
+    public int getMaxNestingDepth() {
+        return maxNestingDepth.get();
+    }
+    
+    @Override
+    public long getEstimatedAllocatedBytes() {
+        return estimatedAllocatedBytes.sum();
+    }
+    
+    @Override
+    public double getMeanLatencyMicros() {
+        long count = parseCount.sum();
+        return count == 0 ? 0 : totalNanos.sum() / 1000.0 / count;
+    }
+    
+    @Override
+    public long getMaxLatencyMicros() {
+        return maxNanos.get() / 1000;
+    }
+    
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] result = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = latencyHistogram.get(i);
+        }
+        return result;
+    }
+    
+    @Override
+    public long estimateLatencyPercentileMicros(double percentile) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        
+        long result = 0;
+        if (total > 0) {
+            long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            int bucket = 0;
+            while (bucket < HISTOGRAM_BUCKETS - 1 && seen + histogram[bucket] < target) {
+                seen += histogram[bucket];
+                bucket++;
+            }
+            result = bucket < HISTOGRAM_BUCKETS - 1 ? 1L << bucket : getMaxLatencyMicros();
+        }
+        return result;
+    }
+    
+    @Override
+    public void reset() {
+        parseCount.reset();
+        failedParseCount.reset();
+        charactersConsumed.reset();
+        for (int i = 0; i < COUNTED_TOKENS.length; i++) {
+            tokenCounts.set(i, 0);
+        }
+        maxNestingDepth.set(0);
+        estimatedAllocatedBytes.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            latencyHistogram.set(i, 0);
+        }
+    }
+    
+}
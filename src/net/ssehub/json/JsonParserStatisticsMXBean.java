@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Map;
+
+/**
+ * The JMX management interface of {@link JsonParserStatistics}.
+ *
+ * @author Adam
+ */
+public interface JsonParserStatisticsMXBean {
+    
+    /**
+     * Returns the number of parsing calls.
+     *
+     * @return The number of parsing calls, successful or not.
+     */
+    public long getParseCount();
+    
+    /**
+     * Returns the number of parsing calls that threw an exception.
+     *
+     * @return The number of failed parsing calls.
+     */
+    public long getFailedParseCount();
+    
+    /**
+     * Returns the total number of characters consumed from the inputs.
+     *
+     * @return The number of consumed characters.
+     */
+    public long getCharactersConsumed();
+    
+    /**
+     * Returns the number of tokens read per token type.
+     *
+     * @return The number of tokens by the name of the {@link JsonToken}.
+     */
+    public Map<String, Long> getTokenCounts();
+    
+    /**
+     * Returns the total number of strings read, i.e. string values and keys.
+     *
+     * @return The number of strings.
+     */
+    public long getStringCount();
+    
+    /**
+     * Returns the total number of numbers read.
+     *
+     * @return The number of numbers.
+     */
+    public long getNumberCount();
+    
+    /**
+     * Returns the maximum nesting depth reached in any parsing call.
+     *
+     * @return The maximum nesting depth.
+     */
+    public int getMaxNestingDepth();
+    
+    /**
+     * Returns the total estimated heap memory used by the created elements, see {@link ParseMetrics}.
+     *
+     * @return The estimated number of allocated bytes.
+     */
+    public long getEstimatedAllocatedBytes();
+    
+    /**
+     * Returns the mean latency of the parsing calls.
+     *
+     * @return The mean latency in microseconds; 0 if nothing has been parsed yet.
+     */
+    public double getMeanLatencyMicros();
+    
+    /**
+     * Returns the maximum latency of the parsing calls.
+     *
+     * @return The maximum latency in microseconds.
+     */
+    public long getMaxLatencyMicros();
+    
+    /**
+     * Returns the histogram of the latencies. Bucket 0 counts calls that took less than 1 microsecond; bucket
+     * <code>i</code> &gt; 0 counts calls that took at least <code>2^(i-1)</code> and less than <code>2^i</code>
+     * microseconds. The last bucket also counts all longer calls.
+     *
+     * @return The counts of the buckets.
+     */
+    public long[] getLatencyHistogram();
+    
+    /**
+     * Estimates a percentile of the latencies from the histogram.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     *
+     * @return The upper bound of the histogram bucket that contains the percentile, in microseconds; 0 if nothing has
+     *      been parsed yet.
+     */
+    public long estimateLatencyPercentileMicros(double percentile);
+    
+    /**
+     * Resets all statistics to 0.
+     */
+    public void reset();
+    
+}
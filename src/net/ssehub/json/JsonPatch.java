@@ -0,0 +1,550 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A JSON Patch (RFC 6902), i.e. a sequence of operations that modify a document. The operations are parsed once, when
+ * the patch is created, including their JSON Pointers; a patch can then be applied to many documents.
+ * <p>
+ * While applying a patch, the lists and objects on the way to the last modified location are remembered, so that
+ * consecutive operations in the same part of the document only resolve the differing suffix of their path. Several
+ * patches can be combined with {@link #concat(JsonPatch...)}, so that they are applied in a single pass with the same
+ * benefit.
+ * <p>
+ * JSON Merge Patches (RFC 7386) are supported by {@link #applyMergePatch(JsonElement, JsonElement)}.
+ * <p>
+ * Patches modify the lists and objects of the document, so they can't be applied directly to
+ * {@link PersistentJsonObject}s or {@link PersistentJsonList}s; use {@link #applyToCopy(JsonElement)} for these.
+ *
+ * @author Adam
+ */
+public class JsonPatch {
+    
+    /**
+     * The types of operations.
+     */
+    enum Type {
+        ADD, REMOVE, REPLACE, MOVE, COPY, TEST;
+    }
+    
+    private final List<Operation> operations;
+    
+    /**
+     * Creates a patch from its JSON representation, a list of operation objects.
+     *
+     * @param patch The list of operations. Not <code>null</code>.
+     *
+     * @throws ParsingException If the patch is malformed, e.g. an operation misses a required member or has an
+     *      invalid JSON Pointer.
+     */
+    public JsonPatch(JsonList patch) throws ParsingException {
+        List<Operation> parsed = new ArrayList<>(patch.getSize());
+        int index = 0;
+        for (JsonElement element : patch) {
+            if (!(element instanceof JsonObject)) {
+                throw new ParsingException("Operation " + index + " is not an object");
+            }
+            parsed.add(parseOperation((JsonObject) element, index));
+            index++;
+        }
+        this.operations = Collections.unmodifiableList(parsed);
+    }
+    
+    /**
+     * Creates a patch with the given operations.
+     *
+     * @param operations The operations.
+     */
+    JsonPatch(List<Operation> operations) {
+        this.operations = operations;
+    }
+    
+    /**
+     * Parses a single operation.
+     *
+     * @param object The operation object.
+     * @param index The index of the operation in the patch, for error messages.
+     *
+     * @return The parsed operation.
+     *
+     * @throws ParsingException If the operation is malformed.
+     */
+    private static Operation parseOperation(JsonObject object, int index) throws ParsingException {
+        Type type;
+        try {
+            type = Type.valueOf(getMember(object, "op", index).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ParsingException("Operation " + index + " has an unknown op: " + object.getElement("op"));
+        }
+        
+        JsonPointer path = JsonPointer.parse(getMember(object, "path", index));
+        JsonPointer from = null;
+        JsonElement value = null;
+        if (type == Type.MOVE || type == Type.COPY) {
+            from = JsonPointer.parse(getMember(object, "from", index));
+            if (type == Type.MOVE && from.getSize() < path.getSize() && from.isPrefixOf(path)) {
+                throw new ParsingException("Operation " + index + " moves " + from + " into one of its children");
+            }
+        } else if (type != Type.REMOVE) {
+            value = object.getElement("value");
+            if (value == null) {
+                throw new ParsingException("Operation " + index + " has no value");
+            }
+        }
+        return new Operation(type, path, from, value);
+    }
+    
+    /**
+     * Reads a string member of an operation.
+     *
+     * @param object The operation object.
+     * @param key The key of the member.
+     * @param index The index of the operation in the patch, for error messages.
+     *
+     * @return The string value.
+     *
+     * @throws ParsingException If the member is missing or not a string.
+     */
+    private static String getMember(JsonObject object, String key, int index) throws ParsingException {
+        JsonElement element = object.getElement(key);
+        if (!(element instanceof JsonString)) {
+            throw new ParsingException("Operation " + index + " has no string \"" + key + "\"");
+        }
+        return ((JsonString) element).getValue();
+    }
+    
+    /**
+     * Combines several patches into one, which applies the operations of all patches in the given order. Applying the
+     * combined patch is cheaper than applying the patches one after another, since locations that the patches
+     * have in common are only resolved once.
+     *
+     * @param patches The patches to combine.
+     *
+     * @return The combined patch.
+     */
+    public static JsonPatch concat(JsonPatch... patches) {
+        int size = 0;
+        for (JsonPatch patch : patches) {
+            size += patch.operations.size();
+        }
+        List<Operation> combined = new ArrayList<>(size);
+        for (JsonPatch patch : patches) {
+            combined.addAll(patch.operations);
+        }
+        return new JsonPatch(Collections.unmodifiableList(combined));
+    }
+    
+    /**
+     * Returns the number of operations in this patch.
+     *
+     * @return The number of operations.
+     */
+    public int getSize() {
+        return operations.size();
+    }
+    
+    /**
+     * Converts this patch back into its JSON representation.
+     *
+     * @return A list of operation objects.
+     */
+    public JsonList toJson() {
+        JsonList result = new JsonList();
+        for (Operation operation : operations) {
+            JsonObject object = new JsonObject();
+            object.putElement("op", new JsonString(operation.type.name().toLowerCase(Locale.ROOT)));
+            if (operation.from != null) {
+                object.putElement("from", new JsonString(operation.from.toString()));
+            }
+            object.putElement("path", new JsonString(operation.path.toString()));
+            if (operation.value != null) {
+                object.putElement("value", operation.value.deepCopy());
+            }
+            result.addElement(object);
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+    
+    /**
+     * Applies this patch to the given document. The document is modified in place; if an operation fails, the
+     * operations before it stay applied. Added values are copied, so that the document doesn't share lists or
+     * objects with this patch.
+     *
+     * @param document The document to patch. Not <code>null</code>.
+     *
+     * @return The patched document. This is the given document, unless an operation replaced the whole document.
+     *
+     * @throws JsonPatchException If an operation can't be applied, e.g. because its path doesn't exist or a
+     *      <code>test</code> operation fails.
+     */
+    public JsonElement apply(JsonElement document) throws JsonPatchException {
+        Patcher patcher = new Patcher(document);
+        int index = 0;
+        for (Operation operation : operations) {
+            patcher.applyOperation(operation, index);
+            index++;
+        }
+        return patcher.root;
+    }
+    
+    /**
+     * Applies this patch to a copy of the given document. The given document is not modified, also if an operation
+     * fails. The copy is created with {@link JsonElement#deepCopy()}, so the result is mutable, also for persistent
+     * documents.
+     *
+     * @param document The document to patch. Not <code>null</code>.
+     *
+     * @return The patched copy of the document.
+     *
+     * @throws JsonPatchException If an operation can't be applied, e.g. because its path doesn't exist or a
+     *      <code>test</code> operation fails.
+     */
+    public JsonElement applyToCopy(JsonElement document) throws JsonPatchException {
+        return apply(document.deepCopy());
+    }
+    
+    /**
+     * Applies a JSON Merge Patch (RFC 7386) to the given target. Members of objects in the patch replace the members
+     * with the same key in the target, recursively for objects; <code>null</code> members remove them. Anything else
+     * than an object replaces the target as a whole.
+     * <p>
+     * Objects in the target are modified in place. Values from the patch are copied, so that the result doesn't share
+     * lists or objects with the patch.
+     *
+     * @param target The document to patch. May be <code>null</code>, which is treated like a missing element.
+     * @param patch The merge patch. Not <code>null</code>.
+     *
+     * @return The patched document. This is the given target, if both the target and the patch are objects.
+     */
+    public static JsonElement applyMergePatch(JsonElement target, JsonElement patch) {
+        JsonElement result;
+        if (patch instanceof JsonObject) {
+            JsonObject object = target instanceof JsonObject ? (JsonObject) target : new JsonObject();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) patch).members()) {
+                if (member.getValue() instanceof JsonNull) {
+                    object.removeElement(member.getKey());
+                } else {
+                    object.putElement(member.getKey(),
+                            applyMergePatch(object.getElement(member.getKey()), member.getValue()));
+                }
+            }
+            result = object;
+            
+        } else {
+            result = patch.deepCopy();
+        }
+        return result;
+    }
+    
+    /**
+     * The state of a single application of the operations to a document.
+     */
+    private static final class Patcher {
+        
+        /**
+         * The root of the patched document.
+         */
+        private JsonElement root;
+        
+        /**
+         * The path whose parent was resolved last. The elements that its first {@link #cachedDepth} tokens point to
+         * are cached in {@link #chain}.
+         */
+        private JsonPointer cachedPath;
+        
+        private int cachedDepth;
+        
+        /**
+         * The elements on {@link #cachedPath}: <code>chain[i]</code> is the element that the first <code>i</code>
+         * tokens point to. <code>chain[0]</code> is always the root.
+         */
+        private JsonElement[] chain;
+        
+        /**
+         * Creates a patcher for the given document.
+         *
+         * @param document The root of the document.
+         */
+        Patcher(JsonElement document) {
+            this.root = document;
+            this.cachedPath = JsonPointer.ROOT;
+            this.cachedDepth = 0;
+            this.chain = new JsonElement[8];
+            this.chain[0] = document;
+        }
+        
+        /**
+         * Applies a single operation.
+         *
+         * @param operation The operation to apply.
+         * @param index The index of the operation, for error messages.
+         *
+         * @throws JsonPatchException If the operation can't be applied.
+         */
+        private void applyOperation(Operation operation, int index) throws JsonPatchException {
+            switch (operation.type) {
+            case ADD:
+                add(operation.path, operation.value.deepCopy(), index);
+                break;
+            case REMOVE:
+                remove(operation.path, index);
+                break;
+            case REPLACE:
+                replace(operation.path, operation.value.deepCopy(), index);
+                break;
+            case MOVE:
+                if (operation.from.equals(operation.path)) {
+                    get(operation.from, index);
+                } else {
+                    add(operation.path, remove(operation.from, index), index);
+                }
+                break;
+            case COPY:
+                add(operation.path, get(operation.from, index).deepCopy(), index);
+                break;
+            case TEST:
+                // numbers are equal if they are mathematically equal (RFC 6902, section 4.6), e.g. 1 and 1.0
+                JsonElement actual = JsonElement.canonical(get(operation.path, index));
+                if (!actual.equals(JsonElement.canonical(operation.value))) {
+                    throw new JsonPatchException("Operation " + index + ": test of " + operation.path + " failed");
+                }
+                break;
+            default:
+                throw new AssertionError(operation.type);
+            }
+        }
+        
+        /**
+         * Resolves the parent of the element that the given path points to. Re-uses the elements of {@link #chain}
+         * for the tokens that the path has in common with the path resolved before. This is sound, since each
+         * operation only modifies the children of the parent it resolved last; the elements on the way to that parent
+         * stay the same.
+         *
+         * @param path The path, not the root pointer.
+         * @param index The index of the operation, for error messages.
+         *
+         * @return The parent, which is a list or object.
+         *
+         * @throws JsonPatchException If the parent doesn't exist or is not a list or object.
+         */
+        private JsonElement resolveParent(JsonPointer path, int index) throws JsonPatchException {
+            int depth = path.getSize() - 1;
+            int common = 0;
+            int max = Math.min(depth, cachedDepth);
+            while (common < max && cachedPath.getToken(common).equals(path.getToken(common))) {
+                common++;
+            }
+            
+            if (chain.length <= depth) {
+                JsonElement[] newChain = new JsonElement[Math.max(depth + 1, chain.length * 2)];
+                System.arraycopy(chain, 0, newChain, 0, common + 1);
+                chain = newChain;
+            }
+            JsonElement current = chain[common];
+            for (int i = common; i < depth; i++) {
+                current = JsonPointer.getChild(current, path.getToken(i));
+                if (current == null) {
+                    cachedDepth = 0;
+                    throw new JsonPatchException("Operation " + index + ": parent of " + path + " does not exist");
+                }
+                chain[i + 1] = current;
+            }
+            if (!(current instanceof JsonObject) && !(current instanceof JsonList)) {
+                cachedDepth = 0;
+                throw new JsonPatchException("Operation " + index + ": parent of " + path
+                        + " is not a list or object");
+            }
+            cachedPath = path;
+            cachedDepth = depth;
+            return current;
+        }
+        
+        /**
+         * Sets the root of the document.
+         *
+         * @param newRoot The new root.
+         */
+        private void setRoot(JsonElement newRoot) {
+            root = newRoot;
+            chain[0] = newRoot;
+            cachedDepth = 0;
+        }
+        
+        /**
+         * Returns the element at the given path.
+         *
+         * @param path The path of the element.
+         * @param index The index of the operation, for error messages.
+         *
+         * @return The element.
+         *
+         * @throws JsonPatchException If the element doesn't exist.
+         */
+        private JsonElement get(JsonPointer path, int index) throws JsonPatchException {
+            JsonElement result = root;
+            if (path.getSize() > 0) {
+                result = JsonPointer.getChild(resolveParent(path, index), path.getToken(path.getSize() - 1));
+            }
+            if (result == null) {
+                throw new JsonPatchException("Operation " + index + ": " + path + " does not exist");
+            }
+            return result;
+        }
+        
+        /**
+         * Adds a value to an object or inserts it into a list.
+         *
+         * @param path The path to add the value at.
+         * @param value The value to add.
+         * @param index The index of the operation, for error messages.
+         *
+         * @throws JsonPatchException If the parent doesn't exist or the list index is invalid.
+         */
+        private void add(JsonPointer path, JsonElement value, int index) throws JsonPatchException {
+            if (path.getSize() == 0) {
+                setRoot(value);
+                
+            } else {
+                JsonElement parent = resolveParent(path, index);
+                String token = path.getToken(path.getSize() - 1);
+                if (parent instanceof JsonObject) {
+                    ((JsonObject) parent).putElement(token, value);
+                } else {
+                    JsonList list = (JsonList) parent;
+                    if (token.equals("-")) {
+                        list.addElement(value);
+                    } else {
+                        list.addElement(checkIndex(token, list.getSize(), path, index), value);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Removes an element.
+         *
+         * @param path The path of the element to remove.
+         * @param index The index of the operation, for error messages.
+         *
+         * @return The removed element.
+         *
+         * @throws JsonPatchException If the element doesn't exist, or is the root.
+         */
+        private JsonElement remove(JsonPointer path, int index) throws JsonPatchException {
+            if (path.getSize() == 0) {
+                throw new JsonPatchException("Operation " + index + ": can't remove the whole document");
+            }
+            JsonElement result = get(path, index);
+            JsonElement parent = chain[path.getSize() - 1];
+            String token = path.getToken(path.getSize() - 1);
+            if (parent instanceof JsonObject) {
+                ((JsonObject) parent).removeElement(token);
+            } else {
+                ((JsonList) parent).removeElement(JsonPointer.parseIndex(token));
+            }
+            return result;
+        }
+        
+        /**
+         * Replaces an existing element.
+         *
+         * @param path The path of the element to replace.
+         * @param value The new value.
+         * @param index The index of the operation, for error messages.
+         *
+         * @throws JsonPatchException If the element doesn't exist.
+         */
+        private void replace(JsonPointer path, JsonElement value, int index) throws JsonPatchException {
+            if (path.getSize() == 0) {
+                setRoot(value);
+                
+            } else {
+                get(path, index);
+                JsonElement parent = chain[path.getSize() - 1];
+                String token = path.getToken(path.getSize() - 1);
+                if (parent instanceof JsonObject) {
+                    ((JsonObject) parent).putElement(token, value);
+                } else {
+                    ((JsonList) parent).setElement(JsonPointer.parseIndex(token), value);
+                }
+            }
+        }
+        
+        /**
+         * Parses a list index and checks its bounds.
+         *
+         * @param token The index token.
+         * @param max The maximum allowed index, inclusive.
+         * @param path The path, for error messages.
+         * @param index The index of the operation, for error messages.
+         *
+         * @return The parsed index.
+         *
+         * @throws JsonPatchException If the index is invalid or out of bounds.
+         */
+        private static int checkIndex(String token, int max, JsonPointer path, int index)
+                throws JsonPatchException {
+            int result = JsonPointer.parseIndex(token);
+            if (result < 0 || result > max) {
+                throw new JsonPatchException("Operation " + index + ": invalid list index in " + path);
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * A single parsed operation.
+     */
+    static final class Operation {
+        
+        private final Type type;
+        
+        private final JsonPointer path;
+        
+        private final JsonPointer from;
+        
+        private final JsonElement value;
+        
+        /**
+         * Creates an operation.
+         *
+         * @param type The type of the operation.
+         * @param path The target path.
+         * @param from The source path of move and copy operations, otherwise <code>null</code>.
+         * @param value The value of add, replace and test operations, otherwise <code>null</code>.
+         */
+        Operation(Type type, JsonPointer path, JsonPointer from, JsonElement value) {
+            this.type = type;
+            this.path = path;
+            this.from = from;
+            this.value = value;
+        }
+        
+    }
+    
+}
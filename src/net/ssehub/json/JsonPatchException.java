@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+/**
+ * Indicates that a {@link JsonPatch} could not be applied to a document, e.g. because a path does not exist or a
+ * <code>test</code> operation failed.
+ *
+ * @author Adam
+ */
+public class JsonPatchException extends JsonException {
+    
+    private static final long serialVersionUID = 2870453211598702963L;
+    
+    /**
+     * Creates this exception.
+     *
+     * @param message A message describing the exception.
+     */
+    public JsonPatchException(String message) {
+        super(message);
+    }
+    
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A JSON Pointer (RFC 6901), which identifies an element in a document by a sequence of reference tokens. Each token
+ * is either the key of an object member, or the index of a list element. Instances are immutable, and the tokens are
+ * stored unescaped, so that resolving a pointer doesn't need to parse it again.
+ *
+ * @author Adam
+ */
+public class JsonPointer {
+    
+    /**
+     * The empty pointer, which points to the whole document.
+     */
+    public static final JsonPointer ROOT = new JsonPointer(new String[0]);
+    
+    private final String[] tokens;
+    
+    /**
+     * Creates a pointer with the given tokens.
+     *
+     * @param tokens The unescaped tokens. The array is not copied.
+     */
+    private JsonPointer(String[] tokens) {
+        this.tokens = tokens;
+    }
+    
+    /**
+     * Parses a JSON Pointer in its string representation, e.g. <code>/a/0/b~1c</code>.
+     *
+     * @param pointer The string representation of the pointer. Not <code>null</code>.
+     *
+     * @return The parsed pointer.
+     *
+     * @throws ParsingException If the pointer is not empty and doesn't start with a slash, or contains an invalid
+     *      escape sequence.
+     */
+    public static JsonPointer parse(String pointer) throws ParsingException {
+        JsonPointer result;
+        if (pointer.isEmpty()) {
+            result = ROOT;
+            
+        } else {
+            if (pointer.charAt(0) != '/') {
+                throw new ParsingException("JSON Pointer must start with a slash: \"" + pointer + "\"");
+            }
+            int numTokens = 0;
+            for (int i = 0; i < pointer.length(); i++) {
+                if (pointer.charAt(i) == '/') {
+                    numTokens++;
+                }
+            }
+            
+            String[] tokens = new String[numTokens];
+            int start = 1;
+            for (int i = 0; i < numTokens; i++) {
+                int end = pointer.indexOf('/', start);
+                if (end == -1) {
+                    end = pointer.length();
+                }
+                tokens[i] = unescape(pointer, start, end);
+                start = end + 1;
+            }
+            result = new JsonPointer(tokens);
+        }
+        return result;
+    }
+    
+    /**
+     * Unescapes <code>~0</code> and <code>~1</code> in a token.
+     *
+     * @param pointer The string containing the token.
+     * @param start The start index of the token, inclusive.
+     * @param end The end index of the token, exclusive.
+     *
+     * @return The unescaped token.
+     *
+     * @throws ParsingException If the token contains a <code>~</code> not followed by <code>0</code> or
+     *      <code>1</code>.
+     */
+    private static String unescape(String pointer, int start, int end) throws ParsingException {
+        String result;
+        int tilde = pointer.indexOf('~', start);
+        if (tilde == -1 || tilde >= end) {
+            result = pointer.substring(start, end);
+            
+        } else {
+            StringBuilder token = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char character = pointer.charAt(i);
+                if (character == '~') {
+                    char next = i + 1 < end ? pointer.charAt(i + 1) : ' ';
+                    if (next != '0' && next != '1') {
+                        throw new ParsingException("Invalid escape sequence in JSON Pointer: \"" + pointer + "\"");
+                    }
+                    token.append(next == '0' ? '~' : '/');
+                    i++;
+                } else {
+                    token.append(character);
+                }
+            }
+            result = token.toString();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a pointer to a member of the element this pointer points to.
+     *
+     * @param token The key of the member (or the index of a list element, as string). Not <code>null</code>.
+     *
+     * @return The new pointer.
+     */
+    public JsonPointer append(String token) {
+        String[] newTokens = Arrays.copyOf(tokens, tokens.length + 1);
+        newTokens[tokens.length] = Objects.requireNonNull(token);
+        return new JsonPointer(newTokens);
+    }
+    
+    /**
+     * Returns a pointer to an element of the list this pointer points to.
+     *
+     * @param index The index of the element.
+     *
+     * @return The new pointer.
+     */
+    public JsonPointer append(int index) {
+        return append(Integer.toString(index));
+    }
+    
+    /**
+     * Returns the pointer to the parent of the element this pointer points to.
+     *
+     * @return The parent pointer.
+     *
+     * @throws IllegalStateException If this is the root pointer.
+     */
+    public JsonPointer getParent() throws IllegalStateException {
+        if (tokens.length == 0) {
+            throw new IllegalStateException("The root pointer has no parent");
+        }
+        return new JsonPointer(Arrays.copyOf(tokens, tokens.length - 1));
+    }
+    
+    /**
+     * Returns the number of tokens in this pointer.
+     *
+     * @return The number of tokens; 0 for the root pointer.
+     */
+    public int getSize() {
+        return tokens.length;
+    }
+    
+    /**
+     * Returns a token of this pointer.
+     *
+     * @param index The index of the token.
+     *
+     * @return The unescaped token.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public String getToken(int index) throws IndexOutOfBoundsException {
+        return tokens[index];
+    }
+    
+    /**
+     * Checks whether this pointer is a prefix of the other pointer, i.e. whether it points to the same element or
+     * one of its ancestors.
+     *
+     * @param other The other pointer. Not <code>null</code>.
+     *
+     * @return Whether this pointer is a prefix of the other pointer.
+     */
+    public boolean isPrefixOf(JsonPointer other) {
+        boolean result = tokens.length <= other.tokens.length;
+        for (int i = 0; result && i < tokens.length; i++) {
+            result = tokens[i].equals(other.tokens[i]);
+        }
+        return result;
+    }
+    
+    /**
+     * Resolves this pointer in the given document.
+     *
+     * @param document The document to resolve this pointer in. Not <code>null</code>.
+     *
+     * @return The element this pointer points to, or <code>null</code> if it doesn't exist.
+     */
+    public JsonElement resolve(JsonElement document) {
+        JsonElement current = document;
+        for (int i = 0; current != null && i < tokens.length; i++) {
+            current = getChild(current, tokens[i]);
+        }
+        return current;
+    }
+    
+    /**
+     * Returns a child of a list or object.
+     *
+     * @param container The list or object.
+     * @param token The key of the member or the index of the element.
+     *
+     * @return The child, or <code>null</code> if it doesn't exist or the container is not a list or object.
+     */
+    static JsonElement getChild(JsonElement container, String token) {
+        JsonElement result = null;
+        if (container instanceof JsonObject) {
+            result = ((JsonObject) container).getElement(token);
+            
+        } else if (container instanceof JsonList) {
+            JsonList list = (JsonList) container;
+            int index = parseIndex(token);
+            if (index >= 0 && index < list.getSize()) {
+                result = list.getElement(index);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Parses a list index token. Only decimal digits without leading zeros are allowed.
+     *
+     * @param token The token to parse.
+     *
+     * @return The index, or -1 if the token is not a valid index.
+     */
+    static int parseIndex(String token) {
+        int result = -1;
+        boolean valid = !token.isEmpty() && token.length() <= 9 && (token.charAt(0) != '0' || token.length() == 1);
+        if (valid) {
+            result = 0;
+            for (int i = 0; i < token.length() && result >= 0; i++) {
+                char digit = token.charAt(i);
+                if (digit >= '0' && digit <= '9') {
+                    result = result * 10 + (digit - '0');
+                } else {
+                    result = -1;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the string representation of this pointer, with <code>~</code> and <code>/</code> in the tokens
+     * escaped.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (String token : tokens) {
+            result.append('/');
+            for (int i = 0; i < token.length(); i++) {
+                char character = token.charAt(i);
+                if (character == '~') {
+                    result.append("~0");
+                } else if (character == '/') {
+                    result.append("~1");
+                } else {
+                    result.append(character);
+                }
+            }
+        }
+        return result.toString();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JsonPointer && Arrays.equals(tokens, ((JsonPointer) obj).tokens);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(tokens);
+    }
+    
+}
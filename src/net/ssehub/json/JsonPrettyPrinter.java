@@ -33,7 +33,7 @@ public class JsonPrettyPrinter implements JsonVisitor<String> {
             
         } else {
             result.append("{\n");
-            for (Map.Entry<String, JsonElement> element : object) {
+            for (Map.Entry<String, JsonElement> element : object.members()) {
                 
                 result.append("\t").append(new JsonString(element.getKey()).accept(this)).append(": ");
                 String[] lines = element.getValue().accept(this).split("\n");
@@ -0,0 +1,765 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.ssehub.json.SchemaNode.Validation;
+
+/**
+ * A JSON Schema that validates documents. The schema is compiled once, when it is created, into a tree of validators
+ * with pre-compiled regular expressions, hashed property names and enum lookup tables; it can then be used to validate
+ * many documents.
+ * <p>
+ * Documents can either be validated as a tree of {@link JsonElement}s with {@link #validate(JsonElement)}, or while
+ * they are parsed with {@link #parse(JsonTokenReader)}. The latter rejects an invalid document as soon as the first
+ * violation is read, before the rest of the document is parsed. Only values whose schema needs the whole value at
+ * once (<code>enum</code>, <code>const</code>, <code>anyOf</code>, <code>oneOf</code>, <code>not</code>,
+ * <code>contains</code> and <code>uniqueItems</code>) are read completely before they are validated.
+ * <p>
+ * The following keywords are supported; all other keywords, such as <code>format</code>, are ignored:
+ * <ul>
+ * <li><code>type</code>, <code>enum</code>, <code>const</code></li>
+ * <li><code>minimum</code>, <code>maximum</code>, <code>exclusiveMinimum</code>, <code>exclusiveMaximum</code>,
+ *      <code>multipleOf</code></li>
+ * <li><code>minLength</code>, <code>maxLength</code>, <code>pattern</code></li>
+ * <li><code>items</code>, <code>prefixItems</code>, <code>additionalItems</code>, <code>minItems</code>,
+ *      <code>maxItems</code>, <code>uniqueItems</code>, <code>contains</code></li>
+ * <li><code>properties</code>, <code>patternProperties</code>, <code>additionalProperties</code>,
+ *      <code>propertyNames</code>, <code>required</code>, <code>minProperties</code>,
+ *      <code>maxProperties</code></li>
+ * <li><code>allOf</code>, <code>anyOf</code>, <code>oneOf</code>, <code>not</code></li>
+ * <li><code>$ref</code> to locations in the same schema (e.g. <code>#/$defs/node</code>)</li>
+ * </ul>
+ * Numbers are compared as <code>double</code>s, except for <code>multipleOf</code>, which is checked exactly.
+ *
+ * @author Adam
+ */
+public class JsonSchema {
+    
+    private final JsonElement root;
+    
+    private final Map<JsonPointer, SchemaNode> compiled = new HashMap<>();
+    
+    private final SchemaNode rootNode;
+    
+    /**
+     * Compiles the given schema.
+     *
+     * @param schema The schema; an object or a boolean. Not <code>null</code>.
+     *
+     * @throws ParsingException If the schema is malformed, e.g. a keyword has a value of the wrong type, a regular
+     *      expression is invalid or a <code>$ref</code> can't be resolved.
+     */
+    public JsonSchema(JsonElement schema) throws ParsingException {
+        this.root = schema;
+        this.rootNode = compile(schema, JsonPointer.ROOT);
+    }
+    
+    /**
+     * Validates a document.
+     *
+     * @param document The document to validate. Not <code>null</code>.
+     *
+     * @return A message for each violation of the schema, prefixed with the location in the document as a URI
+     *      fragment (e.g. <code>#/items/0: expected type string, got number</code>). Empty if the document is valid.
+     */
+    public List<String> validate(JsonElement document) {
+        List<String> errors = new ArrayList<>();
+        rootNode.validate(document, new Validation(errors));
+        return errors;
+    }
+    
+    /**
+     * Checks whether a document is valid. This stops at the first violation and doesn't create error messages.
+     *
+     * @param document The document to validate. Not <code>null</code>.
+     *
+     * @return Whether the document is valid.
+     */
+    public boolean isValid(JsonElement document) {
+        return rootNode.validate(document, new Validation(null));
+    }
+    
+    /**
+     * Reads the next value from the given reader while validating it.
+     *
+     * @param reader The reader to read the value from. Not <code>null</code>.
+     *
+     * @return The read value, which is valid according to this schema. Never <code>null</code>.
+     *
+     * @throws JsonSchemaException If the value violates the schema. The rest of the value has not been read then.
+     * @throws ParsingException If the value is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public JsonElement parse(JsonTokenReader reader) throws JsonSchemaException, ParsingException, IOException {
+        List<SchemaNode> nodes = new ArrayList<>();
+        rootNode.collectApplicable(nodes);
+        return new StreamingValidator(reader).readValue(nodes);
+    }
+    
+    /**
+     * Validates values while they are read from a {@link JsonTokenReader}.
+     */
+    private static final class StreamingValidator {
+        
+        private final JsonTokenReader reader;
+        
+        private final List<String> errors = new ArrayList<>(1);
+        
+        private final Validation validation = new Validation(errors);
+        
+        /**
+         * Creates a validator for the given reader.
+         *
+         * @param reader The reader to read values from.
+         */
+        private StreamingValidator(JsonTokenReader reader) {
+            this.reader = reader;
+        }
+        
+        /**
+         * Throws an exception for the first violation, if any has been found.
+         *
+         * @throws JsonSchemaException If a violation has been found.
+         */
+        private void throwIfInvalid() throws JsonSchemaException {
+            if (!errors.isEmpty()) {
+                throw new JsonSchemaException(errors.get(0));
+            }
+        }
+        
+        /**
+         * Reads and validates the next value.
+         *
+         * @param nodes The schemas that apply to the value, including all via <code>$ref</code> and
+         *      <code>allOf</code>.
+         *
+         * @return The read value.
+         *
+         * @throws JsonSchemaException If the value violates a schema.
+         * @throws ParsingException If the value is malformed.
+         * @throws IOException If reading the input fails.
+         */
+        private JsonElement readValue(List<SchemaNode> nodes)
+                throws JsonSchemaException, ParsingException, IOException {
+            boolean needsWholeValue = false;
+            for (SchemaNode node : nodes) {
+                needsWholeValue |= node.needsWholeValue();
+                if (node.alwaysFalse) {
+                    // reject before even looking at the value
+                    node.checkStart(0, validation);
+                    throwIfInvalid();
+                }
+            }
+            
+            JsonToken token = reader.peek();
+            JsonElement result;
+            if (!needsWholeValue && token == JsonToken.START_OBJECT) {
+                result = readObject(nodes);
+            } else if (!needsWholeValue && token == JsonToken.START_LIST) {
+                result = readList(nodes);
+            } else {
+                result = reader.readElement();
+                for (SchemaNode node : nodes) {
+                    node.validateOwn(result, validation);
+                    throwIfInvalid();
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Reads and validates an object.
+         *
+         * @param nodes The schemas that apply to the object.
+         *
+         * @return The read object.
+         *
+         * @throws JsonSchemaException If the object violates a schema.
+         * @throws ParsingException If the object is malformed.
+         * @throws IOException If reading the input fails.
+         */
+        private JsonObject readObject(List<SchemaNode> nodes)
+                throws JsonSchemaException, ParsingException, IOException {
+            checkStart(nodes, SchemaNode.OBJECT_TYPE);
+            reader.expect(JsonToken.START_OBJECT);
+            
+            JsonObject result = new JsonObject();
+            List<SchemaNode> memberNodes = new ArrayList<>();
+            String key = reader.nextKey();
+            while (key != null) {
+                validation.push(key);
+                memberNodes.clear();
+                for (SchemaNode node : nodes) {
+                    if (node.hasMemberSchemas()) {
+                        List<SchemaNode> direct = new ArrayList<>();
+                        node.getMemberSchemas(key, direct, validation);
+                        throwIfInvalid();
+                        for (SchemaNode memberNode : direct) {
+                            memberNode.collectApplicable(memberNodes);
+                        }
+                    }
+                }
+                result.putElement(key, readValue(memberNodes));
+                validation.pop();
+                
+                for (SchemaNode node : nodes) {
+                    if (result.getSize() > node.maxProperties) {
+                        node.validatePropertyCount(result.getSize(), validation);
+                        throwIfInvalid();
+                    }
+                }
+                key = reader.nextKey();
+            }
+            
+            for (SchemaNode node : nodes) {
+                node.validatePropertyCount(result.getSize(), validation);
+                if (node.required != null) {
+                    for (String required : node.required) {
+                        if (result.getElement(required) == null) {
+                            validation.fail("misses the required property \"" + required + "\"");
+                        }
+                    }
+                }
+                throwIfInvalid();
+            }
+            return result;
+        }
+        
+        /**
+         * Reads and validates a list.
+         *
+         * @param nodes The schemas that apply to the list.
+         *
+         * @return The read list.
+         *
+         * @throws JsonSchemaException If the list violates a schema.
+         * @throws ParsingException If the list is malformed.
+         * @throws IOException If reading the input fails.
+         */
+        private JsonList readList(List<SchemaNode> nodes) throws JsonSchemaException, ParsingException, IOException {
+            checkStart(nodes, SchemaNode.ARRAY_TYPE);
+            reader.expect(JsonToken.START_LIST);
+            
+            JsonList result = new JsonList();
+            List<SchemaNode> itemNodes = new ArrayList<>();
+            while (reader.hasNextElement()) {
+                int index = result.getSize();
+                validation.push(index);
+                itemNodes.clear();
+                for (SchemaNode node : nodes) {
+                    SchemaNode itemNode = node.getItemSchema(index);
+                    if (itemNode != null) {
+                        itemNode.collectApplicable(itemNodes);
+                    }
+                }
+                result.addElement(readValue(itemNodes));
+                validation.pop();
+                
+                for (SchemaNode node : nodes) {
+                    if (result.getSize() > node.maxItems) {
+                        node.validateItemCount(result.getSize(), validation);
+                        throwIfInvalid();
+                    }
+                }
+            }
+            
+            for (SchemaNode node : nodes) {
+                node.validateItemCount(result.getSize(), validation);
+                throwIfInvalid();
+            }
+            return result;
+        }
+        
+        /**
+         * Checks the type of a list or object before it is read.
+         *
+         * @param nodes The schemas that apply to the value.
+         * @param type The type bit of the value.
+         *
+         * @throws JsonSchemaException If a schema doesn't allow the type.
+         */
+        private void checkStart(List<SchemaNode> nodes, int type) throws JsonSchemaException {
+            for (SchemaNode node : nodes) {
+                node.checkStart(type, validation);
+                throwIfInvalid();
+            }
+        }
+        
+    }
+    
+    /**
+     * Describes a location in the schema for exception messages.
+     *
+     * @param location The location.
+     *
+     * @return A description of the location.
+     */
+    private static String describe(JsonPointer location) {
+        return "#" + location;
+    }
+    
+    /**
+     * Compiles a (sub-)schema. Each location is only compiled once, so that recursive references end up in the same
+     * node.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema in the root schema.
+     *
+     * @return The compiled schema.
+     *
+     * @throws ParsingException If the schema is malformed.
+     */
+    private SchemaNode compile(JsonElement schema, JsonPointer location) throws ParsingException {
+        SchemaNode result = compiled.get(location);
+        if (result == null) {
+            result = new SchemaNode();
+            compiled.put(location, result);
+            
+            if (schema instanceof JsonBoolean) {
+                result.alwaysFalse = !((JsonBoolean) schema).getValue();
+            } else if (schema instanceof JsonObject) {
+                JsonObject object = (JsonObject) schema;
+                compileGeneric(object, location, result);
+                compileNumber(object, location, result);
+                compileString(object, location, result);
+                compileList(object, location, result);
+                compileObject(object, location, result);
+            } else {
+                throw new ParsingException("Schema at " + describe(location) + " is neither an object nor a boolean");
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Compiles the keywords that apply to values of any type.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema.
+     * @param node The node to store the compiled keywords in.
+     *
+     * @throws ParsingException If a keyword is malformed.
+     */
+    private void compileGeneric(JsonObject schema, JsonPointer location, SchemaNode node) throws ParsingException {
+        JsonElement type = schema.getElement("type");
+        if (type != null) {
+            List<String> typeNames = type instanceof JsonList ? getStrings(schema, "type", location)
+                    : Collections.singletonList(getString(schema, "type", location));
+            for (String typeName : typeNames) {
+                int bit = SchemaNode.typeBit(typeName);
+                if (bit == 0) {
+                    throw malformed(location, "type", "has unknown type \"" + typeName + "\"");
+                }
+                node.types |= bit;
+            }
+        }
+        
+        JsonElement enumValues = schema.getElement("enum");
+        if (enumValues != null) {
+            if (!(enumValues instanceof JsonList)) {
+                throw malformed(location, "enum", "is not a list");
+            }
+            Set<JsonElement> values = new HashSet<>();
+            for (JsonElement value : (JsonList) enumValues) {
+                values.add(JsonElement.canonical(value));
+            }
+            node.enumValues = values;
+        }
+        JsonElement constValue = schema.getElement("const");
+        if (constValue != null) {
+            node.constValue = JsonElement.canonical(constValue);
+        }
+        
+        node.allOf = getSchemas(schema, "allOf", location);
+        node.anyOf = getSchemas(schema, "anyOf", location);
+        node.oneOf = getSchemas(schema, "oneOf", location);
+        node.not = getSchema(schema, "not", location);
+        
+        if (schema.getElement("$ref") != null) {
+            node.ref = resolve(getString(schema, "$ref", location), location);
+        }
+    }
+    
+    /**
+     * Resolves and compiles a <code>$ref</code>.
+     *
+     * @param ref The reference.
+     * @param location The location of the schema containing the reference.
+     *
+     * @return The compiled referenced schema.
+     *
+     * @throws ParsingException If the reference can't be resolved.
+     */
+    private SchemaNode resolve(String ref, JsonPointer location) throws ParsingException {
+        if (!ref.startsWith("#")) {
+            throw malformed(location, "$ref", "is not a reference into the same schema: " + ref);
+        }
+        JsonPointer pointer = JsonPointer.parse(ref.substring(1));
+        JsonElement target = pointer.resolve(root);
+        if (target == null) {
+            throw malformed(location, "$ref", "points to a non-existing location: " + ref);
+        }
+        return compile(target, pointer);
+    }
+    
+    /**
+     * Compiles the keywords that apply to numbers.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema.
+     * @param node The node to store the compiled keywords in.
+     *
+     * @throws ParsingException If a keyword is malformed.
+     */
+    private void compileNumber(JsonObject schema, JsonPointer location, SchemaNode node) throws ParsingException {
+        node.minimum = getNumber(schema, "minimum", location);
+        node.maximum = getNumber(schema, "maximum", location);
+        
+        // draft 4 uses booleans that turn minimum and maximum into exclusive bounds
+        if (schema.getElement("exclusiveMinimum") instanceof JsonBoolean) {
+            if (((JsonBoolean) schema.getElement("exclusiveMinimum")).getValue()) {
+                node.exclusiveMinimum = node.minimum;
+                node.minimum = null;
+            }
+        } else {
+            node.exclusiveMinimum = getNumber(schema, "exclusiveMinimum", location);
+        }
+        if (schema.getElement("exclusiveMaximum") instanceof JsonBoolean) {
+            if (((JsonBoolean) schema.getElement("exclusiveMaximum")).getValue()) {
+                node.exclusiveMaximum = node.maximum;
+                node.maximum = null;
+            }
+        } else {
+            node.exclusiveMaximum = getNumber(schema, "exclusiveMaximum", location);
+        }
+        
+        JsonElement multipleOf = schema.getElement("multipleOf");
+        if (multipleOf != null) {
+            Double value = getNumber(schema, "multipleOf", location);
+            if (value <= 0 || Double.isInfinite(value)) {
+                throw malformed(location, "multipleOf", "is not a positive number");
+            }
+            node.multipleOf = new BigDecimal(((JsonNumber) multipleOf).getValue().toString());
+            try {
+                node.integralMultipleOf = node.multipleOf.longValueExact();
+            } catch (ArithmeticException e) {
+                // not an integer, so multiples are checked with BigDecimals
+            }
+        }
+    }
+    
+    /**
+     * Compiles the keywords that apply to strings.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema.
+     * @param node The node to store the compiled keywords in.
+     *
+     * @throws ParsingException If a keyword is malformed.
+     */
+    private void compileString(JsonObject schema, JsonPointer location, SchemaNode node) throws ParsingException {
+        node.minLength = getCount(schema, "minLength", location, 0);
+        node.maxLength = getCount(schema, "maxLength", location, Integer.MAX_VALUE);
+        if (schema.getElement("pattern") != null) {
+            node.pattern = compilePattern(getString(schema, "pattern", location), location, "pattern");
+        }
+    }
+    
+    /**
+     * Compiles the keywords that apply to lists.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema.
+     * @param node The node to store the compiled keywords in.
+     *
+     * @throws ParsingException If a keyword is malformed.
+     */
+    private void compileList(JsonObject schema, JsonPointer location, SchemaNode node) throws ParsingException {
+        if (schema.getElement("items") instanceof JsonList) {
+            // draft 7 and earlier: a list of items is what is now called prefixItems
+            node.prefixItems = getSchemas(schema, "items", location);
+            node.items = getSchema(schema, "additionalItems", location);
+        } else {
+            node.prefixItems = getSchemas(schema, "prefixItems", location);
+            node.items = getSchema(schema, "items", location);
+        }
+        node.contains = getSchema(schema, "contains", location);
+        node.minItems = getCount(schema, "minItems", location, 0);
+        node.maxItems = getCount(schema, "maxItems", location, Integer.MAX_VALUE);
+        
+        JsonElement uniqueItems = schema.getElement("uniqueItems");
+        if (uniqueItems != null) {
+            if (!(uniqueItems instanceof JsonBoolean)) {
+                throw malformed(location, "uniqueItems", "is not a boolean");
+            }
+            node.uniqueItems = ((JsonBoolean) uniqueItems).getValue();
+        }
+    }
+    
+    /**
+     * Compiles the keywords that apply to objects.
+     *
+     * @param schema The schema.
+     * @param location The location of the schema.
+     * @param node The node to store the compiled keywords in.
+     *
+     * @throws ParsingException If a keyword is malformed.
+     */
+    private void compileObject(JsonObject schema, JsonPointer location, SchemaNode node) throws ParsingException {
+        Map<String, SchemaNode> properties = getSchemaMap(schema, "properties", location);
+        if (properties != null) {
+            node.properties = new HashMap<>(properties);
+        }
+        
+        Map<String, SchemaNode> patternProperties = getSchemaMap(schema, "patternProperties", location);
+        if (patternProperties != null) {
+            node.patternKeys = new Pattern[patternProperties.size()];
+            node.patternValues = new SchemaNode[patternProperties.size()];
+            int index = 0;
+            for (Map.Entry<String, SchemaNode> entry : patternProperties.entrySet()) {
+                node.patternKeys[index] = compilePattern(entry.getKey(), location, "patternProperties");
+                node.patternValues[index] = entry.getValue();
+                index++;
+            }
+        }
+        node.additionalProperties = getSchema(schema, "additionalProperties", location);
+        node.propertyNames = getSchema(schema, "propertyNames", location);
+        
+        if (schema.getElement("required") != null) {
+            Set<String> required = new LinkedHashSet<>(getStrings(schema, "required", location));
+            node.required = required.toArray(new String[required.size()]);
+        }
+        node.minProperties = getCount(schema, "minProperties", location, 0);
+        node.maxProperties = getCount(schema, "maxProperties", location, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates an exception for a malformed keyword.
+     *
+     * @param location The location of the schema.
+     * @param keyword The malformed keyword.
+     * @param message A description of the problem.
+     *
+     * @return The exception to throw.
+     */
+    private static ParsingException malformed(JsonPointer location, String keyword, String message) {
+        return new ParsingException("Keyword \"" + keyword + "\" of schema at " + describe(location) + " " + message);
+    }
+    
+    /**
+     * Compiles a regular expression.
+     *
+     * @param regex The regular expression.
+     * @param location The location of the schema.
+     * @param keyword The keyword containing the regular expression.
+     *
+     * @return The compiled pattern.
+     *
+     * @throws ParsingException If the regular expression is invalid.
+     */
+    private static Pattern compilePattern(String regex, JsonPointer location, String keyword)
+            throws ParsingException {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw malformed(location, keyword, "has an invalid regular expression: " + e.getDescription());
+        }
+    }
+    
+    /**
+     * Reads a string keyword.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The string value.
+     *
+     * @throws ParsingException If the keyword is not a string.
+     */
+    private static String getString(JsonObject schema, String keyword, JsonPointer location)
+            throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        if (!(value instanceof JsonString)) {
+            throw malformed(location, keyword, "is not a string");
+        }
+        return ((JsonString) value).getValue();
+    }
+    
+    /**
+     * Reads a keyword that is a list of strings.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The strings.
+     *
+     * @throws ParsingException If the keyword is not a list of strings.
+     */
+    private static List<String> getStrings(JsonObject schema, String keyword, JsonPointer location)
+            throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        if (!(value instanceof JsonList)) {
+            throw malformed(location, keyword, "is not a list");
+        }
+        List<String> result = new ArrayList<>();
+        for (JsonElement element : (JsonList) value) {
+            if (!(element instanceof JsonString)) {
+                throw malformed(location, keyword, "contains a non-string");
+            }
+            result.add(((JsonString) element).getValue());
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a number keyword.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The number value, or <code>null</code> if the keyword is absent.
+     *
+     * @throws ParsingException If the keyword is not a number.
+     */
+    private static Double getNumber(JsonObject schema, String keyword, JsonPointer location)
+            throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        Double result = null;
+        if (value instanceof JsonNumber) {
+            result = ((JsonNumber) value).getValue().doubleValue();
+        } else if (value != null) {
+            throw malformed(location, keyword, "is not a number");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a keyword that is a non-negative integer.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     * @param defaultValue The value if the keyword is absent.
+     *
+     * @return The value, capped at {@link Integer#MAX_VALUE}.
+     *
+     * @throws ParsingException If the keyword is not a non-negative integer.
+     */
+    private static int getCount(JsonObject schema, String keyword, JsonPointer location, int defaultValue)
+            throws ParsingException {
+        Double value = getNumber(schema, keyword, location);
+        int result = defaultValue;
+        if (value != null) {
+            if (value < 0 || value != Math.rint(value)) {
+                throw malformed(location, keyword, "is not a non-negative integer");
+            }
+            result = (int) Math.min(value, Integer.MAX_VALUE);
+        }
+        return result;
+    }
+    
+    /**
+     * Compiles a keyword that is a subschema.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The compiled subschema, or <code>null</code> if the keyword is absent.
+     *
+     * @throws ParsingException If the subschema is malformed.
+     */
+    private SchemaNode getSchema(JsonObject schema, String keyword, JsonPointer location) throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        return value != null ? compile(value, location.append(keyword)) : null;
+    }
+    
+    /**
+     * Compiles a keyword that is a non-empty list of subschemas.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The compiled subschemas, or <code>null</code> if the keyword is absent.
+     *
+     * @throws ParsingException If the keyword is not a non-empty list, or a subschema is malformed.
+     */
+    private SchemaNode[] getSchemas(JsonObject schema, String keyword, JsonPointer location)
+            throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        SchemaNode[] result = null;
+        if (value != null) {
+            if (!(value instanceof JsonList) || ((JsonList) value).getSize() == 0) {
+                throw malformed(location, keyword, "is not a non-empty list");
+            }
+            JsonList list = (JsonList) value;
+            JsonPointer listLocation = location.append(keyword);
+            result = new SchemaNode[list.getSize()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = compile(list.getElement(i), listLocation.append(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Compiles a keyword that is an object of subschemas.
+     *
+     * @param schema The schema.
+     * @param keyword The keyword.
+     * @param location The location of the schema.
+     *
+     * @return The compiled subschemas by their keys, in the order of the schema, or <code>null</code> if the keyword
+     *      is absent.
+     *
+     * @throws ParsingException If the keyword is not an object, or a subschema is malformed.
+     */
+    private Map<String, SchemaNode> getSchemaMap(JsonObject schema, String keyword, JsonPointer location)
+            throws ParsingException {
+        JsonElement value = schema.getElement(keyword);
+        Map<String, SchemaNode> result = null;
+        if (value != null) {
+            if (!(value instanceof JsonObject)) {
+                throw malformed(location, keyword, "is not an object");
+            }
+            JsonPointer mapLocation = location.append(keyword);
+            result = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) value).members()) {
+                result.put(member.getKey(), compile(member.getValue(), mapLocation.append(member.getKey())));
+            }
+        }
+        return result;
+    }
+    
+}
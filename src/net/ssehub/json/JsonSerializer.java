@@ -0,0 +1,289 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes {@link JsonElement}s in the compact format of {@link JsonElement#toString()} to an {@link Appendable}. The
+ * whole tree is written in a single pass into the same target, instead of concatenating the string representations
+ * of the children.
+ * <p>
+ * {@link #estimateSize(JsonElement)} can be used to pre-size a buffer before writing to it;
+ * {@link #toJson(JsonElement, boolean)} does this on request.
+ *
+ * @author Adam
+ */
+public class JsonSerializer {
+    
+    private Appendable target;
+    
+    private Visitor visitor;
+    
+    /**
+     * Creates a serializer that writes to the given target.
+     *
+     * @param target The target to write to. Not <code>null</code>.
+     */
+    public JsonSerializer(Appendable target) {
+        this.target = Objects.requireNonNull(target);
+        this.visitor = new Visitor();
+    }
+    
+    /**
+     * Serializes the given element into a {@link String} in a single pass over the tree.
+     *
+     * @param element The element to serialize. Not <code>null</code>.
+     *
+     * @return The JSON string of the element.
+     */
+    public static String toJson(JsonElement element) {
+        return toJson(element, false);
+    }
+    
+    /**
+     * Serializes the given element into a {@link String}. If the buffer is pre-sized with
+     * {@link #estimateSize(JsonElement)}, it usually doesn't need to grow while writing, but the tree is walked twice.
+     * This only pays off for large documents.
+     *
+     * @param element The element to serialize. Not <code>null</code>.
+     * @param presize Whether to pre-size the buffer with {@link #estimateSize(JsonElement)}.
+     *
+     * @return The JSON string of the element.
+     */
+    public static String toJson(JsonElement element, boolean presize) {
+        StringBuilder result = presize ? new StringBuilder(estimateSize(element)) : new StringBuilder();
+        try {
+            new JsonSerializer(result).write(element);
+        } catch (IOException e) {
+            // can't happen, as StringBuilder doesn't throw
+            throw new AssertionError(e);
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Estimates the number of characters that the serialization of the given element needs. The estimate is exact
+     * for most documents, but may be too low for strings that need escaping, and too high for floating point numbers.
+     *
+     * @param element The element to estimate the size of. Not <code>null</code>.
+     *
+     * @return The estimated number of characters.
+     */
+    public static int estimateSize(JsonElement element) {
+        SizeEstimator estimator = new SizeEstimator();
+        element.accept(estimator);
+        return (int) Math.min(Integer.MAX_VALUE - 8, estimator.size);
+    }
+    
+    /**
+     * Writes the given element to the target.
+     *
+     * @param element The element to write. Not <code>null</code>.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void write(JsonElement element) throws IOException {
+        try {
+            element.accept(visitor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Writes the visited elements to the target. {@link IOException}s are wrapped into
+     * {@link UncheckedIOException}s, since the visitor methods can't throw checked exceptions.
+     */
+    private class Visitor implements JsonVisitor<Void> {
+        
+        /**
+         * Appends the given string to the target.
+         *
+         * @param str The string to append.
+         */
+        private void append(String str) {
+            try {
+                target.append(str);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        /**
+         * Appends the given string to the target, escaped and in quotes.
+         *
+         * @param str The string to append.
+         */
+        private void appendString(String str) {
+            try {
+                target.append('"');
+                JsonString.jsonEscape(str, target);
+                target.append('"');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public Void visitObject(JsonObject object) {
+            if (object.getSize() == 0) {
+                append("{}");
+                
+            } else {
+                append("{ ");
+                boolean first = true;
+                for (Map.Entry<String, JsonElement> member : object.members()) {
+                    if (!first) {
+                        append(", ");
+                    }
+                    first = false;
+                    appendString(member.getKey());
+                    append(": ");
+                    member.getValue().accept(this);
+                }
+                append(" }");
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitList(JsonList list) {
+            if (list.getSize() == 0) {
+                append("[]");
+                
+            } else {
+                append("[ ");
+                boolean first = true;
+                for (JsonElement element : list) {
+                    if (!first) {
+                        append(", ");
+                    }
+                    first = false;
+                    element.accept(this);
+                }
+                append(" ]");
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitBoolean(JsonBoolean bool) {
+            append(bool.getValue() ? "true" : "false");
+            return null;
+        }
+        
+        @Override
+        public Void visitNumber(JsonNumber number) {
+            try {
+                JsonNumber.jsonEscape(number.getValue(), target);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitString(JsonString string) {
+            appendString(string.getValue());
+            return null;
+        }
+        
+        @Override
+        public Void visitNull(JsonNull nall) {
+            append("null");
+            return null;
+        }
+        
+    }
+    
+    /**
+     * Sums up the estimated size of the visited elements.
+     */
+    private static class SizeEstimator implements JsonVisitor<Void> {
+        
+        /**
+         * The estimate for floating point and other non-integer numbers. Most doubles need at most this many
+         * characters.
+         */
+        private static final int FLOATING_POINT_SIZE = 20;
+        
+        private long size;
+        
+        @Override
+        public Void visitObject(JsonObject object) {
+            // "{}", or "{ " and " }" with one ", " less than members
+            size += 2;
+            for (Map.Entry<String, JsonElement> member : object.members()) {
+                // quotes, ": " and ", " (or half of the braces)
+                size += member.getKey().length() + 6;
+                member.getValue().accept(this);
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitList(JsonList list) {
+            // "[]", or "[ " and " ]" with one ", " less than elements
+            size += 2;
+            for (JsonElement element : list) {
+                // ", " (or half of the brackets)
+                size += 2;
+                element.accept(this);
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitBoolean(JsonBoolean bool) {
+            size += bool.getValue() ? 4 : 5;
+            return null;
+        }
+        
+        @Override
+        public Void visitNumber(JsonNumber number) {
+            Number value = number.getValue();
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                long integer = value.longValue();
+                int numChars = integer < 0 ? 2 : 1;
+                for (long rest = integer / 10; rest != 0; rest /= 10) {
+                    numChars++;
+                }
+                size += numChars;
+            } else {
+                size += FLOATING_POINT_SIZE;
+            }
+            return null;
+        }
+        
+        @Override
+        public Void visitString(JsonString string) {
+            size += string.getValue().length() + 2;
+            return null;
+        }
+        
+        @Override
+        public Void visitNull(JsonNull nall) {
+            size += 4;
+            return null;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The expected shape of a JSON object: its member names in the order in which they usually appear, and the type of
+ * each member. Each field gets a fixed slot, which is used to access its value in a {@link ShapedRecord} created by a
+ * {@link ShapedJsonParser}.
+ * <p>
+ * The shape must not be modified while a parser is using it.
+ *
+ * @author Adam
+ */
+public class JsonShape {
+    
+    /**
+     * The type of a field in a {@link JsonShape}.
+     */
+    public enum FieldType {
+        
+        /**
+         * A string value.
+         */
+        STRING,
+        
+        /**
+         * An integer value that fits into a <code>long</code>.
+         */
+        LONG,
+        
+        /**
+         * Any number value, stored as a <code>double</code>.
+         */
+        DOUBLE,
+        
+        /**
+         * A boolean value.
+         */
+        BOOLEAN,
+        
+        /**
+         * An object with a nested {@link JsonShape}.
+         */
+        OBJECT,
+        
+        /**
+         * Any value, stored as a tree of {@link JsonElement}s.
+         */
+        ANY;
+        
+    }
+    
+    private final List<String> names = new ArrayList<>();
+    
+    private final List<byte[]> keyBytes = new ArrayList<>();
+    
+    private final List<FieldType> types = new ArrayList<>();
+    
+    private final List<JsonShape> nestedShapes = new ArrayList<>();
+    
+    private final Map<String, Integer> slots = new HashMap<>();
+    
+    /**
+     * Creates an empty shape. Fields are added with {@link #addField(String, FieldType)} and
+     * {@link #addField(String, JsonShape)}.
+     */
+    public JsonShape() {
+    }
+    
+    /**
+     * Adds a field with the given scalar type (or {@link FieldType#ANY}). Fields should be added in the order in which
+     * they usually appear in the documents, since the parser predicts the next key based on this order.
+     *
+     * @param name The name of the field, i.e. the key of the object member. Not <code>null</code>.
+     * @param type The type of the field. Not <code>null</code>. Must not be {@link FieldType#OBJECT}; use
+     *      {@link #addField(String, JsonShape)} for nested objects.
+     *
+     * @return The slot of the new field.
+     *
+     * @throws IllegalArgumentException If a field with the same name already exists, or the type is
+     *      {@link FieldType#OBJECT}.
+     */
+    public int addField(String name, FieldType type) throws IllegalArgumentException {
+        if (type == FieldType.OBJECT) {
+            throw new IllegalArgumentException("Object fields require a nested shape");
+        }
+        return add(name, Objects.requireNonNull(type), null);
+    }
+    
+    /**
+     * Adds a field that contains an object with the given shape. The nested shape may be this shape itself, for
+     * recursive documents.
+     *
+     * @param name The name of the field, i.e. the key of the object member. Not <code>null</code>.
+     * @param shape The shape of the nested object. Not <code>null</code>.
+     *
+     * @return The slot of the new field.
+     *
+     * @throws IllegalArgumentException If a field with the same name already exists.
+     */
+    public int addField(String name, JsonShape shape) throws IllegalArgumentException {
+        return add(name, FieldType.OBJECT, Objects.requireNonNull(shape));
+    }
+    
+    /**
+     * Adds a field.
+     *
+     * @param name The name of the field. Not <code>null</code>.
+     * @param type The type of the field. Not <code>null</code>.
+     * @param shape The nested shape for {@link FieldType#OBJECT}, otherwise <code>null</code>.
+     *
+     * @return The slot of the new field.
+     *
+     * @throws IllegalArgumentException If a field with the same name already exists.
+     */
+    private int add(String name, FieldType type, JsonShape shape) throws IllegalArgumentException {
+        int slot = names.size();
+        if (slots.putIfAbsent(Objects.requireNonNull(name), slot) != null) {
+            throw new IllegalArgumentException("Duplicate field \"" + name + "\"");
+        }
+        names.add(name);
+        keyBytes.add(isPlain(name) ? name.getBytes(StandardCharsets.UTF_8) : null);
+        types.add(type);
+        nestedShapes.add(shape);
+        return slot;
+    }
+    
+    /**
+     * Checks whether the given name appears unescaped in a JSON document, i.e. whether its raw bytes can be compared
+     * directly against the input.
+     *
+     * @param name The name to check.
+     *
+     * @return Whether the name contains no characters that are escaped.
+     */
+    private static boolean isPlain(String name) {
+        boolean result = true;
+        for (int i = 0; i < name.length() && result; i++) {
+            char c = name.charAt(i);
+            result = c >= 0x20 && c != '"' && c != '\\';
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of fields, i.e. the number of slots in a {@link ShapedRecord} of this shape.
+     *
+     * @return The number of fields.
+     */
+    public int getFieldCount() {
+        return names.size();
+    }
+    
+    /**
+     * Returns the name of the field in the given slot.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The name of the field.
+     *
+     * @throws IndexOutOfBoundsException If the slot doesn't exist.
+     */
+    public String getFieldName(int slot) throws IndexOutOfBoundsException {
+        return names.get(slot);
+    }
+    
+    /**
+     * Returns the type of the field in the given slot.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The type of the field.
+     *
+     * @throws IndexOutOfBoundsException If the slot doesn't exist.
+     */
+    public FieldType getFieldType(int slot) throws IndexOutOfBoundsException {
+        return types.get(slot);
+    }
+    
+    /**
+     * Returns the nested shape of the field in the given slot.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The nested shape, or <code>null</code> if the field is not of type {@link FieldType#OBJECT}.
+     *
+     * @throws IndexOutOfBoundsException If the slot doesn't exist.
+     */
+    public JsonShape getNestedShape(int slot) throws IndexOutOfBoundsException {
+        return nestedShapes.get(slot);
+    }
+    
+    /**
+     * Returns the slot of the field with the given name.
+     *
+     * @param name The name of the field.
+     *
+     * @return The slot of the field, or <code>-1</code> if this shape has no such field.
+     */
+    public int getSlot(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+    
+    /**
+     * Returns the UTF-8 encoded name of the field in the given slot, which the parser compares against the raw input.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The UTF-8 bytes of the name, or <code>null</code> if the name needs escaping and thus can't be compared
+     *      directly. Must not be modified.
+     */
+    byte[] getKeyBytes(int slot) {
+        return keyBytes.get(slot);
+    }
+    
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Compares two UTF-8 encoded JSON documents token by token, without building a tree of either of them. Both inputs
+ * are read with a {@link NonBlockingJsonParser} in lockstep; as long as the documents are structurally aligned, only
+ * the path to the current position is kept in memory, so documents of any size can be compared.
+ * <p>
+ * The differences are reported one by one by {@link #next()}, with the JSON Pointer of their location:
+ * <ul>
+ * <li>Scalar values that differ, or values of different types, are reported as
+ * {@link Difference.Type#CHANGED}; the rest of such a value is skipped in both inputs.</li>
+ * <li>Additional list elements and object members at the end of a list or object are reported as
+ * {@link Difference.Type#ADDED} or {@link Difference.Type#REMOVED}.</li>
+ * <li>Objects are compared member by member in the order of the input. If two members at the same position have
+ * different keys, the objects are reported as {@link Difference.Type#UNALIGNED} and the rest of both objects is
+ * skipped, since finding the matching members would require buffering them.</li>
+ * </ul>
+ * Numbers are compared like {@link JsonNumber#equals(Object)} does, i.e. <code>1</code> and <code>1.0</code> differ.
+ *
+ * @author Adam
+ */
+public class JsonStreamDiff {
+    
+    private static final int CHUNK_SIZE = 8192;
+    
+    private final TokenStream source;
+    
+    private final TokenStream target;
+    
+    /**
+     * Whether the list or object at each nesting depth is a list.
+     */
+    private boolean[] isList = new boolean[16];
+    
+    /**
+     * The index of the current element of the list at each nesting depth.
+     */
+    private int[] indices = new int[16];
+    
+    /**
+     * The key of the current member of the object at each nesting depth.
+     */
+    private String[] keys = new String[16];
+    
+    private int depth;
+    
+    private boolean finished;
+    
+    /**
+     * Creates a diff of the given inputs, with the default {@link ParserOptions}.
+     *
+     * @param source The source document. Not <code>null</code>. Not closed by this class.
+     * @param target The target document. Not <code>null</code>. Not closed by this class.
+     */
+    public JsonStreamDiff(InputStream source, InputStream target) {
+        this(source, target, new ParserOptions());
+    }
+    
+    /**
+     * Creates a diff of the given inputs.
+     *
+     * @param source The source document. Not <code>null</code>. Not closed by this class.
+     * @param target The target document. Not <code>null</code>. Not closed by this class.
+     * @param options The options for parsing both documents. Not <code>null</code>.
+     */
+    public JsonStreamDiff(InputStream source, InputStream target, ParserOptions options) {
+        this.source = new TokenStream(Objects.requireNonNull(source), options);
+        this.target = new TokenStream(Objects.requireNonNull(target), options);
+    }
+    
+    /**
+     * Finds the next difference.
+     *
+     * @return The next difference, or <code>null</code> if the end of both documents has been reached.
+     *
+     * @throws ParsingException If one of the documents is malformed.
+     * @throws IOException If reading one of the inputs fails.
+     */
+    public Difference next() throws ParsingException, IOException {
+        Difference result = null;
+        while (result == null && !finished) {
+            result = step();
+        }
+        return result;
+    }
+    
+    /**
+     * Finds all remaining differences.
+     *
+     * @return The differences, in document order.
+     *
+     * @throws ParsingException If one of the documents is malformed.
+     * @throws IOException If reading one of the inputs fails.
+     */
+    public List<Difference> findAll() throws ParsingException, IOException {
+        List<Difference> result = new ArrayList<>();
+        Difference difference;
+        for (difference = next(); difference != null; difference = next()) {
+            result.add(difference);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the next token of both inputs and compares them.
+     *
+     * @return The difference found, or <code>null</code> if the tokens are equal.
+     *
+     * @throws ParsingException If one of the documents is malformed.
+     * @throws IOException If reading one of the inputs fails.
+     */
+    private Difference step() throws ParsingException, IOException {
+        JsonToken sourceToken = source.next();
+        JsonToken targetToken = target.next();
+        Difference result = null;
+        
+        if (sourceToken == JsonToken.END_OF_INPUT && targetToken == JsonToken.END_OF_INPUT) {
+            finished = true;
+            
+        } else if (sourceToken == targetToken) {
+            result = sameToken(sourceToken);
+            
+        } else if (isEnd(sourceToken) && !isEnd(targetToken)) {
+            result = additional(Difference.Type.ADDED, target, targetToken);
+            source.pushBack(sourceToken);
+            
+        } else if (isEnd(targetToken) && !isEnd(sourceToken)) {
+            result = additional(Difference.Type.REMOVED, source, sourceToken);
+            target.pushBack(targetToken);
+            
+        } else {
+            result = new Difference(Difference.Type.CHANGED, currentPath(),
+                    describe(source, sourceToken) + " changed to " + describe(target, targetToken));
+            skipValue(source, sourceToken);
+            skipValue(target, targetToken);
+            valueDone();
+        }
+        return result;
+    }
+    
+    /**
+     * Handles the same token in both inputs.
+     *
+     * @param token The token.
+     *
+     * @return The difference found, or <code>null</code> if the tokens are equal.
+     *
+     * @throws ParsingException If one of the documents is malformed.
+     * @throws IOException If reading one of the inputs fails.
+     */
+    private Difference sameToken(JsonToken token) throws ParsingException, IOException {
+        Difference result = null;
+        switch (token) {
+        case START_LIST:
+        case START_OBJECT:
+            push(token == JsonToken.START_LIST);
+            break;
+            
+        case END_LIST:
+        case END_OBJECT:
+            depth--;
+            valueDone();
+            break;
+            
+        case KEY:
+            if (source.parser.getString().equals(target.parser.getString())) {
+                keys[depth - 1] = source.parser.getString();
+            } else {
+                result = new Difference(Difference.Type.UNALIGNED, pathTo(depth - 1), "member \""
+                        + source.parser.getString() + "\" changed to \"" + target.parser.getString() + "\"");
+                skipRest(source);
+                skipRest(target);
+                depth--;
+                valueDone();
+            }
+            break;
+            
+        case STRING:
+            result = compareScalars(source.parser.getString(), target.parser.getString(), token);
+            break;
+            
+        case NUMBER:
+            result = compareScalars(source.parser.getNumber(), target.parser.getNumber(), token);
+            break;
+            
+        default:
+            // true, false and null are equal
+            valueDone();
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Compares two scalar values.
+     *
+     * @param sourceValue The source value.
+     * @param targetValue The target value.
+     * @param token The token type of both values.
+     *
+     * @return The difference, or <code>null</code> if the values are equal.
+     */
+    private Difference compareScalars(Object sourceValue, Object targetValue, JsonToken token) {
+        Difference result = null;
+        if (!sourceValue.equals(targetValue)) {
+            result = new Difference(Difference.Type.CHANGED, currentPath(),
+                    describe(source, token) + " changed to " + describe(target, token));
+        }
+        valueDone();
+        return result;
+    }
+    
+    /**
+     * Handles an additional element or member in one input, while the other input has reached the end of the
+     * list or object.
+     *
+     * @param type Whether the element is added or removed.
+     * @param stream The input with the additional element.
+     * @param token The first token of the additional element.
+     *
+     * @return The difference.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    private Difference additional(Difference.Type type, TokenStream stream, JsonToken token)
+            throws ParsingException, IOException {
+        JsonToken valueToken = token;
+        if (token == JsonToken.KEY) {
+            keys[depth - 1] = stream.parser.getString();
+            valueToken = stream.next();
+        }
+        Difference result = new Difference(type, currentPath(), describe(stream, valueToken));
+        skipValue(stream, valueToken);
+        if (isList[depth - 1]) {
+            indices[depth - 1]++;
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether a token ends a list or object.
+     *
+     * @param token The token.
+     *
+     * @return Whether the token ends a list or object.
+     */
+    private static boolean isEnd(JsonToken token) {
+        return token == JsonToken.END_LIST || token == JsonToken.END_OBJECT;
+    }
+    
+    /**
+     * Describes a value for the description of a difference.
+     *
+     * @param stream The input of the value.
+     * @param token The first token of the value.
+     *
+     * @return A short description of the value.
+     */
+    private static String describe(TokenStream stream, JsonToken token) {
+        String result;
+        switch (token) {
+        case START_LIST:
+            result = "list";
+            break;
+        case START_OBJECT:
+            result = "object";
+            break;
+        case STRING:
+            result = "\"" + JsonString.jsonEscape(stream.parser.getString()) + "\"";
+            break;
+        case NUMBER:
+            result = JsonNumber.jsonEscape(stream.parser.getNumber());
+            break;
+        default:
+            result = token.name().toLowerCase(Locale.ROOT);
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Enters a list or object.
+     *
+     * @param list Whether a list is entered.
+     */
+    private void push(boolean list) {
+        if (depth == isList.length) {
+            isList = Arrays.copyOf(isList, depth * 2);
+            indices = Arrays.copyOf(indices, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        isList[depth] = list;
+        indices[depth] = 0;
+        keys[depth] = null;
+        depth++;
+    }
+    
+    /**
+     * Must be called after a complete value has been read in both inputs. Advances the index of the enclosing list.
+     */
+    private void valueDone() {
+        if (depth > 0 && isList[depth - 1]) {
+            indices[depth - 1]++;
+        }
+    }
+    
+    /**
+     * Returns the path of the current value.
+     *
+     * @return The path of the current value.
+     */
+    private JsonPointer currentPath() {
+        return pathTo(depth);
+    }
+    
+    /**
+     * Returns the path of the value at the given nesting depth.
+     *
+     * @param numLevels The number of enclosing lists and objects to include.
+     *
+     * @return The path.
+     */
+    private JsonPointer pathTo(int numLevels) {
+        JsonPointer result = JsonPointer.ROOT;
+        for (int i = 0; i < numLevels; i++) {
+            result = isList[i] ? result.append(indices[i]) : result.append(keys[i]);
+        }
+        return result;
+    }
+    
+    /**
+     * Skips the rest of a value.
+     *
+     * @param stream The input.
+     * @param token The first token of the value.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    private static void skipValue(TokenStream stream, JsonToken token) throws ParsingException, IOException {
+        if (token == JsonToken.START_LIST || token == JsonToken.START_OBJECT) {
+            skipRest(stream);
+        }
+    }
+    
+    /**
+     * Skips the rest of the current list or object, including its end token.
+     *
+     * @param stream The input.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    private static void skipRest(TokenStream stream) throws ParsingException, IOException {
+        int nesting = 1;
+        while (nesting > 0) {
+            JsonToken token = stream.next();
+            if (token == JsonToken.START_LIST || token == JsonToken.START_OBJECT) {
+                nesting++;
+            } else if (isEnd(token)) {
+                nesting--;
+            }
+        }
+    }
+    
+    /**
+     * A difference between the two documents.
+     */
+    public static final class Difference {
+        
+        /**
+         * The types of differences.
+         */
+        public enum Type {
+            
+            /**
+             * A value has a different type or scalar value in the target document.
+             */
+            CHANGED,
+            
+            /**
+             * The target document has an additional list element or object member.
+             */
+            ADDED,
+            
+            /**
+             * The source document has an additional list element or object member.
+             */
+            REMOVED,
+            
+            /**
+             * Two objects have members with different keys at the same position. The rest of the objects is not
+             * compared.
+             */
+            UNALIGNED;
+        }
+        
+        private final Type type;
+        
+        private final JsonPointer path;
+        
+        private final String description;
+        
+        /**
+         * Creates a difference.
+         *
+         * @param type The type of the difference.
+         * @param path The location of the difference.
+         * @param description A description of the values.
+         */
+        Difference(Type type, JsonPointer path, String description) {
+            this.type = type;
+            this.path = path;
+            this.description = description;
+        }
+        
+        /**
+         * Returns the type of this difference.
+         *
+         * @return The type of this difference.
+         */
+        public Type getType() {
+            return type;
+        }
+        
+        /**
+         * Returns the location of this difference. For {@link Type#UNALIGNED}, this is the location of the objects.
+         *
+         * @return The location of this difference.
+         */
+        public JsonPointer getPath() {
+            return path;
+        }
+        
+        /**
+         * Returns a human-readable description of the values that differ.
+         *
+         * @return A description of the values.
+         */
+        public String getDescription() {
+            return description;
+        }
+        
+        @Override
+        public String toString() {
+            return type + " " + path + ": " + description;
+        }
+        
+    }
+    
+    /**
+     * Reads the tokens of an input stream, with one token of push-back.
+     */
+    private static final class TokenStream {
+        
+        private final InputStream in;
+        
+        private final NonBlockingJsonParser parser;
+        
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        
+        private JsonToken pushedBack;
+        
+        /**
+         * Creates a token stream.
+         *
+         * @param in The input.
+         * @param options The parser options.
+         */
+        TokenStream(InputStream in, ParserOptions options) {
+            this.in = in;
+            this.parser = new NonBlockingJsonParser(options);
+        }
+        
+        /**
+         * Reads the next token, feeding more input to the parser as necessary.
+         *
+         * @return The next token. Never {@link JsonToken#NEED_MORE_INPUT}.
+         *
+         * @throws ParsingException If the document is malformed.
+         * @throws IOException If reading the input fails.
+         */
+        JsonToken next() throws ParsingException, IOException {
+            JsonToken result = pushedBack;
+            pushedBack = null;
+            if (result == null) {
+                result = parser.nextToken();
+            }
+            while (result == JsonToken.NEED_MORE_INPUT) {
+                int read = in.read(chunk);
+                if (read < 0) {
+                    parser.endOfInput();
+                } else {
+                    parser.feed(ByteBuffer.wrap(chunk, 0, read));
+                }
+                result = parser.nextToken();
+            }
+            return result;
+        }
+        
+        /**
+         * Pushes back a token, which must not be a string or number, so that the next call to {@link #next()}
+         * returns it again.
+         *
+         * @param token The token to push back.
+         */
+        void pushBack(JsonToken token) {
+            pushedBack = token;
+        }
+        
+    }
+    
+}
@@ -15,6 +15,7 @@
  */
 package net.ssehub.json;
 
+import java.io.IOException;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -25,7 +26,32 @@ import java.util.Objects;
  */
 public class JsonString extends JsonValue<String> {
 
+    /**
+     * The escape sequences for all ASCII characters; <code>null</code> for characters that don't need escaping.
+     */
+    private static final String[] ESCAPES = new String[128];
+    
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            // control characters < 0x20 (space) need to be escaped
+            ESCAPES[i] = String.format((Locale) null, "\\u%04x", i);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\f'] = "\\f";
+    }
+    
     private String value;
+    
+    /**
+     * The cached {@link #fingerprint()}; 0 if not computed yet. Like {@link String#hashCode()}, a fingerprint that
+     * happens to be 0 is simply recomputed. Volatile, since writes to a <code>long</code> are not atomic otherwise.
+     */
+    private volatile long cachedFingerprint;
 
     /**
      * Creates a JSON string with the given content.
@@ -66,54 +92,123 @@ public class JsonString extends JsonValue<String> {
         return value.hashCode();
     }
     
+    @Override
+    public long fingerprint() {
+        long result = cachedFingerprint;
+        if (result == 0) {
+            result = fingerprint(FINGERPRINT_STRING, fingerprint(value));
+            cachedFingerprint = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Computes a 64 bit hash of the given string (FNV-1a over the characters).
+     * 
+     * @param str The string to hash. Not <code>null</code>.
+     * 
+     * @return The hash of the string.
+     */
+    static long fingerprint(String str) {
+        long result = 0xCBF29CE484222325L;
+        for (int i = 0; i < str.length(); i++) {
+            result = (result ^ str.charAt(i)) * 0x100000001B3L;
+        }
+        return result;
+    }
+    
     /**
      * Escapes the given string so that it is JSON compatible.
      * 
      * @param str The string to escape. Not <code>null</code>.
      * 
-     * @return The properly escaped string. Never <code>null</code>.
+     * @return The properly escaped string; the given string itself, if nothing needs escaping. Never
+     *      <code>null</code>.
      */
     public static String jsonEscape(String str) {
-        StringBuilder result = new StringBuilder();
+        String result = str;
+        int firstEscape = findNextEscape(str, 0);
         
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-            
-            switch (c) {
-            case '"':
-                result.append("\\\"");
-                break;
-            case '\\':
-                result.append("\\\\");
-                break;
-            case '\b':
-                result.append("\\b");
-                break;
-            case '\n':
-                result.append("\\n");
-                break;
-            case '\r':
-                result.append("\\r");
-                break;
-            case '\t':
-                result.append("\\t");
-                break;
-            case '\f':
-                result.append("\\f");
-                break;
-                
-            default:
-                if (c < 0x20) {
-                    // control characters < 0x20 (space) need to be escaped
-                    result.append(String.format((Locale) null, "\\u%04x", (int) c));
-                } else {
-                    result.append(c);
-                }
-                break;
+        if (firstEscape < str.length()) {
+            StringBuilder escaped = new StringBuilder(str.length() + 16);
+            try {
+                jsonEscape(str, escaped);
+            } catch (IOException e) {
+                // can't happen, as StringBuilder doesn't throw
+                throw new AssertionError(e);
             }
+            result = escaped.toString();
         }
         
-        return result.toString();
+        return result;
     }
+    
+    /**
+     * Escapes the given string so that it is JSON compatible, and writes the result to the given target. Runs of
+     * characters that don't need escaping are appended in bulk.
+     * 
+     * @param str The string to escape. Not <code>null</code>.
+     * @param target The target to append the escaped string to. Not <code>null</code>.
+     * 
+     * @throws IOException If appending to the target fails.
+     */
+    public static void jsonEscape(String str, Appendable target) throws IOException {
+        int length = str.length();
+        int runStart = 0;
+        int next = findNextEscape(str, 0);
         
+        while (next < length) {
+            if (next > runStart) {
+                target.append(str, runStart, next);
+            }
+            target.append(ESCAPES[str.charAt(next)]);
+            runStart = next + 1;
+            next = findNextEscape(str, runStart);
+        }
+        
+        if (runStart == 0) {
+            target.append(str);
+        } else if (runStart < length) {
+            target.append(str, runStart, length);
+        }
+    }
+    
+    /**
+     * Finds the next character that needs escaping.
+     * 
+     * @param str The string to search in.
+     * @param start The index to start searching at.
+     * 
+     * @return The index of the next character to escape, or the length of the string if there is none.
+     */
+    private static int findNextEscape(String str, int start) {
+        int length = str.length();
+        int i = start;
+        while (i < length && !needsEscape(str.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Checks whether the given character needs to be escaped.
+     * 
+     * @param character The character to check.
+     * 
+     * @return Whether the character has an entry in the escape table.
+     */
+    private static boolean needsEscape(char character) {
+        return character < ESCAPES.length && ESCAPES[character] != null;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns this instance, as strings are immutable.
+     */
+    @Override
+    public JsonString deepCopy() {
+        return this;
+    }
+    
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+/**
+ * The tokens that are produced when reading JSON as a stream of tokens instead of as a tree of {@link JsonElement}s.
+ *
+ * @author Adam
+ */
+public enum JsonToken {
+    
+    /**
+     * The start of a {@link JsonObject}, i.e. a '{'.
+     */
+    START_OBJECT,
+    
+    /**
+     * The end of a {@link JsonObject}, i.e. a '}'.
+     */
+    END_OBJECT,
+    
+    /**
+     * The start of a {@link JsonList}, i.e. a '['.
+     */
+    START_LIST,
+    
+    /**
+     * The end of a {@link JsonList}, i.e. a ']'.
+     */
+    END_LIST,
+    
+    /**
+     * The key of an object member. The next token is the value of this member.
+     */
+    KEY,
+    
+    /**
+     * A {@link JsonString} value.
+     */
+    STRING,
+    
+    /**
+     * A {@link JsonNumber} value.
+     */
+    NUMBER,
+    
+    /**
+     * A {@link JsonBoolean} value that is <code>true</code>.
+     */
+    TRUE,
+    
+    /**
+     * A {@link JsonBoolean} value that is <code>false</code>.
+     */
+    FALSE,
+    
+    /**
+     * A {@link JsonNull} value.
+     */
+    NULL,
+    
+    /**
+     * Not a real token; indicates that all input fed so far has been consumed and more input is required to
+     * determine the next token.
+     */
+    NEED_MORE_INPUT,
+    
+    /**
+     * Not a real token; indicates that the end of the input has been reached after a complete JSON element.
+     */
+    END_OF_INPUT;
+    
+    /**
+     * Returns whether this token is a scalar value, i.e. a string, number, boolean or null.
+     *
+     * @return Whether this token is a scalar value.
+     */
+    public boolean isScalarValue() {
+        boolean result;
+        switch (this) {
+        case STRING:
+        case NUMBER:
+        case TRUE:
+        case FALSE:
+        case NULL:
+            result = true;
+            break;
+        default:
+            result = false;
+            break;
+        }
+        return result;
+    }
+    
+}
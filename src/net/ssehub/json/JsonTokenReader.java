@@ -0,0 +1,415 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Reads the tokens of a UTF-8 encoded JSON document from an {@link InputStream}, blocking until enough input is
+ * available. This is a pull-style wrapper around a {@link NonBlockingJsonParser}; in addition to the plain tokens, it
+ * offers methods that read and check a whole scalar value at once. These are used by {@link JsonCodec}s to read
+ * objects directly from the token stream, without building a tree of {@link JsonElement}s first.
+ *
+ * @author Adam
+ */
+public class JsonTokenReader {
+    
+    private static final int CHUNK_SIZE = 8192;
+    
+    private final InputStream in;
+    
+    private final NonBlockingJsonParser parser;
+    
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    
+    private JsonToken peeked;
+    
+    /**
+     * Creates a reader for the given input, with the default {@link ParserOptions}.
+     *
+     * @param in The input to read. Not <code>null</code>. Not closed by this class.
+     */
+    public JsonTokenReader(InputStream in) {
+        this(in, new ParserOptions());
+    }
+    
+    /**
+     * Creates a reader for the given input.
+     *
+     * @param in The input to read. Not <code>null</code>. Not closed by this class.
+     * @param options The options for parsing the input. Not <code>null</code>.
+     */
+    public JsonTokenReader(InputStream in, ParserOptions options) {
+        this.in = Objects.requireNonNull(in);
+        this.parser = new NonBlockingJsonParser(options);
+    }
+    
+    /**
+     * Reads the next token. For {@link JsonToken#KEY}, {@link JsonToken#STRING} and {@link JsonToken#NUMBER}, the
+     * value is available via {@link #getString()} or {@link #getNumber()} afterwards.
+     *
+     * @return The next token. Never {@link JsonToken#NEED_MORE_INPUT}; {@link JsonToken#END_OF_INPUT} after the
+     *      end of the document.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public JsonToken next() throws ParsingException, IOException {
+        JsonToken result = peeked;
+        peeked = null;
+        if (result == null) {
+            result = parser.nextToken();
+            while (result == JsonToken.NEED_MORE_INPUT) {
+                int read = in.read(chunk);
+                if (read < 0) {
+                    parser.endOfInput();
+                } else {
+                    parser.feed(ByteBuffer.wrap(chunk, 0, read));
+                }
+                result = parser.nextToken();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the next token without consuming it, i.e. the next call to {@link #next()} returns the same token.
+     * {@link #getString()} and {@link #getNumber()} already refer to the peeked token.
+     *
+     * @return The next token.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public JsonToken peek() throws ParsingException, IOException {
+        if (peeked == null) {
+            peeked = next();
+        }
+        return peeked;
+    }
+    
+    /**
+     * Returns the value of the last {@link JsonToken#KEY} or {@link JsonToken#STRING} token.
+     *
+     * @return The string value of the last token.
+     */
+    public String getString() {
+        return parser.getString();
+    }
+    
+    /**
+     * Returns the value of the last {@link JsonToken#NUMBER} token.
+     *
+     * @return The number value of the last token, as an {@link Integer}, {@link Long} or {@link Double}.
+     */
+    public Number getNumber() {
+        return parser.getNumber();
+    }
+    
+    /**
+     * Reads the next token and checks that it is the expected one.
+     *
+     * @param expected The expected token.
+     *
+     * @throws ParsingException If the next token is a different one, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public void expect(JsonToken expected) throws ParsingException, IOException {
+        JsonToken token = next();
+        if (token != expected) {
+            throw unexpected(token, describe(expected));
+        }
+    }
+    
+    /**
+     * Reads the key of the next member of the current object, or the end of the object.
+     *
+     * @return The key of the next member, or <code>null</code> if the end of the object has been read.
+     *
+     * @throws ParsingException If the next token is neither a key nor the end of an object, or the document is
+     *      malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public String nextKey() throws ParsingException, IOException {
+        JsonToken token = next();
+        String result = null;
+        if (token == JsonToken.KEY) {
+            result = parser.getString();
+        } else if (token != JsonToken.END_OBJECT) {
+            throw unexpected(token, "key");
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the current list has another element. If the end of the list is next, it is consumed.
+     *
+     * @return Whether another element follows, which can then be read.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public boolean hasNextElement() throws ParsingException, IOException {
+        boolean result = true;
+        if (peek() == JsonToken.END_LIST) {
+            next();
+            result = false;
+        }
+        return result;
+    }
+    
+    /**
+     * Consumes the next value if it is <code>null</code>.
+     *
+     * @return Whether the next value was <code>null</code>; if not, nothing has been consumed.
+     *
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public boolean readNull() throws ParsingException, IOException {
+        boolean result = false;
+        if (peek() == JsonToken.NULL) {
+            next();
+            result = true;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a string value.
+     *
+     * @return The string value, or <code>null</code> if the value is <code>null</code>.
+     *
+     * @throws ParsingException If the next value is neither a string nor <code>null</code>, or the document is
+     *      malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public String readString() throws ParsingException, IOException {
+        JsonToken token = next();
+        String result = null;
+        if (token == JsonToken.STRING) {
+            result = parser.getString();
+        } else if (token != JsonToken.NULL) {
+            throw unexpected(token, "string");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads a number value.
+     *
+     * @return The number value, or <code>null</code> if the value is <code>null</code>.
+     *
+     * @throws ParsingException If the next value is neither a number nor <code>null</code>, or the document is
+     *      malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public Number readNumber() throws ParsingException, IOException {
+        JsonToken token = next();
+        Number result = null;
+        if (token == JsonToken.NUMBER) {
+            result = parser.getNumber();
+        } else if (token != JsonToken.NULL) {
+            throw unexpected(token, "number");
+        }
+        return result;
+    }
+    
+    /**
+     * Reads an integer value that fits into an <code>int</code>.
+     *
+     * @return The integer value.
+     *
+     * @throws ParsingException If the next value is not such an integer, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public int readInt() throws ParsingException, IOException {
+        JsonToken token = next();
+        if (token != JsonToken.NUMBER || !(parser.getNumber() instanceof Integer)) {
+            throw unexpected(token, "int");
+        }
+        return parser.getNumber().intValue();
+    }
+    
+    /**
+     * Reads an integer value that fits into a <code>long</code>.
+     *
+     * @return The integer value.
+     *
+     * @throws ParsingException If the next value is not such an integer, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public long readLong() throws ParsingException, IOException {
+        JsonToken token = next();
+        if (token != JsonToken.NUMBER || parser.getNumber() instanceof Double) {
+            throw unexpected(token, "long");
+        }
+        return parser.getNumber().longValue();
+    }
+    
+    /**
+     * Reads a number value as a <code>double</code>.
+     *
+     * @return The number value.
+     *
+     * @throws ParsingException If the next value is not a number, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public double readDouble() throws ParsingException, IOException {
+        JsonToken token = next();
+        if (token != JsonToken.NUMBER) {
+            throw unexpected(token, "number");
+        }
+        return parser.getNumber().doubleValue();
+    }
+    
+    /**
+     * Reads a boolean value.
+     *
+     * @return The boolean value.
+     *
+     * @throws ParsingException If the next value is not a boolean, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public boolean readBoolean() throws ParsingException, IOException {
+        JsonToken token = next();
+        if (token != JsonToken.TRUE && token != JsonToken.FALSE) {
+            throw unexpected(token, "boolean");
+        }
+        return token == JsonToken.TRUE;
+    }
+    
+    /**
+     * Reads the next value, including all of its nested values, into a tree of {@link JsonElement}s.
+     *
+     * @return The value. Not <code>null</code>; {@link JsonNull#INSTANCE} for <code>null</code>.
+     *
+     * @throws ParsingException If the next token doesn't start a value, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public JsonElement readElement() throws ParsingException, IOException {
+        Deque<JsonElement> containers = new ArrayDeque<>();
+        Deque<String> keys = new ArrayDeque<>();
+        JsonElement result = null;
+        do {
+            JsonToken token = next();
+            JsonElement value = null;
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_LIST) {
+                containers.push(token == JsonToken.START_OBJECT ? new JsonObject() : new JsonList());
+            } else if (token == JsonToken.KEY) {
+                keys.push(parser.getString());
+            } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_LIST) {
+                value = containers.pop();
+            } else {
+                value = toScalar(token);
+            }
+            
+            if (value != null) {
+                if (containers.isEmpty()) {
+                    result = value;
+                } else if (containers.peek() instanceof JsonList) {
+                    ((JsonList) containers.peek()).addElement(value);
+                } else {
+                    ((JsonObject) containers.peek()).putElement(keys.pop(), value);
+                }
+            }
+        } while (result == null);
+        return result;
+    }
+    
+    /**
+     * Converts a scalar token into a {@link JsonElement}.
+     *
+     * @param token The token.
+     *
+     * @return The scalar element.
+     *
+     * @throws ParsingException If the token is not a scalar value.
+     */
+    private JsonElement toScalar(JsonToken token) throws ParsingException {
+        JsonElement result;
+        switch (token) {
+        case STRING:
+            result = new JsonString(parser.getString());
+            break;
+        case NUMBER:
+            result = new JsonNumber(parser.getNumber());
+            break;
+        case TRUE:
+            result = JsonBoolean.TRUE;
+            break;
+        case FALSE:
+            result = JsonBoolean.FALSE;
+            break;
+        case NULL:
+            result = JsonNull.INSTANCE;
+            break;
+        default:
+            throw unexpected(token, "value");
+        }
+        return result;
+    }
+    
+    /**
+     * Skips the next value, including all of its nested values.
+     *
+     * @throws ParsingException If the next token doesn't start a value, or the document is malformed.
+     * @throws IOException If reading the input fails.
+     */
+    public void skipValue() throws ParsingException, IOException {
+        int nesting = 0;
+        do {
+            JsonToken token = next();
+            if (token == JsonToken.START_LIST || token == JsonToken.START_OBJECT) {
+                nesting++;
+            } else if (token == JsonToken.END_LIST || token == JsonToken.END_OBJECT) {
+                nesting--;
+            } else if (token != JsonToken.KEY && !token.isScalarValue()) {
+                throw unexpected(token, "value");
+            }
+        } while (nesting > 0);
+    }
+    
+    /**
+     * Creates an exception for an unexpected token.
+     *
+     * @param token The token that has been read.
+     * @param expected A description of what was expected instead.
+     *
+     * @return The exception to throw.
+     */
+    private static ParsingException unexpected(JsonToken token, String expected) {
+        return new ParsingException("Expected " + expected + " but got " + describe(token));
+    }
+    
+    /**
+     * Describes a token for an exception message.
+     *
+     * @param token The token.
+     *
+     * @return A short description of the token.
+     */
+    private static String describe(JsonToken token) {
+        return token.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+    }
+    
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Writes JSON token by token to an {@link Appendable}, in the same compact format as {@link JsonSerializer}. This is
+ * the counterpart of {@link JsonTokenReader}: {@link JsonCodec}s use it to write objects without building a tree of
+ * {@link JsonElement}s first.
+ * <p>
+ * The caller is responsible for calling the methods in a valid order, i.e. {@link #key(String)} exactly once before
+ * each value inside of an object, and matching begin and end calls.
+ *
+ * @author Adam
+ */
+public class JsonWriter {
+    
+    private final Appendable target;
+    
+    /**
+     * For each nesting level, whether the list or object already has an element.
+     */
+    private boolean[] hasElements = new boolean[16];
+    
+    private int depth;
+    
+    /**
+     * Re-used for formatting primitive numbers.
+     */
+    private final char[] numberBuffer = new char[JsonNumberFormatter.MAX_LENGTH];
+    
+    private boolean afterKey;
+    
+    /**
+     * Creates a writer that writes to the given target.
+     *
+     * @param target The target to write to. Not <code>null</code>.
+     */
+    public JsonWriter(Appendable target) {
+        this.target = Objects.requireNonNull(target);
+    }
+    
+    /**
+     * Writes the separator before a value or key.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    private void separate() throws IOException {
+        if (afterKey) {
+            afterKey = false;
+        } else if (depth > 0) {
+            target.append(hasElements[depth - 1] ? ", " : " ");
+            hasElements[depth - 1] = true;
+        }
+    }
+    
+    /**
+     * Starts a list or object.
+     *
+     * @param bracket The opening bracket.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    private void begin(char bracket) throws IOException {
+        separate();
+        target.append(bracket);
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth++] = false;
+    }
+    
+    /**
+     * Ends a list or object.
+     *
+     * @param bracket The closing bracket.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    private void end(char bracket) throws IOException {
+        if (hasElements[--depth]) {
+            target.append(' ');
+        }
+        target.append(bracket);
+    }
+    
+    /**
+     * Writes the start of an object.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void beginObject() throws IOException {
+        begin('{');
+    }
+    
+    /**
+     * Writes the end of an object.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void endObject() throws IOException {
+        end('}');
+    }
+    
+    /**
+     * Writes the start of a list.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void beginList() throws IOException {
+        begin('[');
+    }
+    
+    /**
+     * Writes the end of a list.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void endList() throws IOException {
+        end(']');
+    }
+    
+    /**
+     * Writes the key of the next object member.
+     *
+     * @param key The key. Not <code>null</code>.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void key(String key) throws IOException {
+        separate();
+        target.append('"');
+        JsonString.jsonEscape(key, target);
+        target.append("\": ");
+        afterKey = true;
+    }
+    
+    /**
+     * Writes a string value.
+     *
+     * @param value The value. May be <code>null</code>, in which case <code>null</code> is written.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            target.append("null");
+        } else {
+            target.append('"');
+            JsonString.jsonEscape(value, target);
+            target.append('"');
+        }
+    }
+    
+    /**
+     * Writes a number value. Infinity and NaN are written as <code>null</code>, see
+     * {@link JsonNumber#jsonEscape(Number, Appendable)}.
+     *
+     * @param value The value. May be <code>null</code>, in which case <code>null</code> is written.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(Number value) throws IOException {
+        separate();
+        if (value == null) {
+            target.append("null");
+        } else {
+            JsonNumber.jsonEscape(value, target);
+        }
+    }
+    
+    /**
+     * Writes an integer value.
+     *
+     * @param value The value.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(long value) throws IOException {
+        separate();
+        JsonNumberFormatter.append(numberBuffer, JsonNumberFormatter.formatLong(value, numberBuffer), target);
+    }
+    
+    /**
+     * Writes a floating point value. Infinity and NaN are written as <code>null</code>.
+     *
+     * @param value The value.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(double value) throws IOException {
+        separate();
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            target.append("null");
+        } else {
+            JsonNumberFormatter.append(numberBuffer, JsonNumberFormatter.formatDouble(value, numberBuffer), target);
+        }
+    }
+    
+    /**
+     * Writes a boolean value.
+     *
+     * @param value The value.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(boolean value) throws IOException {
+        separate();
+        target.append(value ? "true" : "false");
+    }
+    
+    /**
+     * Writes a tree of {@link JsonElement}s as the next value.
+     *
+     * @param value The value. May be <code>null</code>, in which case <code>null</code> is written.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void value(JsonElement value) throws IOException {
+        separate();
+        if (value == null) {
+            target.append("null");
+        } else {
+            new JsonSerializer(target).write(value);
+        }
+    }
+    
+    /**
+     * Writes a <code>null</code> value.
+     *
+     * @throws IOException If writing to the target fails.
+     */
+    public void nullValue() throws IOException {
+        separate();
+        target.append("null");
+    }
+    
+}
@@ -0,0 +1,1061 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A push-style parser that reads JSON as a stream of {@link JsonToken}s. In contrast to {@link JsonParser}, this
+ * parser never blocks: the UTF-8 encoded input is handed to the parser in chunks via {@link #feed(ByteBuffer)}, and
+ * {@link #nextToken()} returns {@link JsonToken#NEED_MORE_INPUT} whenever the chunks fed so far are exhausted. Tokens
+ * (and even single UTF-8 characters) may be split arbitrarily across chunks; the parser resumes where it stopped
+ * once the next chunk arrives.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * NonBlockingJsonParser parser = new NonBlockingJsonParser();
+ * // whenever a chunk arrives:
+ * parser.feed(chunk);
+ * JsonToken token;
+ * while ((token = parser.nextToken()) != JsonToken.NEED_MORE_INPUT) {
+ *     // handle token
+ * }
+ * // when the input is complete:
+ * parser.endOfInput();
+ * // drain the remaining tokens until JsonToken.END_OF_INPUT
+ * </pre>
+ * <p>
+ * The same limits as for {@link JsonParser} apply; they are configured via {@link ParserOptions}.
+ *
+ * @author Adam
+ */
+public class NonBlockingJsonParser {
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private static final int INITIAL_DEPTH_CAPACITY = 16;
+    
+    /**
+     * What the parser expects next on the structural level.
+     */
+    private enum Expect {
+        VALUE,
+        VALUE_OR_END_LIST,
+        KEY,
+        KEY_OR_END_OBJECT,
+        COLON,
+        COMMA_OR_END,
+        DONE,
+    }
+    
+    /**
+     * The kind of token that is currently being read, if the input ended in the middle of it.
+     */
+    private enum Partial {
+        NONE,
+        STRING,
+        KEY,
+        NUMBER,
+        LITERAL,
+    }
+    
+    /**
+     * The state of escape sequence handling inside of strings.
+     */
+    private enum Escape {
+        NONE,
+        BACKSLASH,
+        UNICODE,
+    }
+    
+    private ParserOptions options;
+    
+    private CharsetDecoder decoder;
+    
+    /**
+     * Bytes of an incomplete UTF-8 sequence at the end of the last chunk.
+     */
+    private ByteBuffer pendingBytes;
+    
+    private char[] buffer;
+    
+    private int position;
+    
+    private int limit;
+    
+    private boolean endOfInput;
+    
+    private long inputLength;
+    
+    /**
+     * The offset of the first character in {@link #buffer} from the start of the input.
+     */
+    private long bufferOffset;
+    
+    private int line;
+    
+    /**
+     * The offset of the first character of the current line from the start of the input.
+     */
+    private long lineStart;
+    
+    private Expect expect;
+    
+    /**
+     * For each nesting level, whether it is an object (<code>true</code>) or a list (<code>false</code>).
+     */
+    private boolean[] inObject;
+    
+    /**
+     * For each nesting level, the number of members or elements read so far.
+     */
+    private int[] sizes;
+    
+    private int depth;
+    
+    private long elementCount;
+    
+    private Partial partial;
+    
+    private StringBuilder text;
+    
+    private Escape escape;
+    
+    private int unicodeValue;
+    
+    private int unicodeDigits;
+    
+    /**
+     * Whether the last character of the current string is an escaped high surrogate that still needs a low
+     * surrogate.
+     */
+    private boolean highSurrogatePending;
+    
+    private String literal;
+    
+    private int literalIndex;
+    
+    private JsonToken literalToken;
+    
+    private String currentString;
+    
+    private Number currentNumber;
+    
+    /**
+     * Creates a parser with the default {@link ParserOptions}.
+     */
+    public NonBlockingJsonParser() {
+        this(new ParserOptions());
+    }
+    
+    /**
+     * Creates a parser with the given options.
+     *
+     * @param options The options (i.e. limits) to use for parsing. Not <code>null</code>.
+     */
+    public NonBlockingJsonParser(ParserOptions options) {
+        this.options = Objects.requireNonNull(options);
+        this.decoder = options.createUtf8Decoder();
+        this.pendingBytes = ByteBuffer.allocate(4);
+        this.buffer = new char[INITIAL_CAPACITY];
+        this.expect = Expect.VALUE;
+        this.inObject = new boolean[INITIAL_DEPTH_CAPACITY];
+        this.sizes = new int[INITIAL_DEPTH_CAPACITY];
+        this.partial = Partial.NONE;
+        this.text = new StringBuilder();
+        this.escape = Escape.NONE;
+    }
+    
+    /**
+     * Feeds the next chunk of UTF-8 encoded input to this parser. All remaining bytes of the given buffer are
+     * consumed, i.e. its position is advanced to its limit. The buffer may be re-used by the caller after this
+     * method returns. A multi-byte UTF-8 sequence may be split across two chunks.
+     *
+     * @param input The next chunk of input. Not <code>null</code>.
+     *
+     * @throws ParsingException If the input exceeds the maximum input length, or is not valid UTF-8.
+     * @throws IllegalStateException If {@link #endOfInput()} has already been called.
+     */
+    public void feed(ByteBuffer input) throws ParsingException, IllegalStateException {
+        if (endOfInput) {
+            throw new IllegalStateException("Can't feed input after end of input");
+        }
+        
+        CharBuffer out = prepareBuffer(pendingBytes.position() + input.remaining());
+        
+        // first complete a UTF-8 sequence that was split at the end of the last chunk
+        while (pendingBytes.position() > 0 && input.hasRemaining()) {
+            pendingBytes.put(input.get());
+            ((Buffer) pendingBytes).flip();
+            checkDecoding(decoder.decode(pendingBytes, out, false), out);
+            pendingBytes.compact();
+        }
+        
+        checkDecoding(decoder.decode(input, out, false), out);
+        // the remaining bytes (at most 3) are an incomplete UTF-8 sequence
+        pendingBytes.put(input);
+        
+        finishBuffer(out);
+    }
+    
+    /**
+     * Signals that no more input follows. Afterwards, {@link #nextToken()} will not return
+     * {@link JsonToken#NEED_MORE_INPUT} anymore.
+     *
+     * @throws ParsingException If the input exceeds the maximum input length, or ends with an incomplete UTF-8
+     *      sequence.
+     */
+    public void endOfInput() throws ParsingException {
+        if (!endOfInput) {
+            // each pending byte is replaced by at most one character, plus one for the flush
+            CharBuffer out = prepareBuffer(pendingBytes.position() + 1);
+            ((Buffer) pendingBytes).flip();
+            checkDecoding(decoder.decode(pendingBytes, out, true), out);
+            decoder.flush(out);
+            ((Buffer) pendingBytes).clear();
+            finishBuffer(out);
+            
+            endOfInput = true;
+        }
+    }
+    
+    /**
+     * Checks the result of decoding a chunk of input. With {@link ParserOptions#isReplaceInvalidUnicode()},
+     * malformed input is replaced by the decoder and never reported here.
+     *
+     * @param result The result of the decoder.
+     * @param out The buffer that the decoder writes to.
+     *
+     * @throws ParsingException If the input is not valid UTF-8.
+     */
+    private void checkDecoding(CoderResult result, CharBuffer out) throws ParsingException {
+        if (result.isError()) {
+            throw makeException("Invalid UTF-8 input", out.position());
+        }
+    }
+    
+    /**
+     * Compacts the character buffer and ensures that there is enough space to decode the given number of bytes.
+     *
+     * @param numBytes The number of bytes that will be decoded.
+     *
+     * @return A {@link CharBuffer} that writes behind the valid characters in the buffer.
+     */
+    private CharBuffer prepareBuffer(int numBytes) {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferOffset += position;
+            limit -= position;
+            position = 0;
+        }
+        
+        // UTF-8 never decodes to more characters than there are bytes
+        if (buffer.length - limit < numBytes) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + numBytes));
+        }
+        
+        return CharBuffer.wrap(buffer, limit, buffer.length - limit);
+    }
+    
+    /**
+     * Takes over the characters that have been decoded into the given buffer.
+     *
+     * @param out The buffer returned by {@link #prepareBuffer(int)}.
+     *
+     * @throws ParsingException If the input exceeds the maximum input length.
+     */
+    private void finishBuffer(CharBuffer out) throws ParsingException {
+        int numDecoded = out.position() - limit;
+        limit = out.position();
+        
+        inputLength += numDecoded;
+        if (inputLength > options.getMaxInputLength()) {
+            throw makeException("Exceeded maximum input length of " + options.getMaxInputLength(),
+                    (int) (options.getMaxInputLength() - bufferOffset));
+        }
+    }
+    
+    /**
+     * Reads the next token from the input fed so far.
+     *
+     * @return The next token. {@link JsonToken#NEED_MORE_INPUT} if more input is required to determine the next
+     *      token. {@link JsonToken#END_OF_INPUT} if {@link #endOfInput()} has been called and the complete JSON
+     *      element has been read. Never <code>null</code>.
+     *
+     * @throws ParsingException If the input is malformed.
+     */
+    public JsonToken nextToken() throws ParsingException {
+        JsonToken result = null;
+        if (partial == Partial.NONE) {
+            result = startToken();
+        }
+        if (result == null) {
+            result = continuePartial();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the value of the last {@link JsonToken#STRING} or {@link JsonToken#KEY} token.
+     *
+     * @return The unescaped string value.
+     */
+    public String getString() {
+        return currentString;
+    }
+    
+    /**
+     * Returns the value of the last {@link JsonToken#NUMBER} token. Same as in {@link JsonParser}, this is an
+     * {@link Integer}, {@link Long} or {@link Double}.
+     *
+     * @return The number value.
+     */
+    public Number getNumber() {
+        return currentNumber;
+    }
+    
+    /**
+     * Returns the current nesting depth of lists and objects. This is 0 on the top level, and 1 after the
+     * {@link JsonToken#START_LIST} or {@link JsonToken#START_OBJECT} of the top-level element.
+     *
+     * @return The current nesting depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+    
+    /**
+     * Reads structural characters until a token is found or a token is started that may span multiple chunks.
+     *
+     * @return The token, or <code>null</code> if a partial token has been started.
+     *
+     * @throws ParsingException If the input is malformed.
+     */
+    private JsonToken startToken() throws ParsingException {
+        JsonToken result = null;
+        while (result == null && partial == Partial.NONE) {
+            skipWhitespace();
+            
+            if (position == limit) {
+                result = endOfInputToken();
+                
+            } else {
+                char c = buffer[position];
+                switch (expect) {
+                case VALUE_OR_END_LIST:
+                    result = c == ']' ? readEnd() : startValue(c);
+                    break;
+                case VALUE:
+                    result = startValue(c);
+                    break;
+                case KEY_OR_END_OBJECT:
+                    result = c == '}' ? readEnd() : startKey(c);
+                    break;
+                case KEY:
+                    result = startKey(c);
+                    break;
+                case COLON:
+                    readColon(c);
+                    break;
+                case COMMA_OR_END:
+                    result = readCommaOrEnd(c);
+                    break;
+                default:
+                    throw makeException("JSON element is over, but didn't reach EOF");
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Determines the token to return if no more characters are available outside of a token.
+     *
+     * @return {@link JsonToken#NEED_MORE_INPUT} or {@link JsonToken#END_OF_INPUT}.
+     *
+     * @throws ParsingException If the input ended before the JSON element is complete.
+     */
+    private JsonToken endOfInputToken() throws ParsingException {
+        JsonToken result;
+        if (!endOfInput) {
+            result = JsonToken.NEED_MORE_INPUT;
+        } else if (expect == Expect.DONE) {
+            result = JsonToken.END_OF_INPUT;
+        } else {
+            throw makeException("Unexpected end of input");
+        }
+        return result;
+    }
+    
+    /**
+     * Skips whitespace characters in the buffer.
+     */
+    private void skipWhitespace() {
+        boolean whitespace = true;
+        while (whitespace && position < limit) {
+            switch (buffer[position]) {
+            case '\n':
+                line++;
+                position++;
+                lineStart = bufferOffset + position;
+                break;
+            case ' ':
+            case '\t':
+            case '\r':
+                position++;
+                break;
+            default:
+                whitespace = false;
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Starts reading a value.
+     *
+     * @param character The first character of the value.
+     *
+     * @return The token if it consists of a single character, or <code>null</code> if a partial token has been
+     *      started.
+     *
+     * @throws ParsingException If the value is malformed, or a limit is exceeded.
+     */
+    private JsonToken startValue(char character) throws ParsingException {
+        if (++elementCount > options.getMaxElementCount()) {
+            throw makeException("Exceeded maximum element count of " + options.getMaxElementCount());
+        }
+        if (depth > 0 && !inObject[depth - 1] && ++sizes[depth - 1] > options.getMaxListSize()) {
+            throw makeException("Exceeded maximum list size of " + options.getMaxListSize());
+        }
+        
+        JsonToken result = null;
+        switch (character) {
+        case '{':
+            push(true);
+            position++;
+            expect = Expect.KEY_OR_END_OBJECT;
+            result = JsonToken.START_OBJECT;
+            break;
+        case '[':
+            push(false);
+            position++;
+            expect = Expect.VALUE_OR_END_LIST;
+            result = JsonToken.START_LIST;
+            break;
+        case '"':
+            position++;
+            startPartial(Partial.STRING);
+            break;
+        case 't':
+            startLiteral("true", JsonToken.TRUE);
+            break;
+        case 'f':
+            startLiteral("false", JsonToken.FALSE);
+            break;
+        case 'n':
+            startLiteral("null", JsonToken.NULL);
+            break;
+        case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9': case '-':
+            startPartial(Partial.NUMBER);
+            break;
+        default:
+            throw makeException("Couldn't determine type: " + character);
+        }
+        return result;
+    }
+    
+    /**
+     * Starts reading the key of an object member.
+     *
+     * @param character The first character of the key.
+     *
+     * @return Always <code>null</code>, since the key is read as a partial token.
+     *
+     * @throws ParsingException If the key is not a string, or the maximum object size is exceeded.
+     */
+    private JsonToken startKey(char character) throws ParsingException {
+        if (character != '"') {
+            throw makeException("Expecting key string, got " + character);
+        }
+        if (++sizes[depth - 1] > options.getMaxObjectSize()) {
+            throw makeException("Exceeded maximum object size of " + options.getMaxObjectSize());
+        }
+        position++;
+        startPartial(Partial.KEY);
+        return null;
+    }
+    
+    /**
+     * Reads the ':' between key and value.
+     *
+     * @param character The next character.
+     *
+     * @throws ParsingException If the character is not a ':'.
+     */
+    private void readColon(char character) throws ParsingException {
+        if (character != ':') {
+            throw makeException("Expecting ':' after key, got " + character);
+        }
+        position++;
+        expect = Expect.VALUE;
+    }
+    
+    /**
+     * Reads the ',' between values or the end of the current list or object.
+     *
+     * @param character The next character.
+     *
+     * @return The end token, or <code>null</code> if a ',' was read.
+     *
+     * @throws ParsingException If the character is neither a ',' nor the correct end character.
+     */
+    private JsonToken readCommaOrEnd(char character) throws ParsingException {
+        boolean object = inObject[depth - 1];
+        char end = object ? '}' : ']';
+        
+        JsonToken result = null;
+        if (character == ',') {
+            position++;
+            expect = object ? Expect.KEY : Expect.VALUE;
+        } else if (character == end) {
+            result = readEnd();
+        } else {
+            throw makeException("Expecting ',' or '" + end + "', got " + character);
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the end of the current list or object.
+     *
+     * @return {@link JsonToken#END_LIST} or {@link JsonToken#END_OBJECT}.
+     */
+    private JsonToken readEnd() {
+        position++;
+        depth--;
+        JsonToken result = inObject[depth] ? JsonToken.END_OBJECT : JsonToken.END_LIST;
+        finishValue();
+        return result;
+    }
+    
+    /**
+     * Increases the nesting depth.
+     *
+     * @param object Whether the new nesting level is an object.
+     *
+     * @throws ParsingException If the maximum nesting depth is exceeded.
+     */
+    private void push(boolean object) throws ParsingException {
+        if (depth + 1 > options.getMaxNestingDepth()) {
+            throw makeException("Exceeded maximum nesting depth of " + options.getMaxNestingDepth());
+        }
+        if (depth == inObject.length) {
+            inObject = Arrays.copyOf(inObject, depth * 2);
+            sizes = Arrays.copyOf(sizes, depth * 2);
+        }
+        inObject[depth] = object;
+        sizes[depth] = 0;
+        depth++;
+    }
+    
+    /**
+     * Updates the structural state after a complete value has been read.
+     */
+    private void finishValue() {
+        expect = depth == 0 ? Expect.DONE : Expect.COMMA_OR_END;
+    }
+    
+    /**
+     * Starts reading a token that may span multiple chunks.
+     *
+     * @param kind The kind of token.
+     */
+    private void startPartial(Partial kind) {
+        partial = kind;
+        text.setLength(0);
+        escape = Escape.NONE;
+        highSurrogatePending = false;
+    }
+    
+    /**
+     * Starts reading a true, false or null literal.
+     *
+     * @param expected The literal text.
+     * @param token The token to return once the literal is complete.
+     */
+    private void startLiteral(String expected, JsonToken token) {
+        startPartial(Partial.LITERAL);
+        literal = expected;
+        literalIndex = 0;
+        literalToken = token;
+    }
+    
+    /**
+     * Continues reading the partial token.
+     *
+     * @return The token if it is complete, otherwise {@link JsonToken#NEED_MORE_INPUT}.
+     *
+     * @throws ParsingException If the token is malformed, or the input ended in the middle of the token.
+     */
+    private JsonToken continuePartial() throws ParsingException {
+        JsonToken result = null;
+        switch (partial) {
+        case STRING:
+        case KEY:
+            if (continueString()) {
+                currentString = text.toString();
+                if (partial == Partial.KEY) {
+                    expect = Expect.COLON;
+                    result = JsonToken.KEY;
+                } else {
+                    finishValue();
+                    result = JsonToken.STRING;
+                }
+            }
+            break;
+        case NUMBER:
+            if (continueNumber()) {
+                currentNumber = toNumber(text);
+                finishValue();
+                result = JsonToken.NUMBER;
+            }
+            break;
+        default: // LITERAL
+            if (continueLiteral()) {
+                finishValue();
+                result = literalToken;
+            }
+            break;
+        }
+        
+        if (result != null) {
+            partial = Partial.NONE;
+        } else if (endOfInput) {
+            throw makeException("Unexpected end of input");
+        } else {
+            result = JsonToken.NEED_MORE_INPUT;
+        }
+        return result;
+    }
+    
+    /**
+     * Continues reading a string, until the closing '"' or the end of the available input.
+     *
+     * @return Whether the string is complete.
+     *
+     * @throws ParsingException If the string is malformed or too long.
+     */
+    private boolean continueString() throws ParsingException {
+        boolean finished = false;
+        while (!finished && position < limit) {
+            if (escape != Escape.NONE) {
+                readEscaped(buffer[position++]);
+                
+            } else {
+                int start = position;
+                while (position < limit && isPlainStringChar(buffer[position])) {
+                    position++;
+                }
+                appendText(start, position - start, options.getMaxStringLength());
+                
+                if (position < limit) {
+                    char c = buffer[position++];
+                    if (c == '"') {
+                        resolvePendingSurrogate(position - 1);
+                        finished = true;
+                    } else if (c == '\\') {
+                        escape = Escape.BACKSLASH;
+                    } else {
+                        throw makeException("Unescaped control character " + Integer.toHexString(c), position - 1);
+                    }
+                }
+            }
+        }
+        return finished;
+    }
+    
+    /**
+     * Checks if the given character can be copied from the input to the string value as it is.
+     *
+     * @param character The character to check.
+     *
+     * @return Whether the character is neither '"', '\', nor a control character.
+     */
+    private static boolean isPlainStringChar(char character) {
+        return character >= 0x20 && character != '"' && character != '\\';
+    }
+    
+    /**
+     * Handles a character that is part of an escape sequence.
+     *
+     * @param character The character.
+     *
+     * @throws ParsingException If the escape sequence is malformed.
+     */
+    private void readEscaped(char character) throws ParsingException {
+        if (escape == Escape.UNICODE) {
+            int digit = hexValue(character);
+            if (digit < 0) {
+                throw makeException("Expected four hex digits after \\u, got '" + character + "'", position - 1);
+            }
+            unicodeValue = unicodeValue * 16 + digit;
+            if (++unicodeDigits == 4) {
+                appendUnicodeEscape((char) unicodeValue);
+                escape = Escape.NONE;
+            }
+            
+        } else {
+            escape = Escape.NONE;
+            switch (character) {
+            case '"':
+            case '\\':
+            case '/':
+                appendChar(character);
+                break;
+            case 'b':
+                appendChar('\b');
+                break;
+            case 'n':
+                appendChar('\n');
+                break;
+            case 'r':
+                appendChar('\r');
+                break;
+            case 't':
+                appendChar('\t');
+                break;
+            case 'f':
+                appendChar('\f');
+                break;
+            case 'u':
+                escape = Escape.UNICODE;
+                unicodeValue = 0;
+                unicodeDigits = 0;
+                break;
+            default:
+                throw makeException("Invalid escaped character '" + character + "'", position - 1);
+            }
+        }
+    }
+    
+    /**
+     * Returns the value of the given hexadecimal digit.
+     *
+     * @param character The character.
+     *
+     * @return The value of the digit, or -1 if the character is not a hexadecimal digit.
+     */
+    private static int hexValue(char character) {
+        int result;
+        if (character >= '0' && character <= '9') {
+            result = character - '0';
+        } else if (character >= 'a' && character <= 'f') {
+            result = character - 'a' + 10;
+        } else if (character >= 'A' && character <= 'F') {
+            result = character - 'A' + 10;
+        } else {
+            result = -1;
+        }
+        return result;
+    }
+    
+    /**
+     * Continues reading a number, until a character that can't be part of a number or the end of the input.
+     *
+     * @return Whether the number is complete.
+     *
+     * @throws ParsingException If the number is too long.
+     */
+    private boolean continueNumber() throws ParsingException {
+        int start = position;
+        while (position < limit && isNumberChar(buffer[position])) {
+            position++;
+        }
+        appendText(start, position - start, options.getMaxNumberLength());
+        return position < limit || endOfInput;
+    }
+    
+    /**
+     * Checks if the given character may be part of a JSON number.
+     *
+     * @param character The character to check.
+     *
+     * @return Whether the character may be part of a number.
+     */
+    private static boolean isNumberChar(char character) {
+        boolean result;
+        switch (character) {
+        case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
+        case '-': case '+': case '.': case 'e': case 'E':
+            result = true;
+            break;
+        default:
+            result = false;
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Converts a complete number literal into a {@link Number}.
+     *
+     * @param number The number literal.
+     *
+     * @return The number, as an {@link Integer}, {@link Long} or {@link Double}.
+     *
+     * @throws ParsingException If the literal is not a valid JSON number.
+     */
+    private Number toNumber(CharSequence number) throws ParsingException {
+        int invalidIndex = invalidNumberIndex(number);
+        if (invalidIndex != -1) {
+            // the number ends right before the current position
+            throw makeException("Invalid number " + number, position - number.length() + invalidIndex);
+        }
+        
+        String str = number.toString();
+        Number result;
+        try {
+            if (str.indexOf('.') == -1 && str.indexOf('e') == -1 && str.indexOf('E') == -1) {
+                long l = Long.parseLong(str);
+                if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                    result = (int) l;
+                } else {
+                    result = l;
+                }
+            } else {
+                result = Double.parseDouble(str);
+            }
+        } catch (NumberFormatException e) {
+            throw makeException("Can't parse number " + e.getMessage(), position - 1);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the given literal follows the JSON number grammar.
+     *
+     * @param number The literal to check.
+     *
+     * @return The index of the first character that violates the grammar (the length of the literal if it ends too
+     *      early), or -1 if the literal is a valid JSON number.
+     */
+    private static int invalidNumberIndex(CharSequence number) {
+        int length = number.length();
+        int i = 0;
+        if (i < length && number.charAt(i) == '-') {
+            i++;
+        }
+        
+        boolean valid;
+        if (i < length && number.charAt(i) == '0') {
+            i++;
+            valid = true;
+        } else {
+            int end = skipDigits(number, i);
+            valid = end > i;
+            i = end;
+        }
+        
+        if (valid && i < length && number.charAt(i) == '.') {
+            int end = skipDigits(number, i + 1);
+            valid = end > i + 1;
+            i = end;
+        }
+        
+        if (valid && i < length && (number.charAt(i) == 'e' || number.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (number.charAt(i) == '+' || number.charAt(i) == '-')) {
+                i++;
+            }
+            int end = skipDigits(number, i);
+            valid = end > i;
+            i = end;
+        }
+        
+        return valid && i == length ? -1 : i;
+    }
+    
+    /**
+     * Skips all digits starting at the given index.
+     *
+     * @param str The string to read.
+     * @param start The index to start at.
+     *
+     * @return The index of the first character that is not a digit.
+     */
+    private static int skipDigits(CharSequence str, int start) {
+        int i = start;
+        while (i < str.length() && str.charAt(i) >= '0' && str.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Continues reading a true, false or null literal.
+     *
+     * @return Whether the literal is complete.
+     *
+     * @throws ParsingException If the input does not match the expected literal.
+     */
+    private boolean continueLiteral() throws ParsingException {
+        while (literalIndex < literal.length() && position < limit) {
+            char c = buffer[position++];
+            if (c != literal.charAt(literalIndex)) {
+                throw makeException("Expected " + literal.charAt(literalIndex) + ", but got " + c, position - 1);
+            }
+            literalIndex++;
+        }
+        return literalIndex == literal.length();
+    }
+    
+    /**
+     * Appends characters from the buffer to the text of the current token.
+     *
+     * @param start The index of the first character in the buffer.
+     * @param length The number of characters to append.
+     * @param maxLength The maximum length of the token text.
+     *
+     * @throws ParsingException If the token text exceeds the maximum length.
+     */
+    private void appendText(int start, int length, int maxLength) throws ParsingException {
+        if (text.length() + length > maxLength) {
+            String kind = partial == Partial.NUMBER ? "number" : "string";
+            throw makeException("Exceeded maximum " + kind + " length of " + maxLength,
+                    start + maxLength - text.length());
+        }
+        if (length > 0) {
+            resolvePendingSurrogate(start);
+        }
+        text.append(buffer, start, length);
+    }
+    
+    /**
+     * Appends an unescaped character to the current string.
+     *
+     * @param character The character to append.
+     *
+     * @throws ParsingException If the string exceeds the maximum length.
+     */
+    private void appendChar(char character) throws ParsingException {
+        if (text.length() >= options.getMaxStringLength()) {
+            throw makeException("Exceeded maximum string length of " + options.getMaxStringLength(), position - 1);
+        }
+        resolvePendingSurrogate(position - 1);
+        text.append(character);
+    }
+    
+    /**
+     * Appends a character from a unicode escape sequence to the current string. Checks that escaped surrogates
+     * only occur in valid pairs, i.e. a high surrogate directly followed by a low surrogate.
+     *
+     * @param character The escaped character.
+     *
+     * @throws ParsingException If the string exceeds the maximum length, or a surrogate is not part of a valid
+     *      pair and invalid unicode is not replaced.
+     */
+    private void appendUnicodeEscape(char character) throws ParsingException {
+        if (highSurrogatePending && Character.isLowSurrogate(character)) {
+            highSurrogatePending = false;
+            text.append(character); // the high surrogate has already been counted against the maximum length
+        } else {
+            char toAppend = character;
+            if (Character.isLowSurrogate(character)) {
+                toAppend = handleLoneSurrogate(character, position - 1);
+            }
+            appendChar(toAppend);
+            highSurrogatePending = Character.isHighSurrogate(toAppend);
+        }
+    }
+    
+    /**
+     * Handles an escaped high surrogate at the end of the current string that is not followed by a low surrogate.
+     *
+     * @param index The index in the buffer of the character that follows the high surrogate.
+     *
+     * @throws ParsingException If invalid unicode is not replaced.
+     */
+    private void resolvePendingSurrogate(int index) throws ParsingException {
+        if (highSurrogatePending) {
+            highSurrogatePending = false;
+            int last = text.length() - 1;
+            text.setCharAt(last, handleLoneSurrogate(text.charAt(last), index));
+        }
+    }
+    
+    /**
+     * Handles a surrogate that is not part of a valid pair.
+     *
+     * @param surrogate The surrogate.
+     * @param index The index in the buffer of the character where the error is detected.
+     *
+     * @return The replacement character U+FFFD, if invalid unicode is replaced.
+     *
+     * @throws ParsingException If invalid unicode is not replaced.
+     */
+    private char handleLoneSurrogate(char surrogate, int index) throws ParsingException {
+        if (!options.isReplaceInvalidUnicode()) {
+            throw makeException("Invalid surrogate \\u" + Integer.toHexString(surrogate).toUpperCase(Locale.ROOT)
+                    + " without matching pair", index);
+        }
+        return '\uFFFD';
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the next character to parse (i.e. the
+     * one that caused the error, or the end of the input).
+     *
+     * @param message The exception message.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message) {
+        return makeException(message, position);
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the given character. Same as in
+     * {@link JsonParser}, the offset and column count UTF-16 characters.
+     *
+     * @param message The exception message.
+     * @param index The index of the character in {@link #buffer}. May be negative for characters that have already
+     *      been dropped from the buffer, or beyond {@link #position} for characters that have not been parsed yet.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message, int index) {
+        // line breaks are only counted when parsed, so count the ones up to the given character here
+        long errorLine = line;
+        long errorLineStart = lineStart;
+        for (int i = position; i < index; i++) {
+            if (buffer[i] == '\n') {
+                errorLine++;
+                errorLineStart = bufferOffset + i + 1;
+            }
+        }
+        long offset = bufferOffset + index;
+        return new ParsingException(message, errorLine + 1, offset - errorLineStart + 1, offset);
+    }
+    
+}
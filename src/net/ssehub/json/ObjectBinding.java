@@ -0,0 +1,641 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The {@link JsonBinder.Binding} of a class that is bound via its fields, or of a record. The accessors are created
+ * once, when the binding is created.
+ *
+ * @author Adam
+ */
+final class ObjectBinding extends JsonBinder.Binding {
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    private final Property[] properties;
+    
+    private final Map<String, Property> byName;
+    
+    /**
+     * Creates new instances of a class; <code>null</code> for records.
+     */
+    private final Supplier<Object> constructor;
+    
+    /**
+     * Creates new records from the values of their components; <code>null</code> for classes.
+     */
+    private final Function<Object[], Object> canonicalConstructor;
+    
+    /**
+     * The initial values of the record components.
+     */
+    private final Object[] defaults;
+    
+    /**
+     * Creates a binding.
+     *
+     * @param properties The properties of the class.
+     * @param constructor Creates new instances of a class; <code>null</code> for records.
+     * @param canonicalConstructor Creates new records from the values of their components; <code>null</code> for
+     *      classes.
+     */
+    private ObjectBinding(Property[] properties, Supplier<Object> constructor,
+            Function<Object[], Object> canonicalConstructor) {
+        super(true);
+        this.properties = properties;
+        this.constructor = constructor;
+        this.canonicalConstructor = canonicalConstructor;
+        this.byName = new HashMap<>(properties.length * 4 / 3 + 1);
+        this.defaults = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            byName.put(properties[i].name, properties[i]);
+            defaults[i] = properties[i].defaultValue;
+        }
+    }
+    
+    /**
+     * Creates the binding of a class or record.
+     *
+     * @param type The class.
+     *
+     * @return The binding.
+     *
+     * @throws IllegalArgumentException If the class or one of its field types can't be bound.
+     */
+    static ObjectBinding create(Class<?> type) throws IllegalArgumentException {
+        ObjectBinding result;
+        try {
+            if (type.getSuperclass() != null && type.getSuperclass().getName().equals("java.lang.Record")) {
+                result = createForRecord(type);
+            } else {
+                result = createForClass(type);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't bind type " + type.getName() + ": " + e, e);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates the binding of a class with a constructor without parameters.
+     *
+     * @param type The class.
+     *
+     * @return The binding.
+     *
+     * @throws ReflectiveOperationException If the class has no constructor without parameters, or accessing it
+     *      fails.
+     */
+    @SuppressWarnings("unchecked")
+    private static ObjectBinding createForClass(Class<?> type) throws ReflectiveOperationException {
+        Deque<Class<?>> hierarchy = new ArrayDeque<>();
+        for (Class<?> cls = type; cls != Object.class; cls = cls.getSuperclass()) {
+            hierarchy.push(cls);
+        }
+        
+        List<Property> properties = new ArrayList<>();
+        for (Class<?> cls : hierarchy) {
+            for (Field field : cls.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    properties.add(createProperty(type, field, properties.size()));
+                }
+            }
+        }
+        
+        Constructor<?> constructor = type.getDeclaredConstructor();
+        Supplier<Object> supplier = null;
+        if (canLink(constructor)) {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+            supplier = (Supplier<Object>) metafactory(Supplier.class, "get", MethodType.methodType(Object.class),
+                    handle, handle.type());
+        }
+        if (supplier == null) {
+            constructor.setAccessible(true);
+            supplier = invokeConstructor(LOOKUP.unreflectConstructor(constructor));
+        }
+        return new ObjectBinding(properties.toArray(new Property[properties.size()]), supplier, null);
+    }
+    
+    /**
+     * Creates the property of a field of a class.
+     *
+     * @param type The class.
+     * @param field The field.
+     * @param index The index of the property.
+     *
+     * @return The property.
+     *
+     * @throws ReflectiveOperationException If accessing the field or its getter or setter fails.
+     */
+    private static Property createProperty(Class<?> type, Field field, int index)
+            throws ReflectiveOperationException {
+        String name = field.getName();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        
+        Method getMethod = findMethod(type, "get" + capitalized, field.getType());
+        if (getMethod == null && field.getType() == boolean.class) {
+            getMethod = findMethod(type, "is" + capitalized, field.getType());
+        }
+        Method setMethod = findMethod(type, "set" + capitalized, null, field.getType());
+        
+        Function<Object, Object> getter = getMethod != null ? getter(getMethod) : null;
+        BiConsumer<Object, Object> setter = setMethod != null ? setter(setMethod) : null;
+        boolean settable = !Modifier.isFinal(field.getModifiers());
+        if (getter == null || setter == null && settable) {
+            field.setAccessible(true);
+            if (getter == null) {
+                getter = invokeGetter(LOOKUP.unreflectGetter(field));
+            }
+            if (setter == null && settable) {
+                setter = invokeSetter(LOOKUP.unreflectSetter(field));
+            }
+        }
+        return new Property(name, index, field.getGenericType(), getter, setter);
+    }
+    
+    /**
+     * Creates the binding of a record. Records are only available in Java 16 and newer, so their components are
+     * looked up with reflection.
+     *
+     * @param type The record class.
+     *
+     * @return The binding.
+     *
+     * @throws ReflectiveOperationException If accessing the components or the canonical constructor fails.
+     */
+    private static ObjectBinding createForRecord(Class<?> type) throws ReflectiveOperationException {
+        Object[] components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+        Class<?> componentClass = Class.forName("java.lang.reflect.RecordComponent");
+        Method getName = componentClass.getMethod("getName");
+        Method getGenericType = componentClass.getMethod("getGenericType");
+        Method getType = componentClass.getMethod("getType");
+        Method getAccessor = componentClass.getMethod("getAccessor");
+        
+        Property[] properties = new Property[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            parameterTypes[i] = (Class<?>) getType.invoke(components[i]);
+            Method accessor = (Method) getAccessor.invoke(components[i]);
+            properties[i] = new Property((String) getName.invoke(components[i]), i,
+                    (Type) getGenericType.invoke(components[i]), getter(accessor), null);
+        }
+        
+        Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+        constructor.setAccessible(true);
+        MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new ObjectBinding(properties, null, values -> construct(handle, values));
+    }
+    
+    /**
+     * Finds a public, non-static method.
+     *
+     * @param type The class to search in.
+     * @param name The name of the method.
+     * @param returnType The required return type, or <code>null</code> if any return type is allowed.
+     * @param parameterTypes The parameter types.
+     *
+     * @return The method, or <code>null</code> if there is no such method.
+     */
+    private static Method findMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        Method result;
+        try {
+            result = type.getMethod(name, parameterTypes);
+            if (Modifier.isStatic(result.getModifiers())
+                    || returnType != null && result.getReturnType() != returnType) {
+                result = null;
+            }
+        } catch (NoSuchMethodException e) {
+            result = null;
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether a member can be linked into a lambda. This requires that the member and its class are public,
+     * and that the class is visible from the class loader of this class, which defines the lambda classes.
+     *
+     * @param member The method or constructor.
+     *
+     * @return Whether the member can be linked into a lambda.
+     */
+    private static boolean canLink(Executable member) {
+        Class<?> type = member.getDeclaringClass();
+        boolean result = Modifier.isPublic(member.getModifiers()) && Modifier.isPublic(type.getModifiers());
+        if (result) {
+            try {
+                result = Class.forName(type.getName(), false, ObjectBinding.class.getClassLoader()) == type;
+            } catch (ClassNotFoundException e) {
+                result = false;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a getter that calls the given method.
+     *
+     * @param method The getter method.
+     *
+     * @return The getter.
+     *
+     * @throws IllegalAccessException If the method is not accessible.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method method) throws IllegalAccessException {
+        Function<Object, Object> result = null;
+        if (canLink(method)) {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            result = (Function<Object, Object>) metafactory(Function.class, "apply",
+                    MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+        }
+        if (result == null) {
+            method.setAccessible(true);
+            result = invokeGetter(LOOKUP.unreflect(method));
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a setter that calls the given method.
+     *
+     * @param method The setter method.
+     *
+     * @return The setter.
+     *
+     * @throws IllegalAccessException If the method is not accessible.
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Method method) throws IllegalAccessException {
+        BiConsumer<Object, Object> result = null;
+        if (canLink(method)) {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            result = (BiConsumer<Object, Object>) metafactory(BiConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, Object.class), handle,
+                    handle.type().wrap().changeReturnType(void.class));
+        }
+        if (result == null) {
+            method.setAccessible(true);
+            result = invokeSetter(LOOKUP.unreflect(method));
+        }
+        return result;
+    }
+    
+    /**
+     * Links a method handle into a lambda of a functional interface.
+     *
+     * @param functionalInterface The functional interface.
+     * @param name The name of the method of the functional interface.
+     * @param erasedType The erased type of the method of the functional interface.
+     * @param implementation The method handle to link.
+     * @param instantiatedType The type of the method of the functional interface, specialized for the
+     *      implementation.
+     *
+     * @return The lambda, or <code>null</code> if linking fails.
+     */
+    private static Object metafactory(Class<?> functionalInterface, String name, MethodType erasedType,
+            MethodHandle implementation, MethodType instantiatedType) {
+        Object result;
+        // checkstyle: stop exception type check
+        try {
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(functionalInterface),
+                    erasedType, implementation, instantiatedType);
+            result = site.getTarget().invoke();
+        } catch (Throwable e) {
+            // e.g. if the class is not accessible from this module; fall back to invoking the handle directly
+            result = null;
+        }
+        // checkstyle: resume exception type check
+        return result;
+    }
+    
+    /**
+     * Creates a getter that invokes a method handle.
+     *
+     * @param handle The getter handle, taking the object.
+     *
+     * @return The getter.
+     */
+    private static Function<Object, Object> invokeGetter(MethodHandle handle) {
+        MethodHandle exact = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return target -> invoke(exact, target);
+    }
+    
+    /**
+     * Creates a setter that invokes a method handle.
+     *
+     * @param handle The setter handle, taking the object and the value.
+     *
+     * @return The setter.
+     */
+    private static BiConsumer<Object, Object> invokeSetter(MethodHandle handle) {
+        MethodHandle exact = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (target, value) -> invoke(exact, target, value);
+    }
+    
+    /**
+     * Creates a constructor that invokes a method handle.
+     *
+     * @param handle The constructor handle without parameters.
+     *
+     * @return The constructor.
+     */
+    private static Supplier<Object> invokeConstructor(MethodHandle handle) {
+        MethodHandle exact = handle.asType(MethodType.methodType(Object.class));
+        return () -> invoke(exact);
+    }
+    
+    /**
+     * Invokes a method handle of type <code>()Object</code>.
+     *
+     * @param handle The method handle.
+     *
+     * @return The result.
+     */
+    private static Object invoke(MethodHandle handle) {
+        Object result;
+        // checkstyle: stop exception type check
+        try {
+            result = (Object) handle.invokeExact();
+        } catch (Throwable e) {
+            throw unchecked(e);
+        }
+        // checkstyle: resume exception type check
+        return result;
+    }
+    
+    /**
+     * Invokes a method handle of type <code>(Object)Object</code>.
+     *
+     * @param handle The method handle.
+     * @param argument The argument.
+     *
+     * @return The result.
+     */
+    private static Object invoke(MethodHandle handle, Object argument) {
+        Object result;
+        // checkstyle: stop exception type check
+        try {
+            result = (Object) handle.invokeExact(argument);
+        } catch (Throwable e) {
+            throw unchecked(e);
+        }
+        // checkstyle: resume exception type check
+        return result;
+    }
+    
+    /**
+     * Invokes a constructor handle of type <code>(Object[])Object</code>.
+     *
+     * @param handle The method handle.
+     * @param arguments The arguments.
+     *
+     * @return The result.
+     */
+    private static Object construct(MethodHandle handle, Object[] arguments) {
+        Object result;
+        // checkstyle: stop exception type check
+        try {
+            result = (Object) handle.invokeExact(arguments);
+        } catch (Throwable e) {
+            throw unchecked(e);
+        }
+        // checkstyle: resume exception type check
+        return result;
+    }
+    
+    /**
+     * Invokes a method handle of type <code>(Object, Object)void</code>.
+     *
+     * @param handle The method handle.
+     * @param first The first argument.
+     * @param second The second argument.
+     */
+    private static void invoke(MethodHandle handle, Object first, Object second) {
+        // checkstyle: stop exception type check
+        try {
+            handle.invokeExact(first, second);
+        } catch (Throwable e) {
+            throw unchecked(e);
+        }
+        // checkstyle: resume exception type check
+    }
+    
+    /**
+     * Converts an exception thrown by an accessor into an unchecked exception.
+     *
+     * @param throwable The exception.
+     *
+     * @return The unchecked exception to throw.
+     */
+    private static RuntimeException unchecked(Throwable throwable) {
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return throwable instanceof RuntimeException ? (RuntimeException) throwable
+                : new UndeclaredThrowableException(throwable);
+    }
+    
+    /**
+     * Looks up the property for a member key. Since documents usually contain the members in the same order as the
+     * class declares them, the property after the previous one is tried first, before the hash lookup.
+     *
+     * @param key The member key.
+     * @param expected The index of the expected property.
+     *
+     * @return The property, or <code>null</code> if there is no property for the key.
+     */
+    private Property find(String key, int expected) {
+        Property result;
+        if (expected < properties.length && properties[expected].name.equals(key)) {
+            result = properties[expected];
+        } else {
+            result = byName.get(key);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates the object that read values are stored in.
+     *
+     * @return A new instance for classes, or an array of the component values for records.
+     */
+    private Object newTarget() {
+        return canonicalConstructor != null ? defaults.clone() : constructor.get();
+    }
+    
+    /**
+     * Stores a read value.
+     *
+     * @param target The object created by {@link #newTarget()}.
+     * @param property The property of the value.
+     * @param value The value.
+     */
+    private void set(Object target, Property property, Object value) {
+        if (canonicalConstructor != null) {
+            ((Object[]) target)[property.index] = value;
+        } else {
+            property.setter.accept(target, value);
+        }
+    }
+    
+    /**
+     * Checks whether read values can be stored for a property.
+     *
+     * @param property The property. May be <code>null</code>.
+     *
+     * @return Whether the property exists and can be set.
+     */
+    private boolean canSet(Property property) {
+        return property != null && (canonicalConstructor != null || property.setter != null);
+    }
+    
+    /**
+     * Creates the result after all values have been read.
+     *
+     * @param target The object created by {@link #newTarget()}.
+     *
+     * @return The bound object.
+     */
+    private Object finish(Object target) {
+        return canonicalConstructor != null ? canonicalConstructor.apply((Object[]) target) : target;
+    }
+    
+    @Override
+    Object readValue(JsonTokenReader reader) throws ParsingException, IOException {
+        reader.expect(JsonToken.START_OBJECT);
+        Object target = newTarget();
+        int expected = 0;
+        for (String key = reader.nextKey(); key != null; key = reader.nextKey()) {
+            Property property = find(key, expected);
+            if (canSet(property)) {
+                set(target, property, property.binding.read(reader));
+                expected = property.index + 1;
+            } else {
+                reader.skipValue();
+            }
+        }
+        return finish(target);
+    }
+    
+    @Override
+    void writeValue(Object value, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        for (Property property : properties) {
+            writer.key(property.name);
+            property.binding.write(property.getter.apply(value), writer);
+        }
+        writer.endObject();
+    }
+    
+    @Override
+    JsonElement toValueElement(Object value) {
+        JsonObject result = new JsonObject();
+        for (Property property : properties) {
+            result.putElement(property.name, property.binding.toElement(property.getter.apply(value)));
+        }
+        return result;
+    }
+    
+    @Override
+    Object fromValueElement(JsonElement element) throws ParsingException {
+        if (!(element instanceof JsonObject)) {
+            throw JsonBinder.mismatch("object", element);
+        }
+        Object target = newTarget();
+        int expected = 0;
+        for (Map.Entry<String, JsonElement> member : ((JsonObject) element).members()) {
+            Property property = find(member.getKey(), expected);
+            if (canSet(property)) {
+                set(target, property, property.binding.fromElement(member.getValue()));
+                expected = property.index + 1;
+            }
+        }
+        return finish(target);
+    }
+    
+    /**
+     * A bound field or record component.
+     */
+    private static final class Property {
+        
+        private final String name;
+        
+        private final int index;
+        
+        private final JsonBinder.Binding binding;
+        
+        private final Function<Object, Object> getter;
+        
+        /**
+         * Sets the value; <code>null</code> for records and final fields without setter.
+         */
+        private final BiConsumer<Object, Object> setter;
+        
+        /**
+         * The initial value of record components; the zero value for primitives.
+         */
+        private final Object defaultValue;
+        
+        /**
+         * Creates a property.
+         *
+         * @param name The name of the property.
+         * @param index The index of the property.
+         * @param genericType The generic type of the property.
+         * @param getter Gets the value.
+         * @param setter Sets the value; <code>null</code> for records and final fields without setter.
+         */
+        Property(String name, int index, Type genericType, Function<Object, Object> getter,
+                BiConsumer<Object, Object> setter) {
+            this.name = name;
+            this.index = index;
+            this.binding = JsonBinder.bindingFor(genericType);
+            this.getter = getter;
+            this.setter = setter;
+            boolean primitive = genericType instanceof Class && ((Class<?>) genericType).isPrimitive();
+            this.defaultValue = primitive ? Array.get(Array.newInstance((Class<?>) genericType, 1), 0) : null;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+/**
+ * Receives the {@link ParseMetrics} of a {@link JsonParser}. Register it with
+ * {@link JsonParser#setParseListener(ParseListener)}; {@link JsonParserStatistics} is an implementation that
+ * aggregates the metrics of many parses and exposes them via JMX.
+ *
+ * @author Adam
+ */
+public interface ParseListener {
+    
+    /**
+     * Called after each call to {@link JsonParser#parse()}, {@link JsonParser#parseNextListElement()} or
+     * {@link JsonParser#parseNextDocument()}, whether it was successful or not. This is called on the parsing thread,
+     * so it should return quickly.
+     *
+     * @param metrics The metrics of the call. Not <code>null</code>.
+     */
+    public void parseFinished(ParseMetrics metrics);
+    
+}
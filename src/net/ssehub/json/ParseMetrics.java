@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+/**
+ * Metrics about a single call to a parsing method of {@link JsonParser}, reported to a {@link ParseListener}.
+ * <p>
+ * The allocation estimate is a rough approximation of the heap memory used by the created {@link JsonElement}s on a
+ * 64 bit JVM with compressed references; it doesn't include temporary objects of the parser.
+ *
+ * @author Adam
+ */
+public class ParseMetrics {
+    
+    private static final int OBJECT_BYTES = 96;
+    
+    private static final int MEMBER_BYTES = 40;
+    
+    private static final int LIST_BYTES = 56;
+    
+    private static final int LIST_ELEMENT_BYTES = 8;
+    
+    private static final int STRING_BYTES = 56;
+    
+    private static final int NUMBER_BYTES = 32;
+    
+    private final long[] tokenCounts = new long[JsonToken.values().length];
+    
+    private long charactersConsumed;
+    
+    private int maxNestingDepth;
+    
+    private long stringCharacters;
+    
+    private long estimatedAllocatedBytes;
+    
+    private long parseNanos;
+    
+    private boolean successful;
+    
+    /**
+     * Creates empty metrics.
+     */
+    ParseMetrics() {
+    }
+    
+    /**
+     * Counts a token.
+     *
+     * @param token The token.
+     */
+    void countToken(JsonToken token) {
+        tokenCounts[token.ordinal()]++;
+    }
+    
+    /**
+     * Counts a fully read element. Lists and objects are counted with their start and end tokens; their nested
+     * elements have been counted before.
+     *
+     * @param element The element.
+     */
+    void countElement(JsonElement element) {
+        if (element instanceof JsonObject) {
+            countToken(JsonToken.START_OBJECT);
+            countToken(JsonToken.END_OBJECT);
+            estimatedAllocatedBytes += OBJECT_BYTES + (long) MEMBER_BYTES * ((JsonObject) element).getSize();
+        } else if (element instanceof JsonList) {
+            countToken(JsonToken.START_LIST);
+            countToken(JsonToken.END_LIST);
+            estimatedAllocatedBytes += LIST_BYTES + (long) LIST_ELEMENT_BYTES * ((JsonList) element).getSize();
+        } else if (element instanceof JsonString) {
+            countToken(JsonToken.STRING);
+            countString(((JsonString) element).getValue().length());
+        } else if (element instanceof JsonNumber) {
+            countToken(JsonToken.NUMBER);
+            estimatedAllocatedBytes += NUMBER_BYTES;
+        } else if (element == JsonBoolean.TRUE) {
+            countToken(JsonToken.TRUE);
+        } else if (element == JsonBoolean.FALSE) {
+            countToken(JsonToken.FALSE);
+        } else {
+            countToken(JsonToken.NULL);
+        }
+    }
+    
+    /**
+     * Counts the key of an object member.
+     *
+     * @param length The length of the key.
+     */
+    void countKey(int length) {
+        countToken(JsonToken.KEY);
+        countString(length);
+    }
+    
+    /**
+     * Counts the characters and memory of a string.
+     *
+     * @param length The length of the string.
+     */
+    private void countString(int length) {
+        stringCharacters += length;
+        estimatedAllocatedBytes += STRING_BYTES + length;
+    }
+    
+    /**
+     * Records a nesting depth that has been reached.
+     *
+     * @param depth The current nesting depth.
+     */
+    void updateNestingDepth(int depth) {
+        if (depth > maxNestingDepth) {
+            maxNestingDepth = depth;
+        }
+    }
+    
+    /**
+     * Records the end of the parse.
+     *
+     * @param nanos The time that parsing took, in nanoseconds.
+     * @param characters The number of consumed characters.
+     * @param successful Whether parsing was successful.
+     */
+    void finish(long nanos, long characters, boolean successful) {
+        this.parseNanos = nanos;
+        this.charactersConsumed = characters;
+        this.successful = successful;
+    }
+    
+    /**
+     * Returns whether parsing was successful, i.e. did not throw an exception.
+     *
+     * @return Whether parsing was successful.
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+    
+    /**
+     * Returns the number of characters that were consumed from the input.
+     *
+     * @return The number of consumed characters.
+     */
+    public long getCharactersConsumed() {
+        return charactersConsumed;
+    }
+    
+    /**
+     * Returns the number of tokens of the given type that were read.
+     *
+     * @param token The token type.
+     *
+     * @return The number of tokens; always 0 for {@link JsonToken#NEED_MORE_INPUT} and
+     *      {@link JsonToken#END_OF_INPUT}.
+     */
+    public long getTokenCount(JsonToken token) {
+        return tokenCounts[token.ordinal()];
+    }
+    
+    /**
+     * Returns the number of strings that were read, i.e. string values and keys.
+     *
+     * @return The number of strings.
+     */
+    public long getStringCount() {
+        return getTokenCount(JsonToken.STRING) + getTokenCount(JsonToken.KEY);
+    }
+    
+    /**
+     * Returns the total length of all strings that were read, i.e. string values and keys.
+     *
+     * @return The number of characters in strings.
+     */
+    public long getStringCharacters() {
+        return stringCharacters;
+    }
+    
+    /**
+     * Returns the number of numbers that were read.
+     *
+     * @return The number of numbers.
+     */
+    public long getNumberCount() {
+        return getTokenCount(JsonToken.NUMBER);
+    }
+    
+    /**
+     * Returns the maximum nesting depth of lists and objects that was reached.
+     *
+     * @return The maximum nesting depth.
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+    
+    /**
+     * Returns an estimate of the heap memory used by the created {@link JsonElement}s.
+     *
+     * @return The estimated number of allocated bytes.
+     */
+    public long getEstimatedAllocatedBytes() {
+        return estimatedAllocatedBytes;
+    }
+    
+    /**
+     * Returns the time that parsing took.
+     *
+     * @return The parse time, in nanoseconds.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+    
+}
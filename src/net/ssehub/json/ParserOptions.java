@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Options for a {@link JsonParser}. Mainly consists of limits that guard the parser against hostile input; each limit
+ * is checked while the input is read, so that oversized input is rejected before it is fully consumed. By default,
+ * all limits except the maximum nesting depth are unlimited.
+ * <p>
+ * The options must not be modified while a parser is using them.
+ *
+ * @author Adam
+ */
+public class ParserOptions {
+    
+    /**
+     * An opt-in extension of the strict JSON syntax, as known from JSON5 and configuration files. Only
+     * {@link JsonParser} supports these.
+     */
+    public enum SyntaxExtension {
+        
+        /**
+         * Line comments starting with "//" and block comments enclosed in "/*" and "*&#47;", wherever whitespace is
+         * allowed.
+         */
+        COMMENTS,
+        
+        /**
+         * A single ',' after the last element of a list or the last member of an object.
+         */
+        TRAILING_COMMAS,
+        
+        /**
+         * Strings and keys enclosed in single quotes. Inside of strings, a single quote may also be escaped.
+         */
+        SINGLE_QUOTES,
+        
+        /**
+         * Keys that are not enclosed in quotes, consisting of letters, digits, '_' and '$' (not starting with a
+         * digit).
+         */
+        UNQUOTED_KEYS,
+        
+        /**
+         * The numbers <code>NaN</code>, <code>Infinity</code> and <code>-Infinity</code>, and a leading '+' sign.
+         */
+        NON_FINITE_NUMBERS,
+        
+        /**
+         * Hexadecimal integers starting with "0x" or "0X", optionally with a sign.
+         */
+        HEX_NUMBERS;
+        
+    }
+    
+    /**
+     * Specifies how {@link JsonParser} handles an object that contains the same key multiple times. Duplicates are
+     * detected while the object is parsed, with the same hash lookup that inserts the member.
+     */
+    public enum DuplicateKeyPolicy {
+        
+        /**
+         * The last member with the key is kept. This is the behavior of most JSON parsers.
+         */
+        LAST_WINS,
+        
+        /**
+         * The first member with the key is kept; later members are parsed, but ignored.
+         */
+        FIRST_WINS,
+        
+        /**
+         * Duplicate keys are a {@link ParsingException}. This prevents attacks that rely on different parsers
+         * picking different members. The exception is thrown as soon as the duplicate key is read, before its value.
+         */
+        REJECT,
+        
+        /**
+         * The values of all members with the key are collected into a {@link JsonList}, in the order of their
+         * occurrence. Keys that occur only once keep their plain value.
+         */
+        COLLECT;
+        
+    }
+    
+    /**
+     * The default maximum nesting depth of lists and objects. Same as before this limit was configurable, 1199 levels
+     * are allowed.
+     */
+    public static final int DEFAULT_MAX_NESTING_DEPTH = 1199;
+    
+    private int maxNestingDepth = DEFAULT_MAX_NESTING_DEPTH;
+    
+    private long maxInputLength = Long.MAX_VALUE;
+    
+    private int maxStringLength = Integer.MAX_VALUE;
+    
+    private int maxNumberLength = Integer.MAX_VALUE;
+    
+    private int maxObjectSize = Integer.MAX_VALUE;
+    
+    private int maxListSize = Integer.MAX_VALUE;
+    
+    private long maxElementCount = Long.MAX_VALUE;
+    
+    private boolean lenient;
+    
+    private DuplicateKeyPolicy duplicateKeyPolicy = DuplicateKeyPolicy.LAST_WINS;
+    
+    private boolean replaceInvalidUnicode;
+    
+    private final Set<SyntaxExtension> syntaxExtensions = EnumSet.noneOf(SyntaxExtension.class);
+    
+    /**
+     * Creates options with the default limits.
+     */
+    public ParserOptions() {
+    }
+    
+    /**
+     * Checks that the given limit is not negative.
+     *
+     * @param limit The limit to check.
+     *
+     * @return The limit.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    private static long checkLimit(long limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        return limit;
+    }
+    
+    /**
+     * Returns the maximum nesting depth of lists and objects. Like the other limits, this is inclusive: a document
+     * may nest exactly this many levels.
+     *
+     * @return The maximum nesting depth.
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+    
+    /**
+     * Sets the maximum nesting depth of lists and objects. Since the parser is recursive, this also guards against
+     * {@link StackOverflowError}s.
+     *
+     * @param maxNestingDepth The maximum nesting depth. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxNestingDepth(int maxNestingDepth) throws IllegalArgumentException {
+        this.maxNestingDepth = (int) checkLimit(maxNestingDepth);
+    }
+    
+    /**
+     * Returns the maximum number of characters that are read from the input.
+     *
+     * @return The maximum input length.
+     */
+    public long getMaxInputLength() {
+        return maxInputLength;
+    }
+    
+    /**
+     * Sets the maximum number of characters that are read from the input. The parser will abort as soon as it reads
+     * more characters than this.
+     *
+     * @param maxInputLength The maximum input length. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxInputLength(long maxInputLength) throws IllegalArgumentException {
+        this.maxInputLength = checkLimit(maxInputLength);
+    }
+    
+    /**
+     * Returns the maximum length of string values and object keys (after unescaping).
+     *
+     * @return The maximum string length.
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+    
+    /**
+     * Sets the maximum length of string values and object keys (after unescaping).
+     *
+     * @param maxStringLength The maximum string length. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxStringLength(int maxStringLength) throws IllegalArgumentException {
+        this.maxStringLength = (int) checkLimit(maxStringLength);
+    }
+    
+    /**
+     * Returns the maximum number of characters in a number literal.
+     *
+     * @return The maximum number length.
+     */
+    public int getMaxNumberLength() {
+        return maxNumberLength;
+    }
+    
+    /**
+     * Sets the maximum number of characters in a number literal (including sign, fraction and exponent).
+     *
+     * @param maxNumberLength The maximum number length. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxNumberLength(int maxNumberLength) throws IllegalArgumentException {
+        this.maxNumberLength = (int) checkLimit(maxNumberLength);
+    }
+    
+    /**
+     * Returns the maximum number of members in a single object.
+     *
+     * @return The maximum object size.
+     */
+    public int getMaxObjectSize() {
+        return maxObjectSize;
+    }
+    
+    /**
+     * Sets the maximum number of members in a single object. Duplicate keys count as separate members.
+     *
+     * @param maxObjectSize The maximum object size. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxObjectSize(int maxObjectSize) throws IllegalArgumentException {
+        this.maxObjectSize = (int) checkLimit(maxObjectSize);
+    }
+    
+    /**
+     * Returns the maximum number of elements in a single list.
+     *
+     * @return The maximum list size.
+     */
+    public int getMaxListSize() {
+        return maxListSize;
+    }
+    
+    /**
+     * Sets the maximum number of elements in a single list.
+     *
+     * @param maxListSize The maximum list size. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxListSize(int maxListSize) throws IllegalArgumentException {
+        this.maxListSize = (int) checkLimit(maxListSize);
+    }
+    
+    /**
+     * Returns the maximum number of {@link JsonElement}s in the whole document.
+     *
+     * @return The maximum element count.
+     */
+    public long getMaxElementCount() {
+        return maxElementCount;
+    }
+    
+    /**
+     * Sets the maximum number of {@link JsonElement}s in the whole document. Every value counts as one element,
+     * including lists and objects themselves (but not the keys of objects).
+     *
+     * @param maxElementCount The maximum element count. Must not be negative.
+     *
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setMaxElementCount(long maxElementCount) throws IllegalArgumentException {
+        this.maxElementCount = checkLimit(maxElementCount);
+    }
+    
+    /**
+     * Returns whether malformed input is skipped instead of aborting the parse.
+     *
+     * @return Whether lenient parsing is enabled.
+     *
+     * @see #setLenient(boolean)
+     */
+    public boolean isLenient() {
+        return lenient;
+    }
+    
+    /**
+     * Sets whether malformed input is skipped instead of aborting the parse. In lenient mode, {@link JsonParser}
+     * recovers from a malformed list element or object member by skipping to the next ',' or closing bracket on the
+     * same level; the malformed element or member is left out of the result, and the error is recorded in
+     * {@link JsonParser#getDiagnostics()}. Exceeded limits and errors that leave no boundary to recover at (e.g. an
+     * unterminated list at the end of the input) still abort the parse. By default, parsing is strict.
+     * <p>
+     * Only {@link JsonParser} supports this option.
+     *
+     * @param lenient Whether lenient parsing is enabled.
+     */
+    public void setLenient(boolean lenient) {
+        this.lenient = lenient;
+    }
+    
+    /**
+     * Returns whether the given extension of the JSON syntax is accepted.
+     *
+     * @param extension The syntax extension.
+     *
+     * @return Whether the extension is enabled.
+     */
+    public boolean isSyntaxExtensionEnabled(SyntaxExtension extension) {
+        return syntaxExtensions.contains(extension);
+    }
+    
+    /**
+     * Sets whether the given extension of the JSON syntax is accepted. By default, all extensions are disabled, i.e.
+     * only strict JSON is accepted. The extensions are checked where strict JSON would fail, or via a flag cached by
+     * the parser, so they add practically no cost to parsing strict JSON.
+     *
+     * @param extension The syntax extension. Not <code>null</code>.
+     * @param enabled Whether the extension is enabled.
+     */
+    public void setSyntaxExtensionEnabled(SyntaxExtension extension, boolean enabled) {
+        if (enabled) {
+            syntaxExtensions.add(extension);
+        } else {
+            syntaxExtensions.remove(extension);
+        }
+    }
+    
+    /**
+     * Returns how duplicate keys in objects are handled.
+     *
+     * @return The duplicate key policy. Never <code>null</code>.
+     */
+    public DuplicateKeyPolicy getDuplicateKeyPolicy() {
+        return duplicateKeyPolicy;
+    }
+    
+    /**
+     * Sets how duplicate keys in objects are handled. The default is {@link DuplicateKeyPolicy#LAST_WINS}. Only
+     * {@link JsonParser} supports this option.
+     *
+     * @param duplicateKeyPolicy The duplicate key policy. Not <code>null</code>.
+     */
+    public void setDuplicateKeyPolicy(DuplicateKeyPolicy duplicateKeyPolicy) {
+        this.duplicateKeyPolicy = Objects.requireNonNull(duplicateKeyPolicy);
+    }
+    
+    /**
+     * Returns whether invalid unicode in strings is replaced instead of rejected.
+     *
+     * @return Whether invalid unicode is replaced.
+     *
+     * @see #setReplaceInvalidUnicode(boolean)
+     */
+    public boolean isReplaceInvalidUnicode() {
+        return replaceInvalidUnicode;
+    }
+    
+    /**
+     * Sets whether invalid unicode in strings is replaced instead of rejected. Invalid unicode is malformed UTF-8
+     * input (e.g. overlong or truncated sequences, or encoded surrogates), and surrogates that are not part of a
+     * valid pair (e.g. a lone <code>&#92;uD800</code> escape). By default, it is rejected with a
+     * {@link ParsingException}; if replacing is enabled, each invalid sequence is replaced with U+FFFD.
+     * <p>
+     * Only input that the parsers decode themselves can be checked for malformed UTF-8; a {@link java.io.Reader}
+     * given to {@link JsonParser} is responsible for its own decoding.
+     *
+     * @param replaceInvalidUnicode Whether invalid unicode is replaced.
+     */
+    public void setReplaceInvalidUnicode(boolean replaceInvalidUnicode) {
+        this.replaceInvalidUnicode = replaceInvalidUnicode;
+    }
+    
+    /**
+     * Creates a UTF-8 decoder that rejects or replaces malformed input, according to
+     * {@link #isReplaceInvalidUnicode()}.
+     *
+     * @return A new decoder.
+     */
+    CharsetDecoder createUtf8Decoder() {
+        CodingErrorAction action = replaceInvalidUnicode ? CodingErrorAction.REPLACE : CodingErrorAction.REPORT;
+        return StandardCharsets.UTF_8.newDecoder().onMalformedInput(action).onUnmappableCharacter(action);
+    }
+    
+}
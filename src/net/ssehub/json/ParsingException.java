@@ -16,21 +16,75 @@
 package net.ssehub.json;
 
 /**
- * Indicates that a required element does not exist.
+ * Indicates that the input is malformed. If the position of the error in the input is known, it is available via
+ * {@link #getLine()}, {@link #getColumn()} and {@link #getOffset()}.
  *
  * @author Adam
  */
 public class ParsingException extends JsonException {
 
     private static final long serialVersionUID = -4456072223194655154L;
+    
+    private final long line;
+    
+    private final long column;
+    
+    private final long offset;
 
     /**
-     * Creates this exception.
+     * Creates this exception, without a known position.
      * 
      * @param message A message describing the exception.
      */
     public ParsingException(String message) {
         super(message);
+        this.line = -1;
+        this.column = -1;
+        this.offset = -1;
+    }
+    
+    /**
+     * Creates this exception for an error at the given position. The position is prepended to the message.
+     * 
+     * @param message A message describing the exception.
+     * @param line The line of the error, starting at 1.
+     * @param column The column of the error, starting at 1.
+     * @param offset The offset of the error from the start of the input, starting at 0.
+     */
+    public ParsingException(String message, long line, long column, long offset) {
+        super("Line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+        this.offset = offset;
+    }
+    
+    /**
+     * Returns the line of the error.
+     * 
+     * @return The line, starting at 1; -1 if not known.
+     */
+    public long getLine() {
+        return line;
+    }
+    
+    /**
+     * Returns the column of the error, i.e. the position in its line. For parsers that read characters, this counts
+     * UTF-16 characters; for parsers that read UTF-8 bytes, this counts code points.
+     * 
+     * @return The column, starting at 1; -1 if not known.
+     */
+    public long getColumn() {
+        return column;
+    }
+    
+    /**
+     * Returns the offset of the error from the start of the input. For parsers that read characters, this counts
+     * UTF-16 characters; for parsers that read bytes, this counts bytes.
+     * 
+     * @return The offset, starting at 0; -1 if not known.
+     */
+    public long getOffset() {
+        return offset;
     }
     
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * An immutable {@link JsonList}. Instead of modifying the list, {@link #with(int, JsonElement)},
+ * {@link #plus(JsonElement)} and {@link #without(int)} return a new version. The versions share all unchanged parts
+ * of their structure, so replacing and appending elements takes O(log n) time and memory, instead of the O(n) of
+ * copying a {@link JsonList}. Removing an element takes O(n), since the following elements move one to the left.
+ * <p>
+ * The mutating methods of {@link JsonList} throw an {@link UnsupportedOperationException}. Lists and objects in this
+ * list are shared between the versions, too; {@link #copyOf(JsonList)} and the methods adding elements convert them
+ * into persistent variants, so that the whole tree is immutable. Thus, the hashes are cached permanently.
+ *
+ * @author Adam
+ */
+public class PersistentJsonList extends JsonList {
+    
+    private final PersistentVector<JsonElement> elements;
+    
+    /**
+     * Creates an empty {@link PersistentJsonList}.
+     */
+    public PersistentJsonList() {
+        this(PersistentVector.empty());
+    }
+    
+    /**
+     * Creates a list with the given elements.
+     *
+     * @param elements The elements of this list.
+     */
+    private PersistentJsonList(PersistentVector<JsonElement> elements) {
+        super(null);
+        this.elements = elements;
+    }
+    
+    /**
+     * Creates a persistent copy of the given list. Nested lists and objects are converted into
+     * {@link PersistentJsonList}s and {@link PersistentJsonObject}s, too; persistent lists and objects are re-used
+     * as they are.
+     *
+     * @param list The list to copy. Not <code>null</code>.
+     *
+     * @return A persistent list with the same elements.
+     */
+    public static PersistentJsonList copyOf(JsonList list) {
+        PersistentJsonList result;
+        if (list instanceof PersistentJsonList) {
+            result = (PersistentJsonList) list;
+        } else {
+            Object[] elements = new Object[list.getSize()];
+            int size = 0;
+            for (JsonElement element : list) {
+                elements[size++] = toPersistent(element);
+            }
+            result = new PersistentJsonList(PersistentVector.of(elements, size));
+        }
+        return result;
+    }
+    
+    /**
+     * Converts lists and objects into their persistent variants.
+     *
+     * @param element The element to convert.
+     *
+     * @return The persistent variant of the element, or the element itself if it is not a list or object.
+     */
+    static JsonElement toPersistent(JsonElement element) {
+        JsonElement result = element;
+        if (element instanceof JsonList) {
+            result = copyOf((JsonList) element);
+        } else if (element instanceof JsonObject) {
+            result = PersistentJsonObject.copyOf((JsonObject) element);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a version of this list with the given element replaced. A list or object is converted into its
+     * persistent variant.
+     *
+     * @param index The index to replace.
+     * @param element The new element value. Not <code>null</code>.
+     *
+     * @return The new version of this list.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public PersistentJsonList with(int index, JsonElement element) throws IndexOutOfBoundsException {
+        return new PersistentJsonList(elements.set(index, toPersistent(Objects.requireNonNull(element))));
+    }
+    
+    /**
+     * Returns a version of this list with the given element added to the end. A list or object is converted into its
+     * persistent variant.
+     *
+     * @param element The element to add. Not <code>null</code>.
+     *
+     * @return The new version of this list.
+     */
+    public PersistentJsonList plus(JsonElement element) {
+        return new PersistentJsonList(elements.append(toPersistent(Objects.requireNonNull(element))));
+    }
+    
+    /**
+     * Returns a version of this list with the given element removed. The following elements move one to the left.
+     * Other than the other modifications, this copies the whole list.
+     *
+     * @param index The index to remove.
+     *
+     * @return The new version of this list.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public PersistentJsonList without(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= elements.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+        }
+        Object[] copy = elements.toArray(0);
+        System.arraycopy(copy, index + 1, copy, index, copy.length - index - 1);
+        return new PersistentJsonList(PersistentVector.of(copy, copy.length - 1));
+    }
+    
+    /**
+     * Not supported, use {@link #plus(JsonElement)} instead.
+     *
+     * @param element Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addElement(JsonElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonList is immutable, use plus() instead");
+    }
+    
+    /**
+     * Not supported.
+     *
+     * @param index Ignored.
+     * @param element Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addElement(int index, JsonElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonList is immutable");
+    }
+    
+    /**
+     * Not supported, use {@link #with(int, JsonElement)} instead.
+     *
+     * @param index Ignored.
+     * @param element Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void setElement(int index, JsonElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonList is immutable, use with() instead");
+    }
+    
+    /**
+     * Not supported, use {@link #without(int)} instead.
+     *
+     * @param index Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void removeElement(int index) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonList is immutable, use without() instead");
+    }
+    
+    @Override
+    public JsonElement getElement(int index) throws IndexOutOfBoundsException {
+        return elements.get(index);
+    }
+    
+    @Override
+    public int getSize() {
+        return elements.size();
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * {@link Iterator#remove()} is not supported.
+     */
+    @Override
+    public Iterator<JsonElement> iterator() {
+        return elements.iterator();
+    }
+    
+    @Override
+    boolean isPersistent() {
+        return true;
+    }
+    
+}
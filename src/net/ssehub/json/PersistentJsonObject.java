@@ -0,0 +1,633 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable {@link JsonObject}. Instead of modifying the object, {@link #with(String, JsonElement)} and
+ * {@link #without(String)} return a new version. The versions share all unchanged parts of their structure, so
+ * each modification takes O(log n) time and memory, instead of the O(n) of copying a {@link JsonObject}.
+ * <p>
+ * The members are stored in a hash array mapped trie, for lookup by key, and in a {@link PersistentVector}, for
+ * iteration in insertion order (same as {@link JsonObject}). Removed members leave a gap in the vector, which is
+ * compacted once there are more gaps than members.
+ * <p>
+ * The mutating methods of {@link JsonObject} throw an {@link UnsupportedOperationException}. Lists and objects in
+ * this object are shared between the versions, too; {@link #copyOf(JsonObject)} and
+ * {@link #with(String, JsonElement)} convert them into persistent variants, so that the whole tree is immutable.
+ * Thus, the hashes are cached permanently.
+ *
+ * @author Adam
+ */
+public class PersistentJsonObject extends JsonObject {
+    
+    private static final int BITS = 5;
+    
+    private static final int MASK = (1 << BITS) - 1;
+    
+    /**
+     * The number of gaps in {@link #order} that are always tolerated without compacting.
+     */
+    private static final int MIN_GAPS_TO_COMPACT = 32;
+    
+    private static final Node EMPTY_ROOT = new Node(0, new Object[0]);
+    
+    private final Node root;
+    
+    /**
+     * The members in insertion order. Contains <code>null</code> for removed members.
+     */
+    private final PersistentVector<Member> order;
+    
+    private final int size;
+    
+    /**
+     * Creates an empty {@link PersistentJsonObject}.
+     */
+    public PersistentJsonObject() {
+        this(EMPTY_ROOT, PersistentVector.empty(), 0);
+    }
+    
+    /**
+     * Creates an object with the given members.
+     *
+     * @param root The root of the trie with the members.
+     * @param order The members in insertion order.
+     * @param size The number of members.
+     */
+    private PersistentJsonObject(Node root, PersistentVector<Member> order, int size) {
+        super(null);
+        this.root = root;
+        this.order = order;
+        this.size = size;
+    }
+    
+    /**
+     * Creates a persistent copy of the given object. Nested lists and objects are converted into
+     * {@link PersistentJsonList}s and {@link PersistentJsonObject}s, too; persistent lists and objects are re-used
+     * as they are.
+     *
+     * @param object The object to copy. Not <code>null</code>.
+     *
+     * @return A persistent object with the same members.
+     */
+    public static PersistentJsonObject copyOf(JsonObject object) {
+        PersistentJsonObject result;
+        if (object instanceof PersistentJsonObject) {
+            result = (PersistentJsonObject) object;
+        } else {
+            Member[] members = new Member[object.getSize()];
+            int size = 0;
+            for (Map.Entry<String, JsonElement> member : object.members()) {
+                members[size] = new Member(member.getKey(), PersistentJsonList.toPersistent(member.getValue()),
+                        size);
+                size++;
+            }
+            result = build(members, size);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates an object from the given members, which have their position as index and don't have duplicate keys.
+     *
+     * @param members The members.
+     * @param size The number of members.
+     *
+     * @return The new object.
+     */
+    private static PersistentJsonObject build(Member[] members, int size) {
+        Node root = EMPTY_ROOT;
+        for (int i = 0; i < size; i++) {
+            root = root.put(members[i], hash(members[i].key), 0);
+        }
+        return new PersistentJsonObject(root, PersistentVector.of(members, size), size);
+    }
+    
+    /**
+     * Spreads the higher bits of the hash code of the given key, since only 5 bits are used on each level of the
+     * trie.
+     *
+     * @param key The key.
+     *
+     * @return The hash of the key.
+     */
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Returns a version of this object with the given member added or replaced. A replaced member keeps its position
+     * in the iteration order. A list or object is converted into its persistent variant.
+     *
+     * @param key The key of the element. Not <code>null</code>.
+     * @param element The element to add. Not <code>null</code>.
+     *
+     * @return The new version of this object.
+     */
+    public PersistentJsonObject with(String key, JsonElement element) {
+        JsonElement value = PersistentJsonList.toPersistent(Objects.requireNonNull(element));
+        int hash = hash(Objects.requireNonNull(key));
+        Member existing = root.find(key, hash, 0);
+        
+        PersistentJsonObject result;
+        if (existing == null) {
+            Member member = new Member(key, value, order.size());
+            result = new PersistentJsonObject(root.put(member, hash, 0), order.append(member), size + 1);
+            
+        } else if (existing.value == value) {
+            result = this;
+            
+        } else {
+            Member member = new Member(key, value, existing.index);
+            result = new PersistentJsonObject(root.put(member, hash, 0), order.set(existing.index, member), size);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a version of this object with the given member removed.
+     *
+     * @param key The key of the element. Not <code>null</code>.
+     *
+     * @return The new version of this object, or this object if it doesn't contain the key.
+     */
+    public PersistentJsonObject without(String key) {
+        int hash = hash(Objects.requireNonNull(key));
+        Member existing = root.find(key, hash, 0);
+        
+        PersistentJsonObject result;
+        if (existing == null) {
+            result = this;
+            
+        } else {
+            int gaps = order.size() - (size - 1);
+            if (gaps > MIN_GAPS_TO_COMPACT && gaps > size - 1) {
+                result = build(compact(existing), size - 1);
+            } else {
+                Node newRoot = root.remove(key, hash, 0);
+                result = new PersistentJsonObject(newRoot != null ? newRoot : EMPTY_ROOT,
+                        order.set(existing.index, null), size - 1);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Creates new members with consecutive indices, leaving out the gaps and the given member.
+     *
+     * @param removed The member to leave out.
+     *
+     * @return The remaining members.
+     */
+    private Member[] compact(Member removed) {
+        Member[] result = new Member[size - 1];
+        int index = 0;
+        for (Member member : order) {
+            if (member != null && member != removed) {
+                result[index] = new Member(member.key, member.value, index);
+                index++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Not supported, use {@link #with(String, JsonElement)} instead.
+     *
+     * @param key Ignored.
+     * @param element Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void putElement(String key, JsonElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonObject is immutable, use with() instead");
+    }
+    
+    /**
+     * Not supported, use {@link #with(String, JsonElement)} instead.
+     *
+     * @param key Ignored.
+     * @param element Ignored.
+     *
+     * @return Never.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    JsonElement putElementIfAbsent(String key, JsonElement element) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonObject is immutable, use with() instead");
+    }
+    
+    /**
+     * Not supported, use {@link #without(String)} instead.
+     *
+     * @param key Ignored.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void removeElement(String key) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("PersistentJsonObject is immutable, use without() instead");
+    }
+    
+    @Override
+    public JsonElement getElement(String key) {
+        Member member = root.find(Objects.requireNonNull(key), hash(key), 0);
+        return member != null ? member.value : null;
+    }
+    
+    @Override
+    public int getSize() {
+        return size;
+    }
+    
+    @Override
+    Iterable<Map.Entry<String, JsonElement>> members() {
+        return this;
+    }
+    
+    @Override
+    boolean isPersistent() {
+        return true;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned entries are read-only, and {@link Iterator#remove()} is not supported.
+     */
+    @Override
+    public Iterator<Map.Entry<String, JsonElement>> iterator() {
+        Iterator<Member> members = order.iterator();
+        return new Iterator<Map.Entry<String, JsonElement>>() {
+            
+            private Member next = advance();
+            
+            /**
+             * Finds the next member that is not a gap.
+             *
+             * @return The next member, or <code>null</code> if there are no more members.
+             */
+            private Member advance() {
+                Member result = null;
+                while (result == null && members.hasNext()) {
+                    result = members.next();
+                }
+                return result;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public Map.Entry<String, JsonElement> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Member result = next;
+                next = advance();
+                return result;
+            }
+            
+        };
+    }
+    
+    /**
+     * An immutable member of the object.
+     */
+    private static final class Member implements Map.Entry<String, JsonElement> {
+        
+        private final String key;
+        
+        private final JsonElement value;
+        
+        /**
+         * The position of this member in {@link PersistentJsonObject#order}.
+         */
+        private final int index;
+        
+        /**
+         * Creates a member.
+         *
+         * @param key The key of the member.
+         * @param value The value of the member.
+         * @param index The position of this member in the iteration order.
+         */
+        Member(String key, JsonElement value, int index) {
+            this.key = key;
+            this.value = value;
+            this.index = index;
+        }
+        
+        @Override
+        public String getKey() {
+            return key;
+        }
+        
+        @Override
+        public JsonElement getValue() {
+            return value;
+        }
+        
+        @Override
+        public JsonElement setValue(JsonElement value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            boolean equal = false;
+            if (obj instanceof Map.Entry) {
+                Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+                equal = key.equals(other.getKey()) && value.equals(other.getValue());
+            }
+            return equal;
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+        
+    }
+    
+    /**
+     * A node of the hash array mapped trie. Each of the 32 possible 5-bit chunks of the hash on this level that is
+     * present has a bit set in {@link #bitmap}, and an entry in {@link #array}; the entry is either a single
+     * {@link Member} or a child {@link Node}.
+     * <p>
+     * Members with the same full hash are stored in a collision node, which has a bitmap of 0 and an array of only
+     * {@link Member}s, which are searched linearly.
+     */
+    private static final class Node {
+        
+        private final int bitmap;
+        
+        private final Object[] array;
+        
+        /**
+         * Creates a node.
+         *
+         * @param bitmap The bitmap of present hash chunks, or 0 for a collision node.
+         * @param array The members and child nodes.
+         */
+        Node(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+        
+        /**
+         * Returns whether this is a collision node.
+         *
+         * @return Whether this node contains members with the same hash.
+         */
+        private boolean isCollision() {
+            return bitmap == 0 && array.length > 0;
+        }
+        
+        /**
+         * Searches the given key in this node.
+         *
+         * @param key The key to search.
+         * @param hash The hash of the key.
+         * @param shift The shift of this node.
+         *
+         * @return The member with the given key, or <code>null</code> if it is not present.
+         */
+        Member find(String key, int hash, int shift) {
+            Member result = null;
+            Node node = this;
+            int level = shift;
+            while (node != null) {
+                Node next = null;
+                if (node.isCollision()) {
+                    result = findInCollision(node.array, key);
+                } else {
+                    int bit = 1 << ((hash >>> level) & MASK);
+                    if ((node.bitmap & bit) != 0) {
+                        Object child = node.array[Integer.bitCount(node.bitmap & (bit - 1))];
+                        if (child instanceof Node) {
+                            next = (Node) child;
+                            level += BITS;
+                        } else if (((Member) child).key.equals(key)) {
+                            result = (Member) child;
+                        }
+                    }
+                }
+                node = next;
+            }
+            return result;
+        }
+        
+        /**
+         * Searches the given key in the members of a collision node.
+         *
+         * @param members The members of the collision node.
+         * @param key The key to search.
+         *
+         * @return The member with the given key, or <code>null</code> if it is not present.
+         */
+        private static Member findInCollision(Object[] members, String key) {
+            Member result = null;
+            for (Object member : members) {
+                if (((Member) member).key.equals(key)) {
+                    result = (Member) member;
+                    break;
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Returns a copy of this node with the given member added or replaced.
+         *
+         * @param member The member to put.
+         * @param hash The hash of the key of the member.
+         * @param shift The shift of this node.
+         *
+         * @return The new node.
+         */
+        Node put(Member member, int hash, int shift) {
+            Node result;
+            if (isCollision()) {
+                result = putInCollision(member, hash, shift);
+                
+            } else {
+                int bit = 1 << ((hash >>> shift) & MASK);
+                int index = Integer.bitCount(bitmap & (bit - 1));
+                if ((bitmap & bit) == 0) {
+                    Object[] newArray = new Object[array.length + 1];
+                    System.arraycopy(array, 0, newArray, 0, index);
+                    newArray[index] = member;
+                    System.arraycopy(array, index, newArray, index + 1, array.length - index);
+                    result = new Node(bitmap | bit, newArray);
+                    
+                } else {
+                    Object child = array[index];
+                    Object newChild;
+                    if (child instanceof Node) {
+                        newChild = ((Node) child).put(member, hash, shift + BITS);
+                    } else if (((Member) child).key.equals(member.key)) {
+                        newChild = member;
+                    } else {
+                        newChild = merge(child, hash(((Member) child).key), member, hash, shift + BITS);
+                    }
+                    Object[] newArray = array.clone();
+                    newArray[index] = newChild;
+                    result = new Node(bitmap, newArray);
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Returns a copy of this collision node with the given member added or replaced.
+         *
+         * @param member The member to put.
+         * @param hash The hash of the key of the member.
+         * @param shift The shift of this node.
+         *
+         * @return The new node.
+         */
+        private Node putInCollision(Member member, int hash, int shift) {
+            int collisionHash = hash(((Member) array[0]).key);
+            Node result;
+            if (collisionHash != hash) {
+                result = merge(this, collisionHash, member, hash, shift);
+                
+            } else {
+                int index = 0;
+                while (index < array.length && !((Member) array[index]).key.equals(member.key)) {
+                    index++;
+                }
+                Object[] newArray = index < array.length ? array.clone() : new Object[array.length + 1];
+                if (index == array.length) {
+                    System.arraycopy(array, 0, newArray, 0, array.length);
+                }
+                newArray[index] = member;
+                result = new Node(0, newArray);
+            }
+            return result;
+        }
+        
+        /**
+         * Creates a node that contains the two given entries, which have different keys.
+         *
+         * @param entry1 A {@link Member} or a collision {@link Node}.
+         * @param hash1 The hash of the first entry.
+         * @param entry2 A {@link Member}.
+         * @param hash2 The hash of the second entry.
+         * @param shift The shift of the new node.
+         *
+         * @return The new node.
+         */
+        private static Node merge(Object entry1, int hash1, Member entry2, int hash2, int shift) {
+            Node result;
+            if (hash1 == hash2) {
+                result = new Node(0, new Object[] {entry1, entry2});
+                
+            } else {
+                int chunk1 = (hash1 >>> shift) & MASK;
+                int chunk2 = (hash2 >>> shift) & MASK;
+                if (chunk1 == chunk2) {
+                    result = new Node(1 << chunk1, new Object[] {merge(entry1, hash1, entry2, hash2, shift + BITS)});
+                } else if (chunk1 < chunk2) {
+                    result = new Node((1 << chunk1) | (1 << chunk2), new Object[] {entry1, entry2});
+                } else {
+                    result = new Node((1 << chunk1) | (1 << chunk2), new Object[] {entry2, entry1});
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Returns a copy of this node with the given key removed.
+         *
+         * @param key The key to remove, which is present in this node.
+         * @param hash The hash of the key.
+         * @param shift The shift of this node.
+         *
+         * @return The new node, or <code>null</code> if it would be empty.
+         */
+        Node remove(String key, int hash, int shift) {
+            Node result;
+            if (isCollision()) {
+                result = array.length == 1 ? null : new Node(0, without(findIndexInCollision(key)));
+                
+            } else {
+                int bit = 1 << ((hash >>> shift) & MASK);
+                int index = Integer.bitCount(bitmap & (bit - 1));
+                Object child = array[index];
+                Node newChild = child instanceof Node ? ((Node) child).remove(key, hash, shift + BITS) : null;
+                if (newChild != null) {
+                    Object[] newArray = array.clone();
+                    newArray[index] = newChild;
+                    result = new Node(bitmap, newArray);
+                } else if (array.length == 1) {
+                    result = null;
+                } else {
+                    result = new Node(bitmap & ~bit, without(index));
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Finds the index of the given key in this collision node.
+         *
+         * @param key The key, which is present in this node.
+         *
+         * @return The index of the member with the given key.
+         */
+        private int findIndexInCollision(String key) {
+            int index = 0;
+            while (!((Member) array[index]).key.equals(key)) {
+                index++;
+            }
+            return index;
+        }
+        
+        /**
+         * Returns a copy of {@link #array} without the given index.
+         *
+         * @param index The index to leave out.
+         *
+         * @return The new array.
+         */
+        private Object[] without(int index) {
+            Object[] result = new Object[array.length - 1];
+            System.arraycopy(array, 0, result, 0, index);
+            System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+            return result;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable vector, implemented as a 32-way bit-partitioned trie with a separate tail array. Reading, replacing
+ * and appending copy only the path from the root to the affected leaf, so they take O(log<sub>32</sub> n) and the
+ * new version shares all other nodes with the old one.
+ * <p>
+ * Inner nodes and full leaves are arrays of length 32; the tail holds the last 1 to 32 elements (or none, if the
+ * vector is empty).
+ *
+ * @param <E> The type of the elements.
+ *
+ * @author Adam
+ */
+final class PersistentVector<E> implements Iterable<E> {
+    
+    private static final int BITS = 5;
+    
+    private static final int WIDTH = 1 << BITS;
+    
+    private static final int MASK = WIDTH - 1;
+    
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH],
+            new Object[0]);
+    
+    private final int size;
+    
+    /**
+     * The number of bits to shift an index by to get the child index in the root node.
+     */
+    private final int shift;
+    
+    private final Object[] root;
+    
+    private final Object[] tail;
+    
+    /**
+     * Creates a vector with the given structure.
+     *
+     * @param size The number of elements.
+     * @param shift The shift of the root node.
+     * @param root The root node.
+     * @param tail The tail with the last elements.
+     */
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+    
+    /**
+     * Returns the empty vector.
+     *
+     * @param <E> The type of the elements.
+     *
+     * @return The empty vector.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+    
+    /**
+     * Creates a vector with the given elements. Builds the trie bottom-up, which is faster than appending the elements
+     * one by one.
+     *
+     * @param elements The elements of the new vector. The array is copied.
+     * @param count The number of elements to take from the start of the array.
+     *
+     * @param <E> The type of the elements.
+     *
+     * @return The new vector.
+     */
+    static <E> PersistentVector<E> of(Object[] elements, int count) {
+        PersistentVector<E> result;
+        if (count == 0) {
+            result = empty();
+            
+        } else {
+            int tailOffset = tailOffset(count);
+            Object[] tail = Arrays.copyOfRange(elements, tailOffset, count);
+            
+            Object[][] nodes = new Object[tailOffset >>> BITS][];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = Arrays.copyOfRange(elements, i << BITS, (i + 1) << BITS);
+            }
+            
+            int shift = BITS;
+            while (nodes.length > WIDTH) {
+                Object[][] parents = new Object[(nodes.length + MASK) >>> BITS][];
+                for (int i = 0; i < parents.length; i++) {
+                    parents[i] = new Object[WIDTH];
+                    int end = Math.min(nodes.length, (i + 1) << BITS);
+                    System.arraycopy(nodes, i << BITS, parents[i], 0, end - (i << BITS));
+                }
+                nodes = parents;
+                shift += BITS;
+            }
+            Object[] root = new Object[WIDTH];
+            System.arraycopy(nodes, 0, root, 0, nodes.length);
+            
+            result = new PersistentVector<>(count, shift, root, tail);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of elements in this vector.
+     *
+     * @return The size of this vector.
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the index of the first element in the tail.
+     *
+     * @param size The size of the vector.
+     *
+     * @return The index of the first element in the tail.
+     */
+    private static int tailOffset(int size) {
+        return size == 0 ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+    
+    /**
+     * Checks that the given index is in bounds.
+     *
+     * @param index The index to check.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+    
+    /**
+     * Returns the leaf array that contains the given index.
+     *
+     * @param index The index, in bounds.
+     *
+     * @return The leaf array (or the tail).
+     */
+    private Object[] leafFor(int index) {
+        Object[] node;
+        if (index >= tailOffset(size)) {
+            node = tail;
+        } else {
+            node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Object[]) node[(index >>> level) & MASK];
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Returns the element at the given index.
+     *
+     * @param index The index of the element.
+     *
+     * @return The element.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    @SuppressWarnings("unchecked")
+    E get(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        return (E) leafFor(index)[index & MASK];
+    }
+    
+    /**
+     * Returns a new vector with the element at the given index replaced.
+     *
+     * @param index The index of the element to replace.
+     * @param element The new element.
+     *
+     * @return The new vector.
+     *
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    PersistentVector<E> set(int index, E element) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        PersistentVector<E> result;
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            result = new PersistentVector<>(size, shift, root, newTail);
+        } else {
+            result = new PersistentVector<>(size, shift, set(shift, root, index, element), tail);
+        }
+        return result;
+    }
+    
+    /**
+     * Copies the path to the given index and replaces the element in the copied leaf.
+     *
+     * @param level The shift of the given node.
+     * @param node The node to copy.
+     * @param index The index of the element to replace.
+     * @param element The new element.
+     *
+     * @return The copied node.
+     */
+    private static Object[] set(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = set(level - BITS, (Object[]) node[child], index, element);
+        }
+        return copy;
+    }
+    
+    /**
+     * Returns a new vector with the given element appended.
+     *
+     * @param element The element to append.
+     *
+     * @return The new vector.
+     */
+    PersistentVector<E> append(E element) {
+        PersistentVector<E> result;
+        if (size - tailOffset(size) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            result = new PersistentVector<>(size + 1, shift, root, newTail);
+            
+        } else {
+            // the tail is full, so it is moved into the trie
+            Object[] newRoot;
+            int newShift = shift;
+            if ((size >>> BITS) > (1 << shift)) {
+                // the trie is full, so add a new level on top
+                newRoot = new Object[WIDTH];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                newShift += BITS;
+            } else {
+                newRoot = pushTail(shift, root);
+            }
+            result = new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+        }
+        return result;
+    }
+    
+    /**
+     * Copies the path to the first free leaf and puts the tail there.
+     *
+     * @param level The shift of the given node.
+     * @param parent The node to copy.
+     *
+     * @return The copied node.
+     */
+    private Object[] pushTail(int level, Object[] parent) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[child] = tail;
+        } else if (parent[child] != null) {
+            copy[child] = pushTail(level - BITS, (Object[]) parent[child]);
+        } else {
+            copy[child] = newPath(level - BITS, tail);
+        }
+        return copy;
+    }
+    
+    /**
+     * Creates a path of new inner nodes down to the given leaf.
+     *
+     * @param level The shift of the top node of the path.
+     * @param leaf The leaf at the bottom of the path.
+     *
+     * @return The top node of the path.
+     */
+    private static Object[] newPath(int level, Object[] leaf) {
+        Object[] result = leaf;
+        for (int i = 0; i < level; i += BITS) {
+            Object[] parent = new Object[WIDTH];
+            parent[0] = result;
+            result = parent;
+        }
+        return result;
+    }
+    
+    /**
+     * Copies all elements of this vector into an array.
+     *
+     * @param extraSpace The number of additional free slots at the end of the array.
+     *
+     * @return The elements of this vector.
+     */
+    Object[] toArray(int extraSpace) {
+        Object[] result = new Object[size + extraSpace];
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            System.arraycopy(leaf, 0, result, i, Math.min(WIDTH, size - i));
+        }
+        return result;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The iterator walks the leaves directly, so that each element takes constant time.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            
+            private int index;
+            
+            private Object[] leaf;
+            
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = leafFor(index);
+                }
+                E element = (E) leaf[index & MASK];
+                index++;
+                return element;
+            }
+            
+        };
+    }
+    
+}
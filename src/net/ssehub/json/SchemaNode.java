@@ -0,0 +1,672 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled (sub-)schema of a {@link JsonSchema}. All keywords of the schema are stored in fields that are prepared
+ * for validation: types as a bit mask, enum values in a hash set, regular expressions as compiled {@link Pattern}s and
+ * property names in hash maps. Fields of absent keywords are <code>null</code> (or have a neutral value), so that
+ * validation only pays for the keywords that are present.
+ *
+ * @author Adam
+ */
+final class SchemaNode {
+    
+    static final int NULL_TYPE = 1;
+    
+    static final int BOOLEAN_TYPE = 2;
+    
+    static final int OBJECT_TYPE = 4;
+    
+    static final int ARRAY_TYPE = 8;
+    
+    static final int NUMBER_TYPE = 16;
+    
+    static final int STRING_TYPE = 32;
+    
+    static final int INTEGER_TYPE = 64;
+    
+    private static final String[] TYPE_NAMES = {"null", "boolean", "object", "array", "number", "string", "integer"};
+    
+    // checkstyle: stop visibility modifier check
+    // the fields are set by the compiler in JsonSchema
+    
+    boolean alwaysFalse;
+    
+    /**
+     * The allowed types as a bit mask, or 0 if all types are allowed.
+     */
+    int types;
+    
+    /**
+     * The allowed values, in canonical form (see {@link JsonElement#canonical(JsonElement)}).
+     */
+    Set<JsonElement> enumValues;
+    
+    /**
+     * The only allowed value, in canonical form (see {@link JsonElement#canonical(JsonElement)}).
+     */
+    JsonElement constValue;
+    
+    Double minimum;
+    
+    Double maximum;
+    
+    Double exclusiveMinimum;
+    
+    Double exclusiveMaximum;
+    
+    BigDecimal multipleOf;
+    
+    /**
+     * {@link #multipleOf} as a <code>long</code>, if it is an integer that fits; otherwise 0.
+     */
+    long integralMultipleOf;
+    
+    int minLength;
+    
+    int maxLength = Integer.MAX_VALUE;
+    
+    Pattern pattern;
+    
+    SchemaNode[] prefixItems;
+    
+    SchemaNode items;
+    
+    SchemaNode contains;
+    
+    int minItems;
+    
+    int maxItems = Integer.MAX_VALUE;
+    
+    boolean uniqueItems;
+    
+    Map<String, SchemaNode> properties;
+    
+    Pattern[] patternKeys;
+    
+    SchemaNode[] patternValues;
+    
+    SchemaNode additionalProperties;
+    
+    SchemaNode propertyNames;
+    
+    String[] required;
+    
+    int minProperties;
+    
+    int maxProperties = Integer.MAX_VALUE;
+    
+    SchemaNode[] allOf;
+    
+    SchemaNode[] anyOf;
+    
+    SchemaNode[] oneOf;
+    
+    SchemaNode not;
+    
+    SchemaNode ref;
+    
+    // checkstyle: resume visibility modifier check
+    
+    /**
+     * Keeps track of the location in the document and the found errors while validating.
+     */
+    static final class Validation {
+        
+        private final List<String> errors;
+        
+        private final List<Object> path = new ArrayList<>();
+        
+        /**
+         * Creates a validation.
+         *
+         * @param errors The list to add error messages to, or <code>null</code> if only the result is of interest.
+         */
+        Validation(List<String> errors) {
+            this.errors = errors;
+        }
+        
+        /**
+         * Records an error at the current location.
+         *
+         * @param message The error message.
+         *
+         * @return Always <code>false</code>.
+         */
+        boolean fail(String message) {
+            if (errors != null) {
+                errors.add(getLocation() + ": " + message);
+            }
+            return false;
+        }
+        
+        /**
+         * Returns whether the error messages are of interest. If not, validation may stop at the first error.
+         *
+         * @return Whether errors are collected.
+         */
+        boolean collectsErrors() {
+            return errors != null;
+        }
+        
+        /**
+         * Enters a member of an object or an element of a list.
+         *
+         * @param token The key (a {@link String}) or index (an {@link Integer}).
+         */
+        void push(Object token) {
+            path.add(token);
+        }
+        
+        /**
+         * Leaves the member or element entered last.
+         */
+        void pop() {
+            path.remove(path.size() - 1);
+        }
+        
+        /**
+         * Returns the current location in the document as a URI fragment with a JSON Pointer.
+         *
+         * @return The current location.
+         */
+        String getLocation() {
+            JsonPointer pointer = JsonPointer.ROOT;
+            for (Object token : path) {
+                pointer = token instanceof Integer ? pointer.append((Integer) token) : pointer.append((String) token);
+            }
+            return "#" + pointer;
+        }
+        
+    }
+    
+    /**
+     * Returns the type bits of the given value. Integral numbers have both {@link #NUMBER_TYPE} and
+     * {@link #INTEGER_TYPE}.
+     *
+     * @param value The value.
+     *
+     * @return The type bits of the value.
+     */
+    static int typeOf(JsonElement value) {
+        int result;
+        if (value instanceof JsonObject) {
+            result = OBJECT_TYPE;
+        } else if (value instanceof JsonList) {
+            result = ARRAY_TYPE;
+        } else if (value instanceof JsonString) {
+            result = STRING_TYPE;
+        } else if (value instanceof JsonNumber) {
+            result = JsonNumber.isIntegral(((JsonNumber) value).getValue()) ? NUMBER_TYPE | INTEGER_TYPE : NUMBER_TYPE;
+        } else if (value instanceof JsonBoolean) {
+            result = BOOLEAN_TYPE;
+        } else {
+            result = NULL_TYPE;
+        }
+        return result;
+    }
+    
+    /**
+     * Describes a set of types for error messages.
+     *
+     * @param types The type bits.
+     *
+     * @return The names of the types.
+     */
+    static String describeTypes(int types) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if ((types & (1 << i)) != 0) {
+                if (result.length() > 0) {
+                    result.append(" or ");
+                }
+                result.append(TYPE_NAMES[i]);
+            }
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Returns the type bit of the given type name.
+     *
+     * @param name The name of the type.
+     *
+     * @return The type bit, or 0 if the name is unknown.
+     */
+    static int typeBit(String name) {
+        int result = 0;
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(name)) {
+                result = 1 << i;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether this schema can only be validated against a whole value, so that a streaming validation must
+     * read the value into a tree first.
+     *
+     * @return Whether the whole value is needed.
+     */
+    boolean needsWholeValue() {
+        boolean combined = anyOf != null || oneOf != null || not != null;
+        boolean wholeList = contains != null || uniqueItems;
+        return combined || wholeList || enumValues != null || constValue != null;
+    }
+    
+    /**
+     * Adds this schema and all schemas that apply to the same value via <code>$ref</code> and <code>allOf</code> to
+     * the given list.
+     *
+     * @param result The list to add to.
+     */
+    void collectApplicable(List<SchemaNode> result) {
+        if (!result.contains(this)) {
+            result.add(this);
+            if (ref != null) {
+                ref.collectApplicable(result);
+            }
+            if (allOf != null) {
+                for (SchemaNode node : allOf) {
+                    node.collectApplicable(result);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Validates a value against this schema.
+     *
+     * @param value The value to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the value is valid.
+     */
+    boolean validate(JsonElement value, Validation validation) {
+        boolean valid = validateOwn(value, validation);
+        if (ref != null) {
+            valid &= ref.validate(value, validation);
+        }
+        if (allOf != null) {
+            for (SchemaNode node : allOf) {
+                valid &= node.validate(value, validation);
+            }
+        }
+        return valid;
+    }
+    
+    /**
+     * Validates a value against the keywords of this schema, without following <code>$ref</code> and
+     * <code>allOf</code>. This is used when the applicable schemas have already been collected with
+     * {@link #collectApplicable(List)}.
+     *
+     * @param value The value to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the value is valid.
+     */
+    boolean validateOwn(JsonElement value, Validation validation) {
+        boolean valid = checkStart(typeOf(value), validation);
+        if (valid || validation.collectsErrors()) {
+            valid &= validateValue(value, validation);
+            if (value instanceof JsonObject) {
+                valid &= validateObject((JsonObject) value, validation);
+            } else if (value instanceof JsonList) {
+                valid &= validateList((JsonList) value, validation);
+            } else if (value instanceof JsonString) {
+                valid &= validateString(((JsonString) value).getValue(), validation);
+            } else if (value instanceof JsonNumber) {
+                valid &= validateNumber(((JsonNumber) value).getValue(), validation);
+            }
+        }
+        return valid;
+    }
+    
+    /**
+     * Checks the type of a value, and whether this schema allows any value at all.
+     *
+     * @param actualType The type bits of the value.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the type is valid.
+     */
+    boolean checkStart(int actualType, Validation validation) {
+        boolean result = true;
+        if (alwaysFalse) {
+            result = validation.fail("no value is allowed here");
+        } else if (types != 0 && (types & actualType) == 0) {
+            result = validation.fail("expected type " + describeTypes(types) + ", got "
+                    + describeTypes(actualType & ~INTEGER_TYPE));
+        }
+        return result;
+    }
+    
+    /**
+     * Validates the keywords that apply to a whole value of any type: <code>enum</code>, <code>const</code>,
+     * <code>anyOf</code>, <code>oneOf</code> and <code>not</code>.
+     *
+     * @param value The value to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the value is valid.
+     */
+    private boolean validateValue(JsonElement value, Validation validation) {
+        boolean valid = true;
+        if (enumValues != null || constValue != null) {
+            JsonElement canonical = JsonElement.canonical(value);
+            if (enumValues != null && !enumValues.contains(canonical)) {
+                valid = validation.fail("is not one of the allowed values");
+            }
+            if (constValue != null && !constValue.equals(canonical)) {
+                valid = validation.fail("is not the constant value " + constValue);
+            }
+        }
+        if (anyOf != null && countMatches(anyOf, value, 1) == 0) {
+            valid = validation.fail("matches none of the schemas of anyOf");
+        }
+        if (oneOf != null) {
+            int matches = countMatches(oneOf, value, 2);
+            if (matches != 1) {
+                valid = validation.fail(matches == 0 ? "matches none of the schemas of oneOf"
+                        : "matches more than one of the schemas of oneOf");
+            }
+        }
+        if (not != null && not.validate(value, new Validation(null))) {
+            valid = validation.fail("must not match the schema of not");
+        }
+        return valid;
+    }
+    
+    /**
+     * Counts how many of the given schemas a value matches.
+     *
+     * @param schemas The schemas.
+     * @param value The value.
+     * @param limit The count at which to stop.
+     *
+     * @return The number of matching schemas, at most the limit.
+     */
+    private static int countMatches(SchemaNode[] schemas, JsonElement value, int limit) {
+        int result = 0;
+        for (int i = 0; i < schemas.length && result < limit; i++) {
+            if (schemas[i].validate(value, new Validation(null))) {
+                result++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Validates the number keywords.
+     *
+     * @param number The number to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the number is valid.
+     */
+    boolean validateNumber(Number number, Validation validation) {
+        boolean valid = true;
+        double value = number.doubleValue();
+        if (minimum != null && value < minimum) {
+            valid = validation.fail("is less than the minimum " + format(minimum));
+        }
+        if (exclusiveMinimum != null && value <= exclusiveMinimum) {
+            valid = validation.fail("is not greater than " + format(exclusiveMinimum));
+        }
+        if (maximum != null && value > maximum) {
+            valid = validation.fail("is greater than the maximum " + format(maximum));
+        }
+        if (exclusiveMaximum != null && value >= exclusiveMaximum) {
+            valid = validation.fail("is not less than " + format(exclusiveMaximum));
+        }
+        if (multipleOf != null && !isMultiple(number)) {
+            valid = validation.fail("is not a multiple of " + multipleOf.toPlainString());
+        }
+        return valid;
+    }
+    
+    /**
+     * Formats a bound of a number keyword for error messages, without a fraction if it is integral.
+     *
+     * @param bound The bound.
+     *
+     * @return The formatted bound.
+     */
+    private static String format(double bound) {
+        return Math.abs(bound) < 1e15 && bound == Math.rint(bound) ? Long.toString((long) bound)
+                : Double.toString(bound);
+    }
+    
+    /**
+     * Checks whether a number is a multiple of {@link #multipleOf}. Integers are checked with integer arithmetic if
+     * possible, other numbers with exact decimal arithmetic.
+     *
+     * @param number The number to check.
+     *
+     * @return Whether the number is a multiple.
+     */
+    private boolean isMultiple(Number number) {
+        boolean result;
+        if (!(number instanceof Double) && integralMultipleOf != 0) {
+            result = number.longValue() % integralMultipleOf == 0;
+        } else if (Double.isInfinite(number.doubleValue()) || Double.isNaN(number.doubleValue())) {
+            result = false;
+        } else {
+            result = new BigDecimal(number.toString()).remainder(multipleOf).signum() == 0;
+        }
+        return result;
+    }
+    
+    /**
+     * Validates the string keywords.
+     *
+     * @param string The string to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the string is valid.
+     */
+    boolean validateString(String string, Validation validation) {
+        boolean valid = true;
+        if (minLength > 0 || maxLength < Integer.MAX_VALUE) {
+            // lengths are measured in code points, not UTF-16 chars
+            int length = string.codePointCount(0, string.length());
+            if (length < minLength) {
+                valid = validation.fail("is shorter than " + minLength + " characters");
+            }
+            if (length > maxLength) {
+                valid = validation.fail("is longer than " + maxLength + " characters");
+            }
+        }
+        if (pattern != null && !pattern.matcher(string).find()) {
+            valid = validation.fail("does not match the pattern " + pattern.pattern());
+        }
+        return valid;
+    }
+    
+    /**
+     * Returns the schema for the element of a list at the given index.
+     *
+     * @param index The index of the element.
+     *
+     * @return The schema of the element, or <code>null</code> if the element is not constrained.
+     */
+    SchemaNode getItemSchema(int index) {
+        return prefixItems != null && index < prefixItems.length ? prefixItems[index] : items;
+    }
+    
+    /**
+     * Validates the list keywords.
+     *
+     * @param list The list to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the list is valid.
+     */
+    private boolean validateList(JsonList list, Validation validation) {
+        boolean valid = validateItemCount(list.getSize(), validation);
+        if (uniqueItems) {
+            Set<JsonElement> seen = new HashSet<>();
+            for (JsonElement element : list) {
+                if (!seen.add(JsonElement.canonical(element))) {
+                    valid = validation.fail("contains duplicate items");
+                    break;
+                }
+            }
+        }
+        if (contains != null) {
+            boolean found = false;
+            for (JsonElement element : list) {
+                found |= contains.validate(element, new Validation(null));
+            }
+            if (!found) {
+                valid = validation.fail("contains no item that matches the schema of contains");
+            }
+        }
+        for (int i = 0; i < list.getSize() && (valid || validation.collectsErrors()); i++) {
+            SchemaNode itemSchema = getItemSchema(i);
+            if (itemSchema != null) {
+                validation.push(i);
+                valid &= itemSchema.validate(list.getElement(i), validation);
+                validation.pop();
+            }
+        }
+        return valid;
+    }
+    
+    /**
+     * Validates the number of items of a list.
+     *
+     * @param size The number of items.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the number of items is valid.
+     */
+    boolean validateItemCount(int size, Validation validation) {
+        boolean valid = true;
+        if (size < minItems) {
+            valid = validation.fail("has fewer than " + minItems + " items");
+        }
+        if (size > maxItems) {
+            valid = validation.fail("has more than " + maxItems + " items");
+        }
+        return valid;
+    }
+    
+    /**
+     * Validates the object keywords.
+     *
+     * @param object The object to validate.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the object is valid.
+     */
+    private boolean validateObject(JsonObject object, Validation validation) {
+        boolean valid = validatePropertyCount(object.getSize(), validation);
+        if (required != null) {
+            for (String key : required) {
+                if (object.getElement(key) == null) {
+                    valid = validation.fail("misses the required property \"" + key + "\"");
+                }
+            }
+        }
+        if (hasMemberSchemas()) {
+            List<SchemaNode> schemas = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> member : object.members()) {
+                validation.push(member.getKey());
+                schemas.clear();
+                valid &= getMemberSchemas(member.getKey(), schemas, validation);
+                for (SchemaNode schema : schemas) {
+                    valid &= schema.validate(member.getValue(), validation);
+                }
+                validation.pop();
+            }
+        }
+        return valid;
+    }
+    
+    /**
+     * Validates the number of properties of an object.
+     *
+     * @param size The number of properties.
+     * @param validation The validation to record errors in.
+     *
+     * @return Whether the number of properties is valid.
+     */
+    boolean validatePropertyCount(int size, Validation validation) {
+        boolean valid = true;
+        if (size < minProperties) {
+            valid = validation.fail("has fewer than " + minProperties + " properties");
+        }
+        if (size > maxProperties) {
+            valid = validation.fail("has more than " + maxProperties + " properties");
+        }
+        return valid;
+    }
+    
+    /**
+     * Checks whether any keyword constrains the members of an object individually.
+     *
+     * @return Whether the members need to be validated.
+     */
+    boolean hasMemberSchemas() {
+        return properties != null || patternKeys != null || additionalProperties != null || propertyNames != null;
+    }
+    
+    /**
+     * Validates the name of a member and determines the schemas that apply to its value: the matching
+     * <code>properties</code> and <code>patternProperties</code>, or otherwise <code>additionalProperties</code>.
+     *
+     * @param key The key of the member.
+     * @param result The list to add the applicable schemas to.
+     * @param validation The validation to record an invalid name in.
+     *
+     * @return Whether the name of the member is valid.
+     */
+    boolean getMemberSchemas(String key, List<SchemaNode> result, Validation validation) {
+        boolean valid = true;
+        if (propertyNames != null && !propertyNames.validate(new JsonString(key), new Validation(null))) {
+            valid = validation.fail("is not a valid property name");
+        }
+        SchemaNode property = properties != null ? properties.get(key) : null;
+        if (property != null) {
+            result.add(property);
+        }
+        boolean matched = property != null;
+        if (patternKeys != null) {
+            for (int i = 0; i < patternKeys.length; i++) {
+                if (patternKeys[i].matcher(key).find()) {
+                    result.add(patternValues[i]);
+                    matched = true;
+                }
+            }
+        }
+        if (!matched && additionalProperties != null) {
+            result.add(additionalProperties);
+        }
+        return valid;
+    }
+    
+}
@@ -0,0 +1,988 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+
+import net.ssehub.json.JsonShape.FieldType;
+
+/**
+ * A parser that is specialized for UTF-8 encoded JSON objects of a known {@link JsonShape}. Instead of hashing every
+ * key into a {@link JsonObject}, it predicts that the next key is the field following the previous one, and compares
+ * the raw bytes of the key against the expected name. The values of the fields are stored into the fixed slots of a
+ * {@link ShapedRecord}.
+ * <p>
+ * If the prediction fails, the key is decoded and looked up in the shape. Members with unknown keys, or with values of
+ * a different type than the field, fall back to generic parsing and end up in {@link ShapedRecord#getUnmatched()}.
+ * Thus, any valid JSON object is accepted; documents of the expected shape are just parsed faster.
+ * <p>
+ * A parser may be used for any number of documents, but not concurrently.
+ *
+ * @author Adam
+ */
+public class ShapedJsonParser {
+    
+    /**
+     * A byte value of 1 in each byte of a <code>long</code>; multiplied with a byte value, this repeats the value in
+     * all eight bytes.
+     */
+    private static final long ONES = 0x0101010101010101L;
+    
+    /**
+     * The highest bit of each byte of a <code>long</code>.
+     */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+    
+    private final JsonShape shape;
+    
+    private final ParserOptions options;
+    
+    private final StringBuilder builder = new StringBuilder();
+    
+    private byte[] buffer;
+    
+    /**
+     * A view of {@link #buffer} for reading eight bytes at once.
+     */
+    private ByteBuffer words;
+    
+    private int pos;
+    
+    private int end;
+    
+    private int start;
+    
+    private int currentNestingDepth;
+    
+    private long elementCount;
+    
+    private boolean numberIsInteger;
+    
+    private long longValue;
+    
+    private double doubleValue;
+    
+    /**
+     * Creates a parser for documents of the given shape, with the default {@link ParserOptions}.
+     *
+     * @param shape The expected shape of the top-level object. Not <code>null</code>.
+     */
+    public ShapedJsonParser(JsonShape shape) {
+        this(shape, new ParserOptions());
+    }
+    
+    /**
+     * Creates a parser for documents of the given shape.
+     *
+     * @param shape The expected shape of the top-level object. Not <code>null</code>.
+     * @param options The options for parsing the documents. Not <code>null</code>.
+     */
+    public ShapedJsonParser(JsonShape shape, ParserOptions options) {
+        this.shape = Objects.requireNonNull(shape);
+        this.options = Objects.requireNonNull(options);
+    }
+    
+    /**
+     * Parses a document.
+     *
+     * @param input The document. Not <code>null</code>.
+     *
+     * @return The parsed top-level object. Never <code>null</code>.
+     *
+     * @throws ParsingException If the document is malformed, or is not an object.
+     */
+    public ShapedRecord parse(String input) throws ParsingException {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        return parse(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Parses a UTF-8 encoded document.
+     *
+     * @param input The document. Not <code>null</code>.
+     *
+     * @return The parsed top-level object. Never <code>null</code>.
+     *
+     * @throws ParsingException If the document is malformed, or is not an object.
+     */
+    public ShapedRecord parse(byte[] input) throws ParsingException {
+        return parse(input, 0, input.length);
+    }
+    
+    /**
+     * Parses a UTF-8 encoded document from a range of an array.
+     *
+     * @param input The array containing the document. Not <code>null</code>.
+     * @param offset The index of the first byte of the document.
+     * @param length The number of bytes of the document.
+     *
+     * @return The parsed top-level object. Never <code>null</code>.
+     *
+     * @throws ParsingException If the document is malformed, or is not an object.
+     */
+    public ShapedRecord parse(byte[] input, int offset, int length) throws ParsingException {
+        if (offset < 0 || length < 0 || offset + length > input.length) {
+            throw new IndexOutOfBoundsException("Invalid range " + offset + " + " + length);
+        }
+        this.buffer = input;
+        this.words = ByteBuffer.wrap(input);
+        this.pos = offset;
+        this.start = offset;
+        this.end = offset + length;
+        this.currentNestingDepth = 0;
+        this.elementCount = 0;
+        ShapedRecord result;
+        try {
+            if (length > options.getMaxInputLength()) {
+                throw makeException("Exceeded maximum input length of " + options.getMaxInputLength(),
+                        offset + (int) options.getMaxInputLength());
+            }
+            skipWhitespace();
+            if (peek() != '{') {
+                throw makeException("Expecting object, got " + describe(peek()));
+            }
+            result = readRecord(shape);
+            skipWhitespace();
+            if (pos != end) {
+                throw makeException("Expected end of input, got " + describe(peek()));
+            }
+        } finally {
+            this.buffer = null;
+            this.words = null;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the next byte without consuming it.
+     *
+     * @return The next byte as an unsigned value, or <code>-1</code> at the end of the input.
+     */
+    private int peek() {
+        return pos < end ? buffer[pos] & 0xFF : -1;
+    }
+    
+    /**
+     * Consumes the next byte and checks that it is the expected one.
+     *
+     * @param expected The expected character.
+     * @param description A description of where the character is expected, for the exception message.
+     *
+     * @throws ParsingException If the next byte is a different one.
+     */
+    private void expect(char expected, String description) throws ParsingException {
+        if (peek() != expected) {
+            throw makeException("Expecting '" + expected + "' " + description + ", got " + describe(peek()));
+        }
+        pos++;
+    }
+    
+    /**
+     * Skips all whitespace characters.
+     */
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+    }
+    
+    /**
+     * Increases the nesting depth of lists and objects.
+     *
+     * @throws ParsingException If the new nesting depth exceeds {@link ParserOptions#getMaxNestingDepth()}.
+     */
+    private void increaseNestingDepth() throws ParsingException {
+        if (++currentNestingDepth > options.getMaxNestingDepth()) {
+            throw makeException("Exceeded maximum nesting depth of " + options.getMaxNestingDepth());
+        }
+    }
+    
+    /**
+     * Counts a value against {@link ParserOptions#getMaxElementCount()}.
+     *
+     * @throws ParsingException If the document contains too many values.
+     */
+    private void countElement() throws ParsingException {
+        if (++elementCount > options.getMaxElementCount()) {
+            throw makeException("Exceeded maximum element count of " + options.getMaxElementCount());
+        }
+    }
+    
+    /**
+     * Reads an object of the given shape. The next byte must be a '{'.
+     *
+     * @param objectShape The expected shape of the object.
+     *
+     * @return The record with the values of the object. Never <code>null</code>.
+     *
+     * @throws ParsingException If the object is malformed.
+     */
+    private ShapedRecord readRecord(JsonShape objectShape) throws ParsingException {
+        countElement();
+        increaseNestingDepth();
+        pos++; // skip the '{'
+        
+        ShapedRecord result = new ShapedRecord(objectShape);
+        int predicted = 0;
+        int numMembers = 0;
+        
+        skipWhitespace();
+        boolean expectingNext = peek() != '}';
+        while (expectingNext) {
+            skipWhitespace();
+            if (++numMembers > options.getMaxObjectSize()) {
+                throw makeException("Exceeded maximum object size of " + options.getMaxObjectSize());
+            }
+            if (peek() != '"') {
+                throw makeException("Expecting key string, got " + describe(peek()));
+            }
+            
+            int slot = matchKey(objectShape, predicted);
+            String key = null;
+            if (slot < 0) {
+                key = readString();
+                slot = objectShape.getSlot(key);
+            }
+            
+            skipWhitespace();
+            expect(':', "after key");
+            skipWhitespace();
+            
+            if (slot >= 0) {
+                readField(result, slot);
+                predicted = slot + 1;
+            } else {
+                result.addUnmatched(key, readElement());
+            }
+            
+            skipWhitespace();
+            expectingNext = peek() == ',';
+            if (expectingNext) {
+                pos++;
+            }
+        }
+        expect('}', "at end of object");
+        currentNestingDepth--;
+        return result;
+    }
+    
+    /**
+     * Compares the raw bytes of the next key against the name of the predicted field. The next byte must be the
+     * opening '"' of the key. If the key matches, it is consumed.
+     *
+     * @param objectShape The shape of the current object.
+     * @param slot The slot of the predicted field.
+     *
+     * @return The slot if the key matches, otherwise <code>-1</code>.
+     */
+    private int matchKey(JsonShape objectShape, int slot) {
+        int result = -1;
+        if (slot < objectShape.getFieldCount()) {
+            byte[] key = objectShape.getKeyBytes(slot);
+            if (key != null) {
+                int keyStart = pos + 1;
+                int keyEnd = keyStart + key.length;
+                if (keyEnd < end && buffer[keyEnd] == '"' && regionMatches(key, keyStart)) {
+                    pos = keyEnd + 1;
+                    result = slot;
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether the input at the given position starts with the given bytes. The caller has checked that the
+     * input is long enough.
+     *
+     * @param expected The expected bytes.
+     * @param offset The position in the input.
+     *
+     * @return Whether the bytes match.
+     */
+    private boolean regionMatches(byte[] expected, int offset) {
+        boolean result = true;
+        for (int i = 0; i < expected.length && result; i++) {
+            result = buffer[offset + i] == expected[i];
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the value of a field into its slot. If the value has a different type than the field, it is parsed
+     * generically and added to the unmatched members instead.
+     *
+     * @param record The record to store the value in.
+     * @param slot The slot of the field.
+     *
+     * @throws ParsingException If the value is malformed.
+     */
+    private void readField(ShapedRecord record, int slot) throws ParsingException {
+        JsonShape recordShape = record.getShape();
+        FieldType type = recordShape.getFieldType(slot);
+        int next = peek();
+        boolean matched = true;
+        
+        if (next == 'n') {
+            countElement();
+            readLiteral("null");
+            record.setNull(slot);
+            
+        } else if (type == FieldType.STRING && next == '"') {
+            countElement();
+            record.setReference(slot, readString());
+            
+        } else if ((type == FieldType.LONG || type == FieldType.DOUBLE) && isNumberStart(next)) {
+            countElement();
+            readNumber();
+            if (type == FieldType.DOUBLE) {
+                double value = numberIsInteger ? longValue : doubleValue;
+                record.setPrimitive(slot, Double.doubleToRawLongBits(value));
+            } else if (numberIsInteger) {
+                record.setPrimitive(slot, longValue);
+            } else {
+                record.addUnmatched(recordShape.getFieldName(slot), new JsonNumber(doubleValue));
+                matched = false;
+            }
+            
+        } else if (type == FieldType.BOOLEAN && (next == 't' || next == 'f')) {
+            countElement();
+            readLiteral(next == 't' ? "true" : "false");
+            record.setPrimitive(slot, next == 't' ? 1 : 0);
+            
+        } else if (type == FieldType.OBJECT && next == '{') {
+            record.setReference(slot, readRecord(recordShape.getNestedShape(slot)));
+            
+        } else if (type == FieldType.ANY) {
+            record.setReference(slot, readElement());
+            
+        } else {
+            record.addUnmatched(recordShape.getFieldName(slot), readElement());
+            matched = false;
+        }
+        
+        if (!matched) {
+            record.clear(slot);
+        }
+    }
+    
+    /**
+     * Checks whether the given character starts a number.
+     *
+     * @param character The character.
+     *
+     * @return Whether the character is a digit or '-'.
+     */
+    private static boolean isNumberStart(int character) {
+        return character == '-' || isDigit(character);
+    }
+    
+    /**
+     * Checks if the given character is a digit.
+     *
+     * @param character The character to check.
+     *
+     * @return Whether the character is a digit.
+     */
+    private static boolean isDigit(int character) {
+        return character >= '0' && character <= '9';
+    }
+    
+    /**
+     * Checks if the given character is a hexadecimal digit.
+     *
+     * @param character The character to check.
+     *
+     * @return Whether the character is a hexadecimal digit.
+     */
+    private static boolean isHexDigit(int character) {
+        // CHECKSTYLE:OFF // "boolean complexity" is too high...
+        return (character >= '0' && character <= '9')
+                || (character >= 'a' && character <= 'f')
+                || (character >= 'A' && character <= 'F');
+        // CHECKSTYLE:ON
+    }
+    
+    /**
+     * Reads any value generically into a tree of {@link JsonElement}s.
+     *
+     * @return The value. Never <code>null</code>.
+     *
+     * @throws ParsingException If the value is malformed.
+     */
+    private JsonElement readElement() throws ParsingException {
+        countElement();
+        JsonElement result;
+        int next = peek();
+        switch (next) {
+        case '{':
+            result = readObject();
+            break;
+        case '[':
+            result = readList();
+            break;
+        case '"':
+            result = new JsonString(readString());
+            break;
+        case 't':
+            readLiteral("true");
+            result = JsonBoolean.TRUE;
+            break;
+        case 'f':
+            readLiteral("false");
+            result = JsonBoolean.FALSE;
+            break;
+        case 'n':
+            readLiteral("null");
+            result = JsonNull.INSTANCE;
+            break;
+        default:
+            if (!isNumberStart(next)) {
+                throw makeException("Expecting value, got " + describe(next));
+            }
+            readNumber();
+            if (!numberIsInteger) {
+                result = new JsonNumber(doubleValue);
+            } else if (longValue == (int) longValue) {
+                result = new JsonNumber((int) longValue);
+            } else {
+                result = new JsonNumber(longValue);
+            }
+            break;
+        }
+        return result;
+    }
+    
+    /**
+     * Reads an object generically. The next byte must be a '{'.
+     *
+     * @return The object. Never <code>null</code>.
+     *
+     * @throws ParsingException If the object is malformed.
+     */
+    private JsonObject readObject() throws ParsingException {
+        increaseNestingDepth();
+        pos++; // skip the '{'
+        JsonObject result = new JsonObject();
+        int numMembers = 0;
+        
+        skipWhitespace();
+        boolean expectingNext = peek() != '}';
+        while (expectingNext) {
+            skipWhitespace();
+            if (++numMembers > options.getMaxObjectSize()) {
+                throw makeException("Exceeded maximum object size of " + options.getMaxObjectSize());
+            }
+            if (peek() != '"') {
+                throw makeException("Expecting key string, got " + describe(peek()));
+            }
+            String key = readString();
+            skipWhitespace();
+            expect(':', "after key");
+            skipWhitespace();
+            result.putElement(key, readElement());
+            skipWhitespace();
+            expectingNext = peek() == ',';
+            if (expectingNext) {
+                pos++;
+            }
+        }
+        expect('}', "at end of object");
+        currentNestingDepth--;
+        return result;
+    }
+    
+    /**
+     * Reads a list generically. The next byte must be a '['.
+     *
+     * @return The list. Never <code>null</code>.
+     *
+     * @throws ParsingException If the list is malformed.
+     */
+    private JsonList readList() throws ParsingException {
+        increaseNestingDepth();
+        pos++; // skip the '['
+        JsonList result = new JsonList();
+        
+        skipWhitespace();
+        boolean expectingNext = peek() != ']';
+        while (expectingNext) {
+            skipWhitespace();
+            if (result.getSize() >= options.getMaxListSize()) {
+                throw makeException("Exceeded maximum list size of " + options.getMaxListSize());
+            }
+            result.addElement(readElement());
+            skipWhitespace();
+            expectingNext = peek() == ',';
+            if (expectingNext) {
+                pos++;
+            }
+        }
+        expect(']', "at end of list");
+        currentNestingDepth--;
+        return result;
+    }
+    
+    /**
+     * Reads a string. The next byte must be the opening '"'. Strings of plain ASCII characters are decoded directly
+     * from the input; others are decoded character by character. Plain ASCII is skipped eight bytes at a time, until
+     * a word contains a byte that needs attention.
+     *
+     * @return The string value. Never <code>null</code>.
+     *
+     * @throws ParsingException If the string is malformed.
+     */
+    private String readString() throws ParsingException {
+        pos++; // skip the '"'
+        int stringStart = pos;
+        while (pos + Long.BYTES <= end && !needsAttention(words.getLong(pos))) {
+            pos += Long.BYTES;
+        }
+        String result = null;
+        while (pos < end && result == null) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                checkStringLength(pos - stringStart, stringStart);
+                result = new String(buffer, stringStart, pos - stringStart, StandardCharsets.ISO_8859_1);
+                pos++;
+            } else if (b == '\\' || b < 0x20) { // escape, control character or non-ASCII
+                break;
+            } else {
+                pos++;
+            }
+        }
+        if (result == null) {
+            checkStringLength(pos - stringStart, stringStart);
+            builder.setLength(0);
+            for (int i = stringStart; i < pos; i++) {
+                builder.append((char) buffer[i]);
+            }
+            result = readStringSlow();
+        }
+        return result;
+    }
+    
+    /**
+     * Checks whether any of the eight bytes of the given word is not a plain ASCII string character, i.e. is a '"',
+     * a '\\', a control character or a non-ASCII byte. Bytes after such a byte may be falsely reported, too, which
+     * doesn't matter as the string is then scanned byte by byte from the first one.
+     *
+     * @param word Eight bytes of the input.
+     *
+     * @return Whether the word contains a byte that needs attention.
+     */
+    private static boolean needsAttention(long word) {
+        long quotes = hasZeroByte(word ^ (ONES * '"'));
+        long backslashes = hasZeroByte(word ^ (ONES * '\\'));
+        long controlCharacters = (word - ONES * 0x20) & ~word;
+        long special = quotes | backslashes | controlCharacters;
+        return ((special | word) & HIGH_BITS) != 0; // the highest bit of a byte in word itself marks non-ASCII
+    }
+    
+    /**
+     * Marks zero bytes in the given word. The highest bit of the lowest zero byte is set; higher bytes may be
+     * marked falsely.
+     *
+     * @param word Eight bytes.
+     *
+     * @return The word with the highest bit set for zero bytes; the other bits are meaningless.
+     */
+    private static long hasZeroByte(long word) {
+        return (word - ONES) & ~word;
+    }
+    
+    /**
+     * Reads the rest of a string that contains escapes or non-ASCII characters into {@link #builder}.
+     *
+     * @return The string value. Never <code>null</code>.
+     *
+     * @throws ParsingException If the string is malformed.
+     */
+    private String readStringSlow() throws ParsingException {
+        // whether the last character is a high surrogate, which must be followed by a low surrogate
+        boolean pendingHighSurrogate = false;
+        int next = peek();
+        while (next != '"') {
+            int length = builder.length();
+            if (next == -1) {
+                throw makeException("Expecting '\"' at end of string, got end of input");
+            } else if (next == '\\') {
+                pos++;
+                readEscape();
+            } else if (next < 0x20) { // control characters (< 0x20 (space)) are not allowed
+                throw makeException("Unescaped control character " + Integer.toHexString(next));
+            } else if (next < 0x80) {
+                pos++;
+                builder.append((char) next);
+            } else {
+                readUtf8Sequence(next);
+            }
+            checkStringLength(builder.length(), pos - 1);
+            if (pendingHighSurrogate || Character.isSurrogate(builder.charAt(length))) {
+                pendingHighSurrogate = checkSurrogates(length, pendingHighSurrogate);
+            }
+            next = peek();
+        }
+        pos++;
+        if (pendingHighSurrogate) {
+            builder.setCharAt(builder.length() - 1, handleLoneSurrogate(builder.charAt(builder.length() - 1)));
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Checks that the characters appended to {@link #builder} only contain surrogates in valid pairs, i.e. a high
+     * surrogate followed by a low surrogate. Like in {@link JsonParser}, a lone high surrogate is only detected when
+     * the next character has been read.
+     *
+     * @param from The index of the first appended character in the builder.
+     * @param pendingHighSurrogate Whether the character before the appended ones is a high surrogate that is not yet
+     *      followed by a low surrogate.
+     *
+     * @return Whether the last character is a high surrogate that is not yet followed by a low surrogate.
+     *
+     * @throws ParsingException If a surrogate is not part of a valid pair and invalid unicode is not replaced.
+     */
+    private boolean checkSurrogates(int from, boolean pendingHighSurrogate) throws ParsingException {
+        boolean pending = pendingHighSurrogate;
+        for (int i = from; i < builder.length(); i++) {
+            char character = builder.charAt(i);
+            boolean low = Character.isLowSurrogate(character);
+            if (pending && !low) {
+                builder.setCharAt(i - 1, handleLoneSurrogate(builder.charAt(i - 1)));
+            } else if (low && !pending) {
+                builder.setCharAt(i, handleLoneSurrogate(character));
+            }
+            pending = Character.isHighSurrogate(character);
+        }
+        return pending;
+    }
+    
+    /**
+     * Reads an escape sequence after the backslash into {@link #builder}.
+     *
+     * @throws ParsingException If the escape sequence is malformed.
+     */
+    private void readEscape() throws ParsingException {
+        int escaped = peek();
+        pos++;
+        switch (escaped) {
+        case '"':
+        case '\\':
+        case '/':
+            builder.append((char) escaped);
+            break;
+        case 'b':
+            builder.append('\b');
+            break;
+        case 'n':
+            builder.append('\n');
+            break;
+        case 'r':
+            builder.append('\r');
+            break;
+        case 't':
+            builder.append('\t');
+            break;
+        case 'f':
+            builder.append('\f');
+            break;
+        case 'u':
+            readUnicodeEscape();
+            break;
+        default:
+            throw makeException("Invalid escaped character " + describe(escaped), pos - 1);
+        }
+    }
+    
+    /**
+     * Reads the four hex digits of a unicode escape sequence into {@link #builder}.
+     *
+     * @throws ParsingException If the escape sequence is malformed.
+     */
+    private void readUnicodeEscape() throws ParsingException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int hexChar = peek();
+            if (!isHexDigit(hexChar)) {
+                throw makeException("Expected four hex digits after \\u, got " + describe(hexChar));
+            }
+            pos++;
+            value = value * 16 + Character.digit(hexChar, 16);
+        }
+        builder.append((char) value);
+    }
+    
+    /**
+     * Handles a surrogate that is not part of a valid pair.
+     *
+     * @param surrogate The surrogate.
+     *
+     * @return The replacement character U+FFFD, if invalid unicode is replaced.
+     *
+     * @throws ParsingException If invalid unicode is not replaced.
+     */
+    private char handleLoneSurrogate(char surrogate) throws ParsingException {
+        if (!options.isReplaceInvalidUnicode()) {
+            throw makeException("Invalid surrogate \\u" + Integer.toHexString(surrogate).toUpperCase(Locale.ROOT)
+                    + " without matching pair", pos - 1);
+        }
+        return REPLACEMENT_CHARACTER;
+    }
+    
+    /**
+     * Decodes a multi-byte UTF-8 sequence into {@link #builder}. If invalid unicode is replaced, an invalid sequence
+     * is replaced by U+FFFD.
+     *
+     * @param lead The first byte of the sequence, as an unsigned value.
+     *
+     * @throws ParsingException If the sequence is not valid UTF-8 and invalid unicode is not replaced.
+     */
+    private void readUtf8Sequence(int lead) throws ParsingException {
+        int length;
+        int codePoint;
+        int min;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+            codePoint = lead & 0x1F;
+            min = 0x80;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            codePoint = lead & 0x0F;
+            min = 0x800;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            codePoint = lead & 0x07;
+            min = 0x10000;
+        } else {
+            length = 0;
+            codePoint = 0;
+            min = 0;
+        }
+        
+        String error = null;
+        if (length == 0) {
+            error = "Invalid UTF-8 byte " + Integer.toHexString(lead);
+        } else {
+            pos++;
+            for (int i = 1; i < length && error == null; i++) {
+                int continuation = peek();
+                if ((continuation & 0xC0) == 0x80) {
+                    pos++;
+                    codePoint = (codePoint << 6) | (continuation & 0x3F);
+                } else {
+                    error = "Truncated UTF-8 sequence";
+                }
+            }
+            boolean surrogate = codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE;
+            if (error == null && (codePoint < min || codePoint > Character.MAX_CODE_POINT || surrogate)) {
+                error = "Invalid UTF-8 sequence for code point " + Integer.toHexString(codePoint);
+            }
+        }
+        
+        if (error == null) {
+            builder.appendCodePoint(codePoint);
+        } else if (options.isReplaceInvalidUnicode()) {
+            if (length == 0) {
+                pos++; // skip the invalid lead byte
+            }
+            builder.append(REPLACEMENT_CHARACTER);
+        } else {
+            throw makeException(error);
+        }
+    }
+    
+    /**
+     * Checks the length of a string against {@link ParserOptions#getMaxStringLength()}.
+     *
+     * @param length The length of the string.
+     * @param stringStart The index of the first byte of the string content, or of the character that exceeded the
+     *      limit, if the string is read character by character.
+     *
+     * @throws ParsingException If the string is too long; positioned at the first character beyond the limit.
+     */
+    private void checkStringLength(int length, int stringStart) throws ParsingException {
+        if (length > options.getMaxStringLength()) {
+            throw makeException("Exceeded maximum string length of " + options.getMaxStringLength(),
+                    Math.min(stringStart + options.getMaxStringLength(), pos - 1));
+        }
+    }
+    
+    /**
+     * Reads a number into {@link #numberIsInteger} and {@link #longValue} or {@link #doubleValue}. The next byte must
+     * be a digit or '-'.
+     *
+     * @throws ParsingException If the number is malformed.
+     */
+    private void readNumber() throws ParsingException {
+        int numberStart = pos;
+        if (peek() == '-') {
+            pos++;
+        }
+        int digitsStart = pos;
+        skipDigits();
+        if (pos == digitsStart) {
+            throw makeException("Got no integer digits");
+        }
+        if (pos - digitsStart > 1 && buffer[digitsStart] == '0') {
+            throw makeException("Number may not start with leading 0", digitsStart + 1);
+        }
+        int digitsEnd = pos;
+        
+        numberIsInteger = true;
+        if (peek() == '.') {
+            pos++;
+            numberIsInteger = false;
+            requireDigits("'.'");
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            pos++;
+            numberIsInteger = false;
+            if (peek() == '-' || peek() == '+') {
+                pos++;
+            }
+            requireDigits("'E'");
+        }
+        
+        if (pos - numberStart > options.getMaxNumberLength()) {
+            throw makeException("Exceeded maximum number length of " + options.getMaxNumberLength(),
+                    numberStart + options.getMaxNumberLength());
+        }
+        
+        if (numberIsInteger && digitsEnd - digitsStart <= 18) {
+            long value = 0;
+            for (int i = digitsStart; i < digitsEnd; i++) {
+                value = value * 10 + (buffer[i] - '0');
+            }
+            longValue = digitsStart != numberStart ? -value : value;
+        } else {
+            String number = new String(buffer, numberStart, pos - numberStart, StandardCharsets.ISO_8859_1);
+            try {
+                if (numberIsInteger) {
+                    longValue = Long.parseLong(number);
+                } else {
+                    doubleValue = Double.parseDouble(number);
+                }
+            } catch (NumberFormatException e) {
+                throw makeException("Can't parse number " + e.getMessage(), pos - 1);
+            }
+        }
+    }
+    
+    /**
+     * Skips all digits.
+     */
+    private void skipDigits() {
+        while (pos < end && isDigit(buffer[pos])) {
+            pos++;
+        }
+    }
+    
+    /**
+     * Skips at least one digit.
+     *
+     * @param after A description of what precedes the digits, for the exception message.
+     *
+     * @throws ParsingException If the next byte is not a digit.
+     */
+    private void requireDigits(String after) throws ParsingException {
+        if (!isDigit(peek())) {
+            throw makeException("Expected at least one digit after " + after + ", got " + describe(peek()));
+        }
+        skipDigits();
+    }
+    
+    /**
+     * Reads a literal and checks that the input exactly matches it.
+     *
+     * @param literal The expected literal.
+     *
+     * @throws ParsingException If the input doesn't match the literal.
+     */
+    private void readLiteral(String literal) throws ParsingException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (peek() != literal.charAt(i)) {
+                throw makeException("Expected " + literal.charAt(i) + ", but got " + describe(peek()));
+            }
+            pos++;
+        }
+    }
+    
+    /**
+     * Describes a character for an exception message.
+     *
+     * @param character The character, or <code>-1</code> for the end of the input.
+     *
+     * @return A description of the character.
+     */
+    private static String describe(int character) {
+        return character == -1 ? "end of input" : "'" + (char) character + "'";
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the current byte, i.e. the next one to
+     * read.
+     *
+     * @param message The exception message.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message) {
+        return makeException(message, pos);
+    }
+    
+    /**
+     * Creates a {@link ParsingException} with the given message, positioned at the given byte. Like in
+     * {@link JsonParser}, errors found after reading the offending character are positioned at that character, and
+     * errors at the end of the input at the end of the input. The line and column are only computed here.
+     *
+     * @param message The exception message.
+     * @param index The index of the byte in the {@link #buffer} that the error refers to.
+     *
+     * @return The created exception.
+     */
+    private ParsingException makeException(String message, int index) {
+        int target = Math.min(index, end);
+        while (target > start && target < end && (buffer[target] & 0xC0) == 0x80) {
+            target--; // refer to the start of a multi-byte UTF-8 sequence
+        }
+        int line = 1;
+        int lineStart = start;
+        for (int i = start; i < target; i++) {
+            if (buffer[i] == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        int column = 1;
+        for (int i = lineStart; i < target; i++) {
+            if ((buffer[i] & 0xC0) != 0x80) { // don't count UTF-8 continuation bytes
+                column++;
+            }
+        }
+        return new ParsingException(message, line, column, target - start);
+    }
+    
+}
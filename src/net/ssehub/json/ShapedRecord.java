@@ -0,0 +1,346 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.util.Map;
+
+import net.ssehub.json.JsonShape.FieldType;
+
+/**
+ * A JSON object parsed by a {@link ShapedJsonParser}. The values of the fields of the {@link JsonShape} are stored in
+ * fixed slots, which are accessed by the slot numbers returned by {@link JsonShape#addField(String, FieldType)}.
+ * Numbers and booleans are stored unboxed.
+ * <p>
+ * Members that don't fit the shape, i.e. unknown keys or values of a different type than the field, are parsed
+ * generically and are available via {@link #getUnmatched()}.
+ *
+ * @author Adam
+ */
+public class ShapedRecord {
+    
+    private static final byte ABSENT = 0;
+    
+    private static final byte VALUE = 1;
+    
+    private static final byte NULL = 2;
+    
+    private final JsonShape shape;
+    
+    private final byte[] states;
+    
+    /**
+     * The values of {@link FieldType#LONG}, {@link FieldType#DOUBLE} (as raw long bits) and {@link FieldType#BOOLEAN}
+     * fields.
+     */
+    private final long[] primitives;
+    
+    /**
+     * The values of {@link FieldType#STRING}, {@link FieldType#OBJECT} and {@link FieldType#ANY} fields.
+     */
+    private final Object[] references;
+    
+    private JsonObject unmatched;
+    
+    /**
+     * Creates an empty record.
+     *
+     * @param shape The shape of this record. Not <code>null</code>.
+     */
+    ShapedRecord(JsonShape shape) {
+        this.shape = shape;
+        int size = shape.getFieldCount();
+        this.states = new byte[size];
+        this.primitives = new long[size];
+        this.references = new Object[size];
+    }
+    
+    /**
+     * Returns the shape of this record.
+     *
+     * @return The shape. Never <code>null</code>.
+     */
+    public JsonShape getShape() {
+        return shape;
+    }
+    
+    /**
+     * Checks whether the field in the given slot was present in the document, with a value of the correct type or
+     * <code>null</code>.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return Whether the field is present.
+     *
+     * @throws IndexOutOfBoundsException If the slot doesn't exist.
+     */
+    public boolean isPresent(int slot) throws IndexOutOfBoundsException {
+        return states[slot] != ABSENT;
+    }
+    
+    /**
+     * Checks whether the field in the given slot was present in the document with a <code>null</code> value.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return Whether the field is <code>null</code>.
+     *
+     * @throws IndexOutOfBoundsException If the slot doesn't exist.
+     */
+    public boolean isNull(int slot) throws IndexOutOfBoundsException {
+        return states[slot] == NULL;
+    }
+    
+    /**
+     * Checks that the given slot has a non-<code>null</code> value and is of the given type.
+     *
+     * @param slot The slot of the field.
+     * @param type The type that the caller expects.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or has a different type.
+     */
+    private void check(int slot, FieldType type) throws NoSuchElementException {
+        if (shape.getFieldType(slot) != type) {
+            throw new NoSuchElementException("Expected field \"" + shape.getFieldName(slot) + "\" with type " + type
+                    + ", but it has type " + shape.getFieldType(slot));
+        }
+        if (states[slot] != VALUE) {
+            throw new NoSuchElementException("No value for field \"" + shape.getFieldName(slot) + "\"");
+        }
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#STRING} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The string value. Never <code>null</code>.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not a string field.
+     */
+    public String getString(int slot) throws NoSuchElementException {
+        check(slot, FieldType.STRING);
+        return (String) references[slot];
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#LONG} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The integer value.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not a long field.
+     */
+    public long getLong(int slot) throws NoSuchElementException {
+        check(slot, FieldType.LONG);
+        return primitives[slot];
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#DOUBLE} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The number value.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not a double field.
+     */
+    public double getDouble(int slot) throws NoSuchElementException {
+        check(slot, FieldType.DOUBLE);
+        return Double.longBitsToDouble(primitives[slot]);
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#BOOLEAN} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The boolean value.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not a boolean field.
+     */
+    public boolean getBoolean(int slot) throws NoSuchElementException {
+        check(slot, FieldType.BOOLEAN);
+        return primitives[slot] != 0;
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#OBJECT} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The nested record. Never <code>null</code>.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not an object field.
+     */
+    public ShapedRecord getRecord(int slot) throws NoSuchElementException {
+        check(slot, FieldType.OBJECT);
+        return (ShapedRecord) references[slot];
+    }
+    
+    /**
+     * Returns the value of a {@link FieldType#ANY} field.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The value. Never <code>null</code>.
+     *
+     * @throws NoSuchElementException If the field is absent or <code>null</code>, or is not an any field.
+     */
+    public JsonElement getElement(int slot) throws NoSuchElementException {
+        check(slot, FieldType.ANY);
+        return (JsonElement) references[slot];
+    }
+    
+    /**
+     * Returns the members of the parsed object that don't fit the shape: unknown keys, and fields with values of a
+     * different type.
+     *
+     * @return The unmatched members. Never <code>null</code>; empty if the whole object matched the shape.
+     */
+    public JsonObject getUnmatched() {
+        return unmatched != null ? unmatched : new JsonObject();
+    }
+    
+    /**
+     * Converts this record into a generic {@link JsonObject}. The fields come first, in the order of the shape,
+     * followed by the unmatched members.
+     *
+     * @return The object. Never <code>null</code>.
+     */
+    public JsonObject toJsonObject() {
+        JsonObject result = new JsonObject();
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] != ABSENT) {
+                result.putElement(shape.getFieldName(slot), toElement(slot));
+            }
+        }
+        if (unmatched != null) {
+            for (Map.Entry<String, JsonElement> member : unmatched.members()) {
+                result.putElement(member.getKey(), member.getValue());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Converts the value of a present field into a {@link JsonElement}.
+     *
+     * @param slot The slot of the field.
+     *
+     * @return The value. Never <code>null</code>.
+     */
+    private JsonElement toElement(int slot) {
+        JsonElement result;
+        if (states[slot] == NULL) {
+            result = JsonNull.INSTANCE;
+        } else {
+            switch (shape.getFieldType(slot)) {
+            case STRING:
+                result = new JsonString((String) references[slot]);
+                break;
+            case LONG:
+                long value = primitives[slot];
+                result = new JsonNumber(value == (int) value ? (Number) (int) value : (Number) value);
+                break;
+            case DOUBLE:
+                result = new JsonNumber(Double.longBitsToDouble(primitives[slot]));
+                break;
+            case BOOLEAN:
+                result = primitives[slot] != 0 ? JsonBoolean.TRUE : JsonBoolean.FALSE;
+                break;
+            case OBJECT:
+                result = ((ShapedRecord) references[slot]).toJsonObject();
+                break;
+            default:
+                result = (JsonElement) references[slot];
+                break;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Sets the state of a field. If an earlier duplicate member with the same key didn't fit the shape, it is removed
+     * from the unmatched members, so that the last member wins like in a {@link JsonObject}.
+     *
+     * @param slot The slot of the field.
+     * @param state The new state of the field.
+     */
+    private void markSet(int slot, byte state) {
+        states[slot] = state;
+        if (unmatched != null) {
+            unmatched.removeElement(shape.getFieldName(slot));
+        }
+    }
+    
+    /**
+     * Sets a field to <code>null</code>.
+     *
+     * @param slot The slot of the field.
+     */
+    void setNull(int slot) {
+        markSet(slot, NULL);
+        references[slot] = null;
+    }
+    
+    /**
+     * Marks a field as absent again, e.g. because a later duplicate member didn't fit the shape.
+     *
+     * @param slot The slot of the field.
+     */
+    void clear(int slot) {
+        states[slot] = ABSENT;
+        references[slot] = null;
+    }
+    
+    /**
+     * Sets the value of a {@link FieldType#LONG}, {@link FieldType#DOUBLE} (as raw long bits) or
+     * {@link FieldType#BOOLEAN} field.
+     *
+     * @param slot The slot of the field.
+     * @param value The value.
+     */
+    void setPrimitive(int slot, long value) {
+        markSet(slot, VALUE);
+        primitives[slot] = value;
+    }
+    
+    /**
+     * Sets the value of a {@link FieldType#STRING}, {@link FieldType#OBJECT} or {@link FieldType#ANY} field.
+     *
+     * @param slot The slot of the field.
+     * @param value The value. Not <code>null</code>.
+     */
+    void setReference(int slot, Object value) {
+        markSet(slot, VALUE);
+        references[slot] = value;
+    }
+    
+    /**
+     * Adds a member that doesn't fit the shape.
+     *
+     * @param key The key of the member. Not <code>null</code>.
+     * @param value The generically parsed value. Not <code>null</code>.
+     */
+    void addUnmatched(String key, JsonElement value) {
+        if (unmatched == null) {
+            unmatched = new JsonObject();
+        }
+        unmatched.putElement(key, value);
+    }
+    
+}
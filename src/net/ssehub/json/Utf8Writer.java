@@ -0,0 +1,286 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link Writer} that encodes the written characters to UTF-8 into a byte buffer. Depending on how it was created,
+ * full buffers are written to an {@link OutputStream} or a {@link ByteBuffer}, or the buffer grows so that the whole
+ * output can be retrieved with {@link #getBytes()}.
+ * <p>
+ * The byte buffer is borrowed from a per-thread pool and must be given back with {@link #close()}, so that
+ * serializing many elements on the same thread doesn't allocate a new buffer each time. Unpaired surrogates are
+ * encoded as <code>'?'</code>, same as {@link String#getBytes(java.nio.charset.Charset)} does.
+ *
+ * @author Adam
+ */
+final class Utf8Writer extends Writer {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    /**
+     * Buffers that grew larger than this are not put back into the pool, so that a single large document doesn't
+     * keep its memory allocated.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    
+    /**
+     * The pooled buffer of each thread. It is removed from the pool while it is in use, so that nested uses get
+     * their own buffer.
+     */
+    private static final ThreadLocal<byte[]> POOL = new ThreadLocal<>();
+    
+    private byte[] buffer;
+    
+    private int size;
+    
+    private OutputStream out;
+    
+    private ByteBuffer target;
+    
+    /**
+     * A high surrogate from the end of the previous write, which is waiting for its low surrogate.
+     */
+    private char pendingHighSurrogate;
+    
+    /**
+     * Creates a writer that writes full buffers to the given stream or byte buffer. If both are <code>null</code>,
+     * the buffer grows instead.
+     *
+     * @param out The stream to write to, or <code>null</code>.
+     * @param target The byte buffer to write to, or <code>null</code>.
+     */
+    private Utf8Writer(OutputStream out, ByteBuffer target) {
+        this.out = out;
+        this.target = target;
+        this.buffer = POOL.get();
+        if (buffer == null) {
+            buffer = new byte[DEFAULT_BUFFER_SIZE];
+        } else {
+            POOL.remove();
+        }
+    }
+    
+    /**
+     * Creates a writer that collects all bytes, to be retrieved with {@link #getBytes()}.
+     *
+     * @return The writer.
+     */
+    static Utf8Writer create() {
+        return new Utf8Writer(null, null);
+    }
+    
+    /**
+     * Creates a writer that writes the encoded bytes to the given stream. The stream is neither flushed nor closed.
+     *
+     * @param out The stream to write to.
+     *
+     * @return The writer.
+     */
+    static Utf8Writer create(OutputStream out) {
+        return new Utf8Writer(out, null);
+    }
+    
+    /**
+     * Creates a writer that puts the encoded bytes into the given byte buffer.
+     *
+     * @param target The byte buffer to write to. If it doesn't have enough space, a
+     *      {@link java.nio.BufferOverflowException} is thrown while writing.
+     *
+     * @return The writer.
+     */
+    static Utf8Writer create(ByteBuffer target) {
+        return new Utf8Writer(null, target);
+    }
+    
+    /**
+     * Returns all bytes written so far. Only valid for writers created with {@link #create()}, after
+     * {@link #flush()}.
+     *
+     * @return A copy of the encoded bytes.
+     */
+    byte[] getBytes() {
+        return Arrays.copyOf(buffer, size);
+    }
+    
+    /**
+     * Makes space for the given number of bytes, either by emptying or by growing the buffer.
+     *
+     * @param numBytes The number of bytes that will be written, at most 4 if the buffer is emptied.
+     *
+     * @throws IOException If writing to the output stream fails.
+     */
+    private void ensureCapacity(int numBytes) throws IOException {
+        if (buffer.length - size < numBytes) {
+            if (out != null || target != null) {
+                drain();
+            } else {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + numBytes));
+            }
+        }
+    }
+    
+    /**
+     * Writes the buffered bytes to the output stream or byte buffer. Does nothing if the buffer grows instead.
+     *
+     * @throws IOException If writing to the output stream fails.
+     */
+    private void drain() throws IOException {
+        if (out != null) {
+            out.write(buffer, 0, size);
+            size = 0;
+        } else if (target != null) {
+            target.put(buffer, 0, size);
+            size = 0;
+        }
+    }
+    
+    /**
+     * Encodes a single character. Surrogates are combined with {@link #pendingHighSurrogate}.
+     *
+     * @param character The character to encode.
+     *
+     * @throws IOException If writing to the output stream fails.
+     */
+    private void encode(char character) throws IOException {
+        ensureCapacity(4);
+        if (pendingHighSurrogate != 0 && Character.isLowSurrogate(character)) {
+            int codePoint = Character.toCodePoint(pendingHighSurrogate, character);
+            buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            pendingHighSurrogate = 0;
+            
+        } else {
+            if (pendingHighSurrogate != 0) {
+                buffer[size++] = '?';
+                pendingHighSurrogate = 0;
+            }
+            encodeSingle(character);
+        }
+    }
+    
+    /**
+     * Encodes a character that is not the low surrogate of {@link #pendingHighSurrogate}. Requires space for 3 bytes.
+     *
+     * @param character The character to encode.
+     */
+    private void encodeSingle(char character) {
+        if (character < 0x80) {
+            buffer[size++] = (byte) character;
+        } else if (character < 0x800) {
+            buffer[size++] = (byte) (0xC0 | (character >> 6));
+            buffer[size++] = (byte) (0x80 | (character & 0x3F));
+        } else if (Character.isHighSurrogate(character)) {
+            pendingHighSurrogate = character;
+        } else if (Character.isLowSurrogate(character)) {
+            buffer[size++] = '?';
+        } else {
+            buffer[size++] = (byte) (0xE0 | (character >> 12));
+            buffer[size++] = (byte) (0x80 | ((character >> 6) & 0x3F));
+            buffer[size++] = (byte) (0x80 | (character & 0x3F));
+        }
+    }
+    
+    @Override
+    public void write(int character) throws IOException {
+        encode((char) character);
+    }
+    
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            // fast path for runs of ASCII characters
+            if (pendingHighSurrogate == 0 && chars[i] < 0x80) {
+                ensureCapacity(Math.min(end - i, buffer.length));
+                int runEnd = Math.min(end, i + buffer.length - size);
+                while (i < runEnd && chars[i] < 0x80) {
+                    buffer[size++] = (byte) chars[i++];
+                }
+            } else {
+                encode(chars[i++]);
+            }
+        }
+    }
+    
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        append(str, offset, offset + length);
+    }
+    
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+    
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        int i = start;
+        while (i < end) {
+            // fast path for runs of ASCII characters
+            if (pendingHighSurrogate == 0 && csq.charAt(i) < 0x80) {
+                ensureCapacity(Math.min(end - i, buffer.length));
+                int runEnd = Math.min(end, i + buffer.length - size);
+                while (i < runEnd && csq.charAt(i) < 0x80) {
+                    buffer[size++] = (byte) csq.charAt(i++);
+                }
+            } else {
+                encode(csq.charAt(i++));
+            }
+        }
+        return this;
+    }
+    
+    @Override
+    public Writer append(char character) throws IOException {
+        encode(character);
+        return this;
+    }
+    
+    /**
+     * Writes a pending unpaired high surrogate and the buffered bytes to the output stream or byte buffer. The output
+     * stream itself is not flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (pendingHighSurrogate != 0) {
+            ensureCapacity(1);
+            buffer[size++] = '?';
+            pendingHighSurrogate = 0;
+        }
+        drain();
+    }
+    
+    /**
+     * Gives the buffer back to the pool of the current thread. The output stream is not closed.
+     */
+    @Override
+    public void close() {
+        if (buffer != null && buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+            POOL.set(buffer);
+        }
+        buffer = null;
+    }
+    
+}
@@ -30,6 +30,24 @@ import org.junit.runners.Suite.SuiteClasses;
     ParameterizedJsonParserNegativeTest.class,
     JsonTestSuite.class,
     JsonToStringTest.class,
+    NonBlockingJsonParserTest.class,
+    JsonElementPublisherTest.class,
+    JsonBinaryTest.class,
+    CborTest.class,
+    PersistentJsonTest.class,
+    JsonPatchTest.class,
+    JsonDiffTest.class,
+    JsonStreamDiffTest.class,
+    JsonCodecTest.class,
+    JsonCodecProcessorTest.class,
+    JsonBinderTest.class,
+    ShapedJsonParserTest.class,
+    JsonSchemaTest.class,
+    ParseMetricsTest.class,
+    LenientParsingTest.class,
+    RelaxedSyntaxTest.class,
+    DuplicateKeyPolicyTest.class,
+    UnicodeValidationTest.class,
 })
 public class AllTests {
 
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link CborEncoder} and {@link CborDecoder}. Most test vectors are taken from appendix A of RFC 8949.
+ *
+ * @author Adam
+ */
+public class CborTest {
+    
+    /**
+     * Converts a hex string into bytes.
+     *
+     * @param hex The hex string.
+     *
+     * @return The bytes.
+     */
+    private static byte[] hex(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+    
+    /**
+     * Converts bytes into a hex string.
+     *
+     * @param bytes The bytes.
+     *
+     * @return The lower-case hex string.
+     */
+    private static String hex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b & 0xFF));
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Parses the given JSON text.
+     *
+     * @param json The JSON text.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException unwanted.
+     */
+    private static JsonElement json(String json) throws ParsingException {
+        try {
+            return new JsonParser(new StringReader(json)).parse();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    /**
+     * Asserts that the element is encoded to the given hex string, and decoded back to an equal element.
+     *
+     * @param element The element.
+     * @param expectedHex The expected encoding.
+     *
+     * @throws ParsingException unwanted.
+     */
+    private static void assertRoundtrip(JsonElement element, String expectedHex) throws ParsingException {
+        assertThat(hex(CborEncoder.encode(element)), is(expectedHex));
+        assertThat(CborDecoder.decode(hex(expectedHex)), is(element));
+    }
+    
+    /**
+     * Tests integers of all sizes.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testIntegers() throws ParsingException {
+        assertRoundtrip(new JsonNumber(0), "00");
+        assertRoundtrip(new JsonNumber(23), "17");
+        assertRoundtrip(new JsonNumber(24), "1818");
+        assertRoundtrip(new JsonNumber(100), "1864");
+        assertRoundtrip(new JsonNumber(1000), "1903e8");
+        assertRoundtrip(new JsonNumber(1000000), "1a000f4240");
+        assertRoundtrip(new JsonNumber(1000000000000L), "1b000000e8d4a51000");
+        assertRoundtrip(new JsonNumber(-1), "20");
+        assertRoundtrip(new JsonNumber(-10), "29");
+        assertRoundtrip(new JsonNumber(-100), "3863");
+        assertRoundtrip(new JsonNumber(-1000), "3903e7");
+        assertRoundtrip(new JsonNumber(Long.MIN_VALUE), "3b7fffffffffffffff");
+        assertRoundtrip(new JsonNumber(new BigInteger("18446744073709551615")), "1bffffffffffffffff");
+        assertRoundtrip(new JsonNumber(new BigInteger("-18446744073709551616")), "3bffffffffffffffff");
+    }
+    
+    /**
+     * Tests integers that need bignums.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testBignums() throws ParsingException {
+        assertRoundtrip(new JsonNumber(new BigInteger("18446744073709551616")), "c249010000000000000000");
+        assertRoundtrip(new JsonNumber(new BigInteger("-18446744073709551617")), "c349010000000000000000");
+    }
+    
+    /**
+     * Tests decimal fractions.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testDecimalFraction() throws ParsingException {
+        assertRoundtrip(new JsonNumber(new BigDecimal("273.15")), "c48221196ab3");
+    }
+    
+    /**
+     * Tests that floating point numbers are written in the shortest precision that preserves them.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testFloatingPoint() throws ParsingException {
+        assertRoundtrip(new JsonNumber(0.0), "f90000");
+        assertRoundtrip(new JsonNumber(-0.0), "f98000");
+        assertRoundtrip(new JsonNumber(1.0), "f93c00");
+        assertRoundtrip(new JsonNumber(1.1), "fb3ff199999999999a");
+        assertRoundtrip(new JsonNumber(1.5), "f93e00");
+        assertRoundtrip(new JsonNumber(65504.0), "f97bff");
+        assertRoundtrip(new JsonNumber(100000.0), "fa47c35000");
+        assertRoundtrip(new JsonNumber(3.4028234663852886e+38), "fa7f7fffff");
+        assertRoundtrip(new JsonNumber(1.0e+300), "fb7e37e43c8800759c");
+        assertRoundtrip(new JsonNumber(5.960464477539063e-8), "f90001");
+        assertRoundtrip(new JsonNumber(0.00006103515625), "f90400");
+        assertRoundtrip(new JsonNumber(-4.0), "f9c400");
+        assertRoundtrip(new JsonNumber(-4.1), "fbc010666666666666");
+        assertRoundtrip(new JsonNumber(Double.POSITIVE_INFINITY), "f97c00");
+        assertRoundtrip(new JsonNumber(Double.NEGATIVE_INFINITY), "f9fc00");
+        assertRoundtrip(new JsonNumber(Double.NaN), "f97e00");
+    }
+    
+    /**
+     * Tests that floating point numbers in single and double precision are decoded, even if a shorter form would be
+     * possible.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testDecodeLongerFloats() throws ParsingException {
+        assertThat(CborDecoder.decode(hex("fa7f800000")), is(new JsonNumber(Double.POSITIVE_INFINITY)));
+        assertThat(CborDecoder.decode(hex("fbfff0000000000000")), is(new JsonNumber(Double.NEGATIVE_INFINITY)));
+        assertThat(CborDecoder.decode(hex("fa3fc00000")), is(new JsonNumber(1.5)));
+    }
+    
+    /**
+     * Tests simple values.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testSimpleValues() throws ParsingException {
+        assertRoundtrip(JsonBoolean.FALSE, "f4");
+        assertRoundtrip(JsonBoolean.TRUE, "f5");
+        assertRoundtrip(JsonNull.INSTANCE, "f6");
+        
+        // undefined and unassigned simple values are mapped to null
+        assertThat(CborDecoder.decode(hex("f7")), is(JsonNull.INSTANCE));
+        assertThat(CborDecoder.decode(hex("f0")), is(JsonNull.INSTANCE));
+        assertThat(CborDecoder.decode(hex("f8ff")), is(JsonNull.INSTANCE));
+    }
+    
+    /**
+     * Tests text strings.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testTextStrings() throws ParsingException {
+        assertRoundtrip(new JsonString(""), "60");
+        assertRoundtrip(new JsonString("a"), "6161");
+        assertRoundtrip(new JsonString("IETF"), "6449455446");
+        assertRoundtrip(new JsonString("\"\\"), "62225c");
+        assertRoundtrip(new JsonString("ü"), "62c3bc");
+        assertRoundtrip(new JsonString("水"), "63e6b0b4");
+        assertRoundtrip(new JsonString("𐅑"), "64f0908591");
+        
+        assertThat(CborDecoder.decode(hex("7f657374726561646d696e67ff")), is(new JsonString("streaming")));
+    }
+    
+    /**
+     * Tests that byte strings are decoded as base64url strings.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testByteStrings() throws ParsingException {
+        assertThat(CborDecoder.decode(hex("40")), is(new JsonString("")));
+        assertThat(CborDecoder.decode(hex("4401020304")), is(new JsonString("AQIDBA")));
+        assertThat(CborDecoder.decode(hex("5f42010243030405ff")), is(new JsonString("AQIDBAU")));
+    }
+    
+    /**
+     * Tests arrays and maps.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testContainers() throws ParsingException {
+        assertRoundtrip(json("[]"), "80");
+        assertRoundtrip(json("[1, 2, 3]"), "83010203");
+        assertRoundtrip(json("[1, [2, 3], [4, 5]]"), "8301820203820405");
+        assertRoundtrip(json("{}"), "a0");
+        assertRoundtrip(json("{\"a\": 1, \"b\": [2, 3]}"), "a26161016162820203");
+        assertRoundtrip(json("[\"a\", {\"b\": \"c\"}]"), "826161a161626163");
+        
+        JsonList list = new JsonList();
+        for (int i = 1; i <= 25; i++) {
+            list.addElement(new JsonNumber(i));
+        }
+        assertRoundtrip(list, "98190102030405060708090a0b0c0d0e0f101112131415161718181819");
+    }
+    
+    /**
+     * Tests arrays and maps with indefinite length.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testIndefiniteContainers() throws ParsingException {
+        assertThat(CborDecoder.decode(hex("9fff")), is(json("[]")));
+        assertThat(CborDecoder.decode(hex("9f018202039f0405ffff")), is(json("[1, [2, 3], [4, 5]]")));
+        assertThat(CborDecoder.decode(hex("83018202039f0405ff")), is(json("[1, [2, 3], [4, 5]]")));
+        assertThat(CborDecoder.decode(hex("bf61610161629f0203ffff")), is(json("{\"a\": 1, \"b\": [2, 3]}")));
+        assertThat(CborDecoder.decode(hex("bf6346756ef563416d7421ff")), is(json("{\"Fun\": true, \"Amt\": -2}")));
+    }
+    
+    /**
+     * Tests that integer map keys are converted to strings, and other tags are ignored.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testConversions() throws ParsingException {
+        assertThat(CborDecoder.decode(hex("a201020304")), is(json("{\"1\": 2, \"3\": 4}")));
+        assertThat(CborDecoder.decode(hex("c11a514b67b0")), is(new JsonNumber(1363896240)));
+        assertThat(CborDecoder.decode(hex("d74401020304")), is(new JsonString("AQIDBA")));
+    }
+    
+    /**
+     * Tests that a complex document survives a roundtrip, including the Java types of integers.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testDocumentRoundtrip() throws ParsingException {
+        JsonElement document = json("{\"name\": \"Jürgen\", \"age\": 42, \"ids\": [1, 5000000000, -3],"
+                + " \"scores\": [1.5, 0.1, -2.0E10], \"nested\": {\"empty\": {}, \"flag\": false, \"none\": null}}");
+        assertThat(CborDecoder.decode(CborEncoder.encode(document)), is(document));
+    }
+    
+    /**
+     * Tests that multiple elements are encoded and decoded as a sequence.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testSequence() throws ParsingException {
+        CborEncoder encoder = new CborEncoder();
+        new JsonNumber(1).accept(encoder);
+        json("[2]").accept(encoder);
+        new JsonString("x").accept(encoder);
+        
+        CborDecoder decoder = new CborDecoder(encoder.getBuffer());
+        assertThat(decoder.read(), is(new JsonNumber(1)));
+        assertThat(decoder.read(), is(json("[2]")));
+        assertThat(decoder.read(), is(new JsonString("x")));
+        assertThat(decoder.read(), nullValue());
+        
+        encoder.reset();
+        assertThat(encoder.toByteArray().length, is(0));
+    }
+    
+    /**
+     * Tests that truncated input is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testTruncated() throws ParsingException {
+        CborDecoder.decode(hex("830102"));
+    }
+    
+    /**
+     * Tests that a missing break is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMissingBreak() throws ParsingException {
+        CborDecoder.decode(hex("9f0102"));
+    }
+    
+    /**
+     * Tests that a map key that is neither a string nor an integer is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testInvalidKey() throws ParsingException {
+        CborDecoder.decode(hex("a1f401"));
+    }
+    
+    /**
+     * Tests that reserved additional information is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testReserved() throws ParsingException {
+        CborDecoder.decode(hex("1c"));
+    }
+    
+    /**
+     * Tests that a forged array length is rejected before reading the elements.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testForgedLength() throws ParsingException {
+        CborDecoder.decode(hex("9b7fffffffffffffff00"));
+    }
+    
+    /**
+     * Tests that the nesting depth limit applies.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testNestingLimit() throws ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxNestingDepth(3);
+        new CborDecoder(ByteBuffer.wrap(hex("81818181818100")), options).read();
+    }
+    
+    /**
+     * Tests that deeply nested unknown tags are limited by the nesting depth instead of overflowing the stack.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testNestedTagsLimit() throws ParsingException {
+        byte[] data = new byte[200001];
+        Arrays.fill(data, 0, data.length - 1, (byte) 0xC6);
+        CborDecoder.decode(data);
+    }
+    
+}
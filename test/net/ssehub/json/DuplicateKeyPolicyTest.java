@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import net.ssehub.json.ParserOptions.DuplicateKeyPolicy;
+
+/**
+ * Tests the {@link DuplicateKeyPolicy}s of the {@link JsonParser}.
+ *
+ * @author Adam
+ */
+public class DuplicateKeyPolicyTest {
+    
+    private static final String INPUT = "{\"a\": 1, \"b\": [2], \"a\": {\"a\": 3, \"a\": 4}, \"b\": 5, \"a\": [6]}";
+    
+    /**
+     * Parses the given string with the given duplicate key policy.
+     *
+     * @param json The JSON string.
+     * @param policy The duplicate key policy.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException If parsing fails.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json, DuplicateKeyPolicy policy) throws ParsingException, IOException {
+        ParserOptions options = new ParserOptions();
+        options.setDuplicateKeyPolicy(policy);
+        try (JsonParser parser = new JsonParser(new StringReader(json), options)) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that the last member wins by default.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLastWins() throws ParsingException, IOException {
+        assertThat(new ParserOptions().getDuplicateKeyPolicy(), is(DuplicateKeyPolicy.LAST_WINS));
+        assertThat(parse(INPUT, DuplicateKeyPolicy.LAST_WINS).toString(), is("{ \"a\": [ 6 ], \"b\": 5 }"));
+    }
+    
+    /**
+     * Tests that the first member wins, also in nested objects.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testFirstWins() throws ParsingException, IOException {
+        assertThat(parse(INPUT, DuplicateKeyPolicy.FIRST_WINS).toString(), is("{ \"a\": 1, \"b\": [ 2 ] }"));
+        assertThat(parse("{\"x\": {\"a\": 3, \"a\": 4}}", DuplicateKeyPolicy.FIRST_WINS).toString(),
+                is("{ \"x\": { \"a\": 3 } }"));
+    }
+    
+    /**
+     * Tests that duplicate keys are rejected.
+     *
+     * @throws IOException unwanted.
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testReject() throws IOException, ParsingException {
+        try {
+            parse("{\"a\": 1,\n\"b\": 2,\n\"a\": 3}", DuplicateKeyPolicy.REJECT);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage(), is("Line 3, column 1: Duplicate key \"a\""));
+        }
+        
+        // rejected before the (malformed) value is read
+        try {
+            parse("{\"a\": 1, \"a\": [1, x", DuplicateKeyPolicy.REJECT);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage(), is("Line 1, column 10: Duplicate key \"a\""));
+        }
+        
+        // the duplicate key spans multiple buffers of the parser
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longKey.append('k');
+        }
+        try {
+            parse("{\"a\": 1,\n \"" + longKey + "\": 1, \"" + longKey + "\": 2}", DuplicateKeyPolicy.REJECT);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getLine(), is(2L));
+            assertThat(e.getColumn(), is(10009L));
+            assertThat(e.getOffset(), is(10017L));
+        }
+        
+        assertThat(parse("{\"a\": {\"a\": 1}, \"b\": [{\"a\": 2}, {\"a\": 3}]}", DuplicateKeyPolicy.REJECT).toString(),
+                is("{ \"a\": { \"a\": 1 }, \"b\": [ { \"a\": 2 }, { \"a\": 3 } ] }"));
+    }
+    
+    /**
+     * Tests that the values of duplicate keys are collected, without mixing them up with lists in the input.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testCollect() throws ParsingException, IOException {
+        assertThat(parse(INPUT, DuplicateKeyPolicy.COLLECT).toString(),
+                is("{ \"a\": [ 1, { \"a\": [ 3, 4 ] }, [ 6 ] ], \"b\": [ [ 2 ], 5 ] }"));
+    }
+    
+    /**
+     * Tests that a rejected duplicate key is skipped in lenient mode.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRejectLenient() throws ParsingException, IOException {
+        ParserOptions options = new ParserOptions();
+        options.setDuplicateKeyPolicy(DuplicateKeyPolicy.REJECT);
+        options.setLenient(true);
+        try (JsonParser parser = new JsonParser(new StringReader("{\"a\": 1, \"a\": 2, \"b\": 3}"), options)) {
+            assertThat(parser.parse().toString(), is("{ \"a\": 1, \"b\": 3 }"));
+            assertThat(parser.getDiagnostics().size(), is(1));
+        }
+    }
+    
+    /**
+     * Tests that the policy must not be <code>null</code>.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testNullPolicy() {
+        new ParserOptions().setDuplicateKeyPolicy(null);
+    }
+    
+}
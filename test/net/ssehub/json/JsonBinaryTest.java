@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonBinaryWriter} and {@link JsonBinaryReader}.
+ *
+ * @author Adam
+ */
+public class JsonBinaryTest {
+    
+    /**
+     * Creates a document with all element types.
+     *
+     * @return The document.
+     */
+    private static JsonObject createDocument() {
+        JsonObject result = new JsonObject();
+        result.putElement("null", JsonNull.INSTANCE);
+        result.putElement("true", JsonBoolean.TRUE);
+        result.putElement("false", JsonBoolean.FALSE);
+        result.putElement("int", new JsonNumber(-42));
+        result.putElement("maxInt", new JsonNumber(Integer.MAX_VALUE));
+        result.putElement("long", new JsonNumber(Long.MIN_VALUE));
+        result.putElement("double", new JsonNumber(-0.125));
+        result.putElement("float", new JsonNumber(1.5f));
+        result.putElement("bigInteger", new JsonNumber(new BigInteger("-123456789012345678901234567890")));
+        result.putElement("bigDecimal", new JsonNumber(new BigDecimal("3.14159265358979323846264338327950288")));
+        result.putElement("ascii", new JsonString("Hello World"));
+        result.putElement("unicode", new JsonString("Héllo ❤ 😀"));
+        result.putElement("empty", new JsonString(""));
+        
+        JsonList list = new JsonList();
+        for (int i = 0; i < 3; i++) {
+            JsonObject entry = new JsonObject();
+            entry.putElement("id", new JsonNumber(i));
+            entry.putElement("name", new JsonString("entry " + i));
+            list.addElement(entry);
+        }
+        list.addElement(new JsonList());
+        result.putElement("list", list);
+        result.putElement("object", new JsonObject());
+        return result;
+    }
+    
+    /**
+     * Tests that all element types survive a roundtrip, including the Java types of numbers.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testRoundtrip() throws ParsingException {
+        JsonObject document = createDocument();
+        JsonElement result = JsonBinaryReader.fromBytes(JsonBinaryWriter.toBytes(document));
+        
+        assertThat(result, is(document));
+    }
+    
+    /**
+     * Tests that a long string that does not fit into the read buffer survives a roundtrip from a stream.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLongStringFromStream() throws ParsingException, IOException {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            str.append((char) ('a' + i % 26)).append(i % 100 == 0 ? "ä" : "");
+        }
+        JsonString document = new JsonString(str.toString());
+        
+        // an input stream that returns few bytes per read
+        InputStream in = new ByteArrayInputStream(JsonBinaryWriter.toBytes(document)) {
+            @Override
+            public synchronized int read(byte[] bytes, int off, int len) {
+                return super.read(bytes, off, Math.min(len, 7));
+            }
+        };
+        
+        try (JsonBinaryReader reader = new JsonBinaryReader(in)) {
+            assertThat(reader.read(), is(document));
+            assertThat(reader.read(), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that repeated keys are only stored once.
+     */
+    @Test
+    public void testKeyReferences() {
+        JsonList list = new JsonList();
+        for (int i = 0; i < 100; i++) {
+            JsonObject entry = new JsonObject();
+            entry.putElement("someVeryLongKeyName", JsonNull.INSTANCE);
+            list.addElement(entry);
+        }
+        
+        byte[] encoded = JsonBinaryWriter.toBytes(list);
+        assertTrue("Size " + encoded.length, encoded.length < 100 * 4 + 30);
+        assertTrue(encoded.length < list.toString().getBytes(StandardCharsets.UTF_8).length / 5);
+    }
+    
+    /**
+     * Tests writing and reading multiple documents in one stream.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMultipleDocuments() throws ParsingException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonBinaryWriter writer = new JsonBinaryWriter(out)) {
+            writer.write(createDocument());
+            writer.write(new JsonNumber(5));
+            writer.write(createDocument());
+        }
+        
+        try (JsonBinaryReader reader = new JsonBinaryReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(reader.read(), is(createDocument()));
+            assertThat(reader.read(), is(new JsonNumber(5)));
+            assertThat(reader.read(), is(createDocument()));
+            assertThat(reader.read(), nullValue());
+        }
+        
+        try (JsonBinaryReader reader = new JsonBinaryReader(new ByteArrayInputStream(new byte[0]))) {
+            assertThat(reader.read(), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that truncated input is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testTruncated() throws ParsingException {
+        byte[] encoded = JsonBinaryWriter.toBytes(createDocument());
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        JsonBinaryReader.fromBytes(truncated);
+    }
+    
+    /**
+     * Tests that a wrong header is rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testInvalidHeader() throws ParsingException {
+        JsonBinaryReader.fromBytes("[1]".getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Tests that a forged list size is rejected without allocating memory for it.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testForgedSize() throws ParsingException, IOException {
+        byte[] forged = {'J', 'B', 1, JsonBinaryFormat.LIST, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        ParserOptions options = new ParserOptions();
+        options.setMaxListSize(1000);
+        new JsonBinaryReader(forged, options).read();
+    }
+    
+    /**
+     * Tests that an invalid key reference is rejected.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testInvalidKeyReference() throws ParsingException, IOException {
+        byte[] forged = {'J', 'B', 1, JsonBinaryFormat.OBJECT, 1, 1, JsonBinaryFormat.NULL};
+        new JsonBinaryReader(forged, new ParserOptions()).read();
+    }
+    
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link JsonBinder}.
+ *
+ * @author Adam
+ */
+public class JsonBinderTest {
+    
+    private static final String PERSON_JSON = "{ \"name\": \"Ann\", \"age\": 42, \"active\": true, \"weight\": 61.5, "
+            + "\"id\": 10000000000, \"role\": \"ADMIN\", \"friends\": [ { \"name\": \"Bob\", \"age\": 7, "
+            + "\"active\": false, \"weight\": null, \"id\": 0, \"role\": null, \"friends\": [], \"scores\": null, "
+            + "\"extra\": null } ], \"scores\": { \"math\": 1, \"art\": null }, \"extra\": { \"x\": [ 1 ] } }";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    /**
+     * The roles of a {@link Person}.
+     */
+    public enum Role {
+        ADMIN, USER
+    }
+    
+    /**
+     * A public class with getters and setters.
+     */
+    public static class Person {
+        
+        private String name;
+        
+        private int age;
+        
+        private boolean active;
+        
+        private Double weight;
+        
+        private long id;
+        
+        private Role role;
+        
+        private List<Person> friends;
+        
+        private Map<String, Integer> scores;
+        
+        private JsonElement extra;
+        
+        private transient int ignored = 5;
+        
+        /**
+         * Returns the name.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Sets the name.
+         *
+         * @param name The name.
+         */
+        public void setName(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * Returns the age.
+         *
+         * @return The age.
+         */
+        public int getAge() {
+            return age;
+        }
+        
+        /**
+         * Sets the age.
+         *
+         * @param age The age.
+         */
+        public void setAge(int age) {
+            this.age = age;
+        }
+        
+        /**
+         * Returns whether the person is active.
+         *
+         * @return Whether the person is active.
+         */
+        public boolean isActive() {
+            return active;
+        }
+        
+        /**
+         * Sets whether the person is active.
+         *
+         * @param active Whether the person is active.
+         */
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+        
+    }
+    
+    /**
+     * A non-public class without getters and setters.
+     */
+    static final class Hidden {
+        
+        private final String constant = "c";
+        
+        private short small;
+        
+        private float ratio;
+        
+        /**
+         * Creates an instance.
+         */
+        private Hidden() {
+        }
+        
+    }
+    
+    /**
+     * A class that can't be bound.
+     */
+    static final class Unsupported {
+        
+        private Object value;
+        
+    }
+    
+    /**
+     * Parses the given JSON string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException If the string is not valid JSON.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Tests binding directly from and to a stream.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testStream() throws ParsingException {
+        JsonCodec<Person> codec = JsonBinder.codecFor(Person.class);
+        Person person = codec.fromJson(PERSON_JSON);
+        assertThat(person.getName(), is("Ann"));
+        assertThat(person.friends.get(0).role == null, is(true));
+        assertThat(person.ignored, is(5));
+        assertThat(codec.toJson(person), is(PERSON_JSON));
+        assertThat(JsonBinder.codecFor(Person.class) == codec, is(true));
+        
+        // members in a different order, unknown members
+        person = codec.fromJson("{\"friends\": null, \"unknown\": {\"a\": []}, \"age\": 3, \"ignored\": 1}");
+        assertThat(person.getAge(), is(3));
+        assertThat(person.ignored, is(5));
+    }
+    
+    /**
+     * Tests converting from and to a tree of {@link JsonElement}s.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTree() throws ParsingException, IOException {
+        JsonElement tree = parse(PERSON_JSON);
+        Person person = JsonBinder.fromElement(tree, Person.class);
+        assertThat(person.friends.get(0).getName(), is("Bob"));
+        // compare the strings, since the parser creates Integers for small longs
+        assertThat(JsonBinder.toElement(person).toString(), is(tree.toString()));
+        assertThat(JsonBinder.toElement(null), is((JsonElement) JsonNull.INSTANCE));
+        assertThat(JsonBinder.fromElement(new JsonNumber(3), int.class), is(3));
+    }
+    
+    /**
+     * Tests binding a non-public class via its private fields.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testPrivateFields() throws ParsingException {
+        JsonCodec<Hidden> codec = JsonBinder.codecFor(Hidden.class);
+        Hidden hidden = codec.fromJson("{\"constant\": \"x\", \"small\": -3, \"ratio\": 0.1}");
+        assertThat(hidden.small, is((short) -3));
+        assertThat(codec.toJson(hidden), is("{ \"constant\": \"c\", \"small\": -3, \"ratio\": 0.1 }"));
+    }
+    
+    /**
+     * Tests that values of the wrong type throw a {@link ParsingException}.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMismatch() throws IOException {
+        JsonCodec<Person> codec = JsonBinder.codecFor(Person.class);
+        String[] invalid = {"{\"age\": \"old\"}", "{\"age\": 10000000000}", "{\"age\": null}", "{\"age\": 1.5}",
+            "{\"role\": \"GUEST\"}", "{\"friends\": {}}", "{\"scores\": {\"a\": true}}", "[]"};
+        for (String json : invalid) {
+            try {
+                codec.fromJson(json);
+                throw new AssertionError("Expected ParsingException for " + json);
+            } catch (ParsingException e) {
+                // expected
+            }
+            try {
+                JsonBinder.fromElement(parse(json), Person.class);
+                throw new AssertionError("Expected ParsingException for tree " + json);
+            } catch (ParsingException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Tests that classes with unsupported field types are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupported() {
+        JsonBinder.codecFor(Unsupported.class);
+    }
+    
+    /**
+     * Tests binding records, if the Java version supports them.
+     *
+     * @throws Exception unwanted.
+     */
+    @Test
+    public void testRecord() throws Exception {
+        boolean recordsSupported;
+        try {
+            Class.forName("java.lang.Record");
+            recordsSupported = true;
+        } catch (ClassNotFoundException e) {
+            recordsSupported = false;
+        }
+        Assume.assumeTrue(recordsSupported);
+        
+        String source = "public record Point(int x, String label, java.util.List<Point> children) { }";
+        Path output = folder.newFolder().toPath();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        boolean compiled = compiler.getTask(null, null, null, Arrays.asList("-d", output.toString()), null,
+                Collections.singletonList(new SimpleJavaFileObject(URI.create("string:///Point.java"),
+                        SimpleJavaFileObject.Kind.SOURCE) {
+                    
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return source;
+                    }
+                    
+                })).call();
+        assertThat(compiled, is(true));
+        
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {output.toUri().toURL()})) {
+            @SuppressWarnings("unchecked")
+            JsonCodec<Object> codec = (JsonCodec<Object>) JsonBinder.codecFor(loader.loadClass("Point"));
+            String json = "{ \"x\": 1, \"label\": \"a\", \"children\": [ { \"x\": 2, \"label\": null, "
+                    + "\"children\": null } ] }";
+            assertThat(codec.toJson(codec.fromJson(json)), is(json));
+            assertThat(codec.toJson(codec.fromJson("{\"label\": \"b\"}")),
+                    is("{ \"x\": 0, \"label\": \"b\", \"children\": null }"));
+        }
+    }
+    
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the {@link JsonCodecProcessor} by compiling sample classes with it and using the generated codecs.
+ *
+ * @author Adam
+ */
+public class JsonCodecProcessorTest {
+    
+    private static final String PERSON = String.join("\n",
+        "package sample;",
+        "import java.util.List;",
+        "import java.util.Map;",
+        "import net.ssehub.json.JsonElement;",
+        "import net.ssehub.json.JsonKey;",
+        "import net.ssehub.json.JsonMapped;",
+        "@JsonMapped",
+        "public class Person extends Base {",
+        "    public enum Role { ADMIN, USER }",
+        "    @JsonMapped",
+        "    static class Address {",
+        "        String city;",
+        "        short zip;",
+        "    }",
+        "    String name;",
+        "    int age = -1;",
+        "    @JsonKey(\"e-mail\") public String email;",
+        "    private boolean active;",
+        "    public boolean isActive() { return active; }",
+        "    public void setActive(boolean active) { this.active = active; }",
+        "    Long number;",
+        "    float weight;",
+        "    Role role;",
+        "    Address address;",
+        "    List<Person> friends;",
+        "    Map<String, List<Double>> scores;",
+        "    JsonElement extra;",
+        "    transient int ignored;",
+        "    static int counter;",
+        "}",
+        "class Base {",
+        "    long id;",
+        "}");
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    
+    /**
+     * A Java source file in memory.
+     */
+    private static class Source extends SimpleJavaFileObject {
+        
+        private final String code;
+        
+        /**
+         * Creates a source file.
+         *
+         * @param className The qualified name of the top-level class.
+         * @param code The source code.
+         */
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+        
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+        
+    }
+    
+    /**
+     * Compiles the given source with the {@link JsonCodecProcessor}.
+     *
+     * @param className The qualified name of the top-level class.
+     * @param code The source code.
+     *
+     * @return A class loader for the compiled classes, or <code>null</code> if compilation failed.
+     *
+     * @throws IOException unwanted.
+     * @throws URISyntaxException unwanted.
+     */
+    private ClassLoader compile(String className, String code) throws IOException, URISyntaxException {
+        Path output = folder.newFolder().toPath();
+        String classPath = new File(JsonCodec.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getPath();
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ClassLoader result = null;
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-d", output.toString(), "-s", output.toString(), "-classpath", classPath), null,
+                    Collections.singletonList(new Source(className, code)));
+            task.setProcessors(Collections.singletonList(new JsonCodecProcessor()));
+            if (task.call()) {
+                result = new URLClassLoader(new URL[] {output.toUri().toURL()}, getClass().getClassLoader());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the generated codec of a class.
+     *
+     * @param loader The class loader of the compiled classes.
+     * @param codecName The qualified name of the codec class.
+     *
+     * @return The codec.
+     *
+     * @throws ReflectiveOperationException unwanted.
+     */
+    @SuppressWarnings("unchecked")
+    private static JsonCodec<Object> getCodec(ClassLoader loader, String codecName)
+            throws ReflectiveOperationException {
+        return (JsonCodec<Object>) loader.loadClass(codecName).getField("INSTANCE").get(null);
+    }
+    
+    /**
+     * Returns the messages of the compile errors.
+     *
+     * @return The error messages.
+     */
+    private List<String> getErrors() {
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                result.add(diagnostic.getMessage(null));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Tests reading and writing with generated codecs.
+     *
+     * @throws Exception unwanted.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        ClassLoader loader = compile("sample.Person", PERSON);
+        assertThat(getErrors().toString(), loader != null, is(true));
+        JsonCodec<Object> codec = getCodec(loader, "sample.PersonJsonCodec");
+        
+        String json = "{ \"id\": 10000000000, \"name\": \"Ann\", \"age\": 42, \"e-mail\": \"ann@example.com\", "
+                + "\"active\": true, \"number\": null, \"weight\": 61.5, \"role\": \"ADMIN\", "
+                + "\"address\": { \"city\": \"Hildesheim\", \"zip\": 31141 }, "
+                + "\"friends\": [ { \"id\": 0, \"name\": \"Bob\", \"age\": 7, \"e-mail\": null, \"active\": false, "
+                + "\"number\": 3, \"weight\": 0.1, \"role\": null, \"address\": null, \"friends\": [], "
+                + "\"scores\": null, \"extra\": { \"x\": [ 1 ] } } ], "
+                + "\"scores\": { \"math\": [ 1.5, 2.0 ] }, \"extra\": null }";
+        assertThat(codec.toJson(codec.fromJson(json)), is(json));
+        
+        assertThat(codec.toJson(codec.fromJson("{\"name\": \"Eve\", \"unknown\": [{\"name\": 1}], \"ignored\": 5}")),
+                is("{ \"id\": 0, \"name\": \"Eve\", \"age\": -1, \"e-mail\": null, \"active\": false, "
+                + "\"number\": null, \"weight\": 0.0, \"role\": null, \"address\": null, \"friends\": null, "
+                + "\"scores\": null, \"extra\": null }"));
+        assertThat(codec.fromJson("null") == null, is(true));
+        
+        JsonCodec<Object> addressCodec = getCodec(loader, "sample.Person_AddressJsonCodec");
+        assertThat(addressCodec.toJson(addressCodec.fromJson("{\"zip\": 1}")), is("{ \"city\": null, \"zip\": 1 }"));
+    }
+    
+    /**
+     * Tests that final fields are written, but skipped when reading.
+     *
+     * @throws Exception unwanted.
+     */
+    @Test
+    public void testFinalFields() throws Exception {
+        ClassLoader loader = compile("sample.Constants", String.join("\n",
+                "package sample;",
+                "import net.ssehub.json.JsonMapped;",
+                "@JsonMapped",
+                "public class Constants {",
+                "    public final String name = new String(\"fixed\");",
+                "    private final int count;",
+                "    int other;",
+                "    public Constants() { count = 3; }",
+                "    public int getCount() { return count; }",
+                "}"));
+        assertThat(getErrors().toString(), loader != null, is(true));
+        JsonCodec<Object> codec = getCodec(loader, "sample.ConstantsJsonCodec");
+        
+        assertThat(codec.toJson(codec.fromJson("{\"name\": \"changed\", \"count\": [5], \"other\": 7}")),
+                is("{ \"name\": \"fixed\", \"count\": 3, \"other\": 7 }"));
+    }
+    
+    /**
+     * Tests that values of the wrong type throw a {@link ParsingException}.
+     *
+     * @throws Exception wanted {@link ParsingException}.
+     */
+    @Test(expected = ParsingException.class)
+    public void testWrongType() throws Exception {
+        ClassLoader loader = compile("sample.Person", PERSON);
+        getCodec(loader, "sample.PersonJsonCodec").fromJson("{\"age\": \"old\"}");
+    }
+    
+    /**
+     * Tests that unsupported classes and fields are reported as compile errors.
+     *
+     * @throws Exception unwanted.
+     */
+    @Test
+    public void testErrors() throws Exception {
+        ClassLoader loader = compile("sample.Invalid", String.join("\n",
+                "package sample;",
+                "import net.ssehub.json.JsonKey;",
+                "import net.ssehub.json.JsonMapped;",
+                "@JsonMapped",
+                "public class Invalid {",
+                "    Object object;",
+                "    private String hidden;",
+                "    @JsonKey(\"object\") int other;",
+                "    @JsonMapped",
+                "    class Inner {",
+                "    }",
+                "}"));
+        
+        assertThat(loader == null, is(true));
+        List<String> errors = getErrors();
+        assertThat(errors.toString(), errors.size(), is(4));
+        assertThat(errors.get(0), containsString("Unsupported type java.lang.Object of field object"));
+        assertThat(errors.get(1), containsString("Field hidden is not accessible and has no getter and setter"));
+        assertThat(errors.get(2), containsString("Duplicate JSON key \"object\""));
+        assertThat(errors.get(3), containsString("static nested classes"));
+    }
+    
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonTokenReader}, the {@link JsonWriter} and the {@link JsonCodecs}.
+ *
+ * @author Adam
+ */
+public class JsonCodecTest {
+    
+    /**
+     * Creates a reader for the given JSON string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The reader.
+     */
+    private static JsonTokenReader reader(String json) {
+        return new JsonTokenReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * Tests the typed read methods of the {@link JsonTokenReader}.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testReader() throws ParsingException, IOException {
+        JsonTokenReader reader = reader("{\"a\": [1, 10000000000, 2.5, true, null, \"x\"], "
+                + "\"b\": {\"c\": [{}]}, \"d\": 1}");
+        reader.expect(JsonToken.START_OBJECT);
+        assertThat(reader.nextKey(), is("a"));
+        reader.expect(JsonToken.START_LIST);
+        assertThat(reader.hasNextElement(), is(true));
+        assertThat(reader.readInt(), is(1));
+        assertThat(reader.readLong(), is(10000000000L));
+        assertThat(reader.readDouble(), is(2.5));
+        assertThat(reader.readBoolean(), is(true));
+        assertThat(reader.readNull(), is(true));
+        assertThat(reader.readNull(), is(false));
+        assertThat(reader.readString(), is("x"));
+        assertThat(reader.hasNextElement(), is(false));
+        assertThat(reader.nextKey(), is("b"));
+        reader.skipValue();
+        assertThat(reader.nextKey(), is("d"));
+        assertThat(reader.readElement(), is((JsonElement) new JsonNumber(1)));
+        assertThat(reader.nextKey(), nullValue());
+        assertThat(reader.next(), is(JsonToken.END_OF_INPUT));
+    }
+    
+    /**
+     * Tests that a value of the wrong type throws a {@link ParsingException}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testReaderWrongType() throws ParsingException, IOException {
+        reader("2.5").readInt();
+    }
+    
+    /**
+     * Tests that {@link JsonTokenReader#readElement()} creates the same tree as the {@link JsonParser}.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testReadElement() throws ParsingException, IOException {
+        String json = "{ \"a\": [ 1, { \"b\": null }, [], [ \"c\", false ] ], \"d\": {} }";
+        JsonElement element = reader(json).readElement();
+        assertThat(element.toString(), is(json));
+    }
+    
+    /**
+     * Tests that the {@link JsonWriter} creates the same format as {@link JsonSerializer}.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testWriter() throws IOException {
+        StringBuilder result = new StringBuilder();
+        JsonWriter writer = new JsonWriter(result);
+        writer.beginObject();
+        writer.key("a\"");
+        writer.beginList();
+        writer.value(1);
+        writer.value(2.5);
+        writer.value(Double.NaN);
+        writer.value(true);
+        writer.value((String) null);
+        writer.value("x\n");
+        writer.beginObject();
+        writer.endObject();
+        writer.beginList();
+        writer.endList();
+        writer.endList();
+        writer.key("b");
+        writer.value(new JsonList());
+        writer.key("c");
+        writer.nullValue();
+        writer.endObject();
+        
+        assertThat(result.toString(), is("{ \"a\\\"\": [ 1, 2.5, null, true, null, \"x\\n\", {}, [] ], \"b\": [], "
+                + "\"c\": null }"));
+    }
+    
+    /**
+     * Tests the list, map and enum codecs.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testContainerCodecs() throws ParsingException {
+        JsonCodec<Map<String, List<RoundingMode>>> codec = JsonCodecs.map(
+                JsonCodecs.list(JsonCodecs.forEnum(RoundingMode.values())));
+        Map<String, List<RoundingMode>> expected = new LinkedHashMap<>();
+        expected.put("b", Arrays.asList(RoundingMode.UP, null));
+        expected.put("a", null);
+        
+        String json = "{ \"b\": [ \"UP\", null ], \"a\": null }";
+        assertThat(codec.fromJson(json), is(expected));
+        assertThat(codec.toJson(expected), is(json));
+        assertThat(codec.fromJson("null"), nullValue());
+    }
+    
+    /**
+     * Tests that an unknown enum constant throws a {@link ParsingException}.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testUnknownEnumConstant() throws ParsingException {
+        JsonCodecs.forEnum(RoundingMode.values()).fromJson("\"SIDEWAYS\"");
+    }
+    
+    /**
+     * Tests that {@link JsonCodec#fromJson(String)} rejects trailing content.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testTrailingContent() throws ParsingException {
+        JsonCodecs.INTEGER.fromJson("1 2");
+    }
+    
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonDiff}.
+ *
+ * @author Adam
+ */
+public class JsonDiffTest {
+    
+    /**
+     * Parses the given JSON string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException If the string is not valid JSON.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Computes the diff of the given documents and checks that applying it to the source results in the target.
+     *
+     * @param diff The diff to use.
+     * @param source The source document.
+     * @param target The target document.
+     *
+     * @return The JSON representation of the patch.
+     *
+     * @throws JsonPatchException unwanted.
+     */
+    private static String assertDiff(JsonDiff diff, JsonElement source, JsonElement target)
+            throws JsonPatchException {
+        JsonPatch patch = diff.diff(source, target);
+        assertThat(patch.applyToCopy(source), is(target));
+        return patch.toString();
+    }
+    
+    /**
+     * Tests that equal documents result in an empty patch.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEqual() throws JsonPatchException, ParsingException, IOException {
+        String json = "{\"a\": [1, 2, {\"b\": null}], \"c\": \"d\"}";
+        assertThat(assertDiff(new JsonDiff(), parse(json), parse(json)), is("[]"));
+    }
+    
+    /**
+     * Tests the operations created for changed object members.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testObjects() throws JsonPatchException, ParsingException, IOException {
+        assertThat(assertDiff(new JsonDiff(), parse("{\"a\": 1, \"b\": {\"c\": 2, \"d\": 3}}"),
+                parse("{\"b\": {\"c\": 2, \"d\": 4}, \"e\": true}")),
+                is("[ { \"op\": \"remove\", \"path\": \"/a\" }, "
+                + "{ \"op\": \"replace\", \"path\": \"/b/d\", \"value\": 4 }, "
+                + "{ \"op\": \"add\", \"path\": \"/e\", \"value\": true } ]"));
+        assertThat(assertDiff(new JsonDiff(), parse("{\"a\": 1}"), parse("[1]")),
+                is("[ { \"op\": \"replace\", \"path\": \"\", \"value\": [ 1 ] } ]"));
+    }
+    
+    /**
+     * Tests that inserting and removing elements in a list doesn't replace the following elements.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testListAlignment() throws JsonPatchException, ParsingException, IOException {
+        assertThat(assertDiff(new JsonDiff(), parse("[1, 2, 3, 4, 5]"), parse("[1, 2, 9, 3, 4, 5]")),
+                is("[ { \"op\": \"add\", \"path\": \"/2\", \"value\": 9 } ]"));
+        assertThat(assertDiff(new JsonDiff(), parse("[1, 2, 3, 4, 5]"), parse("[2, 3, 5]")),
+                is("[ { \"op\": \"remove\", \"path\": \"/0\" }, { \"op\": \"remove\", \"path\": \"/2\" } ]"));
+        assertThat(assertDiff(new JsonDiff(), parse("[1, [2, 3], 4]"), parse("[1, [2, 5], 4]")),
+                is("[ { \"op\": \"replace\", \"path\": \"/1/1\", \"value\": 5 } ]"));
+    }
+    
+    /**
+     * Tests aligning list elements by an identity member.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIdentityMember() throws JsonPatchException, ParsingException, IOException {
+        JsonElement source = parse("[{\"id\": 1, \"v\": \"a\"}, {\"id\": 2, \"v\": \"b\"}, {\"id\": 3, \"v\": \"c\"}]");
+        JsonElement target = parse("[{\"id\": 0, \"v\": \"x\"}, {\"id\": 1, \"v\": \"a\"}, {\"id\": 2, \"v\": \"B\"},"
+                + " {\"id\": 3, \"v\": \"c\"}]");
+        
+        assertThat(assertDiff(new JsonDiff("id"), source, target),
+                is("[ { \"op\": \"add\", \"path\": \"/0\", \"value\": { \"id\": 0, \"v\": \"x\" } }, "
+                + "{ \"op\": \"replace\", \"path\": \"/2/v\", \"value\": \"B\" } ]"));
+        assertDiff(new JsonDiff(), source, target);
+    }
+    
+    /**
+     * Tests that lists that differ in more elements than {@link JsonDiff#MAX_EDIT_DISTANCE} are aligned by position.
+     *
+     * @throws JsonPatchException unwanted.
+     */
+    @Test
+    public void testLargeEditDistance() throws JsonPatchException {
+        JsonList source = new JsonList();
+        JsonList target = new JsonList();
+        for (int i = 0; i < 3000; i++) {
+            source.addElement(new JsonNumber(i));
+            target.addElement(new JsonNumber(i % 2 == 0 ? i : -i));
+        }
+        target.addElement(JsonNull.INSTANCE);
+        
+        JsonPatch patch = new JsonDiff().diff(source, target);
+        assertThat(patch.applyToCopy(source), is((JsonElement) target));
+        assertThat(patch.getSize(), is(1501));
+    }
+    
+    /**
+     * Tests random modifications of random documents.
+     *
+     * @throws JsonPatchException unwanted.
+     */
+    @Test
+    public void testRandomModifications() throws JsonPatchException {
+        Random random = new Random(123);
+        for (int i = 0; i < 200; i++) {
+            JsonElement source = createRandom(random, 4);
+            JsonElement target = source.deepCopy();
+            for (int j = random.nextInt(5); j >= 0; j--) {
+                target = modifyRandom(random, target);
+            }
+            assertDiff(new JsonDiff(), source, target);
+            assertDiff(new JsonDiff("k0"), source, target);
+        }
+    }
+    
+    /**
+     * Creates a random document.
+     *
+     * @param random The random number generator.
+     * @param depth The maximum nesting depth.
+     *
+     * @return The random document.
+     */
+    private static JsonElement createRandom(Random random, int depth) {
+        JsonElement result;
+        int type = random.nextInt(depth > 0 ? 5 : 3);
+        if (type == 0) {
+            result = new JsonNumber(random.nextInt(4));
+        } else if (type == 1) {
+            result = new JsonString("s" + random.nextInt(4));
+        } else if (type == 2) {
+            result = random.nextBoolean() ? JsonNull.INSTANCE : JsonBoolean.get(random.nextBoolean());
+        } else if (type == 3) {
+            JsonList list = new JsonList();
+            for (int i = random.nextInt(8); i > 0; i--) {
+                list.addElement(createRandom(random, depth - 1));
+            }
+            result = list;
+        } else {
+            JsonObject object = new JsonObject();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                object.putElement("k" + random.nextInt(6), createRandom(random, depth - 1));
+            }
+            result = object;
+        }
+        return result;
+    }
+    
+    /**
+     * Applies a random modification to a random element of the document.
+     *
+     * @param random The random number generator.
+     * @param document The document to modify.
+     *
+     * @return The modified document; a new element if the root was replaced.
+     */
+    private static JsonElement modifyRandom(Random random, JsonElement document) {
+        JsonElement result = document;
+        JsonElement current = document;
+        while (random.nextInt(3) != 0 && (current instanceof JsonList && ((JsonList) current).getSize() > 0
+                || current instanceof JsonObject && ((JsonObject) current).getSize() > 0)) {
+            if (current instanceof JsonList) {
+                JsonList list = (JsonList) current;
+                current = list.getElement(random.nextInt(list.getSize()));
+            } else {
+                current = ((JsonObject) current).iterator().next().getValue();
+            }
+        }
+        
+        if (current instanceof JsonList) {
+            JsonList list = (JsonList) current;
+            int index = random.nextInt(list.getSize() + 1);
+            if (index < list.getSize() && random.nextBoolean()) {
+                list.removeElement(index);
+            } else {
+                list.addElement(index, createRandom(random, 2));
+            }
+        } else if (current instanceof JsonObject) {
+            ((JsonObject) current).putElement("k" + random.nextInt(6), createRandom(random, 2));
+        } else if (current == document) {
+            result = createRandom(random, 2);
+        }
+        return result;
+    }
+    
+}
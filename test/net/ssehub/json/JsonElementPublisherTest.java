@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import net.ssehub.json.JsonElementPublisher.Subscriber;
+import net.ssehub.json.JsonElementPublisher.Subscription;
+
+/**
+ * Tests the {@link JsonElementPublisher} and the incremental parsing methods of {@link JsonParser}.
+ *
+ * @author Adam
+ */
+public class JsonElementPublisherTest {
+    
+    /**
+     * A subscriber that records all events.
+     */
+    private static class RecordingSubscriber implements Subscriber {
+        
+        private Subscription subscription;
+        
+        private List<JsonElement> elements = new ArrayList<>();
+        
+        private Throwable error;
+        
+        private boolean completed;
+        
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+        
+        @Override
+        public void onNext(JsonElement element) {
+            elements.add(element);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+        }
+        
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+        
+    }
+    
+    /**
+     * Creates a parser for the given input.
+     *
+     * @param json The input.
+     *
+     * @return The parser.
+     */
+    private static JsonParser parser(String json) {
+        return new JsonParser(new StringReader(json));
+    }
+    
+    /**
+     * Creates a parser for the given input, which records when it is closed.
+     *
+     * @param json The input.
+     * @param closed Set to <code>true</code> when the parser is closed.
+     *
+     * @return The parser.
+     */
+    private static JsonParser parser(String json, AtomicBoolean closed) {
+        return new JsonParser(new StringReader(json) {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        });
+    }
+    
+    /**
+     * Tests reading a top-level list element by element.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testParseNextListElement() throws ParsingException, IOException {
+        try (JsonParser parser = parser(" [ 1, \"a\" , [2] ] ")) {
+            assertThat(parser.parseNextListElement(), is(new JsonNumber(1)));
+            assertThat(parser.parseNextListElement(), is(new JsonString("a")));
+            JsonList inner = new JsonList();
+            inner.addElement(new JsonNumber(2));
+            assertThat(parser.parseNextListElement(), is(inner));
+            assertThat(parser.parseNextListElement(), nullValue());
+            assertThat(parser.parseNextListElement(), nullValue());
+        }
+        try (JsonParser parser = parser("[]")) {
+            assertThat(parser.parseNextListElement(), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that malformed lists are rejected when reading element by element.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testParseNextListElementMalformed() throws IOException {
+        String[] inputs = {"{}", "[1 2]", "[1,]", "[1] 2", "[1"};
+        for (String input : inputs) {
+            try (JsonParser parser = parser(input)) {
+                while (parser.parseNextListElement() != null) {
+                    // read all elements
+                }
+                throw new AssertionError("Expected exception for " + input);
+            } catch (ParsingException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Tests reading a sequence of newline-delimited elements.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testParseNextDocument() throws ParsingException, IOException {
+        try (JsonParser parser = parser("{\"a\": 1}\n{\"a\": 2}\n\n3\n")) {
+            assertThat(parser.parseNextDocument(), instanceOf(JsonObject.class));
+            assertThat(parser.parseNextDocument(), instanceOf(JsonObject.class));
+            assertThat(parser.parseNextDocument(), is(new JsonNumber(3)));
+            assertThat(parser.parseNextDocument(), nullValue());
+        }
+    }
+    
+    /**
+     * Tests that elements in a sequence must be separated by whitespace.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testParseNextDocumentNoSeparator() throws ParsingException, IOException {
+        try (JsonParser parser = parser("truefalse")) {
+            parser.parseNextDocument();
+        }
+    }
+    
+    /**
+     * Tests that elements are only parsed as requested.
+     */
+    @Test
+    public void testDemand() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new JsonElementPublisher(parser("[1, 2, 3]"), false).subscribe(subscriber);
+        assertThat(subscriber.elements.size(), is(0));
+        
+        subscriber.subscription.request(1);
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.completed, is(false));
+        
+        subscriber.subscription.request(2);
+        assertThat(subscriber.elements.size(), is(3));
+        assertThat(subscriber.completed, is(false));
+        
+        subscriber.subscription.request(1);
+        assertThat(subscriber.elements.size(), is(3));
+        assertThat(subscriber.completed, is(true));
+        assertThat(subscriber.error, nullValue());
+    }
+    
+    /**
+     * Tests a subscriber that requests the next element from within {@link Subscriber#onNext(JsonElement)}.
+     */
+    @Test
+    public void testRequestFromOnNext() {
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(JsonElement element) {
+                super.onNext(element);
+                super.subscription.request(1);
+            }
+        };
+        new JsonElementPublisher(parser("1\n2\n3\n4"), true).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        
+        assertThat(subscriber.elements.size(), is(4));
+        assertThat(subscriber.completed, is(true));
+    }
+    
+    /**
+     * Tests that a parsing error is passed to the subscriber.
+     */
+    @Test
+    public void testError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new JsonElementPublisher(parser("[1, x]"), false).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.error, instanceOf(ParsingException.class));
+        assertThat(subscriber.completed, is(false));
+    }
+    
+    /**
+     * Tests that no elements are emitted after cancelling.
+     */
+    @Test
+    public void testCancel() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new JsonElementPublisher(parser("[1, 2]"), false).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.completed, is(false));
+    }
+    
+    /**
+     * Tests that invalid requests and a second subscription are signaled as errors.
+     */
+    @Test
+    public void testInvalidUsage() {
+        JsonElementPublisher publisher = new JsonElementPublisher(parser("[1]"), false);
+        RecordingSubscriber first = new RecordingSubscriber();
+        publisher.subscribe(first);
+        first.subscription.request(0);
+        assertThat(first.error, instanceOf(IllegalArgumentException.class));
+        
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(second);
+        assertThat(second.error, instanceOf(IllegalStateException.class));
+    }
+    
+    /**
+     * Tests that an exception thrown by {@link Subscriber#onNext(JsonElement)} ends the stream.
+     */
+    @Test
+    public void testThrowingSubscriber() {
+        IllegalStateException thrown = new IllegalStateException("subscriber failed");
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(JsonElement element) {
+                super.onNext(element);
+                throw thrown;
+            }
+        };
+        AtomicBoolean closed = new AtomicBoolean();
+        new JsonElementPublisher(parser("[1, 2, 3]", closed), false).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.error, is((Throwable) thrown));
+        assertThat(closed.get(), is(true));
+        
+        subscriber.subscription.request(1);
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.completed, is(false));
+    }
+    
+    /**
+     * Tests that cancelling from another thread doesn't wait for a running unbounded request.
+     *
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testCancelFromOtherThread() throws InterruptedException {
+        AtomicBoolean cancelReturned = new AtomicBoolean();
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(JsonElement element) {
+                super.onNext(element);
+                Thread canceller = new Thread(() -> {
+                    super.subscription.cancel();
+                    cancelReturned.set(true);
+                });
+                canceller.start();
+                try {
+                    canceller.join(5000);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        AtomicBoolean closed = new AtomicBoolean();
+        new JsonElementPublisher(parser("1\n2\n3\n4", closed), true).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        
+        assertThat(cancelReturned.get(), is(true));
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.completed, is(false));
+        assertThat(closed.get(), is(true));
+    }
+    
+}
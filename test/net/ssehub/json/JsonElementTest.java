@@ -21,8 +21,10 @@ import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.math.BigDecimal;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 
@@ -638,4 +640,228 @@ public class JsonElementTest {
         assertThat(new JsonObject(), not(is(new JsonString("{}"))));
     }
     
+    /**
+     * Tests that the cached hashes of objects and lists are invalidated when a nested child is modified.
+     */
+    @Test
+    public void testCachedHashNestedModification() {
+        JsonObject inner = new JsonObject();
+        inner.putElement("a", new JsonNumber(1));
+        JsonList list = new JsonList();
+        list.addElement(inner);
+        JsonObject outer = new JsonObject();
+        outer.putElement("list", list);
+        
+        JsonObject copyInner = new JsonObject();
+        copyInner.putElement("a", new JsonNumber(1));
+        JsonList copyList = new JsonList();
+        copyList.addElement(copyInner);
+        JsonObject copy = new JsonObject();
+        copy.putElement("list", copyList);
+        
+        int hash = outer.hashCode();
+        long fingerprint = outer.fingerprint();
+        assertThat(copy.hashCode(), is(hash));
+        assertThat(copy.fingerprint(), is(fingerprint));
+        assertThat(outer, is(copy));
+        
+        inner.putElement("a", new JsonNumber(2));
+        assertThat(outer.hashCode(), not(is(hash)));
+        assertThat(outer.fingerprint(), not(is(fingerprint)));
+        assertThat(outer, not(is(copy)));
+        
+        inner.putElement("a", new JsonNumber(1));
+        assertThat(outer.hashCode(), is(hash));
+        assertThat(outer.fingerprint(), is(fingerprint));
+        assertThat(outer, is(copy));
+        
+        Iterator<JsonElement> it = list.iterator();
+        it.next();
+        it.remove();
+        assertThat(outer.hashCode(), not(is(hash)));
+        assertThat(outer, not(is(copy)));
+    }
+    
+    /**
+     * Tests that removing object members through the iterator invalidates the cached hash, and that entries are
+     * read-only.
+     */
+    @Test
+    public void testCachedHashObjectIterator() {
+        JsonObject obj = new JsonObject();
+        obj.putElement("a", new JsonNumber(1));
+        obj.putElement("b", new JsonNumber(2));
+        int hash = obj.hashCode();
+        
+        Iterator<Entry<String, JsonElement>> it = obj.iterator();
+        Entry<String, JsonElement> entry = it.next();
+        try {
+            entry.setValue(new JsonNumber(3));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        it.remove();
+        
+        assertThat(obj.getSize(), is(1));
+        assertThat(obj.hashCode(), not(is(hash)));
+    }
+    
+    /**
+     * Tests the fingerprints of elements.
+     */
+    @Test
+    public void testFingerprint() {
+        assertThat(JsonNull.INSTANCE.fingerprint(), is(JsonNull.INSTANCE.fingerprint()));
+        assertThat(JsonBoolean.TRUE.fingerprint(), not(is(JsonBoolean.FALSE.fingerprint())));
+        assertThat(new JsonString("abc").fingerprint(), is(new JsonString("abc").fingerprint()));
+        assertThat(new JsonString("abc").fingerprint(), not(is(new JsonString("abd").fingerprint())));
+        
+        // equality of numbers depends on their type
+        assertThat(new JsonNumber(1).fingerprint(), is(new JsonNumber(1).fingerprint()));
+        assertThat(new JsonNumber(1).fingerprint(), not(is(new JsonNumber(1L).fingerprint())));
+        assertThat(new JsonNumber(1.5).fingerprint(), is(new JsonNumber(1.5).fingerprint()));
+        assertThat(new JsonNumber(new BigDecimal("1.50")).fingerprint(),
+                not(is(new JsonNumber(new BigDecimal("1.5")).fingerprint())));
+        
+        // the order of object members is not relevant, the order of list elements is
+        JsonObject o1 = new JsonObject();
+        o1.putElement("a", new JsonNumber(1));
+        o1.putElement("b", new JsonNumber(2));
+        JsonObject o2 = new JsonObject();
+        o2.putElement("b", new JsonNumber(2));
+        o2.putElement("a", new JsonNumber(1));
+        assertThat(o1, is(o2));
+        assertThat(o1.fingerprint(), is(o2.fingerprint()));
+        
+        JsonObject o3 = new JsonObject();
+        o3.putElement("a", new JsonNumber(2));
+        o3.putElement("b", new JsonNumber(1));
+        assertThat(o1.fingerprint(), not(is(o3.fingerprint())));
+        
+        JsonList l1 = new JsonList();
+        l1.addElement(new JsonNumber(1));
+        l1.addElement(new JsonNumber(2));
+        JsonList l2 = new JsonList();
+        l2.addElement(new JsonNumber(2));
+        l2.addElement(new JsonNumber(1));
+        assertThat(l1.fingerprint(), not(is(l2.fingerprint())));
+        
+        // an empty list, an empty object, and a list containing an empty list differ
+        JsonList nested = new JsonList();
+        nested.addElement(new JsonList());
+        assertThat(new JsonList().fingerprint(), not(is(new JsonObject().fingerprint())));
+        assertThat(new JsonList().fingerprint(), not(is(nested.fingerprint())));
+    }
+    
+    /**
+     * Tests that an unmodified document can be hashed by several threads, while unrelated modifications invalidate
+     * the cached hashes.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 30000)
+    public void testCachedHashConcurrent() throws InterruptedException {
+        JsonObject document = new JsonObject();
+        for (int i = 0; i < 50; i++) {
+            JsonList list = new JsonList();
+            list.addElement(new JsonNumber(i));
+            list.addElement(new JsonString("s" + i));
+            document.putElement("k" + i, list);
+        }
+        int expectedHash = document.deepCopy().hashCode();
+        long expectedFingerprint = document.deepCopy().fingerprint();
+        
+        JsonList unrelated = new JsonList();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicBoolean wrong = new AtomicBoolean();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000 && !stop.get(); i++) {
+                    if (document.hashCode() != expectedHash || document.fingerprint() != expectedFingerprint) {
+                        wrong.set(true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (int i = 0; i < 20000; i++) {
+            unrelated.addElement(JsonNull.INSTANCE);
+            unrelated.hashCode();
+        }
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(wrong.get(), is(false));
+    }
+    
+    /**
+     * Tests that {@link JsonElement#deepCopy()} creates an equal, independent copy that shares immutable values.
+     */
+    @Test
+    public void testDeepCopy() {
+        JsonString string = new JsonString("value");
+        JsonObject nested = new JsonObject();
+        nested.putElement("string", string);
+        JsonList list = new JsonList();
+        list.addElement(nested);
+        list.addElement(new JsonNumber(1.5));
+        JsonObject original = new JsonObject();
+        original.putElement("list", list);
+        original.putElement("null", JsonNull.INSTANCE);
+        
+        JsonObject copy = original.deepCopy();
+        assertThat(copy, is(original));
+        assertThat(copy.toString(), is(original.toString()));
+        assertThat(copy.getElement("list"), not(sameInstance((JsonElement) list)));
+        
+        JsonObject copiedNested = (JsonObject) ((JsonList) copy.getElement("list")).getElement(0);
+        assertThat(copiedNested, not(sameInstance(nested)));
+        assertThat(copiedNested.getElement("string"), sameInstance((JsonElement) string));
+        
+        copiedNested.putElement("added", JsonBoolean.TRUE);
+        assertThat(nested.getSize(), is(1));
+        assertThat(copy.equals(original), is(false));
+    }
+    
+    /**
+     * Tests that {@link JsonElement#deepCopy()} works for documents that are nested too deep for recursion.
+     */
+    @Test
+    public void testDeepCopyDeeplyNested() {
+        JsonList root = new JsonList();
+        JsonList current = root;
+        for (int i = 0; i < 100000; i++) {
+            JsonList child = new JsonList();
+            current.addElement(child);
+            current = child;
+        }
+        current.addElement(new JsonString("leaf"));
+        
+        JsonList copy = root.deepCopy();
+        for (int i = 0; i < 100000; i++) {
+            copy = (JsonList) copy.getElement(0);
+        }
+        assertThat(copy.getElement(0), is(new JsonString("leaf")));
+    }
+    
+    /**
+     * Tests that {@link JsonElement#deepCopy()} of persistent elements creates mutable copies.
+     */
+    @Test
+    public void testDeepCopyPersistent() {
+        PersistentJsonObject persistent = new PersistentJsonObject()
+                .with("list", new PersistentJsonList().plus(new JsonNumber(1)));
+        
+        JsonObject copy = persistent.deepCopy();
+        assertThat(copy.getClass() == JsonObject.class, is(true));
+        assertThat(copy, is((JsonObject) persistent));
+        
+        ((JsonList) copy.getElement("list")).addElement(new JsonNumber(2));
+        assertThat(((JsonList) persistent.getElement("list")).getSize(), is(1));
+    }
+    
 }
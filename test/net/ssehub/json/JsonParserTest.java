@@ -104,4 +104,316 @@ public class JsonParserTest {
         }
     }
     
+    /**
+     * Parses the given input with the given options.
+     * 
+     * @param json The input to parse.
+     * @param options The options to use.
+     * 
+     * @return The parsed element.
+     * 
+     * @throws ParsingException If parsing fails.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json, ParserOptions options) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json), options)) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that input within all limits is parsed normally.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testWithinLimits() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxInputLength(20);
+        options.setMaxStringLength(3);
+        options.setMaxNumberLength(4);
+        options.setMaxObjectSize(1);
+        options.setMaxListSize(2);
+        options.setMaxElementCount(4);
+        
+        JsonList list = new JsonList();
+        list.addElement(new JsonString("abc"));
+        list.addElement(new JsonNumber(-1.5));
+        JsonObject expected = new JsonObject();
+        expected.putElement("abc", list);
+        
+        assertThat(parse("{\"abc\":[\"abc\",-1.5]}", options), is(expected));
+    }
+    
+    /**
+     * Tests that the maximum input length is enforced.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxInputLength() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxInputLength(5);
+        parse("[1, 2]", options);
+    }
+    
+    /**
+     * Tests that the maximum string length is enforced for values.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxStringLength() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxStringLength(3);
+        parse("\"abcd\"", options);
+    }
+    
+    /**
+     * Tests that the maximum string length is enforced for keys.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxStringLengthKey() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxStringLength(3);
+        parse("{\"abcd\": 1}", options);
+    }
+    
+    /**
+     * Tests that the maximum number length is enforced.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxNumberLength() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxNumberLength(4);
+        parse("1.5e10", options);
+    }
+    
+    /**
+     * Tests that the maximum object size is enforced.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxObjectSize() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxObjectSize(1);
+        parse("{\"a\": 1, \"a\": 2}", options);
+    }
+    
+    /**
+     * Tests that the maximum list size is enforced.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxListSize() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxListSize(2);
+        parse("[1, 2, 3]", options);
+    }
+    
+    /**
+     * Tests that the maximum element count is enforced.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxElementCount() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxElementCount(3);
+        parse("[[1], [2]]", options);
+    }
+    
+    /**
+     * Tests that the maximum nesting depth is configurable.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMaxNestingDepth() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxNestingDepth(3);
+        parse("[[[[1]]]]", options);
+    }
+    
+    /**
+     * Tests that the maximum nesting depth itself is allowed, like the other limits.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testMaxNestingDepthInclusive() throws IOException, ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxNestingDepth(3);
+        parse("[[[1]]]", options);
+    }
+    
+    /**
+     * Tests that the default maximum nesting depth allows 1199 levels, but not 1200.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testDefaultMaxNestingDepth() throws IOException, ParsingException {
+        parse(nestedLists(1199), new ParserOptions());
+        try {
+            parse(nestedLists(1200), new ParserOptions());
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage().endsWith("Exceeded maximum nesting depth of 1199"), is(true));
+        }
+    }
+    
+    /**
+     * Creates nested lists of the given depth.
+     * 
+     * @param depth The nesting depth.
+     * 
+     * @return The JSON string.
+     */
+    private static String nestedLists(int depth) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            result.append('[');
+        }
+        for (int i = 0; i < depth; i++) {
+            result.append(']');
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Parses the given string and returns the expected exception.
+     * 
+     * @param json The malformed JSON string.
+     * 
+     * @return The exception thrown by the parser.
+     * 
+     * @throws IOException unwanted.
+     */
+    private static ParsingException parseInvalid(String json) throws IOException {
+        ParsingException result = null;
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            parser.parse();
+        } catch (ParsingException e) {
+            result = e;
+        }
+        if (result == null) {
+            throw new AssertionError("Expected ParsingException");
+        }
+        return result;
+    }
+    
+    /**
+     * Tests the line, column and offset of errors.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testErrorPosition() throws IOException {
+        ParsingException e = parseInvalid("{\n  \"a\": 1,\n  \"b\" 2\n}");
+        assertThat(e.getMessage(), is("Line 3, column 7: Expecting ':' after key, got 2"));
+        assertThat(e.getLine(), is(3L));
+        assertThat(e.getColumn(), is(7L));
+        assertThat(e.getOffset(), is(18L));
+        
+        e = parseInvalid("[1,\r\n x]");
+        assertThat(e.getLine(), is(2L));
+        assertThat(e.getColumn(), is(2L));
+        
+        e = parseInvalid("[1,\r\r x]");
+        assertThat(e.getLine(), is(3L));
+        assertThat(e.getColumn(), is(2L));
+        
+        e = parseInvalid("[1] 2");
+        assertThat(e.getColumn(), is(5L));
+    }
+    
+    /**
+     * Tests the position of errors that were previously reported without any.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testErrorPositionInStringAndNumber() throws IOException {
+        ParsingException e = parseInvalid("[\"ab\tc\"]");
+        assertThat(e.getMessage(), is("Line 1, column 5: Unescaped control character 9"));
+        
+        e = parseInvalid("[1, 012]");
+        assertThat(e.getMessage(), is("Line 1, column 6: Number may not start with leading 0"));
+        
+        e = parseInvalid("[-x]");
+        assertThat(e.getMessage(), is("Line 1, column 3: Got no integer digits"));
+    }
+    
+    /**
+     * Tests the position of errors after the input has been read in several blocks.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testErrorPositionInLongInput() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            json.append("1,\n");
+        }
+        json.append("   x]");
+        
+        ParsingException e = parseInvalid(json.toString());
+        assertThat(e.getLine(), is(5001L));
+        assertThat(e.getColumn(), is(4L));
+        assertThat(e.getOffset(), is((long) json.length() - 2));
+    }
+    
+    /**
+     * Tests that the maximum input length is enforced, also when reading in blocks.
+     * 
+     * @throws IOException unwanted.
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testMaxInputLengthExact() throws IOException, ParsingException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            json.append("1,");
+        }
+        json.append("1]");
+        
+        ParserOptions options = new ParserOptions();
+        options.setMaxInputLength(json.length());
+        parse(json.toString(), options);
+        
+        options.setMaxInputLength(json.length() - 1);
+        try {
+            parse(json.toString(), options);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getOffset(), is((long) json.length() - 1));
+        }
+    }
+    
+    /**
+     * Tests that negative limits are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new ParserOptions().setMaxStringLength(-1);
+    }
+    
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonPatch} and {@link JsonPointer}. Most cases are the examples from RFC 6902 and RFC 7386.
+ *
+ * @author Adam
+ */
+public class JsonPatchTest {
+    
+    /**
+     * Parses the given JSON string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException If the string is not valid JSON.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Applies the given patch to the given document.
+     *
+     * @param document The document.
+     * @param patch The patch.
+     *
+     * @return The patched document.
+     *
+     * @throws JsonPatchException If the patch can't be applied.
+     * @throws ParsingException If the patch is malformed.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement patch(String document, String patch)
+            throws JsonPatchException, ParsingException, IOException {
+        return new JsonPatch((JsonList) parse(patch)).apply(parse(document));
+    }
+    
+    /**
+     * Tests parsing and formatting {@link JsonPointer}s, with the examples from RFC 6901.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testPointer() throws ParsingException, IOException {
+        JsonElement document = parse("{\"foo\": [\"bar\", \"baz\"], \"\": 0, \"a/b\": 1, \"m~n\": 8, \" \": 7}");
+        
+        assertThat(JsonPointer.parse("").resolve(document), sameInstance(document));
+        assertThat(JsonPointer.parse("/foo/0").resolve(document), is(new JsonString("bar")));
+        assertThat(JsonPointer.parse("/").resolve(document), is(new JsonNumber(0)));
+        assertThat(JsonPointer.parse("/a~1b").resolve(document), is(new JsonNumber(1)));
+        assertThat(JsonPointer.parse("/m~0n").resolve(document), is(new JsonNumber(8)));
+        assertThat(JsonPointer.parse("/ ").resolve(document), is(new JsonNumber(7)));
+        assertThat(JsonPointer.parse("/foo/01").resolve(document), nullValue());
+        assertThat(JsonPointer.parse("/foo/2").resolve(document), nullValue());
+        
+        assertThat(JsonPointer.parse("/a~1b/m~0n/").toString(), is("/a~1b/m~0n/"));
+        assertThat(JsonPointer.ROOT.append("a/b").append(3).toString(), is("/a~1b/3"));
+        assertThat(JsonPointer.parse("/a/b").getParent(), is(JsonPointer.parse("/a")));
+        assertThat(JsonPointer.parse("/a").isPrefixOf(JsonPointer.parse("/a/b")), is(true));
+        assertThat(JsonPointer.parse("/a/b").isPrefixOf(JsonPointer.parse("/a")), is(false));
+    }
+    
+    /**
+     * Tests that invalid pointers are rejected.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testPointerInvalidEscape() throws ParsingException {
+        JsonPointer.parse("/a~2");
+    }
+    
+    /**
+     * Tests the add, remove and replace operations (RFC 6902, A.1 to A.5).
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testAddRemoveReplace() throws JsonPatchException, ParsingException, IOException {
+        assertThat(patch("{\"foo\": \"bar\"}", "[{\"op\": \"add\", \"path\": \"/baz\", \"value\": \"qux\"}]"),
+                is(parse("{\"baz\": \"qux\", \"foo\": \"bar\"}")));
+        assertThat(patch("{\"foo\": [\"bar\", \"baz\"]}",
+                "[{\"op\": \"add\", \"path\": \"/foo/1\", \"value\": \"qux\"}]"),
+                is(parse("{\"foo\": [\"bar\", \"qux\", \"baz\"]}")));
+        assertThat(patch("{\"baz\": \"qux\", \"foo\": \"bar\"}", "[{\"op\": \"remove\", \"path\": \"/baz\"}]"),
+                is(parse("{\"foo\": \"bar\"}")));
+        assertThat(patch("{\"foo\": [\"bar\", \"qux\", \"baz\"]}", "[{\"op\": \"remove\", \"path\": \"/foo/1\"}]"),
+                is(parse("{\"foo\": [\"bar\", \"baz\"]}")));
+        assertThat(patch("{\"baz\": \"qux\", \"foo\": \"bar\"}",
+                "[{\"op\": \"replace\", \"path\": \"/baz\", \"value\": \"boo\"}]"),
+                is(parse("{\"baz\": \"boo\", \"foo\": \"bar\"}")));
+        assertThat(patch("{\"foo\": [\"bar\"]}", "[{\"op\": \"add\", \"path\": \"/foo/-\", \"value\": [\"abc\"]}]"),
+                is(parse("{\"foo\": [\"bar\", [\"abc\"]]}")));
+        assertThat(patch("{\"foo\": \"bar\"}", "[{\"op\": \"replace\", \"path\": \"\", \"value\": [1]}]"),
+                is(parse("[1]")));
+    }
+    
+    /**
+     * Tests the move, copy and test operations (RFC 6902, A.6 to A.9).
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMoveCopyTest() throws JsonPatchException, ParsingException, IOException {
+        assertThat(patch("{\"foo\": {\"bar\": \"baz\", \"waldo\": \"fred\"}, \"qux\": {\"corge\": \"grault\"}}",
+                "[{\"op\": \"move\", \"from\": \"/foo/waldo\", \"path\": \"/qux/thud\"}]"),
+                is(parse("{\"foo\": {\"bar\": \"baz\"}, \"qux\": {\"corge\": \"grault\", \"thud\": \"fred\"}}")));
+        assertThat(patch("{\"foo\": [\"all\", \"grass\", \"cows\", \"eat\"]}",
+                "[{\"op\": \"move\", \"from\": \"/foo/1\", \"path\": \"/foo/3\"}]"),
+                is(parse("{\"foo\": [\"all\", \"cows\", \"eat\", \"grass\"]}")));
+        assertThat(patch("{\"baz\": \"qux\", \"foo\": [\"a\", 2, \"c\"]}",
+                "[{\"op\": \"test\", \"path\": \"/baz\", \"value\": \"qux\"},"
+                + "{\"op\": \"test\", \"path\": \"/foo/1\", \"value\": 2}]"),
+                is(parse("{\"baz\": \"qux\", \"foo\": [\"a\", 2, \"c\"]}")));
+        
+        JsonObject copied = (JsonObject) patch("{\"a\": {\"b\": 1}}",
+                "[{\"op\": \"copy\", \"from\": \"/a\", \"path\": \"/c\"}, {\"op\": \"add\", \"path\": \"/c/d\", "
+                + "\"value\": 2}]");
+        assertThat(copied, is(parse("{\"a\": {\"b\": 1}, \"c\": {\"b\": 1, \"d\": 2}}")));
+    }
+    
+    /**
+     * Tests that the test operation compares numbers by their mathematical value (RFC 6902, section 4.6), also
+     * nested in lists and objects.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNumericEquality() throws JsonPatchException, ParsingException, IOException {
+        String document = "{\"x\": 1, \"y\": [2.0, {\"z\": 10000000000}]}";
+        assertThat(patch(document, "[{\"op\": \"test\", \"path\": \"/x\", \"value\": 1.0},"
+                + "{\"op\": \"test\", \"path\": \"/y\", \"value\": [2, {\"z\": 1e10}]}]"), is(parse(document)));
+        
+        try {
+            patch(document, "[{\"op\": \"test\", \"path\": \"/x\", \"value\": 1.5}]");
+            throw new AssertionError("Expected JsonPatchException");
+        } catch (JsonPatchException e) {
+            // expected
+        }
+    }
+    
+    /**
+     * Tests that a failing test operation throws a {@link JsonPatchException} (RFC 6902, A.9).
+     *
+     * @throws JsonPatchException wanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = JsonPatchException.class)
+    public void testFailingTest() throws JsonPatchException, ParsingException, IOException {
+        patch("{\"baz\": \"qux\"}", "[{\"op\": \"test\", \"path\": \"/baz\", \"value\": \"bar\"}]");
+    }
+    
+    /**
+     * Tests that adding to a nonexistent target throws a {@link JsonPatchException} (RFC 6902, A.12).
+     *
+     * @throws JsonPatchException wanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = JsonPatchException.class)
+    public void testNonexistentTarget() throws JsonPatchException, ParsingException, IOException {
+        patch("{\"foo\": \"bar\"}", "[{\"op\": \"add\", \"path\": \"/baz/bat\", \"value\": \"qux\"}]");
+    }
+    
+    /**
+     * Tests that an out of bounds list index throws a {@link JsonPatchException}.
+     *
+     * @throws JsonPatchException wanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = JsonPatchException.class)
+    public void testIndexOutOfBounds() throws JsonPatchException, ParsingException, IOException {
+        patch("[1, 2]", "[{\"op\": \"add\", \"path\": \"/3\", \"value\": 3}]");
+    }
+    
+    /**
+     * Tests that a malformed patch throws a {@link ParsingException}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMalformedPatch() throws ParsingException, IOException {
+        new JsonPatch((JsonList) parse("[{\"op\": \"add\", \"path\": \"/a\"}]"));
+    }
+    
+    /**
+     * Tests that combined patches with many operations in the same location (which re-use the resolved parents)
+     * give the same result as applying them one after another, and that {@link JsonPatch#applyToCopy(JsonElement)}
+     * doesn't modify the original.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testConcat() throws JsonPatchException, ParsingException, IOException {
+        JsonPatch first = new JsonPatch((JsonList) parse("[{\"op\": \"add\", \"path\": \"/a/b/c\", \"value\": 1},"
+                + "{\"op\": \"add\", \"path\": \"/a/b/d\", \"value\": [0]},"
+                + "{\"op\": \"add\", \"path\": \"/a/b/d/0\", \"value\": 2}]"));
+        JsonPatch second = new JsonPatch((JsonList) parse("[{\"op\": \"remove\", \"path\": \"/a/b/d/1\"},"
+                + "{\"op\": \"replace\", \"path\": \"/a/b\", \"value\": {\"x\": 1}},"
+                + "{\"op\": \"add\", \"path\": \"/a/b/y\", \"value\": 2},"
+                + "{\"op\": \"move\", \"from\": \"/a/b\", \"path\": \"/b\"}]"));
+        JsonElement original = parse("{\"a\": {\"b\": {}}}");
+        
+        JsonElement separately = second.apply(first.applyToCopy(original));
+        JsonPatch combined = JsonPatch.concat(first, second);
+        JsonElement together = combined.applyToCopy(original);
+        
+        assertThat(together, is(parse("{\"a\": {}, \"b\": {\"x\": 1, \"y\": 2}}")));
+        assertThat(separately, is(together));
+        assertThat(original, is(parse("{\"a\": {\"b\": {}}}")));
+        assertThat(combined.getSize(), is(7));
+        assertThat(new JsonPatch(combined.toJson()).applyToCopy(original), is(together));
+    }
+    
+    /**
+     * Tests that the patch values are copied, so that the patched document doesn't share lists or objects with
+     * the patch.
+     *
+     * @throws JsonPatchException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testValuesCopied()
+            throws JsonPatchException, ParsingException, NoSuchElementException, IOException {
+        JsonPatch patch = new JsonPatch((JsonList) parse("[{\"op\": \"add\", \"path\": \"/a\", \"value\": {}}]"));
+        JsonObject first = (JsonObject) patch.apply(new JsonObject());
+        JsonObject second = (JsonObject) patch.apply(new JsonObject());
+        
+        first.getObject("a").putElement("b", JsonNull.INSTANCE);
+        
+        assertThat(second.getObject("a").getSize(), is(0));
+    }
+    
+    /**
+     * Tests the merge patch with the examples from RFC 7386, appendix A.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMergePatch() throws ParsingException, IOException {
+        String[][] examples = {
+            {"{\"a\":\"b\"}", "{\"a\":\"c\"}", "{\"a\":\"c\"}"},
+            {"{\"a\":\"b\"}", "{\"b\":\"c\"}", "{\"a\":\"b\",\"b\":\"c\"}"},
+            {"{\"a\":\"b\"}", "{\"a\":null}", "{}"},
+            {"{\"a\":\"b\",\"b\":\"c\"}", "{\"a\":null}", "{\"b\":\"c\"}"},
+            {"{\"a\":[\"b\"]}", "{\"a\":\"c\"}", "{\"a\":\"c\"}"},
+            {"{\"a\":\"c\"}", "{\"a\":[\"b\"]}", "{\"a\":[\"b\"]}"},
+            {"{\"a\":{\"b\":\"c\"}}", "{\"a\":{\"b\":\"d\",\"c\":null}}", "{\"a\":{\"b\":\"d\"}}"},
+            {"{\"a\":[{\"b\":\"c\"}]}", "{\"a\":[1]}", "{\"a\":[1]}"},
+            {"[\"a\",\"b\"]", "[\"c\",\"d\"]", "[\"c\",\"d\"]"},
+            {"{\"a\":\"b\"}", "[\"c\"]", "[\"c\"]"},
+            {"{\"a\":\"foo\"}", "null", "null"},
+            {"{\"a\":\"foo\"}", "\"bar\"", "\"bar\""},
+            {"{\"e\":null}", "{\"a\":1}", "{\"e\":null,\"a\":1}"},
+            {"[1,2]", "{\"a\":\"b\",\"c\":null}", "{\"a\":\"b\"}"},
+            {"{}", "{\"a\":{\"bb\":{\"ccc\":null}}}", "{\"a\":{\"bb\":{}}}"},
+        };
+        for (String[] example : examples) {
+            assertThat(example[0] + " + " + example[1],
+                    JsonPatch.applyMergePatch(parse(example[0]), parse(example[1])), is(parse(example[2])));
+        }
+    }
+    
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonSchema}.
+ *
+ * @author Adam
+ */
+public class JsonSchemaTest {
+    
+    private static final String PERSON = "{\"type\": \"object\", \"required\": [\"name\"], "
+            + "\"properties\": {\"name\": {\"type\": \"string\", \"minLength\": 1, \"pattern\": \"^[A-Z]\"}, "
+            + "\"age\": {\"type\": \"integer\", \"minimum\": 0, \"exclusiveMaximum\": 150}, "
+            + "\"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}, \"maxItems\": 2}}, "
+            + "\"patternProperties\": {\"^x-\": {\"type\": \"boolean\"}}, \"additionalProperties\": false}";
+    
+    /**
+     * Parses the given JSON string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Compiles the given schema.
+     *
+     * @param schema The schema as a JSON string.
+     *
+     * @return The compiled schema.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static JsonSchema schema(String schema) throws ParsingException, IOException {
+        return new JsonSchema(parse(schema));
+    }
+    
+    /**
+     * Validates the given document while parsing it.
+     *
+     * @param schema The schema.
+     * @param json The document as a JSON string.
+     *
+     * @return The parsed document.
+     *
+     * @throws JsonSchemaException If the document is invalid.
+     * @throws ParsingException If the document is malformed.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement stream(JsonSchema schema, String json)
+            throws JsonSchemaException, ParsingException, IOException {
+        return schema.parse(new JsonTokenReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+    
+    /**
+     * Tests a valid document.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testValid() throws ParsingException, IOException {
+        JsonSchema schema = schema(PERSON);
+        JsonElement document = parse("{\"name\": \"Alice\", \"age\": 30, \"tags\": [\"a\"], \"x-admin\": true}");
+        
+        assertThat(schema.validate(document), is(Collections.emptyList()));
+        assertThat(schema.isValid(document), is(true));
+    }
+    
+    /**
+     * Tests that all violations are reported with their locations.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testViolations() throws ParsingException, IOException {
+        JsonSchema schema = schema(PERSON);
+        JsonElement document = parse("{\"age\": 150, \"tags\": [\"a\", 1, \"c\"], \"x-admin\": 1, \"other\": null}");
+        
+        assertThat(schema.validate(document), is(Arrays.asList(
+                "#: misses the required property \"name\"",
+                "#/age: is not less than 150",
+                "#/tags: has more than 2 items",
+                "#/tags/1: expected type string, got number",
+                "#/x-admin: expected type boolean, got number",
+                "#/other: no value is allowed here")));
+        assertThat(schema.isValid(document), is(false));
+        assertThat(schema.validate(parse("{\"name\": \"alice\"}")),
+                is(Arrays.asList("#/name: does not match the pattern ^[A-Z]")));
+        assertThat(schema.validate(parse("[]")), is(Arrays.asList("#: expected type object, got array")));
+    }
+    
+    /**
+     * Tests the number and string keywords.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testScalars() throws ParsingException, IOException {
+        JsonSchema number = schema("{\"type\": \"number\", \"multipleOf\": 0.1, \"maximum\": 1}");
+        assertThat(number.isValid(parse("0.3")), is(true));
+        assertThat(number.isValid(parse("1")), is(true));
+        assertThat(number.isValid(parse("0.35")), is(false));
+        assertThat(number.isValid(parse("1.1")), is(false));
+        
+        JsonSchema integer = schema("{\"type\": \"integer\", \"multipleOf\": 3}");
+        assertThat(integer.isValid(parse("9")), is(true));
+        assertThat(integer.isValid(parse("9.0")), is(true));
+        assertThat(integer.isValid(parse("10")), is(false));
+        assertThat(integer.isValid(parse("9.5")), is(false));
+        
+        // lengths are counted in code points
+        JsonSchema string = schema("{\"minLength\": 2, \"maxLength\": 2}");
+        assertThat(string.isValid(parse("\"\ud83d\ude00\ud83d\ude00\"")), is(true));
+        assertThat(string.isValid(parse("\"\ud83d\ude00\"")), is(false));
+        assertThat(string.isValid(parse("5")), is(true));
+    }
+    
+    /**
+     * Tests <code>enum</code>, <code>const</code> and <code>uniqueItems</code>, which compare numbers by value.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEnumAndConst() throws ParsingException, IOException {
+        JsonSchema enumSchema = schema("{\"enum\": [1, \"a\", [2.0], {\"b\": null}]}");
+        assertThat(enumSchema.isValid(parse("1.0")), is(true));
+        assertThat(enumSchema.isValid(parse("\"a\"")), is(true));
+        assertThat(enumSchema.isValid(parse("[2]")), is(true));
+        assertThat(enumSchema.isValid(parse("{\"b\": null}")), is(true));
+        assertThat(enumSchema.isValid(parse("2")), is(false));
+        
+        assertThat(schema("{\"const\": 10000000000}").isValid(parse("1e10")), is(true));
+        assertThat(schema("{\"uniqueItems\": true}").isValid(parse("[1, 1.0]")), is(false));
+        assertThat(schema("{\"uniqueItems\": true}").isValid(parse("[1, \"1\"]")), is(true));
+    }
+    
+    /**
+     * Tests the combinators.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testCombinators() throws ParsingException, IOException {
+        JsonSchema schema = schema("{\"anyOf\": [{\"type\": \"string\"}, {\"type\": \"integer\"}], "
+                + "\"oneOf\": [{\"type\": \"string\"}, {\"type\": \"number\", \"minimum\": 0}, "
+                + "{\"type\": \"number\", \"maximum\": 10}], \"not\": {\"const\": \"no\"}, "
+                + "\"allOf\": [{\"maxLength\": 3}]}");
+        
+        assertThat(schema.isValid(parse("-5")), is(true));
+        assertThat(schema.isValid(parse("\"abc\"")), is(true));
+        assertThat(schema.validate(parse("5")), is(Arrays.asList("#: matches more than one of the schemas of oneOf")));
+        assertThat(schema.validate(parse("1.5")), is(Arrays.asList(
+                "#: matches none of the schemas of anyOf", "#: matches more than one of the schemas of oneOf")));
+        assertThat(schema.validate(parse("\"no\"")), is(Arrays.asList("#: must not match the schema of not")));
+        assertThat(schema.validate(parse("\"abcd\"")), is(Arrays.asList("#: is longer than 3 characters")));
+    }
+    
+    /**
+     * Tests a recursive schema with <code>$ref</code>.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testRecursiveRef() throws ParsingException, IOException {
+        JsonSchema schema = schema("{\"$ref\": \"#/$defs/node\", \"$defs\": {\"node\": {\"type\": \"object\", "
+                + "\"properties\": {\"value\": {\"type\": \"integer\"}, \"children\": {\"type\": \"array\", "
+                + "\"items\": {\"$ref\": \"#/$defs/node\"}}}}}}");
+        
+        assertThat(schema.isValid(parse("{\"value\": 1, \"children\": [{\"value\": 2, \"children\": []}]}")),
+                is(true));
+        assertThat(schema.validate(parse("{\"children\": [{\"children\": [{\"value\": \"x\"}]}]}")),
+                is(Arrays.asList("#/children/0/children/0/value: expected type integer, got string")));
+    }
+    
+    /**
+     * Tests the draft 7 form of <code>items</code> as a list.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTupleItems() throws ParsingException, IOException {
+        JsonSchema schema = schema("{\"items\": [{\"type\": \"string\"}, {\"type\": \"number\"}], "
+                + "\"additionalItems\": false, \"contains\": {\"const\": 1}}");
+        
+        assertThat(schema.isValid(parse("[\"a\", 1]")), is(true));
+        assertThat(schema.validate(parse("[\"a\", 2, 3]")), is(Arrays.asList(
+                "#: contains no item that matches the schema of contains", "#/2: no value is allowed here")));
+    }
+    
+    /**
+     * Tests that malformed schemas are rejected when compiling.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMalformedSchema() throws IOException {
+        String[] schemas = {
+            "1", "{\"type\": \"text\"}", "{\"minLength\": -1}", "{\"pattern\": \"(\"}", "{\"$ref\": \"#/missing\"}",
+            "{\"$ref\": \"other.json\"}", "{\"anyOf\": []}", "{\"properties\": []}", "{\"multipleOf\": 0}",
+            "{\"required\": [1]}", "{\"items\": 5}",
+        };
+        for (String schema : schemas) {
+            try {
+                schema(schema);
+                throw new AssertionError("Expected ParsingException for " + schema);
+            } catch (ParsingException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Tests that validating while parsing returns the same tree as the parser.
+     *
+     * @throws JsonSchemaException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStreamingValid() throws JsonSchemaException, ParsingException, IOException {
+        String json = "{\"name\": \"Bob\", \"tags\": [\"a\", \"b\"], \"x-y\": false}";
+        
+        assertThat(stream(schema(PERSON), json), is(parse(json)));
+    }
+    
+    /**
+     * Tests that validating while parsing rejects a document at the first violation, before the rest is read.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStreamingRejectsEarly() throws ParsingException, IOException {
+        JsonSchema schema = schema(PERSON);
+        String[][] cases = {
+            {"{\"name\": \"Bob\", \"tags\": [\"a\", 1, this is not json", "#/tags/1: expected type string, got number"},
+            {"{\"unknown\": this is not json", "#/unknown: no value is allowed here"},
+            {"{\"tags\": [\"a\", \"b\", \"c\", this is not json", "#/tags: has more than 2 items"},
+            {"[this is not json", "#: expected type object, got array"},
+            {"{\"age\": 5}", "#: misses the required property \"name\""},
+        };
+        for (String[] testCase : cases) {
+            try {
+                stream(schema, testCase[0]);
+                throw new AssertionError("Expected JsonSchemaException for " + testCase[0]);
+            } catch (JsonSchemaException e) {
+                assertThat(e.getMessage(), is(testCase[1]));
+            }
+        }
+    }
+    
+    /**
+     * Tests that values whose schema needs the whole value are validated while parsing, too.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStreamingWholeValues() throws ParsingException, IOException {
+        JsonSchema schema = schema("{\"type\": \"array\", \"items\": {\"anyOf\": [{\"type\": \"string\"}, "
+                + "{\"enum\": [[1], [2]]}]}}");
+        try {
+            stream(schema, "[\"a\", [1], [3]]");
+            throw new AssertionError("Expected JsonSchemaException");
+        } catch (JsonSchemaException e) {
+            assertThat(e.getMessage(), is("#/2: matches none of the schemas of anyOf"));
+        }
+    }
+    
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link JsonStreamDiff}.
+ *
+ * @author Adam
+ */
+public class JsonStreamDiffTest {
+    
+    /**
+     * Finds all differences between the given documents.
+     *
+     * @param source The source document.
+     * @param target The target document.
+     *
+     * @return The string representations of the differences.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static List<String> diff(String source, String target) throws ParsingException, IOException {
+        JsonStreamDiff diff = new JsonStreamDiff(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayInputStream(target.getBytes(StandardCharsets.UTF_8)));
+        List<String> result = new ArrayList<>();
+        for (JsonStreamDiff.Difference difference : diff.findAll()) {
+            result.add(difference.toString());
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that equal documents have no differences, also if they are formatted differently.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEqual() throws ParsingException, IOException {
+        assertThat(diff("{\"a\": [1, 2.5, \"x\", true, null, {}]}",
+                "{ \"a\" : [ 1 , 2.5 , \"x\" , true , null , { } ] }").size(), is(0));
+    }
+    
+    /**
+     * Tests changed values and their locations.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testChanged() throws ParsingException, IOException {
+        List<String> differences = diff("{\"a\": [1, {\"b\": \"x\"}, [true]], \"c/d\": null}",
+                "{\"a\": [1.0, {\"b\": \"y\"}, {}], \"c/d\": false}");
+        
+        assertThat(differences.toString(), is("[CHANGED /a/0: 1 changed to 1.0, "
+                + "CHANGED /a/1/b: \"x\" changed to \"y\", "
+                + "CHANGED /a/2: list changed to object, "
+                + "CHANGED /c~1d: null changed to false]"));
+    }
+    
+    /**
+     * Tests additional list elements and object members.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testAddedRemoved() throws ParsingException, IOException {
+        List<String> differences = diff("{\"a\": [1, 2], \"b\": {\"c\": 1}}",
+                "{\"a\": [1, 2, [3], 4], \"b\": {}, \"d\": 5}");
+        
+        assertThat(differences.toString(), is("[ADDED /a/2: list, ADDED /a/3: 4, REMOVED /b/c: 1, ADDED /d: 5]"));
+    }
+    
+    /**
+     * Tests that objects with members in a different order are reported as unaligned, and that the comparison
+     * continues after them.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUnaligned() throws ParsingException, IOException {
+        List<String> differences = diff("[{\"a\": 1, \"b\": [2]}, 3]", "[{\"b\": [2], \"a\": 1}, 4]");
+        
+        assertThat(differences.toString(), is("[UNALIGNED /0: member \"a\" changed to \"b\", "
+                + "CHANGED /1: 3 changed to 4]"));
+    }
+    
+    /**
+     * Tests documents that span many chunks, and that {@link JsonStreamDiff#next()} returns the differences one by
+     * one.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLargeDocuments() throws ParsingException, IOException {
+        StringBuilder source = new StringBuilder("[");
+        StringBuilder target = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            if (i > 0) {
+                source.append(',');
+                target.append(',');
+            }
+            source.append("{\"id\": ").append(i).append(", \"name\": \"ä").append(i).append("\"}");
+            target.append("{\"id\": ").append(i).append(", \"name\": \"ä").append(i == 15000 ? -1 : i)
+                    .append("\"}");
+        }
+        source.append(']');
+        target.append(']');
+        
+        JsonStreamDiff diff = new JsonStreamDiff(
+                new ByteArrayInputStream(source.toString().getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayInputStream(target.toString().getBytes(StandardCharsets.UTF_8)));
+        
+        JsonStreamDiff.Difference difference = diff.next();
+        assertThat(difference.getType(), is(JsonStreamDiff.Difference.Type.CHANGED));
+        assertThat(difference.getPath(), is(JsonPointer.ROOT.append(15000).append("name")));
+        assertThat(diff.next(), nullValue());
+    }
+    
+    /**
+     * Tests that malformed input throws a {@link ParsingException}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testMalformed() throws ParsingException, IOException {
+        diff("[1, 2]", "[1, 2");
+    }
+    
+}
@@ -16,8 +16,21 @@
 package net.ssehub.json;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -62,6 +75,72 @@ public class JsonToStringTest {
         assertThat(new JsonString("A \u0006 B").toString(), is("\"A \\u0006 B\""));
     }
     
+    /**
+     * Tests escaping of strings, including escapes at the start and end and the direct output to an
+     * {@link Appendable}.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testEscape() throws IOException {
+        String plain = "Hello World! äöü ❤";
+        assertThat(JsonString.jsonEscape(plain), sameInstance(plain));
+        assertThat(JsonString.jsonEscape(""), is(""));
+        
+        assertThat(JsonString.jsonEscape("\"\""), is("\\\"\\\""));
+        assertThat(JsonString.jsonEscape("\nA\u001fB\u007f"), is("\\nA\\u001fB\u007f"));
+        assertThat(JsonString.jsonEscape("ä\tö\\"), is("ä\\tö\\\\"));
+        
+        StringBuilder target = new StringBuilder("prefix ");
+        JsonString.jsonEscape("a \"b\" c", target);
+        JsonString.jsonEscape(" d", target);
+        assertThat(target.toString(), is("prefix a \\\"b\\\" c d"));
+    }
+    
+    /**
+     * Tests formatting of numbers, including the edge cases of integers and the shortest representation of doubles.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNumbers() throws IOException {
+        assertThat(new JsonNumber(0).toString(), is("0"));
+        assertThat(new JsonNumber(Integer.MIN_VALUE).toString(), is("-2147483648"));
+        assertThat(new JsonNumber(Long.MAX_VALUE).toString(), is("9223372036854775807"));
+        assertThat(new JsonNumber(Long.MIN_VALUE).toString(), is("-9223372036854775808"));
+        assertThat(new JsonNumber((short) -7).toString(), is("-7"));
+        
+        assertThat(new JsonNumber(0.0).toString(), is("0.0"));
+        assertThat(new JsonNumber(-0.0).toString(), is("-0.0"));
+        assertThat(new JsonNumber(100.0).toString(), is("100.0"));
+        assertThat(new JsonNumber(0.001).toString(), is("0.001"));
+        assertThat(new JsonNumber(9.999E-4).toString(), is("9.999E-4"));
+        assertThat(new JsonNumber(9999999.0).toString(), is("9999999.0"));
+        assertThat(new JsonNumber(1.0E7).toString(), is("1.0E7"));
+        assertThat(new JsonNumber(1.0E23).toString(), is("1.0E23"));
+        assertThat(new JsonNumber(2.0E-3).toString(), is("0.002"));
+        assertThat(new JsonNumber(Double.MAX_VALUE).toString(), is("1.7976931348623157E308"));
+        assertThat(new JsonNumber(Double.MIN_VALUE).toString(), is("4.9E-324"));
+        assertThat(new JsonNumber(-1.2345678901234567E-100).toString(), is("-1.2345678901234567E-100"));
+        
+        assertThat(new JsonNumber(1.5f).toString(), is("1.5"));
+        assertThat(new JsonNumber(new BigDecimal("1.50")).toString(), is("1.50"));
+        
+        StringBuilder target = new StringBuilder("[");
+        JsonNumber.jsonEscape(-12, target);
+        JsonNumber.jsonEscape(0.5, target);
+        JsonNumber.jsonEscape(Double.NaN, target);
+        assertThat(target.toString(), is("[-120.5null"));
+        
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertThat(Double.parseDouble(new JsonNumber(value).toString()), is(value));
+            }
+        }
+    }
+    
     /**
      * Tests the list type.
      */
@@ -98,6 +177,108 @@ public class JsonToStringTest {
         assertThat(o.toString(), is("{ \"a\": 42, \"\": \"Hello World\", \"b\": null }"));
     }
     
+    /**
+     * Tests that object keys are escaped.
+     */
+    @Test
+    public void testEscapedKeys() {
+        JsonObject object = new JsonObject();
+        object.putElement("a\"b", new JsonString("c\nd"));
+        
+        assertThat(object.toString(), is("{ \"a\\\"b\": \"c\\nd\" }"));
+    }
+    
+    /**
+     * Tests the {@link JsonSerializer} with a {@link Writer} as target, and its size estimate.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSerializer() throws IOException {
+        JsonObject object = new JsonObject();
+        object.putElement("list", new JsonList());
+        object.putElement("object", new JsonObject());
+        JsonList list = new JsonList();
+        list.addElement(new JsonNumber(-42));
+        list.addElement(new JsonNumber(Long.MAX_VALUE));
+        list.addElement(JsonBoolean.FALSE);
+        list.addElement(JsonNull.INSTANCE);
+        list.addElement(new JsonString("str"));
+        object.putElement("nested", list);
+        
+        String expected = "{ \"list\": [], \"object\": {}, "
+                + "\"nested\": [ -42, 9223372036854775807, false, null, \"str\" ] }";
+        assertThat(JsonSerializer.estimateSize(object), is(expected.length()));
+        assertThat(JsonSerializer.toJson(object, true), is(expected));
+        assertThat(JsonSerializer.toJson(object, false), is(expected));
+        
+        StringWriter out = new StringWriter();
+        JsonSerializer serializer = new JsonSerializer(out);
+        serializer.write(object);
+        serializer.write(JsonBoolean.TRUE);
+        assertThat(out.toString(), is(expected + "true"));
+    }
+    
+    /**
+     * Creates a document with non-ASCII characters that is larger than the buffers used for UTF-8 encoding.
+     * 
+     * @return The document.
+     */
+    private static JsonList createUnicodeDocument() {
+        JsonList result = new JsonList();
+        for (int i = 0; i < 2000; i++) {
+            JsonObject entry = new JsonObject();
+            entry.putElement("ä" + i, new JsonString("Hello ❤ 😀 \n"));
+            entry.putElement("n", new JsonNumber(i * 0.5));
+            result.addElement(entry);
+        }
+        // unpaired surrogates are replaced, same as by String.getBytes()
+        result.addElement(new JsonString("\uD800 \uDC00 \uD83D"));
+        return result;
+    }
+    
+    /**
+     * Tests {@link JsonElement#toUtf8Bytes()} and {@link JsonElement#writeTo(OutputStream)}.
+     * 
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUtf8() throws IOException {
+        JsonList document = createUnicodeDocument();
+        byte[] expected = document.toString().getBytes(StandardCharsets.UTF_8);
+        
+        assertThat(document.toUtf8Bytes(), is(expected));
+        assertThat(new JsonString("ä").toUtf8Bytes(), is("\"ä\"".getBytes(StandardCharsets.UTF_8)));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.writeTo(out);
+        JsonNull.INSTANCE.writeTo(out);
+        assertThat(out.toByteArray(), is((document.toString() + "null").getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * Tests {@link JsonElement#writeTo(ByteBuffer)}.
+     */
+    @Test
+    public void testUtf8ByteBuffer() {
+        JsonList document = createUnicodeDocument();
+        byte[] expected = document.toString().getBytes(StandardCharsets.UTF_8);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+        buffer.put((byte) 'x');
+        document.writeTo(buffer);
+        assertThat(buffer.position(), is(expected.length + 1));
+        assertThat(Arrays.copyOfRange(buffer.array(), 1, expected.length + 1), is(expected));
+    }
+    
+    /**
+     * Tests that {@link JsonElement#writeTo(ByteBuffer)} throws an exception if the buffer is too small.
+     */
+    @Test(expected = BufferOverflowException.class)
+    public void testUtf8ByteBufferTooSmall() {
+        createUnicodeDocument().writeTo(ByteBuffer.allocate(100));
+    }
+    
     /**
      * Tests the {@link JsonPrettyPrinter} with simple types.
      */
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the lenient mode of the {@link JsonParser}, see {@link ParserOptions#setLenient(boolean)}.
+ *
+ * @author Adam
+ */
+public class LenientParsingTest {
+    
+    /**
+     * Creates a lenient parser for the given string.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parser.
+     */
+    private static JsonParser createParser(String json) {
+        ParserOptions options = new ParserOptions();
+        options.setLenient(true);
+        return new JsonParser(new StringReader(json), options);
+    }
+    
+    /**
+     * Returns the messages of the diagnostics of the given parser.
+     *
+     * @param parser The parser.
+     *
+     * @return The messages of the diagnostics.
+     */
+    private static List<String> getMessages(JsonParser parser) {
+        List<String> result = new ArrayList<>();
+        for (ParsingException diagnostic : parser.getDiagnostics()) {
+            result.add(diagnostic.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * Tests that malformed list elements and object members are skipped.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSkipElementsAndMembers() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[1, x, 3, {\"a\": tru, \"b\": 2}, \"ok\"]")) {
+            assertThat(parser.parse().toString(), is("[ 1, 3, { \"b\": 2 }, \"ok\" ]"));
+            
+            assertThat(getMessages(parser), is(Arrays.asList(
+                    "Line 1, column 5: Couldn't determine type: x",
+                    "Line 1, column 20: Expected e, but got ,")));
+            assertThat(parser.getDiagnostics().get(1).getOffset(), is(19L));
+        }
+    }
+    
+    /**
+     * Tests that missing elements and trailing commas are skipped.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMissingElements() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[1,, 2,]")) {
+            assertThat(parser.parse().toString(), is("[ 1, 2 ]"));
+            assertThat(parser.getDiagnostics().size(), is(2));
+        }
+    }
+    
+    /**
+     * Tests that a missing separator skips the rest up to the next separator.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMissingSeparator() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("{\"a\": 1 \"b\": 2, \"c\": [1 2 3, 4]}")) {
+            assertThat(parser.parse().toString(), is("{ \"a\": 1, \"c\": [ 1, 4 ] }"));
+            assertThat(getMessages(parser), is(Arrays.asList(
+                    "Line 1, column 9: Expecting ',' or '}', got \"",
+                    "Line 1, column 25: Expecting ',' or ']', got 2")));
+        }
+    }
+    
+    /**
+     * Tests that errors inside strings and nested structures are recovered from on the right level.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNestedRecovery() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("{\"a\": [\"x\ty, z\", [2, {]], 3], \"b\": {\"c\": [1, -]}}")) {
+            assertThat(parser.parse().toString(), is("{ \"a\": [ [ 2 ], 3 ], \"b\": { \"c\": [ 1 ] } }"));
+            assertThat(parser.getDiagnostics().size(), is(4));
+        }
+    }
+    
+    /**
+     * Tests that a lone surrogate at the end of a string only drops that string, without losing the alignment of the
+     * following strings.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLoneSurrogateAtEndOfString() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[\"\\uD800\", 1, \"x\", 2]")) {
+            assertThat(parser.parse().toString(), is("[ 1, \"x\", 2 ]"));
+            assertThat(getMessages(parser), is(Arrays.asList(
+                    "Line 1, column 9: Invalid surrogate \\uD800 without matching pair")));
+        }
+    }
+    
+    /**
+     * Tests that trailing content after the document is reported, but does not fail the parse.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTrailingContent() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[1] [2]")) {
+            assertThat(parser.parse().toString(), is("[ 1 ]"));
+            assertThat(getMessages(parser), is(Arrays.asList(
+                    "Line 1, column 5: JSON element is over, but didn't reach EOF")));
+        }
+    }
+    
+    /**
+     * Tests that input that ends inside a list can't be recovered from.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testUnterminated() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[1, [2, x")) {
+            parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that exceeded limits are not recovered from.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testLimitNotRecovered() throws ParsingException, IOException {
+        ParserOptions options = new ParserOptions();
+        options.setLenient(true);
+        options.setMaxStringLength(3);
+        try (JsonParser parser = new JsonParser(new StringReader("[\"abcd\", 1]"), options)) {
+            parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that {@link JsonParser#parseNextListElement()} skips malformed elements.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNextListElement() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("[1, x, y, 2, {\"a\" 1}]")) {
+            assertThat(parser.parseNextListElement().toString(), is("1"));
+            assertThat(parser.parseNextListElement().toString(), is("2"));
+            assertThat(parser.parseNextListElement().toString(), is("{}"));
+            assertThat(parser.parseNextListElement(), is((JsonElement) null));
+            assertThat(parser.getDiagnostics().size(), is(3));
+        }
+    }
+    
+    /**
+     * Tests that {@link JsonParser#parseNextDocument()} skips the lines of malformed documents.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNextDocument() throws ParsingException, IOException {
+        try (JsonParser parser = createParser("{\"a\": 1}\nnope\n[2]\n{\"b\": [3, 4")) {
+            assertThat(parser.parseNextDocument().toString(), is("{ \"a\": 1 }"));
+            assertThat(parser.parseNextDocument().toString(), is("[ 2 ]"));
+            assertThat(parser.parseNextDocument(), is((JsonElement) null));
+            assertThat(parser.getDiagnostics().size(), is(2));
+            assertThat(parser.getDiagnostics().get(0).getLine(), is(2L));
+            assertThat(parser.getDiagnostics().get(1).getLine(), is(4L));
+        }
+    }
+    
+    /**
+     * Tests that strict mode does not recover from errors.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStrict() throws IOException {
+        JsonParser parser = new JsonParser(new StringReader("[1, x]"));
+        try {
+            parser.parse();
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(parser.getDiagnostics().isEmpty(), is(true));
+        } finally {
+            parser.close();
+        }
+    }
+    
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link NonBlockingJsonParser}.
+ *
+ * @author Adam
+ */
+public class NonBlockingJsonParserTest {
+    
+    private static final String EXAMPLE = "{\n"
+            + "  \"firstName\": \"Jöhn\",\n"
+            + "  \"isAlive\": true,\n"
+            + "  \"age\": 27,\n"
+            + "  \"height\": 1.72e0,\n"
+            + "  \"address\": { \"city\": \"New York \\u2764 \\\"NY\\\"\", \"emoji\": \"😀\" },\n"
+            + "  \"phoneNumbers\": [ { \"type\": \"home\" }, -12345678901, false ],\n"
+            + "  \"children\": [],\n"
+            + "  \"spouse\": null\n"
+            + "}";
+    
+    /**
+     * Feeds the input to a parser in chunks of the given size and reads the tokens.
+     */
+    private static class ChunkedInput {
+        
+        private NonBlockingJsonParser parser;
+        
+        private byte[] data;
+        
+        private int chunkSize;
+        
+        private int position;
+        
+        /**
+         * Creates a chunked input.
+         *
+         * @param data The complete input.
+         * @param chunkSize The size of the chunks to feed.
+         * @param options The parser options to use.
+         */
+        ChunkedInput(byte[] data, int chunkSize, ParserOptions options) {
+            this.parser = new NonBlockingJsonParser(options);
+            this.data = data;
+            this.chunkSize = chunkSize;
+        }
+        
+        /**
+         * Reads the next token, feeding more chunks as required.
+         *
+         * @return The next token.
+         *
+         * @throws ParsingException If the input is malformed.
+         */
+        JsonToken next() throws ParsingException {
+            JsonToken token = parser.nextToken();
+            while (token == JsonToken.NEED_MORE_INPUT) {
+                if (position < data.length) {
+                    int length = Math.min(chunkSize, data.length - position);
+                    parser.feed(ByteBuffer.wrap(data, position, length));
+                    position += length;
+                } else {
+                    parser.endOfInput();
+                }
+                token = parser.nextToken();
+            }
+            return token;
+        }
+        
+        /**
+         * Reads a complete element.
+         *
+         * @param token The first token of the element.
+         *
+         * @return The element.
+         *
+         * @throws ParsingException If the input is malformed.
+         */
+        JsonElement readElement(JsonToken token) throws ParsingException {
+            JsonElement result;
+            switch (token) {
+            case START_OBJECT:
+                JsonObject object = new JsonObject();
+                for (JsonToken t = next(); t != JsonToken.END_OBJECT; t = next()) {
+                    assertThat(t, is(JsonToken.KEY));
+                    String key = parser.getString();
+                    object.putElement(key, readElement(next()));
+                }
+                result = object;
+                break;
+            case START_LIST:
+                JsonList list = new JsonList();
+                for (JsonToken t = next(); t != JsonToken.END_LIST; t = next()) {
+                    list.addElement(readElement(t));
+                }
+                result = list;
+                break;
+            case STRING:
+                result = new JsonString(parser.getString());
+                break;
+            case NUMBER:
+                result = new JsonNumber(parser.getNumber());
+                break;
+            case TRUE:
+                result = JsonBoolean.TRUE;
+                break;
+            case FALSE:
+                result = JsonBoolean.FALSE;
+                break;
+            case NULL:
+                result = JsonNull.INSTANCE;
+                break;
+            default:
+                throw new AssertionError("Unexpected token " + token);
+            }
+            return result;
+        }
+        
+        /**
+         * Reads the complete document.
+         *
+         * @return The element.
+         *
+         * @throws ParsingException If the input is malformed.
+         */
+        JsonElement readDocument() throws ParsingException {
+            JsonElement result = readElement(next());
+            assertThat(next(), is(JsonToken.END_OF_INPUT));
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Parses the given input with the {@link JsonParser}.
+     *
+     * @param json The input.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parseBlocking(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that the result is the same as of the {@link JsonParser}, independent of the chunk size.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSameAsBlockingParser() throws ParsingException, IOException {
+        JsonElement expected = parseBlocking(EXAMPLE);
+        byte[] data = EXAMPLE.getBytes(StandardCharsets.UTF_8);
+        
+        for (int chunkSize = 1; chunkSize <= 17; chunkSize++) {
+            assertThat("Chunk size " + chunkSize,
+                    new ChunkedInput(data, chunkSize, new ParserOptions()).readDocument(), is(expected));
+        }
+        assertThat(new ChunkedInput(data, data.length, new ParserOptions()).readDocument(), is(expected));
+    }
+    
+    /**
+     * Tests that {@link JsonToken#NEED_MORE_INPUT} is returned in the middle of a token.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testNeedMoreInput() throws ParsingException {
+        NonBlockingJsonParser parser = new NonBlockingJsonParser();
+        assertThat(parser.nextToken(), is(JsonToken.NEED_MORE_INPUT));
+        
+        parser.feed(ByteBuffer.wrap("[\"ab".getBytes(StandardCharsets.UTF_8)));
+        assertThat(parser.nextToken(), is(JsonToken.START_LIST));
+        assertThat(parser.getDepth(), is(1));
+        assertThat(parser.nextToken(), is(JsonToken.NEED_MORE_INPUT));
+        
+        parser.feed(ByteBuffer.wrap("c\", 12".getBytes(StandardCharsets.UTF_8)));
+        assertThat(parser.nextToken(), is(JsonToken.STRING));
+        assertThat(parser.getString(), is("abc"));
+        // the number may continue in the next chunk
+        assertThat(parser.nextToken(), is(JsonToken.NEED_MORE_INPUT));
+        
+        parser.feed(ByteBuffer.wrap("3]".getBytes(StandardCharsets.UTF_8)));
+        assertThat(parser.nextToken(), is(JsonToken.NUMBER));
+        assertThat(parser.getNumber(), is((Number) 123));
+        assertThat(parser.nextToken(), is(JsonToken.END_LIST));
+        assertThat(parser.getDepth(), is(0));
+        assertThat(parser.nextToken(), is(JsonToken.NEED_MORE_INPUT));
+        
+        parser.endOfInput();
+        assertThat(parser.nextToken(), is(JsonToken.END_OF_INPUT));
+    }
+    
+    /**
+     * Tests that a top-level number is only complete at the end of the input.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testTopLevelNumber() throws ParsingException {
+        NonBlockingJsonParser parser = new NonBlockingJsonParser();
+        parser.feed(ByteBuffer.wrap("-4.5".getBytes(StandardCharsets.UTF_8)));
+        assertThat(parser.nextToken(), is(JsonToken.NEED_MORE_INPUT));
+        parser.endOfInput();
+        assertThat(parser.nextToken(), is(JsonToken.NUMBER));
+        assertThat(parser.getNumber(), is((Number) (-4.5)));
+        assertThat(parser.nextToken(), is(JsonToken.END_OF_INPUT));
+    }
+    
+    /**
+     * Tests that incomplete input is rejected at the end of the input.
+     *
+     * @throws ParsingException wanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testUnexpectedEndOfInput() throws ParsingException {
+        new ChunkedInput("{\"a\": [1, 2".getBytes(StandardCharsets.UTF_8), 3, new ParserOptions()).readDocument();
+    }
+    
+    /**
+     * Tests that errors are positioned at the offending character, same as in the {@link JsonParser}, even if earlier
+     * chunks have already been dropped from the buffer.
+     */
+    @Test
+    public void testErrorPosition() {
+        String[] inputs = {"[\n  1,\n  tru]", "{\"a\": [1,\n 2 3]}", "[\"a\\qb\"]", "[\n1.]", "[\"\\ud800\"]"};
+        for (String input : inputs) {
+            ParsingException expected = null;
+            try {
+                parseBlocking(input);
+            } catch (ParsingException e) {
+                expected = e;
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            if (expected == null) {
+                throw new AssertionError("Expected ParsingException from JsonParser for " + input);
+            }
+            
+            for (int chunkSize = 1; chunkSize <= input.length(); chunkSize++) {
+                try {
+                    new ChunkedInput(input.getBytes(StandardCharsets.UTF_8), chunkSize, new ParserOptions())
+                            .readDocument();
+                    fail("Expected exception for " + input);
+                } catch (ParsingException e) {
+                    assertThat(input, e.getLine(), is(expected.getLine()));
+                    assertThat(input, e.getColumn(), is(expected.getColumn()));
+                    assertThat(input, e.getOffset(), is(expected.getOffset()));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tests that the limits of the {@link ParserOptions} are enforced.
+     */
+    @Test
+    public void testLimits() {
+        ParserOptions options = new ParserOptions();
+        options.setMaxStringLength(3);
+        options.setMaxListSize(2);
+        options.setMaxNestingDepth(3);
+        
+        String[] inputs = {"\"abcd\"", "[1, 2, 3]", "[[[[1]]]]", "{\"abcd\": 1}"};
+        for (String input : inputs) {
+            try {
+                new ChunkedInput(input.getBytes(StandardCharsets.UTF_8), 2, options).readDocument();
+                fail("Expected exception for " + input);
+            } catch (ParsingException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Runs the JSON test suite (see {@link JsonTestSuite}) through the parser, feeding one byte at a time.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testJsonTestSuite() throws IOException {
+        List<File> files = Files.walk(new File("testdata/test_suite").toPath())
+                .map((path) -> path.toFile())
+                .filter((file) -> file.getName().endsWith(".json"))
+                .sorted()
+                .collect(Collectors.toList());
+        
+        for (File file : files) {
+            boolean expectedException = file.getName().startsWith("n_");
+            boolean bothAllowed = file.getName().startsWith("i_");
+            
+            try {
+                new ChunkedInput(Files.readAllBytes(file.toPath()), 1, new ParserOptions()).readDocument();
+                if (!bothAllowed && expectedException) {
+                    fail("Didn't get exception for " + file.getName());
+                }
+            } catch (ParsingException e) {
+                if (!bothAllowed && !expectedException) {
+                    fail("Got exception for " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link ParseMetrics} reported by the {@link JsonParser}, and the {@link JsonParserStatistics}.
+ *
+ * @author Adam
+ */
+public class ParseMetricsTest {
+    
+    /**
+     * Parses the given string with a listener that collects the metrics.
+     *
+     * @param json The JSON string.
+     * @param metrics The list to add the reported metrics to.
+     *
+     * @throws ParsingException If parsing fails.
+     * @throws IOException unwanted.
+     */
+    private static void parse(String json, List<ParseMetrics> metrics) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            parser.setParseListener(metrics::add);
+            parser.parse();
+        }
+    }
+    
+    /**
+     * Tests the metrics of a successful parse.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMetrics() throws ParsingException, IOException {
+        List<ParseMetrics> reported = new ArrayList<>();
+        String json = "{\"ab\": [1, 2.5, \"xyz\", true, false, null, [{}]]}";
+        parse(json, reported);
+        
+        assertThat(reported.size(), is(1));
+        ParseMetrics metrics = reported.get(0);
+        assertThat(metrics.isSuccessful(), is(true));
+        assertThat(metrics.getCharactersConsumed(), is((long) json.length()));
+        assertThat(metrics.getTokenCount(JsonToken.START_OBJECT), is(2L));
+        assertThat(metrics.getTokenCount(JsonToken.END_OBJECT), is(2L));
+        assertThat(metrics.getTokenCount(JsonToken.START_LIST), is(2L));
+        assertThat(metrics.getTokenCount(JsonToken.KEY), is(1L));
+        assertThat(metrics.getTokenCount(JsonToken.TRUE), is(1L));
+        assertThat(metrics.getTokenCount(JsonToken.FALSE), is(1L));
+        assertThat(metrics.getTokenCount(JsonToken.NULL), is(1L));
+        assertThat(metrics.getStringCount(), is(2L));
+        assertThat(metrics.getStringCharacters(), is(5L));
+        assertThat(metrics.getNumberCount(), is(2L));
+        assertThat(metrics.getMaxNestingDepth(), is(4));
+        assertThat(metrics.getEstimatedAllocatedBytes() > 0, is(true));
+        assertThat(metrics.getParseNanos() > 0, is(true));
+    }
+    
+    /**
+     * Tests that a failed parse is reported, too.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testFailure() throws IOException {
+        List<ParseMetrics> reported = new ArrayList<>();
+        try {
+            parse("[1, 2", reported);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            // expected
+        }
+        
+        assertThat(reported.size(), is(1));
+        assertThat(reported.get(0).isSuccessful(), is(false));
+        assertThat(reported.get(0).getNumberCount(), is(2L));
+    }
+    
+    /**
+     * Tests that the incremental parsing methods report metrics per call.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIncremental() throws ParsingException, IOException {
+        List<ParseMetrics> reported = new ArrayList<>();
+        try (JsonParser parser = new JsonParser(new StringReader("{\"a\": 1}\n[2, 3]"))) {
+            parser.setParseListener(reported::add);
+            while (parser.parseNextDocument() != null) {
+                // parse all documents
+            }
+        }
+        
+        assertThat(reported.size(), is(3));
+        assertThat(reported.get(0).getTokenCount(JsonToken.KEY), is(1L));
+        assertThat(reported.get(1).getNumberCount(), is(2L));
+        assertThat(reported.get(2).getNumberCount(), is(0L));
+    }
+    
+    /**
+     * Tests the aggregation of {@link JsonParserStatistics}.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testStatistics() throws ParsingException, IOException {
+        JsonParserStatistics statistics = new JsonParserStatistics();
+        for (String json : new String[] {"[1, [2]]", "{\"a\": \"b\"}", "[1, "}) {
+            try (JsonParser parser = new JsonParser(new StringReader(json))) {
+                parser.setParseListener(statistics);
+                parser.parse();
+            } catch (ParsingException e) {
+                // expected for the last one
+            }
+        }
+        
+        assertThat(statistics.getParseCount(), is(3L));
+        assertThat(statistics.getFailedParseCount(), is(1L));
+        assertThat(statistics.getCharactersConsumed(), is(22L));
+        assertThat(statistics.getNumberCount(), is(3L));
+        assertThat(statistics.getStringCount(), is(2L));
+        assertThat(statistics.getTokenCounts().get("START_LIST"), is(2L));
+        assertThat(statistics.getMaxNestingDepth(), is(2));
+        
+        long histogramTotal = 0;
+        for (long count : statistics.getLatencyHistogram()) {
+            histogramTotal += count;
+        }
+        assertThat(histogramTotal, is(3L));
+        assertThat(statistics.estimateLatencyPercentileMicros(100) >= statistics.estimateLatencyPercentileMicros(50),
+                is(true));
+        
+        statistics.reset();
+        assertThat(statistics.getParseCount(), is(0L));
+        assertThat(statistics.getMeanLatencyMicros(), is(0.0));
+        assertThat(statistics.estimateLatencyPercentileMicros(99), is(0L));
+    }
+    
+    /**
+     * Tests that the statistics can be read via JMX.
+     *
+     * @throws JMException unwanted.
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testJmx() throws JMException, ParsingException, IOException {
+        JsonParserStatistics statistics = new JsonParserStatistics();
+        ObjectName name = statistics.register("test");
+        try {
+            try (JsonParser parser = new JsonParser(new StringReader("[1, 2, 3]"))) {
+                parser.setParseListener(statistics);
+                parser.parse();
+            }
+            
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(name, "ParseCount"), is(1L));
+            assertThat(server.getAttribute(name, "NumberCount"), is(3L));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertThat(server.getAttribute(name, "ParseCount"), is(0L));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+    
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PersistentJsonObject} and {@link PersistentJsonList}.
+ *
+ * @author Adam
+ */
+public class PersistentJsonTest {
+    
+    /**
+     * Tests that appending and replacing elements of a {@link PersistentJsonList} creates new versions and leaves the
+     * old ones unchanged, for sizes that need several levels in the trie.
+     */
+    @Test
+    public void testListVersions() {
+        List<PersistentJsonList> versions = new ArrayList<>();
+        PersistentJsonList list = new PersistentJsonList();
+        for (int i = 0; i < 2000; i++) {
+            versions.add(list);
+            list = list.plus(new JsonNumber(i));
+        }
+        PersistentJsonList replaced = list.with(1500, new JsonString("x")).with(1999, new JsonString("y"));
+        
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(versions.get(i).getSize(), is(i));
+        }
+        assertThat(versions.get(1200).getElement(1199), is(new JsonNumber(1199)));
+        assertThat(list.getElement(1500), is(new JsonNumber(1500)));
+        assertThat(replaced.getElement(1500), is(new JsonString("x")));
+        assertThat(replaced.getElement(1999), is(new JsonString("y")));
+        assertThat(replaced.getElement(1501), is(new JsonNumber(1501)));
+        
+        int index = 0;
+        for (JsonElement element : list) {
+            assertThat(element, is(new JsonNumber(index++)));
+        }
+        assertThat(index, is(2000));
+    }
+    
+    /**
+     * Tests removing elements from a {@link PersistentJsonList}.
+     */
+    @Test
+    public void testListWithout() {
+        JsonList expected = new JsonList();
+        PersistentJsonList list = new PersistentJsonList();
+        for (int i = 0; i < 100; i++) {
+            expected.addElement(new JsonNumber(i));
+            list = list.plus(new JsonNumber(i));
+        }
+        PersistentJsonList removed = list.without(40).without(0).without(97);
+        expected.removeElement(40);
+        expected.removeElement(0);
+        expected.removeElement(97);
+        
+        assertThat(removed, is(expected));
+        assertThat(expected, is(removed));
+        assertThat(removed.hashCode(), is(expected.hashCode()));
+        assertThat(list.getSize(), is(100));
+        assertThat(removed.plus(JsonNull.INSTANCE).getElement(97), is(JsonNull.INSTANCE));
+    }
+    
+    /**
+     * Tests that a {@link PersistentJsonList} can't be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testListImmutable() {
+        new PersistentJsonList().addElement(JsonNull.INSTANCE);
+    }
+    
+    /**
+     * Tests that an out of bounds index throws an {@link IndexOutOfBoundsException}.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testListOutOfBounds() {
+        new PersistentJsonList().plus(JsonNull.INSTANCE).getElement(1);
+    }
+    
+    /**
+     * Tests that a {@link PersistentJsonObject} behaves like a {@link Map} with insertion order, and that old
+     * versions stay unchanged, with random modifications.
+     */
+    @Test
+    public void testObjectRandomModifications() {
+        Random random = new Random(42);
+        Map<String, JsonElement> expected = new LinkedHashMap<>();
+        PersistentJsonObject object = new PersistentJsonObject();
+        PersistentJsonObject snapshot = object;
+        Map<String, JsonElement> snapshotExpected = new LinkedHashMap<>();
+        
+        for (int i = 0; i < 20000; i++) {
+            String key = "key" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                object = object.without(key);
+            } else {
+                JsonElement value = new JsonNumber(i);
+                expected.put(key, value);
+                object = object.with(key, value);
+            }
+            if (i == 10000) {
+                snapshot = object;
+                snapshotExpected = new LinkedHashMap<>(expected);
+            }
+        }
+        
+        assertEqualMembers(object, expected);
+        assertEqualMembers(snapshot, snapshotExpected);
+        assertThat(object.getElement("missing"), nullValue());
+    }
+    
+    /**
+     * Asserts that the given object contains exactly the expected members, in the same order.
+     *
+     * @param object The object to check.
+     * @param expected The expected members.
+     */
+    private static void assertEqualMembers(JsonObject object, Map<String, JsonElement> expected) {
+        assertThat(object.getSize(), is(expected.size()));
+        Iterator<Map.Entry<String, JsonElement>> actual = object.iterator();
+        for (Map.Entry<String, JsonElement> entry : expected.entrySet()) {
+            Map.Entry<String, JsonElement> member = actual.next();
+            assertThat(member.getKey(), is(entry.getKey()));
+            assertThat(member.getValue(), is(entry.getValue()));
+            assertThat(object.getElement(entry.getKey()), is(entry.getValue()));
+        }
+        assertThat(actual.hasNext(), is(false));
+    }
+    
+    /**
+     * Tests keys with colliding hash codes.
+     */
+    @Test
+    public void testObjectHashCollisions() {
+        // "Aa" and "BB" have the same hash code
+        PersistentJsonObject object = new PersistentJsonObject()
+                .with("Aa", new JsonNumber(1))
+                .with("BB", new JsonNumber(2))
+                .with("AaAa", new JsonNumber(3))
+                .with("BBBB", new JsonNumber(4))
+                .with("AaBB", new JsonNumber(5));
+        
+        assertThat(object.getElement("Aa"), is(new JsonNumber(1)));
+        assertThat(object.getElement("BB"), is(new JsonNumber(2)));
+        assertThat(object.getElement("AaBB"), is(new JsonNumber(5)));
+        assertThat(object.with("BB", new JsonNumber(6)).getElement("BB"), is(new JsonNumber(6)));
+        
+        PersistentJsonObject removed = object.without("Aa").without("BBBB");
+        assertThat(removed.getSize(), is(3));
+        assertThat(removed.getElement("Aa"), nullValue());
+        assertThat(removed.getElement("BB"), is(new JsonNumber(2)));
+        assertThat(removed.getElement("AaAa"), is(new JsonNumber(3)));
+        assertThat(object.getElement("Aa"), is(new JsonNumber(1)));
+    }
+    
+    /**
+     * Tests that {@link PersistentJsonObject#copyOf(JsonObject)} converts nested elements and is equal to the
+     * original.
+     */
+    @Test
+    public void testCopyOf() {
+        JsonObject nested = new JsonObject();
+        nested.putElement("a", new JsonString("b"));
+        JsonList list = new JsonList();
+        list.addElement(nested);
+        JsonObject original = new JsonObject();
+        original.putElement("list", list);
+        original.putElement("number", new JsonNumber(1));
+        
+        PersistentJsonObject copy = PersistentJsonObject.copyOf(original);
+        
+        assertThat(copy, is(original));
+        assertThat(original, is(copy));
+        assertThat(copy.hashCode(), is(original.hashCode()));
+        assertThat(copy.fingerprint(), is(original.fingerprint()));
+        assertThat(copy.toString(), is(original.toString()));
+        assertThat(copy.getElement("list"), instanceOf(PersistentJsonList.class));
+        assertThat(((JsonList) copy.getElement("list")).getElement(0), instanceOf(PersistentJsonObject.class));
+        assertThat(PersistentJsonObject.copyOf(copy), sameInstance(copy));
+        
+        PersistentJsonObject modified = copy.with("number", new JsonNumber(2));
+        assertThat(modified.getElement("list"), sameInstance(copy.getElement("list")));
+        assertThat(modified.equals(original), is(false));
+        assertThat(modified.toString(), is("{ \"list\": [ { \"a\": \"b\" } ], \"number\": 2 }"));
+    }
+    
+    /**
+     * Tests that added lists and objects are converted, so that modifying the originals doesn't change the
+     * (permanently cached) hashes of the persistent versions.
+     */
+    @Test
+    public void testAddedElementsConverted() {
+        JsonList list = new JsonList();
+        list.addElement(new JsonNumber(1));
+        JsonObject object = new JsonObject();
+        object.putElement("a", new JsonNumber(1));
+        
+        PersistentJsonObject persistentObject = new PersistentJsonObject().with("list", list);
+        PersistentJsonList persistentList = new PersistentJsonList().plus(object).with(0, object).plus(list);
+        assertThat(persistentObject.getElement("list"), instanceOf(PersistentJsonList.class));
+        assertThat(persistentList.getElement(0), instanceOf(PersistentJsonObject.class));
+        assertThat(persistentList.getElement(1), instanceOf(PersistentJsonList.class));
+        
+        int objectHash = persistentObject.hashCode();
+        long objectFingerprint = persistentObject.fingerprint();
+        int listHash = persistentList.hashCode();
+        long listFingerprint = persistentList.fingerprint();
+        
+        list.addElement(new JsonNumber(2));
+        object.putElement("a", new JsonNumber(2));
+        list.hashCode();
+        
+        assertThat(persistentObject.hashCode(), is(objectHash));
+        assertThat(persistentObject.fingerprint(), is(objectFingerprint));
+        assertThat(persistentList.hashCode(), is(listHash));
+        assertThat(persistentList.fingerprint(), is(listFingerprint));
+        assertThat(persistentObject.toString(), is("{ \"list\": [ 1 ] }"));
+        assertThat(persistentList.toString(), is("[ { \"a\": 1 }, [ 1 ] ]"));
+    }
+    
+    /**
+     * Tests that a {@link PersistentJsonObject} can't be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testObjectImmutable() {
+        new PersistentJsonObject().putElement("a", JsonNull.INSTANCE);
+    }
+    
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import net.ssehub.json.ParserOptions.SyntaxExtension;
+
+/**
+ * Tests the {@link SyntaxExtension}s of the {@link JsonParser}.
+ *
+ * @author Adam
+ */
+public class RelaxedSyntaxTest {
+    
+    /**
+     * Parses the given string with the given syntax extensions enabled.
+     *
+     * @param json The JSON string.
+     * @param extensions The syntax extensions to enable.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException If parsing fails.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parse(String json, SyntaxExtension... extensions)
+            throws ParsingException, IOException {
+        ParserOptions options = new ParserOptions();
+        for (SyntaxExtension extension : extensions) {
+            options.setSyntaxExtensionEnabled(extension, true);
+        }
+        try (JsonParser parser = new JsonParser(new StringReader(json), options)) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Parses the given string, which is expected to be malformed.
+     *
+     * @param json The JSON string.
+     * @param extensions The syntax extensions to enable.
+     *
+     * @return The message of the exception.
+     *
+     * @throws IOException unwanted.
+     */
+    private static String parseInvalid(String json, SyntaxExtension... extensions) throws IOException {
+        String result = null;
+        try {
+            parse(json, extensions);
+        } catch (ParsingException e) {
+            result = e.getMessage();
+        }
+        if (result == null) {
+            throw new AssertionError("Expected ParsingException");
+        }
+        return result;
+    }
+    
+    /**
+     * Tests line and block comments.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testComments() throws ParsingException, IOException {
+        String json = "// config\n{ /* a */ \"a\" /**/ : // x\n 1 /* multi\n * line **/, \"b\": \"/* no */\"}\n// end";
+        assertThat(parse(json, SyntaxExtension.COMMENTS).toString(), is("{ \"a\": 1, \"b\": \"/* no */\" }"));
+        
+        assertThat(parseInvalid("[1 /* open", SyntaxExtension.COMMENTS),
+                is("Line 1, column 11: Unterminated block comment"));
+        assertThat(parseInvalid("[1 / 2]", SyntaxExtension.COMMENTS),
+                is("Line 1, column 5: Expecting '/' or '*' after '/', got  "));
+        assertThat(parseInvalid("[1 // c\n]"), is("Line 1, column 4: Expecting ']' at end of list, got /"));
+    }
+    
+    /**
+     * Tests trailing commas in lists and objects.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTrailingCommas() throws ParsingException, IOException {
+        assertThat(parse("{\"a\": [1, 2, ], \"b\": {},\n}", SyntaxExtension.TRAILING_COMMAS).toString(),
+                is("{ \"a\": [ 1, 2 ], \"b\": {} }"));
+        
+        parseInvalid("[1, ]");
+        parseInvalid("[1,, ]", SyntaxExtension.TRAILING_COMMAS);
+        parseInvalid("[, ]", SyntaxExtension.TRAILING_COMMAS);
+    }
+    
+    /**
+     * Tests that {@link JsonParser#parseNextListElement()} supports trailing commas.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testTrailingCommaTopLevelList() throws ParsingException, IOException {
+        ParserOptions options = new ParserOptions();
+        options.setSyntaxExtensionEnabled(SyntaxExtension.TRAILING_COMMAS, true);
+        try (JsonParser parser = new JsonParser(new StringReader("[1, 2,\n]"), options)) {
+            assertThat(parser.parseNextListElement().toString(), is("1"));
+            assertThat(parser.parseNextListElement().toString(), is("2"));
+            assertThat(parser.parseNextListElement(), is((JsonElement) null));
+        }
+    }
+    
+    /**
+     * Tests strings and keys in single quotes.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testSingleQuotes() throws ParsingException, IOException, NoSuchElementException {
+        JsonObject parsed = (JsonObject) parse("{'a': 'it\\'s \"quoted\"', \"b\": \"\\'\"}",
+                SyntaxExtension.SINGLE_QUOTES);
+        assertThat(parsed.getString("a"), is("it's \"quoted\""));
+        assertThat(parsed.getString("b"), is("'"));
+        
+        assertThat(parseInvalid("['a']"), is("Line 1, column 2: Couldn't determine type: '"));
+        assertThat(parseInvalid("[\"\\'\"]"), is("Line 1, column 4: Invalid escaped character '''"));
+        assertThat(parseInvalid("['a\"]", SyntaxExtension.SINGLE_QUOTES),
+                is("Line 1, column 6: Expecting ''' at end of string, got \uffff"));
+    }
+    
+    /**
+     * Tests unquoted keys.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testUnquotedKeys() throws ParsingException, IOException {
+        JsonElement parsed = parse("{a: 1, _b$2 : 2, \u00e4: 3}", SyntaxExtension.UNQUOTED_KEYS);
+        assertThat(parsed.toString(), is("{ \"a\": 1, \"_b$2\": 2, \"\u00e4\": 3 }"));
+        
+        assertThat(parseInvalid("{a: 1}"), is("Line 1, column 2: Expecting key string, got a"));
+        assertThat(parseInvalid("{1a: 1}", SyntaxExtension.UNQUOTED_KEYS),
+                is("Line 1, column 2: Expecting key string, got 1"));
+    }
+    
+    /**
+     * Tests NaN, Infinity and leading '+' signs.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testNonFiniteNumbers() throws ParsingException, IOException {
+        JsonList parsed = (JsonList) parse("[NaN, Infinity, -Infinity, +Infinity, +1, -1.5e1, 0.5]",
+                SyntaxExtension.NON_FINITE_NUMBERS);
+        assertThat(parsed.getElement(0), is(new JsonNumber(Double.NaN)));
+        assertThat(parsed.getElement(1), is(new JsonNumber(Double.POSITIVE_INFINITY)));
+        assertThat(parsed.getElement(2), is(new JsonNumber(Double.NEGATIVE_INFINITY)));
+        assertThat(parsed.getElement(3), is(new JsonNumber(Double.POSITIVE_INFINITY)));
+        assertThat(parsed.getElement(4), is(new JsonNumber(1)));
+        assertThat(parsed.getElement(5), is(new JsonNumber(-15.0)));
+        assertThat(parsed.getElement(6), is(new JsonNumber(0.5)));
+        
+        parseInvalid("[NaN]");
+        parseInvalid("[-Infinity]");
+        parseInvalid("[+1]");
+        parseInvalid("[Infinit]", SyntaxExtension.NON_FINITE_NUMBERS);
+    }
+    
+    /**
+     * Tests that only a single sign is allowed in front of a number.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testMultipleSigns() throws IOException {
+        for (SyntaxExtension[] extensions : new SyntaxExtension[][] {
+            {SyntaxExtension.NON_FINITE_NUMBERS}, SyntaxExtension.values()}) {
+            
+            assertThat(parseInvalid("[+-1]", extensions), is("Line 1, column 3: Expected digit after sign, got '-'"));
+            assertThat(parseInvalid("[--1]", extensions), is("Line 1, column 3: Expected digit after sign, got '-'"));
+            assertThat(parseInvalid("[-+1]", extensions), is("Line 1, column 3: Expected digit after sign, got '+'"));
+            assertThat(parseInvalid("[+]", extensions), is("Line 1, column 3: Expected digit after sign, got ']'"));
+        }
+        assertThat(parseInvalid("[--1]", SyntaxExtension.HEX_NUMBERS),
+                is("Line 1, column 3: Expected digit after sign, got '-'"));
+        assertThat(parseInvalid("[--1]"), is("Line 1, column 3: Got no integer digits"));
+    }
+    
+    /**
+     * Tests hexadecimal numbers.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testHexNumbers() throws ParsingException, IOException {
+        JsonList parsed = (JsonList) parse("[0x1F, -0XfF, 0x100000000, 0, -0, 0.25, 0e1]",
+                SyntaxExtension.HEX_NUMBERS);
+        assertThat(parsed.getElement(0), is(new JsonNumber(31)));
+        assertThat(parsed.getElement(1), is(new JsonNumber(-255)));
+        assertThat(parsed.getElement(2), is(new JsonNumber(0x100000000L)));
+        assertThat(parsed.getElement(3), is(new JsonNumber(0)));
+        assertThat(parsed.getElement(4), is(new JsonNumber(0)));
+        assertThat(parsed.getElement(5), is(new JsonNumber(0.25)));
+        assertThat(parsed.getElement(6), is(new JsonNumber(0.0)));
+        
+        assertThat(parseInvalid("[0x1F]"), is("Line 1, column 3: Expecting ']' at end of list, got x"));
+        assertThat(parseInvalid("[0x]", SyntaxExtension.HEX_NUMBERS),
+                is("Line 1, column 4: Expected at least one hex digit after 0x, got ']'"));
+        assertThat(parseInvalid("[01]", SyntaxExtension.HEX_NUMBERS),
+                is("Line 1, column 3: Number may not start with leading 0"));
+        parseInvalid("[0x10000000000000000]", SyntaxExtension.HEX_NUMBERS);
+    }
+    
+    /**
+     * Tests a JSON5-like configuration file with all extensions enabled.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testAllExtensions() throws ParsingException, IOException, NoSuchElementException {
+        String json = "// settings\n"
+                + "{\n"
+                + "  name: 'server', // the name\n"
+                + "  port: 0x1F90,\n"
+                + "  ratio: +Infinity,\n"
+                + "  tags: ['a', \"b\",],\n"
+                + "}\n";
+        JsonObject parsed = (JsonObject) parse(json, SyntaxExtension.values());
+        assertThat(parsed.getString("name"), is("server"));
+        assertThat(parsed.getInt("port"), is(8080));
+        assertThat(parsed.getElement("ratio"), is(new JsonNumber(Double.POSITIVE_INFINITY)));
+        assertThat(parsed.getElement("tags").toString(), is("[ \"a\", \"b\" ]"));
+    }
+    
+}
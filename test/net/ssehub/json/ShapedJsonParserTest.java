@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import net.ssehub.json.JsonShape.FieldType;
+
+/**
+ * Tests the {@link ShapedJsonParser}.
+ *
+ * @author Adam
+ */
+public class ShapedJsonParserTest {
+    
+    private final JsonShape address = new JsonShape();
+    
+    private final int city = address.addField("city", FieldType.STRING);
+    
+    private final JsonShape person = new JsonShape();
+    
+    private final int id = person.addField("id", FieldType.LONG);
+    
+    private final int name = person.addField("name", FieldType.STRING);
+    
+    private final int score = person.addField("score", FieldType.DOUBLE);
+    
+    private final int active = person.addField("active", FieldType.BOOLEAN);
+    
+    private final int home = person.addField("home", address);
+    
+    private final int tags = person.addField("tags", FieldType.ANY);
+    
+    /**
+     * Parses the given string generically with the {@link JsonParser}.
+     *
+     * @param json The JSON string.
+     *
+     * @return The parsed element.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    private static JsonElement parseGeneric(String json) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader(json))) {
+            return parser.parse();
+        }
+    }
+    
+    /**
+     * Tests a document with exactly the expected shape.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testExactShape() throws ParsingException, NoSuchElementException {
+        ShapedRecord record = new ShapedJsonParser(person).parse("{\"id\": 10000000000, \"name\": \"Alice\", "
+                + "\"score\": 2, \"active\": true, \"home\": {\"city\": \"Hildesheim\"}, \"tags\": [1, {}]}");
+        
+        assertThat(record.getLong(id), is(10000000000L));
+        assertThat(record.getString(name), is("Alice"));
+        assertThat(record.getDouble(score), is(2.0));
+        assertThat(record.getBoolean(active), is(true));
+        assertThat(record.getRecord(home).getString(city), is("Hildesheim"));
+        assertThat(record.getElement(tags).toString(), is("[ 1, {} ]"));
+        assertThat(record.getUnmatched().getSize(), is(0));
+    }
+    
+    /**
+     * Tests that members in a different order, missing fields and <code>null</code> values are handled.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testReorderedAndMissing() throws ParsingException, NoSuchElementException {
+        ShapedRecord record = new ShapedJsonParser(person).parse("{\"active\": false, \"name\": null, \"id\": -3}");
+        
+        assertThat(record.getBoolean(active), is(false));
+        assertThat(record.isPresent(name), is(true));
+        assertThat(record.isNull(name), is(true));
+        assertThat(record.getLong(id), is(-3L));
+        assertThat(record.isPresent(score), is(false));
+        assertThat(record.isPresent(home), is(false));
+    }
+    
+    /**
+     * Tests that unknown keys and values of the wrong type fall back to generic parsing.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testFallback() throws ParsingException {
+        ShapedRecord record = new ShapedJsonParser(person).parse("{\"id\": 1.5, \"extra\": {\"x\": [true]}, "
+                + "\"name\": 5, \"home\": \"nowhere\", \"active\": true}");
+        
+        assertThat(record.isPresent(id), is(false));
+        assertThat(record.isPresent(name), is(false));
+        assertThat(record.isPresent(home), is(false));
+        assertThat(record.isPresent(active), is(true));
+        assertThat(record.getUnmatched().toString(),
+                is("{ \"id\": 1.5, \"extra\": { \"x\": [ true ] }, \"name\": 5, \"home\": \"nowhere\" }"));
+    }
+    
+    /**
+     * Tests that the last of duplicate members wins, also when only one of them fits the shape.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testDuplicateKeys() throws ParsingException, NoSuchElementException {
+        ShapedRecord record = new ShapedJsonParser(person).parse("{\"id\": 1, \"id\": \"x\", \"name\": \"a\", "
+                + "\"name\": \"b\", \"score\": true, \"score\": 1.5}");
+        
+        assertThat(record.isPresent(id), is(false));
+        assertThat(record.getString(name), is("b"));
+        assertThat(record.getDouble(score), is(1.5));
+        assertThat(record.getUnmatched().toString(), is("{ \"id\": \"x\" }"));
+    }
+    
+    /**
+     * Tests strings with escapes and non-ASCII characters, both as keys and as values.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testEscapesAndUnicode() throws ParsingException, NoSuchElementException {
+        JsonShape shape = new JsonShape();
+        int plain = shape.addField("plain", FieldType.STRING);
+        int umlaut = shape.addField("\u00e4", FieldType.STRING);
+        int quoted = shape.addField("a\"b", FieldType.STRING);
+        
+        ShapedRecord record = new ShapedJsonParser(shape).parse("{\"pl\\u0061in\": \"tab\\there\", "
+                + "\"\u00e4\": \"\u00fc\u20ac\ud83d\ude00\", \"a\\\"b\": \"\\\\\"}");
+        
+        assertThat(record.getString(plain), is("tab\there"));
+        assertThat(record.getString(umlaut), is("\u00fc\u20ac\ud83d\ude00"));
+        assertThat(record.getString(quoted), is("\\"));
+    }
+    
+    /**
+     * Tests that {@link ShapedRecord#toJsonObject()} produces the same tree as the generic parser.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testToJsonObject() throws ParsingException, IOException {
+        String json = "{\"id\": 7, \"name\": \"Bob\", \"score\": 0.25, \"active\": true, \"home\": null, "
+                + "\"tags\": [\"a\", -1e3, null, 10000000000], \"other\": {}}";
+        ShapedRecord record = new ShapedJsonParser(person).parse(json);
+        
+        assertThat(record.toJsonObject(), is(parseGeneric(json)));
+    }
+    
+    /**
+     * Tests that a recursive shape can be used for nested objects.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testRecursiveShape() throws ParsingException, NoSuchElementException {
+        JsonShape node = new JsonShape();
+        int value = node.addField("value", FieldType.LONG);
+        int next = node.addField("next", node);
+        
+        ShapedRecord record = new ShapedJsonParser(node).parse("{\"value\": 1, \"next\": {\"value\": 2}}");
+        
+        assertThat(record.getLong(value), is(1L));
+        assertThat(record.getRecord(next).getLong(value), is(2L));
+        assertThat(record.getRecord(next).isPresent(next), is(false));
+    }
+    
+    /**
+     * Tests that malformed documents are rejected.
+     */
+    @Test
+    public void testMalformed() {
+        String[] documents = {
+            "", "[]", "{", "{\"id\": 1,}", "{\"id\" 1}", "{\"id\": 01}", "{\"id\": 1.}", "{\"id\": tru}",
+            "{\"name\": \"abc}", "{\"name\": \"a\u0001\"}", "{\"name\": \"\\x\"}", "{\"tags\": [1 2]}", "{} {}",
+            "{\"id\": 99999999999999999999}",
+        };
+        ShapedJsonParser parser = new ShapedJsonParser(person);
+        for (String document : documents) {
+            try {
+                parser.parse(document);
+                throw new AssertionError("Expected ParsingException for " + document);
+            } catch (ParsingException e) {
+                // expected
+            }
+        }
+    }
+    
+    /**
+     * Tests that invalid UTF-8 is rejected.
+     */
+    @Test(expected = ParsingException.class)
+    public void testInvalidUtf8() throws ParsingException {
+        byte[] input = {'{', '"', 'n', 'a', 'm', 'e', '"', ':', '"', (byte) 0xC0, (byte) 0x80, '"', '}'};
+        new ShapedJsonParser(person).parse(input);
+    }
+    
+    /**
+     * Tests that the position of the error is reported in exceptions.
+     */
+    @Test
+    public void testLineNumber() {
+        try {
+            new ShapedJsonParser(person).parse("{\n\"id\": 1,\n\"name\": x}");
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage(), is("Line 3, column 9: Expecting value, got 'x'"));
+            assertThat(e.getLine(), is(3L));
+            assertThat(e.getColumn(), is(9L));
+            assertThat(e.getOffset(), is(19L));
+        }
+    }
+    
+    /**
+     * Tests that both parsers report errors at the same line and column.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testErrorPositionsMatchJsonParser() throws IOException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxStringLength(3);
+        options.setMaxNumberLength(3);
+        options.setMaxNestingDepth(3);
+        options.setMaxListSize(2);
+        options.setMaxObjectSize(2);
+        
+        String[] inputs = {
+            "{\"tags\": \"\\ud800\"}", "{\"tags\": \"a\\qb\"}", "{\"tags\": \"ab", "{\"tags\": [1,\n 2",
+            "{\"tags\": 01}", "{\"tags\": 1.}", "{\"tags\": tru}", "{\"tags\" 1}", "{\"tags\": [1 2]}",
+            "{\"tags\": 1}}", "{tags: 1}", "{\"tags\": [1,]}", "{", "",
+            "{\"tags\": \"abcd\"}", "{\"tags\": 1234}", "{\"tags\": [[[1]]]}", "{\"tags\": [1, 2, 3]}",
+            "{\"tags\": {\"a\": 1, \"b\": 2, \"c\": 3}}",
+        };
+        for (String input : inputs) {
+            ParsingException generic = null;
+            try (JsonParser parser = new JsonParser(new StringReader(input), options)) {
+                parser.parse();
+            } catch (ParsingException e) {
+                generic = e;
+            }
+            if (generic == null) {
+                throw new AssertionError("Expected ParsingException from JsonParser for " + input);
+            }
+            try {
+                new ShapedJsonParser(person, options).parse(input);
+                throw new AssertionError("Expected ParsingException for " + input);
+            } catch (ParsingException e) {
+                assertThat(input, e.getLine(), is(generic.getLine()));
+                assertThat(input, e.getColumn(), is(generic.getColumn()));
+            }
+        }
+    }
+    
+    /**
+     * Tests that the limits of the {@link ParserOptions} are enforced.
+     */
+    @Test(expected = ParsingException.class)
+    public void testNestingLimit() throws ParsingException {
+        ParserOptions options = new ParserOptions();
+        options.setMaxNestingDepth(3);
+        new ShapedJsonParser(person, options).parse("{\"tags\": [[[1]]]}");
+    }
+    
+}
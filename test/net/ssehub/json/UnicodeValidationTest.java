@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.json;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.ssehub.json.JsonShape.FieldType;
+
+/**
+ * Tests the validation of surrogate pairs and UTF-8 input in strings, see
+ * {@link ParserOptions#setReplaceInvalidUnicode(boolean)}.
+ *
+ * @author Adam
+ */
+public class UnicodeValidationTest {
+    
+    private static final byte[] INVALID_UTF8 = {'[', '"', 'a', (byte) 0xC0, (byte) 0x80, 'b', '"', ']'};
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final JsonShape shape = new JsonShape();
+    
+    private final int text = shape.addField("text", FieldType.STRING);
+    
+    /**
+     * Creates options with the given replacement setting.
+     *
+     * @param replace Whether invalid unicode is replaced.
+     *
+     * @return The options.
+     */
+    private static ParserOptions options(boolean replace) {
+        ParserOptions options = new ParserOptions();
+        options.setReplaceInvalidUnicode(replace);
+        return options;
+    }
+    
+    /**
+     * Parses a list with a single string with the {@link JsonParser}.
+     *
+     * @param content The content of the string in the JSON input, i.e. possibly with escapes.
+     * @param replace Whether invalid unicode is replaced.
+     *
+     * @return The parsed string value.
+     *
+     * @throws ParsingException If parsing fails.
+     * @throws IOException unwanted.
+     */
+    private static String parseString(String content, boolean replace) throws ParsingException, IOException {
+        try (JsonParser parser = new JsonParser(new StringReader("[\"" + content + "\"]"), options(replace))) {
+            return ((JsonString) ((JsonList) parser.parse()).getElement(0)).getValue();
+        }
+    }
+    
+    /**
+     * Parses a list with a single string with the {@link NonBlockingJsonParser}, feeding the input byte by byte.
+     *
+     * @param input The UTF-8 encoded JSON input.
+     * @param replace Whether invalid unicode is replaced.
+     *
+     * @return The parsed string value.
+     *
+     * @throws ParsingException If parsing fails.
+     */
+    private static String parseNonBlocking(byte[] input, boolean replace) throws ParsingException {
+        NonBlockingJsonParser parser = new NonBlockingJsonParser(options(replace));
+        for (byte b : input) {
+            parser.feed(ByteBuffer.wrap(new byte[] {b}));
+        }
+        parser.endOfInput();
+        
+        assertThat(parser.nextToken(), is(JsonToken.START_LIST));
+        assertThat(parser.nextToken(), is(JsonToken.STRING));
+        return parser.getString();
+    }
+    
+    /**
+     * Parses an object with a single string field with the {@link ShapedJsonParser}.
+     *
+     * @param input The UTF-8 encoded content of the string in the JSON input, i.e. possibly with escapes.
+     * @param replace Whether invalid unicode is replaced.
+     *
+     * @return The parsed string value.
+     *
+     * @throws ParsingException If parsing fails.
+     * @throws NoSuchElementException unwanted.
+     */
+    private String parseShaped(byte[] input, boolean replace) throws ParsingException, NoSuchElementException {
+        byte[] prefix = "{\"text\": \"".getBytes(StandardCharsets.UTF_8);
+        byte[] document = new byte[prefix.length + input.length + 2];
+        System.arraycopy(prefix, 0, document, 0, prefix.length);
+        System.arraycopy(input, 0, document, prefix.length, input.length);
+        document[document.length - 2] = '"';
+        document[document.length - 1] = '}';
+        return new ShapedJsonParser(shape, options(replace)).parse(document).getString(text);
+    }
+    
+    /**
+     * Tests that valid surrogate pairs are accepted, escaped and unescaped.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testValidPairs() throws ParsingException, IOException, NoSuchElementException {
+        String expected = "a\uD83D\uDE00b";
+        assertThat(parseString("a\\uD83D\\uDE00b", false), is(expected));
+        assertThat(parseString(expected, false), is(expected));
+        assertThat(parseNonBlocking("[\"a\\uD83D\\ude00b\"]".getBytes(StandardCharsets.UTF_8), false), is(expected));
+        assertThat(parseNonBlocking(("[\"" + expected + "\"]").getBytes(StandardCharsets.UTF_8), false),
+                is(expected));
+        assertThat(parseShaped("a\\uD83D\\uDE00b".getBytes(StandardCharsets.UTF_8), false), is(expected));
+        assertThat(parseShaped(expected.getBytes(StandardCharsets.UTF_8), false), is(expected));
+    }
+    
+    /**
+     * Tests that a lone high surrogate is rejected by the {@link JsonParser}.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testLoneHighSurrogate() throws IOException {
+        try {
+            parseString("a\\uD800b", false);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage(), is("Line 1, column 10: Invalid surrogate \\uD800 without matching pair"));
+        }
+    }
+    
+    /**
+     * Tests that a lone low surrogate is rejected by the {@link JsonParser}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testLoneLowSurrogate() throws ParsingException, IOException {
+        parseString("\\uDC00", false);
+    }
+    
+    /**
+     * Tests that a high surrogate at the end of a string is rejected by the {@link JsonParser}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testHighSurrogateAtEnd() throws ParsingException, IOException {
+        parseString("a\\uD800", false);
+    }
+    
+    /**
+     * Tests that lone surrogates are replaced by the {@link JsonParser}, if configured.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testReplaceSurrogates() throws ParsingException, IOException {
+        assertThat(parseString("a\\uD800b", true), is("a\uFFFDb"));
+        assertThat(parseString("a\\uDC00b", true), is("a\uFFFDb"));
+        assertThat(parseString("a\\uD800", true), is("a\uFFFD"));
+        assertThat(parseString("\\uD800\\uD800\\uDC00", true), is("\uFFFD\uD800\uDC00"));
+        assertThat(parseString("\\uD800\\n", true), is("\uFFFD\n"));
+    }
+    
+    /**
+     * Tests that invalid UTF-8 in a file is rejected by the {@link JsonParser}.
+     *
+     * @throws ParsingException wanted.
+     * @throws IOException unwanted.
+     */
+    @Test(expected = ParsingException.class)
+    public void testInvalidUtf8File() throws ParsingException, IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), INVALID_UTF8);
+        try (JsonParser parser = new JsonParser(file)) {
+            parser.parse();
+        }
+    }
+    
+    /**
+     * Tests that invalid UTF-8 in a file is replaced by the {@link JsonParser}, if configured.
+     *
+     * @throws ParsingException unwanted.
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testReplaceInvalidUtf8File() throws ParsingException, IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), INVALID_UTF8);
+        try (JsonParser parser = new JsonParser(file, options(true))) {
+            assertThat(((JsonList) parser.parse()).getElement(0), is(new JsonString("a\uFFFD\uFFFDb")));
+        }
+    }
+    
+    /**
+     * Tests that the {@link NonBlockingJsonParser} rejects lone surrogates and invalid UTF-8.
+     */
+    @Test
+    public void testNonBlockingRejects() {
+        String[] inputs = {"[\"a\\uD800b\"]", "[\"\\uDC00\"]", "[\"\\uD800\"]", "[\"\\uD800\\n\"]"};
+        for (String input : inputs) {
+            try {
+                parseNonBlocking(input.getBytes(StandardCharsets.UTF_8), false);
+                throw new AssertionError("Expected ParsingException for " + input);
+            } catch (ParsingException e) {
+                assertThat(e.getMessage().endsWith("without matching pair"), is(true));
+            }
+        }
+        
+        try {
+            parseNonBlocking(INVALID_UTF8, false);
+            throw new AssertionError("Expected ParsingException");
+        } catch (ParsingException e) {
+            assertThat(e.getMessage(), is("Line 1, column 4: Invalid UTF-8 input"));
+        }
+    }
+    
+    /**
+     * Tests that the {@link NonBlockingJsonParser} replaces lone surrogates and invalid UTF-8, if configured.
+     *
+     * @throws ParsingException unwanted.
+     */
+    @Test
+    public void testNonBlockingReplaces() throws ParsingException {
+        assertThat(parseNonBlocking("[\"a\\uD800b\"]".getBytes(StandardCharsets.UTF_8), true), is("a\uFFFDb"));
+        assertThat(parseNonBlocking("[\"\\uDC00\\uD800\"]".getBytes(StandardCharsets.UTF_8), true),
+                is("\uFFFD\uFFFD"));
+        assertThat(parseNonBlocking(INVALID_UTF8, true), is("a\uFFFD\uFFFDb"));
+    }
+    
+    /**
+     * Tests that the {@link ShapedJsonParser} rejects lone surrogates.
+     */
+    @Test
+    public void testShapedRejects() {
+        for (String input : new String[] {"a\\uD800b", "\\uDC00", "\\uD800\\uD800", "\\uD800\\u0041"}) {
+            try {
+                parseShaped(input.getBytes(StandardCharsets.UTF_8), false);
+                throw new AssertionError("Expected ParsingException for " + input);
+            } catch (ParsingException e) {
+                assertThat(e.getMessage().endsWith("without matching pair"), is(true));
+            } catch (NoSuchElementException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+    
+    /**
+     * Tests that the {@link ShapedJsonParser} replaces lone surrogates and invalid UTF-8, if configured.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testShapedReplaces() throws ParsingException, NoSuchElementException {
+        assertThat(parseShaped("a\\uD800b".getBytes(StandardCharsets.UTF_8), true), is("a\uFFFDb"));
+        assertThat(parseShaped("\\uD800\\uD800\\uDC00".getBytes(StandardCharsets.UTF_8), true),
+                is("\uFFFD\uD800\uDC00"));
+        assertThat(parseShaped(new byte[] {'a', (byte) 0xC0, (byte) 0x80, 'b'}, true), is("a\uFFFD\uFFFDb"));
+        assertThat(parseShaped(new byte[] {'a', (byte) 0xFF, (byte) 0xE2, (byte) 0x82, 'b'}, true),
+                is("a\uFFFD\uFFFDb"));
+    }
+    
+    /**
+     * Tests that long strings are scanned correctly by the word-wise fast path of the {@link ShapedJsonParser}, with
+     * the special character at each position of a word.
+     *
+     * @throws ParsingException unwanted.
+     * @throws NoSuchElementException unwanted.
+     */
+    @Test
+    public void testShapedLongStrings() throws ParsingException, NoSuchElementException {
+        for (int length = 0; length < 40; length++) {
+            StringBuilder plain = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                plain.append((char) ('a' + i % 26));
+            }
+            String ascii = plain.toString();
+            assertThat(parseShaped(ascii.getBytes(StandardCharsets.UTF_8), false), is(ascii));
+            assertThat(parseShaped((ascii + "\\\"x").getBytes(StandardCharsets.UTF_8), false), is(ascii + "\"x"));
+            assertThat(parseShaped((ascii + "\u00e4~").getBytes(StandardCharsets.UTF_8), false), is(ascii + "\u00e4~"));
+            assertThat(parseShaped((ascii + "\u007f ").getBytes(StandardCharsets.UTF_8), false), is(ascii + "\u007f "));
+            
+            try {
+                parseShaped((ascii + "\t").getBytes(StandardCharsets.UTF_8), false);
+                throw new AssertionError("Expected ParsingException");
+            } catch (ParsingException e) {
+                assertThat(e.getOffset(), is(10L + length));
+            }
+        }
+    }
+    
+}